@@ -0,0 +1,71 @@
+import benchmarks.ArrayWorkload;
+
+// ArrayWorkload for the benchmarks module, in the default package so it can
+// call the VectorKernels Builtin loaded and the scalar loops of Builtin
+// directly.
+public class ArrayKernelWorkload implements ArrayWorkload {
+    private final String operation;
+    private final boolean vector;
+    private final ArrayKernels kernels = Builtin.VECTOR_KERNELS;
+    private final double[] a;
+    private final double[] b;
+    private final double[] result;
+    private final long[] integers;
+    private final long[] otherIntegers;
+    private final long[] integerResult;
+
+    public ArrayKernelWorkload(String operation, String kernel, int size) {
+        this.operation = operation;
+        this.vector = kernel.equals("vector");
+        if (vector && !Builtin.VECTORS) {
+            throw new IllegalStateException("The vector kernels need --add-modules jdk.incubator.vector");
+        }
+        a = new double[size];
+        b = new double[size];
+        result = new double[size];
+        integers = new long[size];
+        otherIntegers = new long[size];
+        integerResult = new long[size];
+        for (int i = 0; i < size; i++) {
+            a[i] = i * 0.5;
+            b[i] = size - i;
+            integers[i] = i;
+            otherIntegers[i] = size - i;
+        }
+    }
+
+    @Override
+    public Object run() {
+        switch (operation) {
+            case "sum" -> {
+                return vector ? kernels.sum(a) : Builtin.scalarSum(a);
+            }
+            case "dot" -> {
+                return vector ? kernels.dot(a, b) : Builtin.scalarDot(a, b);
+            }
+            case "plus", "times" -> {
+                boolean plus = operation.equals("plus");
+                if (!vector) {
+                    Builtin.scalarCombine(plus, a, b, result);
+                } else if (plus) {
+                    kernels.plus(a, b, result);
+                } else {
+                    kernels.times(a, b, result);
+                }
+                return result;
+            }
+            case "intSum" -> {
+                return vector ? kernels.sum(integers) : Builtin.scalarSum(integers);
+            }
+            case "intPlus" -> {
+                if (vector) {
+                    kernels.plus(integers, otherIntegers, integerResult);
+                } else {
+                    Builtin.scalarPlus(integers, otherIntegers, integerResult);
+                }
+                return integerResult;
+            }
+            default -> throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+import benchmarks.Workload;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.List;
+
+// Workload for the benchmarks module. It lives in the default package next
+// to the interpreter so it can use the package-private Lexer,
+// StreamingLexer, Parser, Resolver and Interpreter directly.
+public class ScriptWorkload implements Workload {
+    private final String source;
+    private final TokenStream tokens;
+    private final List<Parser.Stmt> statements;
+    private final Parser.Type[] slotTypes;
+    private final int[] parameterSlots;
+    private final double[] arguments;
+    // Formats printed values like a real run but throws the bytes away
+    private final OutputSink out = new BufferedOutput(OutputStream.nullOutputStream());
+
+    public ScriptWorkload(String script) {
+        this.source = source(script);
+        this.arguments = arguments(script);
+        this.tokens = new Lexer(source).scanTokenStream();
+        Resolver resolver = new Resolver();
+        this.statements = resolver.resolve(new Parser(tokens).parse());
+        this.slotTypes = resolver.slotTypes();
+        this.parameterSlots = resolver.parameterSlots();
+    }
+
+    @Override
+    public Object scanTokenStream() {
+        return new Lexer(source).scanTokenStream();
+    }
+
+    @Override
+    public Object streamTokens() {
+        // The StreamingLexer scans a token each time the Parser moves on, so
+        // drain it the same way
+        StreamingLexer lexer = new StreamingLexer(new StringReader(source));
+        while (lexer.peekType() != TokenType.EOF) {
+            lexer.advance();
+        }
+        lexer.rethrowError();
+        return lexer.previous();
+    }
+
+    @Override
+    public Object parse() {
+        return new Parser(tokens).parse();
+    }
+
+    @Override
+    public Object interpret() {
+        // The programs assign to their parameters, so every run gets a fresh frame
+        double[] numbers = new double[slotTypes.length];
+        long[] integers = new long[slotTypes.length];
+        for (int i = 0; i < arguments.length; i++) {
+            int slot = parameterSlots[i];
+            if (slotTypes[slot] == Parser.Type.INTEGER) {
+                integers[slot] = (long) arguments[i];
+            } else {
+                numbers[slot] = arguments[i];
+            }
+        }
+        new Interpreter(numbers, integers, out).interpret(statements);
+        return numbers;
+    }
+
+    private static String source(String script) {
+        return switch (script) {
+            case "sumOfN" -> KotlinInterpreter.SUM_OF_N;
+            case "factorial" -> KotlinInterpreter.FACTORIAL;
+            case "gcd" -> KotlinInterpreter.GCD;
+            case "reverseNumber" -> KotlinInterpreter.REVERSE_NUMBER;
+            case "isPrime" -> KotlinInterpreter.IS_PRIME;
+            case "isPalindrome" -> KotlinInterpreter.IS_PALINDROME;
+            case "largestDigit" -> KotlinInterpreter.LARGEST_DIGIT;
+            case "sumOfDigits" -> KotlinInterpreter.SUM_OF_DIGITS;
+            case "multiplicationTable" -> KotlinInterpreter.MULTIPLICATION_TABLE;
+            case "fibonacci" -> KotlinInterpreter.FIBONACCI;
+            case "largeProgram" -> largeProgram(2000);
+            case "nestedLoops" -> nestedLoops(1000, 100);
+            case "countedLoops" -> countedLoops(1000, 100);
+            default -> throw new IllegalArgumentException("Unknown script " + script);
+        };
+    }
+
+    // Inputs large enough that each algorithm's loop does real work
+    private static double[] arguments(String script) {
+        return switch (script) {
+            case "sumOfN" -> new double[]{1000};
+            case "factorial" -> new double[]{20};
+            case "gcd" -> new double[]{1071, 462};
+            case "reverseNumber", "isPalindrome" -> new double[]{123454321};
+            case "isPrime" -> new double[]{7919};
+            case "largestDigit", "sumOfDigits" -> new double[]{918273645};
+            case "multiplicationTable" -> new double[]{12};
+            case "fibonacci" -> new double[]{30};
+            default -> new double[0];
+        };
+    }
+
+    // Straight-line code with groups of five statements, each group using its
+    // own variables, for a source of a few hundred kilobytes
+    static String largeProgram(int groups) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < groups; i++) {
+            source.append("var a").append(i).append(" = ").append(i).append(" * 3 + 7;\n");
+            source.append("if (a").append(i).append(" > 100) { a").append(i).append(" = a").append(i)
+                    .append(" % 97; } else { a").append(i).append(" = a").append(i).append(" - 1; }\n");
+            source.append("var b").append(i).append(" = 0;\n");
+            source.append("while (b").append(i).append(" < 5) { b").append(i).append(" = b").append(i)
+                    .append(" + 1; }\n");
+            source.append("print a").append(i).append(" + b").append(i).append(";\n");
+        }
+        return source.toString();
+    }
+
+    // A small source that spends its time in a hot inner loop
+    static String nestedLoops(int outer, int inner) {
+        return "var total = 0;\n"
+                + "var i = 0;\n"
+                + "while (i < " + outer + ") {\n"
+                + "    var j = 0;\n"
+                + "    while (j < " + inner + ") {\n"
+                + "        total = total + i * j % 7;\n"
+                + "        j = j + 1;\n"
+                + "    }\n"
+                + "    i = i + 1;\n"
+                + "}\n"
+                + "print total;\n";
+    }
+
+    // nestedLoops written with for loops over ranges
+    static String countedLoops(int outer, int inner) {
+        return "var total = 0;\n"
+                + "for (i in 0.." + (outer - 1) + ") {\n"
+                + "    for (j in 0.." + (inner - 1) + ") {\n"
+                + "        total = total + i * j % 7;\n"
+                + "    }\n"
+                + "}\n"
+                + "print total;\n";
+    }
+}
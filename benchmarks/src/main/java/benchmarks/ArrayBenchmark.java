@@ -0,0 +1,48 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The array built-ins on the Vector API kernels against the scalar loops
+// they replace. The forked JVM gets the incubator module, so both kernels
+// can be measured in the same run.
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class ArrayBenchmark {
+    // sum, dot, plus and times on DoubleArrays; intSum and intPlus on IntArrays
+    @Param({"sum", "dot", "plus", "times", "intSum", "intPlus"})
+    public String operation;
+
+    @Param({"scalar", "vector"})
+    public String kernel;
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    private ArrayWorkload workload;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        workload = ArrayWorkload.of(operation, kernel, size);
+    }
+
+    @Benchmark
+    public Object run() {
+        return workload.run();
+    }
+}
@@ -0,0 +1,19 @@
+package benchmarks;
+
+// One bulk array operation, run on either the SIMD kernels in VectorKernels
+// or the scalar loops in Builtin. Loaded by name like Workload, since the
+// interpreter's classes live in the default package.
+public interface ArrayWorkload {
+    // The operation on arrays filled once up front
+    Object run();
+
+    static ArrayWorkload of(String operation, String kernel, int size) {
+        try {
+            return (ArrayWorkload) Class.forName("ArrayKernelWorkload")
+                    .getConstructor(String.class, String.class, int.class)
+                    .newInstance(operation, kernel, size);
+        } catch (ReflectiveOperationException error) {
+            throw new IllegalStateException("Cannot load array workload " + operation, error);
+        }
+    }
+}
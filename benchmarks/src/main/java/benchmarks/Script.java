@@ -0,0 +1,26 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// The script every benchmark runs: one of the ten menu algorithms or a
+// generated script (see ScriptWorkload for the sources and inputs)
+@State(Scope.Benchmark)
+public class Script {
+    @Param({
+            "sumOfN", "factorial", "gcd", "reverseNumber", "isPrime",
+            "isPalindrome", "largestDigit", "sumOfDigits", "multiplicationTable", "fibonacci",
+            "largeProgram", "nestedLoops", "countedLoops"
+    })
+    public String name;
+
+    Workload workload;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        workload = Workload.of(name);
+    }
+}
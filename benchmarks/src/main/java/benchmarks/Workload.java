@@ -0,0 +1,30 @@
+package benchmarks;
+
+// One script prepared for benchmarking each stage of the interpreter on its
+// own. The interpreter's classes live in the default package, which classes
+// in a named package (including the code JMH generates) cannot refer to, so
+// the benchmarks go through this interface and the implementation is loaded
+// by name.
+public interface Workload {
+    // Lexer.scanTokenStream on the script's source
+    Object scanTokenStream();
+
+    // Every token of the script's source read from a StreamingLexer
+    Object streamTokens();
+
+    // Parser.parse on a TokenStream scanned once up front
+    Object parse();
+
+    // Interpreter.interpret on statements parsed and resolved once up front
+    Object interpret();
+
+    static Workload of(String script) {
+        try {
+            return (Workload) Class.forName("ScriptWorkload")
+                    .getConstructor(String.class)
+                    .newInstance(script);
+        } catch (ReflectiveOperationException error) {
+            throw new IllegalStateException("Cannot load workload " + script, error);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+// The bulk array operations Builtin can hand to SIMD code: VectorKernels,
+// which needs the incubating Vector API and is loaded only when Java has it.
+// Each one has the same result as the scalar loop in Builtin, except that
+// double sums and dot products may add in a different order.
+interface ArrayKernels {
+    double sum(double[] array);
+
+    // Throws ArithmeticException when the sum might not fit in a long;
+    // Builtin then adds the elements exactly
+    long sum(long[] array);
+
+    double dot(double[] a, double[] b);
+
+    void plus(double[] a, double[] b, double[] result);
+
+    void plus(double[] a, double b, double[] result);
+
+    void times(double[] a, double[] b, double[] result);
+
+    void times(double[] a, double b, double[] result);
+
+    // Throw ArithmeticException when an element overflows
+    void plus(long[] a, long[] b, long[] result);
+
+    void plus(long[] a, long b, long[] result);
+}
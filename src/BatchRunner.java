@@ -0,0 +1,169 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Non-interactive batch mode: runs every script in a directory, or every
+// {"id", "source", "inputs"} record in a JSON-lines file, on a
+// ScriptExecutor and writes one JSON line per script as soon as it finishes:
+//
+//     {"id":"a.kt","output":"55\n","error":null,"elapsedMs":0.41}
+//
+// Results come out in completion order, so they are matched to their input
+// by id. Jobs are read lazily and admitted as earlier ones finish, so
+// memory use does not grow with the size of the batch.
+class BatchRunner {
+    // File extensions picked up from a directory
+    private static final List<String> EXTENSIONS = List.of(".kt", ".kts");
+
+    private final Writer out;
+    private final ScriptExecutor executor;
+    // The first error writing a result; reported once the batch is done
+    private IOException writeError;
+
+    private BatchRunner(OutputStream out, ScriptExecutor executor) {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.executor = executor;
+    }
+
+    // Runs the scripts in a directory, passing arguments to each of them,
+    // or the records of a JSON-lines file, which carry their own inputs
+    static void run(Path path, KotlinInterpreter.ExecutionMode mode, ExecutionLimits limits, int parallelism,
+                    double[] arguments, OutputStream out) throws IOException, InterruptedException {
+        BatchRunner runner;
+        try (ScriptExecutor executor = new ScriptExecutor(parallelism, mode, limits)) {
+            runner = new BatchRunner(out, executor);
+            if (Files.isDirectory(path)) {
+                runner.runDirectory(path, arguments);
+            } else {
+                runner.runLines(path);
+            }
+        }
+        runner.finish();
+    }
+
+    private void runDirectory(Path directory, double[] arguments) throws IOException, InterruptedException {
+        List<Path> scripts;
+        try (Stream<Path> files = Files.list(directory)) {
+            scripts = files.filter(file -> Files.isRegularFile(file) && isScript(file))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path script : scripts) {
+            String id = Json.quote(script.getFileName().toString());
+            String source;
+            try {
+                source = Files.readString(script);
+            } catch (IOException error) {
+                write(id, null, "Could not read " + script + ": " + error, 0);
+                continue;
+            }
+            submit(id, source, arguments);
+        }
+    }
+
+    private void runLines(Path file) throws IOException, InterruptedException {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.isBlank()) continue;
+                String id = "null";
+                try {
+                    Object record = Json.parse(line);
+                    if (!(record instanceof Map)) {
+                        throw new IllegalArgumentException("Expected a JSON object.");
+                    }
+                    Map<?, ?> fields = (Map<?, ?>) record;
+                    id = idOf(fields.get("id"));
+                    Object source = fields.get("source");
+                    if (!(source instanceof String)) {
+                        throw new IllegalArgumentException("Expected \"source\" to be a string.");
+                    }
+                    submit(id, (String) source, inputsOf(fields.get("inputs")));
+                } catch (IllegalArgumentException error) {
+                    write(id, null, "Line " + number + ": " + error.getMessage(), 0);
+                }
+            }
+        }
+    }
+
+    private void submit(String id, String source, double[] arguments) throws InterruptedException {
+        CompletableFuture<ScriptResult> result = executor.submit(source, arguments);
+        result.whenComplete((outcome, failure) -> {
+            if (failure != null) {
+                write(id, null, failure.toString(), 0);
+            } else {
+                write(id, outcome.output, outcome.error, outcome.elapsed.toNanos() / 1e6);
+            }
+        });
+    }
+
+    // Called from many threads as results complete
+    private synchronized void write(String id, String output, String error, double elapsedMs) {
+        if (writeError != null) return;
+        try {
+            out.write("{\"id\":" + id
+                    + ",\"output\":" + (output != null ? Json.quote(output) : "null")
+                    + ",\"error\":" + (error != null ? Json.quote(error) : "null")
+                    + ",\"elapsedMs\":" + elapsedMs + "}\n");
+            // A line is only useful to a reader once it is out, not when the
+            // whole batch is
+            out.flush();
+        } catch (IOException failure) {
+            writeError = failure;
+        }
+    }
+
+    private synchronized void finish() throws IOException {
+        if (writeError != null) throw writeError;
+        out.flush();
+    }
+
+    private static boolean isScript(Path file) {
+        String name = file.getFileName().toString();
+        for (String extension : EXTENSIONS) {
+            if (name.endsWith(extension)) return true;
+        }
+        return false;
+    }
+
+    // The id as written back out: strings stay strings, numbers stay numbers
+    private static String idOf(Object id) {
+        if (id == null) return "null";
+        if (id instanceof String) return Json.quote((String) id);
+        if (id instanceof Double && Double.isFinite((double) id)) {
+            double value = (double) id;
+            return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : id.toString();
+        }
+        throw new IllegalArgumentException("Expected \"id\" to be a string or a number.");
+    }
+
+    private static double[] inputsOf(Object inputs) {
+        if (inputs == null) return new double[0];
+        if (!(inputs instanceof List)) {
+            throw new IllegalArgumentException("Expected \"inputs\" to be an array of numbers.");
+        }
+        List<?> values = (List<?>) inputs;
+        double[] arguments = new double[values.size()];
+        for (int i = 0; i < arguments.length; i++) {
+            if (!(values.get(i) instanceof Double)) {
+                throw new IllegalArgumentException("Expected \"inputs\" to be an array of numbers.");
+            }
+            arguments[i] = (double) values.get(i);
+        }
+        return arguments;
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+// OutputSink that formats each printed line straight into a byte buffer and
+// writes the buffer to the underlying stream only when it fills up or the
+// program ends, instead of taking the PrintStream lock and flushing per line.
+// Output is identical to Interpreter.stringify followed by a newline.
+class BufferedOutput implements OutputSink {
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    // Double.toString prints whole numbers below this as digits plus ".0"
+    private static final double PLAIN_LIMIT = 1e7;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int count = 0;
+    // Bytes already written to out
+    private long written = 0;
+
+    BufferedOutput(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    BufferedOutput(OutputStream out, int bufferSize) {
+        this.out = out;
+        // Room for the longest formatted double and its newline
+        this.buffer = new byte[Math.max(bufferSize, 32)];
+    }
+
+    @Override
+    public void printNumber(double value) {
+        long whole = (long) value;
+        if (whole == value && Math.abs(value) < PLAIN_LIMIT && Double.doubleToRawLongBits(value) != Long.MIN_VALUE) {
+            reserve(20);
+            writeDigits(whole);
+        } else {
+            // Fractions, exponents, -0.0, NaN and infinities keep Double.toString's format
+            writeAscii(Interpreter.stringify(value));
+        }
+        newLine();
+    }
+
+    @Override
+    public void printInteger(long value) {
+        if (value == Long.MIN_VALUE) {
+            // Has no positive counterpart for writeDigits to negate
+            writeAscii(Long.toString(value));
+        } else {
+            reserve(20);
+            writeDigits(value);
+        }
+        newLine();
+    }
+
+    @Override
+    public void print(Object value) {
+        writeAscii(Interpreter.stringify(value));
+        newLine();
+    }
+
+    @Override
+    public long bytesWritten() {
+        return written + count;
+    }
+
+    @Override
+    public void flush() {
+        try {
+            out.write(buffer, 0, count);
+            out.flush();
+            written += count;
+            count = 0;
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    private void writeDigits(long value) {
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        int end = count + digitCount(value);
+        for (int i = end - 1; i >= count; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        count = end;
+    }
+
+    private static int digitCount(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private void writeAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            reserve(1);
+            buffer[count++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void newLine() {
+        reserve(1);
+        buffer[count++] = '\n';
+    }
+
+    private void reserve(int bytes) {
+        if (count + bytes > buffer.length) {
+            try {
+                out.write(buffer, 0, count);
+                written += count;
+                count = 0;
+            } catch (IOException error) {
+                throw new UncheckedIOException(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,342 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Objects;
+
+// The built-in functions, which work on arrays. An IntArray is a plain
+// long[] and a DoubleArray a plain double[]: they hold zeros until assigned,
+// are passed to functions by reference and print as [1, 2, 3].
+//
+// Every engine indexes arrays through the helpers here. Indexes are checked
+// with Objects.checkIndex, which HotSpot treats like its own array bounds
+// check and hoists out of counted loops; the bulk operations check once per
+// call, not once per element.
+//
+// sum, dot, plus and times run on the SIMD kernels in VectorKernels when
+// Java is started with --add-modules jdk.incubator.vector, and on the scalar
+// loops here otherwise, with -Dkotlin.vectors=false, or when VectorKernels
+// was not compiled, as in a build of src alone.
+enum Builtin {
+    INT_ARRAY("IntArray", 1),
+    DOUBLE_ARRAY("DoubleArray", 1),
+    SIZE("size", 1),
+    FILL("fill", 2),
+    SUM("sum", 1),
+    COPY("copy", 1),
+    DOT("dot", 2),
+    PLUS("plus", 2),
+    TIMES("times", 2);
+
+    // null when the bulk operations run on the scalar loops
+    static final ArrayKernels VECTOR_KERNELS = vectorKernels();
+    static final boolean VECTORS = VECTOR_KERNELS != null;
+
+    final String functionName;
+    final int arity;
+
+    Builtin(String functionName, int arity) {
+        this.functionName = functionName;
+        this.arity = arity;
+    }
+
+    // Loaded by name, so that nothing refers to VectorKernels when it or the
+    // module it needs is missing
+    private static ArrayKernels vectorKernels() {
+        if (!Boolean.parseBoolean(System.getProperty("kotlin.vectors", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (ArrayKernels) Class.forName("VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException error) {
+            return null;
+        } catch (ReflectiveOperationException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    // The built-in function with the given name, or null
+    static Builtin named(String name) {
+        for (Builtin builtin : values()) {
+            if (builtin.functionName.equals(name)) return builtin;
+        }
+        return null;
+    }
+
+    // Runs the function on boxed arguments
+    Object call(Object[] arguments) {
+        Object array = arguments[0];
+        return switch (this) {
+            case INT_ARRAY -> new long[length(arguments[0])];
+            case DOUBLE_ARRAY -> new double[length(arguments[0])];
+            case SIZE -> (long) size(array);
+            case FILL -> {
+                if (array instanceof long[]) {
+                    Arrays.fill((long[]) array, element(arguments[1]));
+                } else {
+                    Arrays.fill(doubles(array), Interpreter.checkNumberOperand(arguments[1]));
+                }
+                yield null;
+            }
+            case SUM -> array instanceof long[] ? sum((long[]) array) : (Object) sum(doubles(array));
+            case COPY -> array instanceof long[] ? ((long[]) array).clone() : doubles(array).clone();
+            case DOT -> array instanceof long[]
+                    ? dot((long[]) array, sameLongs(arguments[1], ((long[]) array).length))
+                    : (Object) dot(doubles(array), sameDoubles(arguments[1], doubles(array).length));
+            case PLUS, TIMES -> array instanceof long[]
+                    ? combine((long[]) array, arguments[1])
+                    : combine(doubles(array), arguments[1]);
+        };
+    }
+
+    static boolean isArray(Object value) {
+        return value instanceof long[] || value instanceof double[];
+    }
+
+    static long[] longs(Object array) {
+        if (array instanceof long[]) return (long[]) array;
+        throw notAnArray();
+    }
+
+    static double[] doubles(Object array) {
+        if (array instanceof double[]) return (double[]) array;
+        throw notAnArray();
+    }
+
+    private static RuntimeException notAnArray() {
+        return new RuntimeException("Operand must be an array.");
+    }
+
+    // The second array of dot, plus or times, which must match the first
+    private static long[] sameLongs(Object array, int length) {
+        if (!(array instanceof long[])) throw notTheSameKind(array);
+        return sameSize((long[]) array, length);
+    }
+
+    private static double[] sameDoubles(Object array, int length) {
+        if (!(array instanceof double[])) throw notTheSameKind(array);
+        return sameSize((double[]) array, length);
+    }
+
+    private static RuntimeException notTheSameKind(Object array) {
+        return isArray(array) ? new RuntimeException("Operands must be arrays of the same kind.") : notAnArray();
+    }
+
+    private static long[] sameSize(long[] array, int length) {
+        if (array.length != length) throw new RuntimeException("Arrays must have the same size.");
+        return array;
+    }
+
+    private static double[] sameSize(double[] array, int length) {
+        if (array.length != length) throw new RuntimeException("Arrays must have the same size.");
+        return array;
+    }
+
+    static int size(Object array) {
+        return array instanceof long[] ? ((long[]) array).length : doubles(array).length;
+    }
+
+    static int checkIndex(long index, int length) {
+        return (int) Objects.checkIndex(index, length);
+    }
+
+    // An index computed as a boxed value
+    static long toIndex(Object index) {
+        if (index instanceof Long) return (long) index;
+        if (index instanceof BigInteger) throw new IndexOutOfBoundsException("Index " + index + " out of bounds");
+        throw new RuntimeException("Array index must be an integer.");
+    }
+
+    // An IntArray element: an integer that fits in a long
+    static long element(Object value) {
+        if (value instanceof Long) return (long) value;
+        if (value instanceof BigInteger) throw new ArithmeticException("long overflow");
+        throw new RuntimeException("An IntArray can only hold integers.");
+    }
+
+    // array[index] on an array of either kind
+    static Object load(Object array, Object index) {
+        long position = toIndex(index);
+        if (array instanceof long[]) {
+            long[] longs = (long[]) array;
+            return longs[checkIndex(position, longs.length)];
+        }
+        double[] doubles = doubles(array);
+        return doubles[checkIndex(position, doubles.length)];
+    }
+
+    // array[index] = value on an array of either kind; returns the element
+    // as stored, so 1 stored in a DoubleArray gives 1.0
+    static Object store(Object array, Object index, Object value) {
+        long position = toIndex(index);
+        if (array instanceof long[]) {
+            long[] longs = (long[]) array;
+            long element = element(value);
+            longs[checkIndex(position, longs.length)] = element;
+            return element;
+        }
+        double[] doubles = doubles(array);
+        double element = Interpreter.checkNumberOperand(value);
+        doubles[checkIndex(position, doubles.length)] = element;
+        return element;
+    }
+
+    private static int length(Object size) {
+        if (!(size instanceof Long)) throw new RuntimeException("Array size must be an integer.");
+        long length = (long) size;
+        if (length < 0) throw new RuntimeException("Array size must not be negative.");
+        if (length > Integer.MAX_VALUE - 8) throw new RuntimeException("Array size is too large.");
+        return (int) length;
+    }
+
+    // Exact: a BigInteger when the total does not fit in a long, which only
+    // BIG integers accept
+    private static Object sum(long[] array) {
+        if (VECTORS) {
+            try {
+                return VECTOR_KERNELS.sum(array);
+            } catch (ArithmeticException overflow) {
+                return bigSum(array);
+            }
+        }
+        return scalarSum(array);
+    }
+
+    static Object scalarSum(long[] array) {
+        long total = 0;
+        for (int i = 0; i < array.length; i++) {
+            long sum = total + array[i];
+            // Overflow when both operands have the sign the sum does not
+            if (((total ^ sum) & (array[i] ^ sum)) < 0) return bigSum(array);
+            total = sum;
+        }
+        return total;
+    }
+
+    private static Object bigSum(long[] array) {
+        BigInteger total = BigInteger.ZERO;
+        for (long element : array) {
+            total = total.add(BigInteger.valueOf(element));
+        }
+        return exact(total);
+    }
+
+    private static double sum(double[] array) {
+        return VECTORS ? VECTOR_KERNELS.sum(array) : scalarSum(array);
+    }
+
+    static double scalarSum(double[] array) {
+        double total = 0;
+        for (int i = 0; i < array.length; i++) {
+            total += array[i];
+        }
+        return total;
+    }
+
+    // Exact like sum; there is no vector kernel, since lanes cannot tell
+    // when a product overflows
+    private static Object dot(long[] a, long[] b) {
+        long total = 0;
+        try {
+            for (int i = 0; i < a.length; i++) {
+                total = Math.addExact(total, Math.multiplyExact(a[i], b[i]));
+            }
+            return total;
+        } catch (ArithmeticException overflow) {
+            BigInteger exact = BigInteger.ZERO;
+            for (int i = 0; i < a.length; i++) {
+                exact = exact.add(BigInteger.valueOf(a[i]).multiply(BigInteger.valueOf(b[i])));
+            }
+            return exact(exact);
+        }
+    }
+
+    private static double dot(double[] a, double[] b) {
+        return VECTORS ? VECTOR_KERNELS.dot(a, b) : scalarDot(a, b);
+    }
+
+    static double scalarDot(double[] a, double[] b) {
+        double total = 0;
+        for (int i = 0; i < a.length; i++) {
+            total += a[i] * b[i];
+        }
+        return total;
+    }
+
+    private static Object exact(BigInteger total) {
+        return total.bitLength() < Long.SIZE ? (Object) total.longValue() : total;
+    }
+
+    // plus or times of an IntArray and either an IntArray of the same size
+    // or an integer, as a new IntArray; an element that overflows stops the
+    // program, since an IntArray cannot hold a BigInteger
+    private long[] combine(long[] a, Object operand) {
+        long[] result = new long[a.length];
+        if (isArray(operand)) {
+            long[] b = sameLongs(operand, a.length);
+            if (this == TIMES) {
+                for (int i = 0; i < a.length; i++) {
+                    result[i] = Math.multiplyExact(a[i], b[i]);
+                }
+            } else if (VECTORS) {
+                VECTOR_KERNELS.plus(a, b, result);
+            } else {
+                scalarPlus(a, b, result);
+            }
+        } else {
+            long b = element(operand);
+            if (this == TIMES) {
+                for (int i = 0; i < a.length; i++) {
+                    result[i] = Math.multiplyExact(a[i], b);
+                }
+            } else if (VECTORS) {
+                VECTOR_KERNELS.plus(a, b, result);
+            } else {
+                for (int i = 0; i < a.length; i++) {
+                    result[i] = Math.addExact(a[i], b);
+                }
+            }
+        }
+        return result;
+    }
+
+    // plus or times of a DoubleArray and either a DoubleArray of the same
+    // size or a number, as a new DoubleArray
+    private double[] combine(double[] a, Object operand) {
+        double[] result = new double[a.length];
+        boolean plus = this == PLUS;
+        if (isArray(operand)) {
+            double[] b = sameDoubles(operand, a.length);
+            if (!VECTORS) {
+                scalarCombine(plus, a, b, result);
+            } else if (plus) {
+                VECTOR_KERNELS.plus(a, b, result);
+            } else {
+                VECTOR_KERNELS.times(a, b, result);
+            }
+        } else {
+            double b = Interpreter.checkNumberOperand(operand);
+            if (!VECTORS) {
+                for (int i = 0; i < a.length; i++) {
+                    result[i] = plus ? a[i] + b : a[i] * b;
+                }
+            } else if (plus) {
+                VECTOR_KERNELS.plus(a, b, result);
+            } else {
+                VECTOR_KERNELS.times(a, b, result);
+            }
+        }
+        return result;
+    }
+
+    static void scalarPlus(long[] a, long[] b, long[] result) {
+        for (int i = 0; i < a.length; i++) {
+            result[i] = Math.addExact(a[i], b[i]);
+        }
+    }
+
+    static void scalarCombine(boolean plus, double[] a, double[] b, double[] result) {
+        for (int i = 0; i < a.length; i++) {
+            result[i] = plus ? a[i] + b[i] : a[i] * b[i];
+        }
+    }
+}
@@ -0,0 +1,534 @@
+import java.util.*;
+
+// Compiles resolved statements into a Chunk for the VirtualMachine. Integer
+// and double expressions (as inferred by the Resolver) use the unboxed L*
+// and D* instructions.
+class BytecodeCompiler {
+    private int[] code = new int[64];
+    private int count = 0;
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndex = new HashMap<>();
+    private Parser.Stmt.Function[] functions = new Parser.Stmt.Function[0];
+    private int depth = 0;
+    private int maxStack = 0;
+
+    Chunk compile(List<Parser.Stmt> statements, int slotCount) {
+        functions = Interpreter.functions(statements);
+        for (Parser.Stmt statement : statements) {
+            compile(statement);
+        }
+        emit(Chunk.HALT);
+        int programStack = maxStack;
+        Chunk.Function[] compiled = new Chunk.Function[functions.length];
+        for (int i = 0; i < functions.length; i++) {
+            Parser.Stmt.Function function = functions[i];
+            int entry = count;
+            depth = 0;
+            maxStack = 0;
+            for (Parser.Stmt statement : function.body) {
+                compile(statement);
+            }
+            // Running off the end of the body returns null
+            emit(Chunk.CONST, constant(null));
+            emit(Chunk.RETURN);
+            compiled[i] = new Chunk.Function(entry, function.slotTypes, function.parameters.size(),
+                    function.returnType, function.memo, maxStack);
+        }
+        return new Chunk(Arrays.copyOf(code, count), constants.toArray(), slotCount, programStack, compiled);
+    }
+
+    private void compile(Parser.Stmt stmt) {
+        if (stmt instanceof Parser.Stmt.Expression) {
+            Parser.Expr expression = ((Parser.Stmt.Expression) stmt).expression;
+            if (isAssignment(expression)) {
+                // No DUP/POP pair for the common "x = ...;" statement
+                compileStore((Parser.Expr.Binary) expression, false);
+            } else {
+                compileTyped(expression);
+                emit(Chunk.POP);
+            }
+        } else if (stmt instanceof Parser.Stmt.Print) {
+            Parser.Expr expression = ((Parser.Stmt.Print) stmt).expression;
+            compileTyped(expression);
+            switch (expression.type()) {
+                case INTEGER -> emit(Chunk.LPRINT);
+                case DOUBLE -> emit(Chunk.DPRINT);
+                case BIG, VALUE -> emit(Chunk.PRINT);
+            }
+        } else if (stmt instanceof Parser.Stmt.Var) {
+            Parser.Stmt.Var var = (Parser.Stmt.Var) stmt;
+            switch (var.type) {
+                case INTEGER -> {
+                    compileInteger(var.initializer);
+                    emit(Chunk.LSTORE, var.slot);
+                }
+                case DOUBLE -> {
+                    compileNumber(var.initializer);
+                    emit(Chunk.DSTORE, var.slot);
+                }
+                case BIG, VALUE -> {
+                    if (var.initializer != null) {
+                        compileValue(var.initializer);
+                    } else {
+                        emit(Chunk.CONST, constant(null));
+                    }
+                    emit(Chunk.STORE, var.slot);
+                }
+            }
+        } else if (stmt instanceof Parser.Stmt.Param || stmt instanceof Parser.Stmt.Function) {
+            // Parameters are already in the numeric frames when the VM starts,
+            // and function bodies are compiled after the program
+        } else if (stmt instanceof Parser.Stmt.Return) {
+            Parser.Stmt.Return returnStmt = (Parser.Stmt.Return) stmt;
+            if (returnStmt.tailCall) {
+                Parser.Expr.Call call = (Parser.Expr.Call) returnStmt.value;
+                compileArguments(call);
+                write(Chunk.TAIL_CALL);
+                write(call.function);
+                depth -= call.arguments.size();
+                return;
+            }
+            switch (returnStmt.type) {
+                case INTEGER -> compileInteger(returnStmt.value);
+                case DOUBLE -> compileNumber(returnStmt.value);
+                case BIG, VALUE -> {
+                    if (returnStmt.value != null) {
+                        compileValue(returnStmt.value);
+                    } else {
+                        emit(Chunk.CONST, constant(null));
+                    }
+                }
+            }
+            emit(Chunk.RETURN);
+        } else if (stmt instanceof Parser.Stmt.Block) {
+            for (Parser.Stmt statement : ((Parser.Stmt.Block) stmt).statements) {
+                compile(statement);
+            }
+        } else if (stmt instanceof Parser.Stmt.If) {
+            Parser.Stmt.If ifStmt = (Parser.Stmt.If) stmt;
+            int elseJump = compileCondition(ifStmt.condition);
+            compile(ifStmt.thenBranch);
+            if (ifStmt.elseBranch != null) {
+                int endJump = emitJump(Chunk.JUMP);
+                patch(elseJump);
+                compile(ifStmt.elseBranch);
+                patch(endJump);
+            } else {
+                patch(elseJump);
+            }
+        } else if (stmt instanceof Parser.Stmt.While) {
+            Parser.Stmt.While whileStmt = (Parser.Stmt.While) stmt;
+            int loopStart = count;
+            int exitJump = compileCondition(whileStmt.condition);
+            compile(whileStmt.body);
+            emit(Chunk.LOOP, loopStart);
+            patch(exitJump);
+        } else if (stmt instanceof Parser.Stmt.For) {
+            compileFor((Parser.Stmt.For) stmt);
+        } else if (stmt instanceof Parser.Stmt.Reduction) {
+            // REDUCE skips the loop when the closed form could be used
+            Parser.Stmt.Reduction reduction = (Parser.Stmt.Reduction) stmt;
+            emit(Chunk.REDUCE, constant(reduction.reduction));
+            write(-1);
+            int endJump = count - 1;
+            compile(reduction.loop);
+            patch(endJump);
+        } else {
+            throw new RuntimeException("Unknown statement type.");
+        }
+    }
+
+    // The range is checked once before the first iteration. An Int counter
+    // is then stepped, checked and jumped back on by a single FOR_LOOP; a
+    // BIG one is boxed, so it is unboxed on the integer stack for that.
+    // PARALLEL runs the loop on other threads from the check after it and
+    // jumps past the loop's HALT.
+    private void compileFor(Parser.Stmt.For forStmt) {
+        compileBound(forStmt.from);
+        storeCounter(forStmt);
+        compileBound(forStmt.to);
+        emit(Chunk.LSTORE, forStmt.end);
+        int parallelExit = -1;
+        if (forStmt.parallel) {
+            emit(Chunk.PARALLEL, constant(forStmt));
+            write(-1);
+            parallelExit = count - 1;
+        }
+        int loopStart = count;
+        loadCounter(forStmt);
+        emit(Chunk.LLOAD, forStmt.end);
+        int exitJump = emitJump(Chunk.JUMP_IF_LGT);
+        int bodyStart = count;
+        compile(forStmt.body);
+        if (forStmt.type == Parser.Type.INTEGER) {
+            emit(Chunk.FOR_LOOP, forStmt.slot);
+            write(forStmt.end);
+            write(bodyStart);
+        } else {
+            loadCounter(forStmt);
+            emit(Chunk.LCONST, constant(1L));
+            emit(Chunk.LADD);
+            storeCounter(forStmt);
+            emit(Chunk.LOOP, loopStart);
+        }
+        patch(exitJump);
+        if (forStmt.parallel) {
+            emit(Chunk.HALT);
+            patch(parallelExit);
+        }
+    }
+
+    private void compileBound(Parser.Expr bound) {
+        if (bound.isInteger()) {
+            compileInteger(bound);
+        } else {
+            compileValue(bound);
+            emit(Chunk.LUNBOX);
+        }
+    }
+
+    private void loadCounter(Parser.Stmt.For forStmt) {
+        if (forStmt.type == Parser.Type.INTEGER) {
+            emit(Chunk.LLOAD, forStmt.slot);
+        } else {
+            emit(Chunk.LOAD, forStmt.slot);
+            emit(Chunk.LUNBOX);
+        }
+    }
+
+    private void storeCounter(Parser.Stmt.For forStmt) {
+        if (forStmt.type == Parser.Type.INTEGER) {
+            emit(Chunk.LSTORE, forStmt.slot);
+        } else {
+            emit(Chunk.LBOX);
+            emit(Chunk.STORE, forStmt.slot);
+        }
+    }
+
+    // Leaves an integer on the stack; expr must be an INTEGER expression
+    private void compileInteger(Parser.Expr expr) {
+        if (expr instanceof Parser.Expr.Literal) {
+            emit(Chunk.LCONST, constant(((Parser.Expr.Literal) expr).value));
+        } else if (expr instanceof Parser.Expr.Variable) {
+            emit(Chunk.LLOAD, ((Parser.Expr.Variable) expr).slot);
+        } else if (isAssignment(expr)) {
+            compileStore((Parser.Expr.Binary) expr, true);
+        } else if (expr instanceof Parser.Expr.Call) {
+            compileCall((Parser.Expr.Call) expr);
+        } else if (expr instanceof Parser.Expr.Index && ((Parser.Expr.Index) expr).index.isInteger()) {
+            Parser.Expr.Index index = (Parser.Expr.Index) expr;
+            compileValue(index.array);
+            compileInteger(index.index);
+            emit(Chunk.LALOAD);
+        } else if (expr instanceof Parser.Expr.IndexAssign && ((Parser.Expr.IndexAssign) expr).index.isInteger()
+                && ((Parser.Expr.IndexAssign) expr).value.isInteger()) {
+            Parser.Expr.IndexAssign assign = (Parser.Expr.IndexAssign) expr;
+            compileValue(assign.array);
+            compileInteger(assign.index);
+            compileInteger(assign.value);
+            emit(Chunk.LASTORE);
+        } else if (isArrayOperation(expr)) {
+            compileArrayOperation(expr);
+            emit(Chunk.LUNBOX);
+        } else {
+            Parser.Expr.Binary binary = (Parser.Expr.Binary) expr;
+            compileInteger(binary.left);
+            compileInteger(binary.right);
+            switch (binary.operator.type) {
+                case PLUS -> emit(Chunk.LADD);
+                case MINUS -> emit(Chunk.LSUB);
+                case MULTIPLY -> emit(Chunk.LMUL);
+                case DIVIDE -> emit(Chunk.LDIV);
+                case MOD -> emit(Chunk.LMOD);
+                default -> throw new RuntimeException("Unknown expression type.");
+            }
+        }
+    }
+
+    // Leaves a number on the stack
+    private void compileNumber(Parser.Expr expr) {
+        if (expr.isInteger()) {
+            compileInteger(expr);
+            emit(Chunk.L2D);
+        } else if (expr instanceof Parser.Expr.Literal && expr.isNumeric()) {
+            emit(Chunk.DCONST, constant(((Parser.Expr.Literal) expr).value));
+        } else if (expr instanceof Parser.Expr.Variable && expr.isNumeric()) {
+            emit(Chunk.DLOAD, ((Parser.Expr.Variable) expr).slot);
+        } else if (expr instanceof Parser.Expr.Binary && expr.isNumeric() && isArithmetic((Parser.Expr.Binary) expr)) {
+            Parser.Expr.Binary binary = (Parser.Expr.Binary) expr;
+            compileNumber(binary.left);
+            compileNumber(binary.right);
+            switch (binary.operator.type) {
+                case PLUS -> emit(Chunk.DADD);
+                case MINUS -> emit(Chunk.DSUB);
+                case MULTIPLY -> emit(Chunk.DMUL);
+                case DIVIDE -> emit(Chunk.DDIV);
+                case MOD -> emit(Chunk.DMOD);
+            }
+        } else if (isAssignment(expr) && expr.isNumeric()) {
+            compileStore((Parser.Expr.Binary) expr, true);
+        } else if (expr instanceof Parser.Expr.Call && expr.isNumeric()) {
+            compileCall((Parser.Expr.Call) expr);
+        } else if (expr instanceof Parser.Expr.Index && expr.isNumeric()
+                && ((Parser.Expr.Index) expr).index.isInteger()) {
+            Parser.Expr.Index index = (Parser.Expr.Index) expr;
+            compileValue(index.array);
+            compileInteger(index.index);
+            emit(Chunk.DALOAD);
+        } else if (expr instanceof Parser.Expr.IndexAssign && expr.isNumeric()
+                && ((Parser.Expr.IndexAssign) expr).index.isInteger()) {
+            Parser.Expr.IndexAssign assign = (Parser.Expr.IndexAssign) expr;
+            compileValue(assign.array);
+            compileInteger(assign.index);
+            compileNumber(assign.value);
+            emit(Chunk.DASTORE);
+        } else if (isArrayOperation(expr)) {
+            compileArrayOperation(expr);
+            emit(Chunk.UNBOX);
+        } else {
+            compileValue(expr);
+            emit(Chunk.UNBOX);
+        }
+    }
+
+    // Leaves a value (boxed) on the stack
+    private void compileValue(Parser.Expr expr) {
+        if (expr.isInteger()) {
+            compileInteger(expr);
+            emit(Chunk.LBOX);
+        } else if (expr.isNumeric()) {
+            compileNumber(expr);
+            emit(Chunk.BOX);
+        } else if (expr instanceof Parser.Expr.Literal) {
+            emit(Chunk.CONST, constant(((Parser.Expr.Literal) expr).value));
+        } else if (expr instanceof Parser.Expr.Variable) {
+            emit(Chunk.LOAD, ((Parser.Expr.Variable) expr).slot);
+        } else if (expr instanceof Parser.Expr.Call) {
+            compileCall((Parser.Expr.Call) expr);
+        } else if (isArrayOperation(expr)) {
+            compileArrayOperation(expr);
+        } else if (expr instanceof Parser.Expr.Binary) {
+            Parser.Expr.Binary binary = (Parser.Expr.Binary) expr;
+            switch (binary.operator.type) {
+                case ASSIGN -> compileStore(binary, true);
+                case PLUS -> compileValues(binary, Chunk.ADD);
+                case MINUS -> compileValues(binary, Chunk.SUB);
+                case MULTIPLY -> compileValues(binary, Chunk.MUL);
+                case DIVIDE -> compileValues(binary, Chunk.DIV);
+                case MOD -> compileValues(binary, Chunk.MOD);
+                case LESS -> compileComparison(binary, Chunk.LLT, Chunk.DLT, Chunk.LT);
+                case GREATER -> compileComparison(binary, Chunk.LGT, Chunk.DGT, Chunk.GT);
+                case EQUALS -> compileComparison(binary, Chunk.LEQ, Chunk.DEQ, Chunk.EQ);
+                default -> throw new RuntimeException("Unknown expression type.");
+            }
+        } else {
+            throw new RuntimeException("Unknown expression type.");
+        }
+    }
+
+    private static boolean isArrayOperation(Parser.Expr expr) {
+        return expr instanceof Parser.Expr.Index || expr instanceof Parser.Expr.IndexAssign
+                || expr instanceof Parser.Expr.BuiltinCall;
+    }
+
+    // Indexing or a built-in call on boxed operands, for arrays of unknown
+    // kind and indexes or elements that are not typed; leaves a value
+    private void compileArrayOperation(Parser.Expr expr) {
+        if (expr instanceof Parser.Expr.Index) {
+            Parser.Expr.Index index = (Parser.Expr.Index) expr;
+            compileValue(index.array);
+            compileValue(index.index);
+            emit(Chunk.ALOAD);
+        } else if (expr instanceof Parser.Expr.IndexAssign) {
+            Parser.Expr.IndexAssign assign = (Parser.Expr.IndexAssign) expr;
+            compileValue(assign.array);
+            compileValue(assign.index);
+            compileValue(assign.value);
+            emit(Chunk.ASTORE);
+        } else {
+            Parser.Expr.BuiltinCall call = (Parser.Expr.BuiltinCall) expr;
+            for (Parser.Expr argument : call.arguments) {
+                compileValue(argument);
+            }
+            write(Chunk.BUILTIN);
+            write(call.builtin.ordinal());
+            depth += 1 - call.arguments.size();
+            maxStack = Math.max(maxStack, depth);
+        }
+    }
+
+    // Pushes each argument in the representation of its parameter's slot;
+    // the result replaces them in that of the return type
+    private void compileCall(Parser.Expr.Call call) {
+        compileArguments(call);
+        write(Chunk.CALL);
+        write(call.function);
+        depth += 1 - call.arguments.size();
+        maxStack = Math.max(maxStack, depth);
+    }
+
+    private void compileArguments(Parser.Expr.Call call) {
+        Parser.Type[] slotTypes = functions[call.function].slotTypes;
+        for (int i = 0; i < call.arguments.size(); i++) {
+            Parser.Expr argument = call.arguments.get(i);
+            switch (slotTypes[i]) {
+                case INTEGER -> compileInteger(argument);
+                case DOUBLE -> compileNumber(argument);
+                case BIG, VALUE -> compileValue(argument);
+            }
+        }
+    }
+
+    // Leaves the expression on the stack in the representation of its type
+    private void compileTyped(Parser.Expr expr) {
+        switch (expr.type()) {
+            case INTEGER -> compileInteger(expr);
+            case DOUBLE -> compileNumber(expr);
+            case BIG, VALUE -> compileValue(expr);
+        }
+    }
+
+    // Arithmetic on boxed operands; BIG arithmetic promotes to BigInteger
+    // instead of overflowing
+    private void compileValues(Parser.Expr.Binary binary, int op) {
+        compileValue(binary.left);
+        compileValue(binary.right);
+        emit(binary.type() == Parser.Type.BIG ? op - Chunk.ADD + Chunk.BADD : op);
+    }
+
+    // Compares two integers, two numbers or two values, whichever the
+    // operands' types allow
+    private void compileComparison(Parser.Expr.Binary binary, int integerOp, int numberOp, int valueOp) {
+        emit(compileOperands(binary, integerOp, numberOp, valueOp));
+    }
+
+    // Leaves both operands on the stack and returns the op that fits them
+    private int compileOperands(Parser.Expr.Binary binary, int integerOp, int numberOp, int valueOp) {
+        if (binary.left.isInteger() && binary.right.isInteger()) {
+            compileInteger(binary.left);
+            compileInteger(binary.right);
+            return integerOp;
+        } else if (binary.left.isNumeric() && binary.right.isNumeric()) {
+            compileNumber(binary.left);
+            compileNumber(binary.right);
+            return numberOp;
+        }
+        compileValue(binary.left);
+        compileValue(binary.right);
+        return valueOp;
+    }
+
+    // Emits a jump taken when the condition is false and returns it for patching
+    private int compileCondition(Parser.Expr condition) {
+        if (condition instanceof Parser.Expr.Binary) {
+            Parser.Expr.Binary binary = (Parser.Expr.Binary) condition;
+            int op = switch (binary.operator.type) {
+                case LESS -> compileOperands(binary, Chunk.JUMP_IF_NOT_LLT, Chunk.JUMP_IF_NOT_DLT, Chunk.LT);
+                case GREATER -> compileOperands(binary, Chunk.JUMP_IF_NOT_LGT, Chunk.JUMP_IF_NOT_DGT, Chunk.GT);
+                case EQUALS -> compileOperands(binary, Chunk.JUMP_IF_NOT_LEQ, Chunk.JUMP_IF_NOT_DEQ, Chunk.EQ);
+                default -> -1;
+            };
+            if (op == Chunk.LT || op == Chunk.GT || op == Chunk.EQ) {
+                emit(op);
+                return emitJump(Chunk.JUMP_IF_FALSE);
+            } else if (op != -1) {
+                return emitJump(op);
+            }
+        }
+        compileValue(condition);
+        return emitJump(Chunk.JUMP_IF_FALSE);
+    }
+
+    private void compileStore(Parser.Expr.Binary assignment, boolean keepValue) {
+        if (!(assignment.left instanceof Parser.Expr.Variable)) {
+            throw new RuntimeException("Invalid assignment target.");
+        }
+        Parser.Expr.Variable target = (Parser.Expr.Variable) assignment.left;
+        switch (target.type) {
+            case INTEGER -> {
+                compileInteger(assignment.right);
+                if (keepValue) emit(Chunk.DUP);
+                emit(Chunk.LSTORE, target.slot);
+            }
+            case DOUBLE -> {
+                compileNumber(assignment.right);
+                if (keepValue) emit(Chunk.DUP);
+                emit(Chunk.DSTORE, target.slot);
+            }
+            case BIG, VALUE -> {
+                compileValue(assignment.right);
+                if (keepValue) emit(Chunk.DUP);
+                emit(Chunk.STORE, target.slot);
+            }
+        }
+    }
+
+    private boolean isAssignment(Parser.Expr expr) {
+        return expr instanceof Parser.Expr.Binary
+                && ((Parser.Expr.Binary) expr).operator.type == TokenType.ASSIGN;
+    }
+
+    private boolean isArithmetic(Parser.Expr.Binary binary) {
+        return switch (binary.operator.type) {
+            case PLUS, MINUS, MULTIPLY, DIVIDE, MOD -> true;
+            default -> false;
+        };
+    }
+
+    private int constant(Object value) {
+        // HashMap allows the null key, which "var x;" needs
+        Integer index = constantIndex.get(value);
+        if (index == null) {
+            index = constants.size();
+            constants.add(value);
+            constantIndex.put(value, index);
+        }
+        return index;
+    }
+
+    private int emitJump(int op) {
+        emit(op, -1);
+        return count - 1;
+    }
+
+    private void patch(int operand) {
+        code[operand] = count;
+    }
+
+    private void emit(int op) {
+        write(op);
+        adjustStack(op);
+    }
+
+    private void emit(int op, int operand) {
+        write(op);
+        write(operand);
+        adjustStack(op);
+    }
+
+    private void adjustStack(int op) {
+        switch (op) {
+            case Chunk.CONST, Chunk.DCONST, Chunk.LCONST, Chunk.LOAD, Chunk.DLOAD, Chunk.LLOAD, Chunk.DUP -> depth++;
+            case Chunk.STORE, Chunk.DSTORE, Chunk.LSTORE, Chunk.POP, Chunk.PRINT, Chunk.DPRINT, Chunk.LPRINT,
+                 Chunk.JUMP_IF_FALSE, Chunk.RETURN,
+                 Chunk.DADD, Chunk.DSUB, Chunk.DMUL, Chunk.DDIV, Chunk.DMOD,
+                 Chunk.LADD, Chunk.LSUB, Chunk.LMUL, Chunk.LDIV, Chunk.LMOD,
+                 Chunk.ADD, Chunk.SUB, Chunk.MUL, Chunk.DIV, Chunk.MOD,
+                 Chunk.BADD, Chunk.BSUB, Chunk.BMUL, Chunk.BDIV, Chunk.BMOD,
+                 Chunk.DLT, Chunk.DGT, Chunk.DEQ, Chunk.LLT, Chunk.LGT, Chunk.LEQ,
+                 Chunk.LT, Chunk.GT, Chunk.EQ,
+                 Chunk.LALOAD, Chunk.DALOAD, Chunk.ALOAD -> depth--;
+            case Chunk.LASTORE, Chunk.DASTORE, Chunk.ASTORE -> depth -= 2;
+            case Chunk.JUMP_IF_NOT_DLT, Chunk.JUMP_IF_NOT_DGT, Chunk.JUMP_IF_NOT_DEQ,
+                 Chunk.JUMP_IF_NOT_LLT, Chunk.JUMP_IF_NOT_LGT, Chunk.JUMP_IF_NOT_LEQ, Chunk.JUMP_IF_LGT -> depth -= 2;
+        }
+        maxStack = Math.max(maxStack, depth);
+    }
+
+    private void write(int value) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+        }
+        code[count++] = value;
+    }
+}
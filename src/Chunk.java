@@ -0,0 +1,129 @@
+// Compiled bytecode for a whole program: a flat int[] instruction stream
+// (opcode followed by its operands) plus the constant pool it refers to.
+// Function bodies follow the program's HALT. A parallel loop ends with a
+// HALT of its own, which only the threads running parts of it reach.
+final class Chunk {
+    // Opcodes; operands are listed after the name
+    static final int CONST = 0;            // k: push constants[k]
+    static final int DCONST = 1;           // k: push numberConstants[k]
+    static final int LOAD = 2;             // slot: push values[slot]
+    static final int STORE = 3;            // slot: pop into values[slot]
+    static final int DLOAD = 4;            // slot: push numbers[slot]
+    static final int DSTORE = 5;           // slot: pop into numbers[slot]
+    static final int DADD = 6;
+    static final int DSUB = 7;
+    static final int DMUL = 8;
+    static final int DDIV = 9;
+    static final int DMOD = 10;
+    static final int DLT = 11;             // pop two numbers, push a Boolean
+    static final int DGT = 12;
+    static final int DEQ = 13;
+    static final int EQ = 14;              // pop two values, push a Boolean
+    static final int BOX = 15;             // number on top of the stack becomes a value
+    static final int UNBOX = 16;           // value on top of the stack must be a number
+    static final int JUMP = 17;            // target
+    static final int JUMP_IF_FALSE = 18;   // target: pop a value, jump unless truthy
+    static final int JUMP_IF_NOT_DLT = 19; // target: pop two numbers, jump unless a < b
+    static final int JUMP_IF_NOT_DGT = 20; // target
+    static final int JUMP_IF_NOT_DEQ = 21; // target
+    static final int DUP = 22;
+    static final int POP = 23;
+    static final int PRINT = 24;           // pop a value and print it
+    static final int DPRINT = 25;          // pop a number and print it
+    static final int REDUCE = 26;          // k, target: jump if the LoopReduction constants[k] ran
+    static final int LOOP = 27;            // target: a while loop's jump back to its condition
+    static final int HALT = 28;
+    static final int LCONST = 29;          // k: push integerConstants[k]
+    static final int LLOAD = 30;           // slot: push integers[slot]
+    static final int LSTORE = 31;          // slot: pop into integers[slot]
+    static final int LADD = 32;            // integer arithmetic throws on overflow
+    static final int LSUB = 33;
+    static final int LMUL = 34;
+    static final int LDIV = 35;
+    static final int LMOD = 36;
+    static final int LLT = 37;             // pop two integers, push a Boolean
+    static final int LGT = 38;
+    static final int LEQ = 39;
+    static final int L2D = 40;             // integer on top of the stack becomes a number
+    static final int LBOX = 41;            // integer on top of the stack becomes a value
+    static final int JUMP_IF_NOT_LLT = 42; // target: pop two integers, jump unless a < b
+    static final int JUMP_IF_NOT_LGT = 43; // target
+    static final int JUMP_IF_NOT_LEQ = 44; // target
+    static final int LPRINT = 45;          // pop an integer and print it
+    static final int ADD = 46;             // pop two values, push Interpreter.arithmetic's result
+    static final int SUB = 47;
+    static final int MUL = 48;
+    static final int DIV = 49;
+    static final int MOD = 50;
+    static final int LT = 51;              // pop two values, push a Boolean
+    static final int GT = 52;
+    static final int BADD = 53;            // pop two values, push Interpreter.bigArithmetic's result
+    static final int BSUB = 54;
+    static final int BMUL = 55;
+    static final int BDIV = 56;
+    static final int BMOD = 57;
+    static final int CALL = 58;            // f: pop the arguments of functions[f] and push its result
+    static final int RETURN = 59;          // pop the result and return it from the current call
+    static final int TAIL_CALL = 60;       // f: pop the arguments of functions[f] and run it in place of the current call
+    static final int LALOAD = 61;          // pop an integer index and an IntArray value, push the element
+    static final int DALOAD = 62;          // pop an integer index and a DoubleArray value, push the element
+    static final int ALOAD = 63;           // pop an index and an array value, push Builtin.load's result
+    static final int LASTORE = 64;         // pop an integer, an integer index and an IntArray; store and push it
+    static final int DASTORE = 65;         // pop a number, an integer index and a DoubleArray; store and push it
+    static final int ASTORE = 66;          // pop a value, an index and an array value, push Builtin.store's result
+    static final int BUILTIN = 67;         // b: pop the arguments of Builtin b as values and push its result
+    static final int LUNBOX = 68;          // value on top of the stack becomes an integer (Interpreter.toLong)
+    static final int JUMP_IF_LGT = 69;     // target: pop two integers, jump if a > b
+    static final int PARALLEL = 70;        // k, target: run the parallel loop constants[k] that starts here, then jump
+    static final int FOR_LOOP = 71;        // slot, end, target: add 1 to integers[slot], jump back while <= integers[end]
+
+    final int[] code;
+    final Object[] constants;
+    // Unboxed copy of every numeric constant, at the same index as in constants
+    final double[] numberConstants;
+    // Unboxed copy of every integer constant, at the same index as in constants
+    final long[] integerConstants;
+    final int slotCount;
+    final int maxStack;
+    final Function[] functions;
+
+    // Where a function's code starts and what its frame and stack need.
+    // Arguments are passed in the stack arrays of the parameters' types and
+    // the result is returned in that of the return type.
+    static final class Function {
+        final int entry;
+        final Parser.Type[] slotTypes;
+        final int parameterCount;
+        final Parser.Type returnType;
+        final boolean memo;
+        final int maxStack;
+
+        Function(int entry, Parser.Type[] slotTypes, int parameterCount, Parser.Type returnType, boolean memo,
+                 int maxStack) {
+            this.entry = entry;
+            this.slotTypes = slotTypes;
+            this.parameterCount = parameterCount;
+            this.returnType = returnType;
+            this.memo = memo;
+            this.maxStack = maxStack;
+        }
+    }
+
+    Chunk(int[] code, Object[] constants, int slotCount, int maxStack) {
+        this(code, constants, slotCount, maxStack, new Function[0]);
+    }
+
+    Chunk(int[] code, Object[] constants, int slotCount, int maxStack, Function[] functions) {
+        this.code = code;
+        this.constants = constants;
+        this.numberConstants = new double[constants.length];
+        this.integerConstants = new long[constants.length];
+        for (int i = 0; i < constants.length; i++) {
+            if (constants[i] instanceof Double) numberConstants[i] = (double) constants[i];
+            if (constants[i] instanceof Long) integerConstants[i] = (long) constants[i];
+        }
+        this.slotCount = slotCount;
+        this.maxStack = maxStack;
+        this.functions = functions;
+    }
+}
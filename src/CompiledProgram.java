@@ -0,0 +1,166 @@
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A lexed, parsed and resolved program that can be run any number of times
+// in any ExecutionMode, like a prepared statement. Values for the program's
+// "param" declarations are passed to each run in declaration order; an Int
+// parameter only accepts whole numbers. The
+// bytecode Chunk and the JIT-compiled method are built on first use and
+// kept for later runs.
+//
+// run() without a mode is tiered: the program is interpreted for its first
+// few executions and then handed to the JitCompiler. Programs the JIT cannot
+// translate keep running on the Interpreter.
+//
+// A CompiledProgram can be run from any number of threads at once. The
+// statements, Chunk and generated class are never modified after they are
+// built; each run gets its own frame, budget and engine instance, and only
+// shares the OutputSink it is given.
+class CompiledProgram {
+    static final int DEFAULT_THRESHOLD = Integer.getInteger("kotlin.jit.threshold", 10);
+
+    private final List<Parser.Stmt> statements;
+    private final Parser.Type[] slotTypes;
+    private final List<String> parameterNames;
+    private final int[] parameterSlots;
+    private final int threshold;
+    private final AtomicInteger executions = new AtomicInteger();
+    private final AtomicBoolean compiling = new AtomicBoolean();
+    private volatile Chunk chunk;
+    private volatile MethodHandle compiled;
+    private volatile boolean unsupported;
+
+    CompiledProgram(List<Parser.Stmt> statements, Parser.Type[] slotTypes, List<String> parameterNames,
+                    int[] parameterSlots) {
+        this(statements, slotTypes, parameterNames, parameterSlots, DEFAULT_THRESHOLD);
+    }
+
+    CompiledProgram(List<Parser.Stmt> statements, Parser.Type[] slotTypes, List<String> parameterNames,
+                    int[] parameterSlots, int threshold) {
+        this.statements = List.copyOf(statements);
+        this.slotTypes = slotTypes.clone();
+        this.parameterNames = List.copyOf(parameterNames);
+        this.parameterSlots = parameterSlots.clone();
+        this.threshold = threshold;
+    }
+
+    List<String> parameterNames() {
+        return parameterNames;
+    }
+
+    void run(double... arguments) {
+        run(new BufferedOutput(System.out), arguments);
+    }
+
+    // Prints to out, which is flushed when the run ends
+    void run(OutputSink out, double... arguments) {
+        run(out, ExecutionLimits.NONE, arguments);
+    }
+
+    // Stops with LimitExceeded when the run goes over one of the limits
+    void run(OutputSink out, ExecutionLimits limits, double... arguments) {
+        Object[] values = new Object[slotTypes.length];
+        double[] numbers = new double[slotTypes.length];
+        long[] integers = new long[slotTypes.length];
+        bind(arguments, values, numbers, integers);
+        MethodHandle handle = compiled;
+        // Only the first run past the threshold compiles; runs on other
+        // threads keep interpreting instead of waiting for it
+        if (handle == null && !unsupported && executions.incrementAndGet() >= threshold
+                && compiling.compareAndSet(false, true)) {
+            handle = compile();
+        }
+        runCompiledOrInterpret(handle, values, numbers, integers, out, limits);
+    }
+
+    void run(KotlinInterpreter.ExecutionMode mode, double... arguments) {
+        run(mode, new BufferedOutput(System.out), arguments);
+    }
+
+    void run(KotlinInterpreter.ExecutionMode mode, OutputSink out, double... arguments) {
+        run(mode, out, ExecutionLimits.NONE, arguments);
+    }
+
+    void run(KotlinInterpreter.ExecutionMode mode, OutputSink out, ExecutionLimits limits, double... arguments) {
+        Object[] values = new Object[slotTypes.length];
+        double[] numbers = new double[slotTypes.length];
+        long[] integers = new long[slotTypes.length];
+        bind(arguments, values, numbers, integers);
+        switch (mode) {
+            case TREE_WALKING -> new Interpreter(values, numbers, integers, out, limits).interpret(statements);
+            case BYTECODE -> new VirtualMachine(out, limits).run(chunk(), values, numbers, integers);
+            case JIT -> runCompiledOrInterpret(compiled != null ? compiled : compile(), values, numbers, integers,
+                    out, limits);
+        }
+    }
+
+    boolean isCompiled() {
+        return compiled != null;
+    }
+
+    // Puts every parameter in its slot of the frame of its type
+    private void bind(double[] arguments, Object[] values, double[] numbers, long[] integers) {
+        if (arguments.length != parameterSlots.length) {
+            throw new RuntimeException("Expected " + parameterSlots.length + " arguments but got "
+                    + arguments.length + ".");
+        }
+        for (int i = 0; i < arguments.length; i++) {
+            int slot = parameterSlots[i];
+            double argument = arguments[i];
+            Parser.Type type = slotTypes[slot];
+            if (type == Parser.Type.DOUBLE) {
+                numbers[slot] = argument;
+            } else if (argument != Math.rint(argument) || Math.abs(argument) >= 0x1p63) {
+                throw new RuntimeException("Parameter '" + parameterNames.get(i) + "' must be a whole number but got "
+                        + Interpreter.stringify(argument) + ".");
+            } else if (type == Parser.Type.BIG) {
+                values[slot] = (long) argument;
+            } else {
+                integers[slot] = (long) argument;
+            }
+        }
+    }
+
+    private void runCompiledOrInterpret(MethodHandle handle, Object[] values, double[] numbers, long[] integers,
+                                        OutputSink out, ExecutionLimits limits) {
+        if (handle == null) {
+            new Interpreter(values, numbers, integers, out, limits).interpret(statements);
+            return;
+        }
+        try {
+            handle.invokeExact(numbers, integers, limits.limit(out), limits.start());
+        } catch (LimitExceeded error) {
+            throw error;
+        } catch (ArithmeticException overflow) {
+            throw new RuntimeException("Runtime error: Integer overflow.");
+        } catch (RuntimeException error) {
+            throw new RuntimeException("Runtime error: " + error.getMessage());
+        } catch (Error error) {
+            throw error;
+        } catch (Throwable error) {
+            throw new IllegalStateException(error);
+        } finally {
+            out.flush();
+        }
+    }
+
+    private Chunk chunk() {
+        // Compiling twice on a race is harmless; both chunks are identical
+        Chunk result = chunk;
+        if (result == null) {
+            result = new BytecodeCompiler().compile(statements, slotTypes.length);
+            chunk = result;
+        }
+        return result;
+    }
+
+    private synchronized MethodHandle compile() {
+        if (compiled == null && !unsupported) {
+            compiled = JitCompiler.compile(statements, slotTypes);
+            unsupported = compiled == null;
+        }
+        return compiled;
+    }
+}
@@ -0,0 +1,68 @@
+// What is left of a run's ExecutionLimits. The engines call backEdge() each
+// time a loop jumps back to its condition and each time a function is
+// called; that only counts the iteration and compares it with the next
+// checkpoint, so loops without limits pay for an increment and a branch.
+// The clock is only read at every CHECK_INTERVAL-th iteration, so a run can
+// overshoot its time limit by what that many iterations take. The output
+// limit is not checked here but by the OutputSink of the run (see
+// ExecutionLimits.limit).
+final class ExecutionBudget {
+    static final int CHECK_INTERVAL = 1024;
+
+    private final ExecutionLimits limits;
+    // 0 without a time limit
+    private final long deadline;
+    private final boolean periodic;
+    private long iterations = 0;
+    private long nextCheck;
+
+    ExecutionBudget(ExecutionLimits limits) {
+        this.limits = limits;
+        this.deadline = limits.timeout != null ? System.nanoTime() + limits.timeout.toNanos() : 0;
+        this.periodic = limits.timeout != null;
+        this.nextCheck = nextCheck();
+    }
+
+    void backEdge() {
+        if (++iterations >= nextCheck) check();
+    }
+
+    // Counts iterations done all at once (see LoopReduction); returns false,
+    // counting nothing, when they would go over the iteration limit
+    boolean tryAdvance(long count) {
+        if (count > limits.maxIterations - iterations) return false;
+        iterations += count;
+        if (iterations >= nextCheck) check();
+        return true;
+    }
+
+    // True when neither iterations nor time are limited, so nothing needs
+    // counting; parallel loops only use more than one thread then (see
+    // ParallelLoop)
+    boolean isUnlimited() {
+        return limits.maxIterations == Long.MAX_VALUE && limits.timeout == null;
+    }
+
+    // A budget of the same limits for another thread, which counts on its own
+    ExecutionBudget fork() {
+        return new ExecutionBudget(limits);
+    }
+
+    private void check() {
+        if (iterations > limits.maxIterations) {
+            throw new LimitExceeded(LimitExceeded.Limit.ITERATIONS,
+                    "more than " + limits.maxIterations + " loop iterations.");
+        }
+        if (limits.timeout != null && System.nanoTime() - deadline > 0) {
+            throw new LimitExceeded(LimitExceeded.Limit.TIME,
+                    "ran for more than " + limits.timeout.toMillis() + " ms.");
+        }
+        nextCheck = nextCheck();
+    }
+
+    // The iteration count at which check() next has to run
+    private long nextCheck() {
+        long limit = limits.maxIterations == Long.MAX_VALUE ? Long.MAX_VALUE : limits.maxIterations + 1;
+        return periodic ? Math.min(limit, iterations + CHECK_INTERVAL) : limit;
+    }
+}
@@ -0,0 +1,56 @@
+import java.time.Duration;
+
+// Limits on a single run of a program, for scripts that cannot be trusted to
+// finish: the number of loop iterations, the wall-clock time and the number
+// of bytes printed. Every engine checks the first two only when a loop jumps
+// back to its condition or a function is called, which counts as an
+// iteration, through the ExecutionBudget that start() returns, and prints
+// through the OutputSink that limit() returns, which checks the output.
+// A run that goes over a limit stops with LimitExceeded.
+final class ExecutionLimits {
+    static final ExecutionLimits NONE = new ExecutionLimits(Long.MAX_VALUE, null, Long.MAX_VALUE);
+
+    final long maxIterations;
+    // null when there is no time limit
+    final Duration timeout;
+    final long maxOutputBytes;
+
+    private ExecutionLimits(long maxIterations, Duration timeout, long maxOutputBytes) {
+        this.maxIterations = maxIterations;
+        this.timeout = timeout;
+        this.maxOutputBytes = maxOutputBytes;
+    }
+
+    // Total iterations of all loops in the run
+    ExecutionLimits withMaxIterations(long maxIterations) {
+        if (maxIterations < 0) throw new IllegalArgumentException("maxIterations must not be negative.");
+        return new ExecutionLimits(maxIterations, timeout, maxOutputBytes);
+    }
+
+    ExecutionLimits withTimeout(Duration timeout) {
+        if (timeout.isNegative()) throw new IllegalArgumentException("timeout must not be negative.");
+        return new ExecutionLimits(maxIterations, timeout, maxOutputBytes);
+    }
+
+    ExecutionLimits withMaxOutputBytes(long maxOutputBytes) {
+        if (maxOutputBytes < 0) throw new IllegalArgumentException("maxOutputBytes must not be negative.");
+        return new ExecutionLimits(maxIterations, timeout, maxOutputBytes);
+    }
+
+    // The budget for one run; the clock starts now
+    ExecutionBudget start() {
+        return new ExecutionBudget(this);
+    }
+
+    // The sink a run that prints to out should print through: out itself
+    // when the output is not limited
+    OutputSink limit(OutputSink out) {
+        return maxOutputBytes == Long.MAX_VALUE ? out : new LimitedOutput(out, maxOutputBytes);
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionLimits[maxIterations=" + maxIterations + ", timeout=" + timeout
+                + ", maxOutputBytes=" + maxOutputBytes + "]";
+    }
+}
@@ -0,0 +1,1094 @@
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringJoiner;
+
+// Function calls do not recurse on the Java stack. A statement or expression
+// that calls nothing is run by the recursive execute and evaluate methods,
+// but one that makes a call is split into Tasks on an explicit stack: each
+// Task keeps how far it got, such as its left operand or the index of its
+// next statement, and is resumed once the Task it pushed has left its result
+// in the result fields. Recursion is therefore only as deep as
+// MAX_CALL_DEPTH, and a tail call replaces the frame of the function that
+// makes it, so a loop written as tail recursion runs in constant space.
+class Interpreter {
+    // Calls nested deeper than this stop the run with "Stack overflow."
+    static final int MAX_CALL_DEPTH = Integer.getInteger("kotlin.maxCallDepth", 100_000);
+
+    // The frame of the code running now: the program's own, or that of the
+    // innermost function call. INTEGER slots live unboxed in integers,
+    // DOUBLE slots in numbers and every other slot, BIG ones included, in
+    // values.
+    private Object[] values;
+    private double[] numbers;
+    private long[] integers;
+    private final OutputSink out;
+    private final ExecutionBudget budget;
+    // Frames of function calls, indexed by call depth and reused by later
+    // calls at the same depth
+    private Frame[] frames = new Frame[16];
+    private int depth = 0;
+    private Parser.Stmt.Function[] functions = new Parser.Stmt.Function[0];
+    // Created on the first call of each memoized function
+    private MemoCache[] memos;
+    // The result of the last Task or return statement, in the field of the
+    // representation it was asked for: a return statement uses that of its
+    // function's return type
+    private static final int AS_LONG = 0, AS_DOUBLE = 1, AS_VALUE = 2, AS_BOOLEAN = 3;
+    private long integerResult;
+    private double numberResult;
+    private Object valueResult;
+    private boolean booleanResult;
+    // Pending Tasks, the innermost on top, reused like the frames
+    private Task[] tasks = new Task[64];
+    private int top = 0;
+    // The index in tasks of the call whose body is running; -1 at the top level
+    private int running = -1;
+
+    private static final class Frame {
+        Object[] values = new Object[0];
+        double[] numbers = new double[0];
+        long[] integers = new long[0];
+    }
+
+    // Kinds of Task: a statement that makes a call, the statements of a
+    // block or function body, a Binary expression with a call in an operand,
+    // any other expression with one, whose operands are computed boxed, or
+    // the call itself
+    private static final int BLOCK = 0, EXPRESSION = 1, PRINT = 2, VAR = 3, IF = 4, WHILE = 5, RETURN = 6,
+            BINARY = 7, OPERANDS = 8, CALL = 9, TAIL_CALL = 10, FOR = 11;
+    // The step of a CALL whose body is running
+    private static final int ENTERED = -1;
+
+    private static final class Task {
+        int kind;
+        // The statement or expression; a List of statements for a BLOCK
+        Object node;
+        // The representation an expression's result is wanted in
+        int mode;
+        // How far the Task got: the next statement of a BLOCK, the argument
+        // being computed by a CALL, the operand being computed by a BINARY
+        // or OPERANDS
+        int step;
+        boolean waiting;
+        // The left operand of a BINARY while its right one is computed
+        long integer;
+        double number;
+        Object value;
+        // The operands an OPERANDS has computed
+        Object[] operands;
+        // A CALL's frame, cache entry, and what to restore when it returns
+        Frame frame;
+        MemoCache memo;
+        Object key;
+        Object[] callerValues;
+        double[] callerNumbers;
+        long[] callerIntegers;
+        int caller;
+    }
+
+    // Starts from the given numeric frames, which already hold any parameters
+    Interpreter(double[] numbers, long[] integers) {
+        this(numbers, integers, new BufferedOutput(System.out));
+    }
+
+    Interpreter(double[] numbers, long[] integers, OutputSink out) {
+        this(numbers, integers, out, ExecutionLimits.NONE);
+    }
+
+    Interpreter(double[] numbers, long[] integers, OutputSink out, ExecutionLimits limits) {
+        this(new Object[numbers.length], numbers, integers, out, limits);
+    }
+
+    // The limits apply from now on
+    Interpreter(Object[] values, double[] numbers, long[] integers, OutputSink out, ExecutionLimits limits) {
+        this.values = values;
+        this.numbers = numbers;
+        this.integers = integers;
+        this.out = limits.limit(out);
+        this.budget = limits.start();
+    }
+
+    // Runs part of a parallel loop on another thread, with memo caches of
+    // its own
+    private Interpreter(Object[] values, double[] numbers, long[] integers, OutputSink out, ExecutionBudget budget,
+                        Parser.Stmt.Function[] functions) {
+        this.values = values;
+        this.numbers = numbers;
+        this.integers = integers;
+        this.out = out;
+        this.budget = budget;
+        this.functions = functions;
+        this.memos = new MemoCache[functions.length];
+    }
+
+    void interpret(List<Parser.Stmt> statements) {
+        functions = functions(statements);
+        memos = new MemoCache[functions.length];
+        try {
+            for (Parser.Stmt statement : statements) {
+                execute(statement);
+            }
+        } catch (LimitExceeded error) {
+            throw error;
+        } catch (ArithmeticException overflow) {
+            throw new RuntimeException("Runtime error: Integer overflow.");
+        } catch (IndexOutOfBoundsException error) {
+            throw new RuntimeException("Runtime error: " + error.getMessage() + ".");
+        } catch (RuntimeException error) {
+            throw new RuntimeException("Runtime error: " + error.getMessage());
+        } finally {
+            // Output printed before an error still appears
+            out.flush();
+        }
+    }
+
+    // The program's functions, indexed like Parser.Expr.Call.function
+    static Parser.Stmt.Function[] functions(List<Parser.Stmt> statements) {
+        List<Parser.Stmt.Function> functions = new ArrayList<>();
+        for (Parser.Stmt statement : statements) {
+            if (statement instanceof Parser.Stmt.Function) functions.add((Parser.Stmt.Function) statement);
+        }
+        return functions.toArray(new Parser.Stmt.Function[0]);
+    }
+
+    // Returns true when a return statement ran, so enclosing statements stop
+    private boolean execute(Parser.Stmt stmt) {
+        if (stmt instanceof Parser.Stmt.Expression) {
+            Parser.Expr expression = ((Parser.Stmt.Expression) stmt).expression;
+            switch (expression.type()) {
+                case INTEGER -> evaluateLong(expression);
+                case DOUBLE -> evaluateDouble(expression);
+                case BIG, VALUE -> evaluate(expression);
+            }
+        } else if (stmt instanceof Parser.Stmt.Print) {
+            Parser.Expr expression = ((Parser.Stmt.Print) stmt).expression;
+            switch (expression.type()) {
+                case INTEGER -> out.printInteger(evaluateLong(expression));
+                case DOUBLE -> out.printNumber(evaluateDouble(expression));
+                case BIG, VALUE -> out.print(evaluate(expression));
+            }
+        } else if (stmt instanceof Parser.Stmt.Var) {
+            Parser.Stmt.Var var = (Parser.Stmt.Var) stmt;
+            switch (var.type) {
+                case INTEGER -> integers[var.slot] = evaluateLong(var.initializer);
+                case DOUBLE -> numbers[var.slot] = evaluateDouble(var.initializer);
+                case BIG, VALUE -> values[var.slot] = var.initializer != null ? evaluate(var.initializer) : null;
+            }
+        } else if (stmt instanceof Parser.Stmt.Block) {
+            return executeBlock(((Parser.Stmt.Block) stmt).statements);
+        } else if (stmt instanceof Parser.Stmt.If) {
+            Parser.Stmt.If ifStmt = (Parser.Stmt.If) stmt;
+            if (evaluateBoolean(ifStmt.condition)) {
+                return execute(ifStmt.thenBranch);
+            } else if (ifStmt.elseBranch != null) {
+                return execute(ifStmt.elseBranch);
+            }
+        } else if (stmt instanceof Parser.Stmt.While) {
+            Parser.Stmt.While whileStmt = (Parser.Stmt.While) stmt;
+            while (evaluateBoolean(whileStmt.condition)) {
+                if (execute(whileStmt.body)) return true;
+                budget.backEdge();
+            }
+        } else if (stmt instanceof Parser.Stmt.For) {
+            Parser.Stmt.For forStmt = (Parser.Stmt.For) stmt;
+            long from = evaluateBound(forStmt.from);
+            long to = evaluateBound(forStmt.to);
+            if (!forStmt.parallel) return loop(forStmt, from, to);
+            runParallel(forStmt, from, to);
+        } else if (stmt instanceof Parser.Stmt.Reduction) {
+            Parser.Stmt.Reduction reduction = (Parser.Stmt.Reduction) stmt;
+            if (!reduction.reduction.run(numbers, integers, budget)) {
+                return execute(reduction.loop);
+            }
+        } else if (stmt instanceof Parser.Stmt.Return) {
+            Parser.Stmt.Return returnStmt = (Parser.Stmt.Return) stmt;
+            switch (returnStmt.type) {
+                case INTEGER -> integerResult = evaluateLong(returnStmt.value);
+                case DOUBLE -> numberResult = evaluateDouble(returnStmt.value);
+                case BIG, VALUE -> valueResult = returnStmt.value != null ? evaluate(returnStmt.value) : null;
+            }
+            return true;
+        }
+        // A function declaration does nothing when it is reached
+        return false;
+    }
+
+    // Runs the iterations of a for loop from from to to; returns true when a
+    // return statement ran. The counter lives in a local and is only written
+    // to its slot for the body to read, which for an Int loop is a plain
+    // long store; a body block's statements are run without going through
+    // execute(Block) each time.
+    private boolean loop(Parser.Stmt.For forStmt, long from, long to) {
+        List<Parser.Stmt> statements = forStmt.body instanceof Parser.Stmt.Block
+                ? ((Parser.Stmt.Block) forStmt.body).statements
+                : List.of(forStmt.body);
+        int slot = forStmt.slot;
+        boolean integer = forStmt.type == Parser.Type.INTEGER;
+        long i = from;
+        while (i <= to) {
+            if (integer) {
+                integers[slot] = i;
+            } else {
+                values[slot] = i;
+            }
+            if (executeBlock(statements)) return true;
+            budget.backEdge();
+            i = Math.addExact(i, 1);
+        }
+        setCounter(forStmt, values, integers, i);
+        return false;
+    }
+
+    private void runParallel(Parser.Stmt.For forStmt, long from, long to) {
+        ParallelLoop.run(forStmt.reductions, from, to, values, numbers, integers, budget,
+                (start, end, partValues, partNumbers, partIntegers, partBudget) ->
+                        new Interpreter(partValues, partNumbers, partIntegers, out, partBudget, functions)
+                                .loop(forStmt, start, end));
+        // Where a loop run in order would have left the variable
+        setCounter(forStmt, values, integers, from > to ? from : Math.addExact(to, 1));
+    }
+
+    // A range bound, which the Resolver only lets be INTEGER or BIG
+    private long evaluateBound(Parser.Expr bound) {
+        return bound.isInteger() ? evaluateLong(bound) : toLong(evaluate(bound));
+    }
+
+    // The variable of a for loop, kept boxed when the loop is BIG
+    static long counter(Parser.Stmt.For forStmt, Object[] values, long[] integers) {
+        return forStmt.type == Parser.Type.INTEGER ? integers[forStmt.slot] : (long) values[forStmt.slot];
+    }
+
+    static void setCounter(Parser.Stmt.For forStmt, Object[] values, long[] integers, long value) {
+        if (forStmt.type == Parser.Type.INTEGER) {
+            integers[forStmt.slot] = value;
+        } else {
+            values[forStmt.slot] = value;
+        }
+    }
+
+    private boolean executeBlock(List<Parser.Stmt> statements) {
+        // Indexed loop: no Iterator allocation on every pass through a loop body
+        for (int i = 0; i < statements.size(); i++) {
+            if (execute(statements.get(i))) return true;
+        }
+        return false;
+    }
+
+    // Runs a call made by the program's own statements, leaving its result
+    // in the result field of the given representation
+    private void call(Parser.Expr.Call call, int mode) {
+        int base = top;
+        push(CALL, call, mode);
+        while (top > base) {
+            Task task = tasks[top - 1];
+            switch (task.kind) {
+                case BLOCK -> stepBlock(task);
+                case EXPRESSION, PRINT, VAR -> stepSimple(task);
+                case IF -> stepIf(task);
+                case WHILE -> stepWhile(task);
+                case FOR -> stepFor(task);
+                case RETURN -> stepReturn(task);
+                case BINARY -> stepBinary(task);
+                case OPERANDS -> stepOperands(task);
+                case CALL, TAIL_CALL -> stepCall(task);
+            }
+        }
+    }
+
+    private void push(int kind, Object node, int mode) {
+        if (top == tasks.length) tasks = Arrays.copyOf(tasks, top * 2);
+        Task task = tasks[top];
+        if (task == null) task = tasks[top] = new Task();
+        task.kind = kind;
+        task.node = node;
+        task.mode = mode;
+        task.step = 0;
+        task.waiting = false;
+        task.frame = null;
+        task.operands = null;
+        top++;
+    }
+
+    // Computes an expression into the result field of the given
+    // representation. Returns true when it is already there; otherwise a
+    // Task was pushed that leaves it there, and the caller has to wait.
+    private boolean compute(Parser.Expr expr, int mode) {
+        if (expr.hasCall()) {
+            push(expr instanceof Parser.Expr.Call ? CALL : expr instanceof Parser.Expr.Binary ? BINARY : OPERANDS,
+                    expr, mode);
+            return false;
+        }
+        switch (mode) {
+            case AS_LONG -> integerResult = evaluateLong(expr);
+            case AS_DOUBLE -> numberResult = evaluateDouble(expr);
+            case AS_VALUE -> valueResult = evaluate(expr);
+            case AS_BOOLEAN -> booleanResult = evaluateBoolean(expr);
+        }
+        return true;
+    }
+
+    // Runs a statement of a function body. Returns true when it is done;
+    // otherwise a Task was pushed for it, or it returned from the function.
+    private boolean start(Parser.Stmt stmt) {
+        if (!stmt.hasCall()) {
+            if (!execute(stmt)) return true;
+            returnFromCall();
+            return false;
+        }
+        if (stmt instanceof Parser.Stmt.Block) {
+            push(BLOCK, ((Parser.Stmt.Block) stmt).statements, 0);
+        } else if (stmt instanceof Parser.Stmt.Expression) {
+            push(EXPRESSION, stmt, 0);
+        } else if (stmt instanceof Parser.Stmt.Print) {
+            push(PRINT, stmt, 0);
+        } else if (stmt instanceof Parser.Stmt.Var) {
+            push(VAR, stmt, 0);
+        } else if (stmt instanceof Parser.Stmt.If) {
+            push(IF, stmt, 0);
+        } else if (stmt instanceof Parser.Stmt.While) {
+            push(WHILE, stmt, 0);
+        } else if (stmt instanceof Parser.Stmt.For) {
+            push(FOR, stmt, 0);
+        } else {
+            push(RETURN, stmt, 0);
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stepBlock(Task task) {
+        List<Parser.Stmt> statements = (List<Parser.Stmt>) task.node;
+        while (task.step < statements.size()) {
+            if (!start(statements.get(task.step++))) return;
+        }
+        top--;
+    }
+
+    // An expression statement, print or var: one expression, then a store
+    private void stepSimple(Task task) {
+        Parser.Stmt stmt = (Parser.Stmt) task.node;
+        if (stmt instanceof Parser.Stmt.Var) {
+            Parser.Stmt.Var var = (Parser.Stmt.Var) stmt;
+            if (task.step == 0) {
+                task.step = 1;
+                if (!compute(var.initializer, modeOf(var.type))) return;
+            }
+            switch (var.type) {
+                case INTEGER -> integers[var.slot] = integerResult;
+                case DOUBLE -> numbers[var.slot] = numberResult;
+                case BIG, VALUE -> values[var.slot] = valueResult;
+            }
+        } else {
+            Parser.Expr expression = stmt instanceof Parser.Stmt.Print
+                    ? ((Parser.Stmt.Print) stmt).expression
+                    : ((Parser.Stmt.Expression) stmt).expression;
+            if (task.step == 0) {
+                task.step = 1;
+                if (!compute(expression, modeOf(expression.type()))) return;
+            }
+            if (stmt instanceof Parser.Stmt.Print) {
+                switch (expression.type()) {
+                    case INTEGER -> out.printInteger(integerResult);
+                    case DOUBLE -> out.printNumber(numberResult);
+                    case BIG, VALUE -> out.print(valueResult);
+                }
+            }
+        }
+        top--;
+    }
+
+    private void stepIf(Task task) {
+        Parser.Stmt.If ifStmt = (Parser.Stmt.If) task.node;
+        if (task.step == 0) {
+            task.step = 1;
+            if (!compute(ifStmt.condition, AS_BOOLEAN)) return;
+        }
+        // The branch takes the If's place
+        top--;
+        Parser.Stmt branch = booleanResult ? ifStmt.thenBranch : ifStmt.elseBranch;
+        if (branch != null) start(branch);
+    }
+
+    private void stepWhile(Task task) {
+        Parser.Stmt.While whileStmt = (Parser.Stmt.While) task.node;
+        while (true) {
+            if (task.step == 0) {
+                task.step = 1;
+                if (!compute(whileStmt.condition, AS_BOOLEAN)) return;
+            }
+            if (task.step == 1) {
+                if (!booleanResult) {
+                    top--;
+                    return;
+                }
+                task.step = 2;
+                if (!start(whileStmt.body)) return;
+            }
+            budget.backEdge();
+            task.step = 0;
+        }
+    }
+
+    // Steps 0 and 1 compute the bounds; the upper one is kept in the loop's
+    // end slot while the body runs
+    private void stepFor(Task task) {
+        Parser.Stmt.For forStmt = (Parser.Stmt.For) task.node;
+        if (task.step == 0) {
+            task.step = 1;
+            if (!compute(forStmt.from, modeOf(forStmt.from.type()))) return;
+        }
+        if (task.step == 1) {
+            task.integer = forStmt.from.isInteger() ? integerResult : toLong(valueResult);
+            task.step = 2;
+            if (!compute(forStmt.to, modeOf(forStmt.to.type()))) return;
+        }
+        if (task.step == 2) {
+            long to = forStmt.to.isInteger() ? integerResult : toLong(valueResult);
+            if (forStmt.parallel) {
+                top--;
+                runParallel(forStmt, task.integer, to);
+                return;
+            }
+            integers[forStmt.end] = to;
+            setCounter(forStmt, values, integers, task.integer);
+            task.step = 3;
+        }
+        while (true) {
+            if (task.step == 3) {
+                if (counter(forStmt, values, integers) > integers[forStmt.end]) {
+                    top--;
+                    return;
+                }
+                task.step = 4;
+                if (!start(forStmt.body)) return;
+            }
+            budget.backEdge();
+            setCounter(forStmt, values, integers, Math.addExact(counter(forStmt, values, integers), 1));
+            task.step = 3;
+        }
+    }
+
+    private void stepReturn(Task task) {
+        Parser.Stmt.Return returnStmt = (Parser.Stmt.Return) task.node;
+        if (returnStmt.tailCall) {
+            top--;
+            push(TAIL_CALL, returnStmt.value, modeOf(returnStmt.type));
+            return;
+        }
+        if (task.step == 0) {
+            task.step = 1;
+            if (!compute(returnStmt.value, modeOf(returnStmt.type))) return;
+        }
+        returnFromCall();
+    }
+
+    private void stepBinary(Task task) {
+        Parser.Expr.Binary binary = (Parser.Expr.Binary) task.node;
+        TokenType operator = binary.operator.type;
+        if (operator == TokenType.ASSIGN) {
+            Parser.Expr.Variable target = (Parser.Expr.Variable) binary.left;
+            if (task.step == 0) {
+                task.step = 1;
+                if (!compute(binary.right, modeOf(target.type))) return;
+            }
+            switch (target.type) {
+                case INTEGER -> integers[target.slot] = integerResult;
+                case DOUBLE -> numbers[target.slot] = numberResult;
+                case BIG, VALUE -> values[target.slot] = valueResult;
+            }
+            complete(task, modeOf(target.type));
+            return;
+        }
+        boolean comparison = operator == TokenType.LESS || operator == TokenType.GREATER
+                || operator == TokenType.EQUALS;
+        // Operands are computed as evaluateBoolean or the arithmetic of the
+        // Binary's type would compute them
+        int mode;
+        if (comparison) {
+            mode = binary.left.isInteger() && binary.right.isInteger() ? AS_LONG
+                    : binary.left.isNumeric() && binary.right.isNumeric() ? AS_DOUBLE : AS_VALUE;
+        } else {
+            mode = modeOf(binary.type());
+        }
+        if (task.step == 0) {
+            task.step = 1;
+            if (!compute(binary.left, mode)) return;
+        }
+        if (task.step == 1) {
+            task.integer = integerResult;
+            task.number = numberResult;
+            task.value = valueResult;
+            task.step = 2;
+            if (!compute(binary.right, mode)) return;
+        }
+        Object left = task.value;
+        task.value = null;
+        if (comparison) {
+            booleanResult = switch (mode) {
+                case AS_LONG -> operator == TokenType.LESS ? task.integer < integerResult
+                        : operator == TokenType.GREATER ? task.integer > integerResult : task.integer == integerResult;
+                case AS_DOUBLE -> operator == TokenType.LESS ? task.number < numberResult
+                        : operator == TokenType.GREATER ? task.number > numberResult
+                        : Double.doubleToLongBits(task.number) == Double.doubleToLongBits(numberResult);
+                default -> operator == TokenType.LESS ? less(left, valueResult)
+                        : operator == TokenType.GREATER ? less(valueResult, left) : isEqual(left, valueResult);
+            };
+            complete(task, AS_BOOLEAN);
+            return;
+        }
+        switch (mode) {
+            case AS_LONG -> integerResult = switch (operator) {
+                case PLUS -> Math.addExact(task.integer, integerResult);
+                case MINUS -> Math.subtractExact(task.integer, integerResult);
+                case MULTIPLY -> Math.multiplyExact(task.integer, integerResult);
+                case DIVIDE -> divide(task.integer, integerResult);
+                case MOD -> modulo(task.integer, integerResult);
+                default -> throw new RuntimeException("Unknown expression type.");
+            };
+            case AS_DOUBLE -> numberResult = switch (operator) {
+                case PLUS -> task.number + numberResult;
+                case MINUS -> task.number - numberResult;
+                case MULTIPLY -> task.number * numberResult;
+                case DIVIDE -> divide(task.number, numberResult);
+                case MOD -> modulo(task.number, numberResult);
+                default -> throw new RuntimeException("Unknown expression type.");
+            };
+            default -> valueResult = binary.type() == Parser.Type.BIG
+                    ? bigArithmetic(operator, left, valueResult)
+                    : arithmetic(operator, left, valueResult);
+        }
+        complete(task, mode);
+    }
+
+    // Indexing and built-in calls, with their operands computed boxed
+    private void stepOperands(Task task) {
+        Parser.Expr expr = (Parser.Expr) task.node;
+        List<Parser.Expr> operands;
+        if (expr instanceof Parser.Expr.Index) {
+            Parser.Expr.Index index = (Parser.Expr.Index) expr;
+            operands = List.of(index.array, index.index);
+        } else if (expr instanceof Parser.Expr.IndexAssign) {
+            Parser.Expr.IndexAssign assign = (Parser.Expr.IndexAssign) expr;
+            operands = List.of(assign.array, assign.index, assign.value);
+        } else {
+            operands = ((Parser.Expr.BuiltinCall) expr).arguments;
+        }
+        if (task.operands == null) task.operands = new Object[operands.size()];
+        while (task.step < operands.size()) {
+            if (!task.waiting) {
+                task.waiting = true;
+                if (!compute(operands.get(task.step), AS_VALUE)) return;
+            }
+            task.operands[task.step++] = valueResult;
+            task.waiting = false;
+        }
+        Object[] values = task.operands;
+        task.operands = null;
+        if (expr instanceof Parser.Expr.Index) {
+            valueResult = Builtin.load(values[0], values[1]);
+        } else if (expr instanceof Parser.Expr.IndexAssign) {
+            valueResult = Builtin.store(values[0], values[1], values[2]);
+        } else {
+            valueResult = ((Parser.Expr.BuiltinCall) expr).builtin.call(values);
+        }
+        complete(task, AS_VALUE);
+    }
+
+    // A call counts towards the iteration limit, so recursion without loops
+    // is still bounded by the ExecutionLimits
+    private void stepCall(Task task) {
+        Parser.Expr.Call call = (Parser.Expr.Call) task.node;
+        Parser.Stmt.Function function = functions[call.function];
+        if (task.step == ENTERED) {
+            // The body ran off its end, which returns null
+            valueResult = null;
+            finishCall(task);
+            return;
+        }
+        Parser.Type[] slotTypes = function.slotTypes;
+        List<Parser.Expr> arguments = call.arguments;
+        if (task.frame == null) {
+            budget.backEdge();
+            if (depth == MAX_CALL_DEPTH) throw new RuntimeException("Stack overflow.");
+            // The arguments are computed in the caller's frame, and calls
+            // among them get deeper frames than this one
+            task.frame = frame(++depth, slotTypes.length);
+        }
+        Frame frame = task.frame;
+        while (task.step < arguments.size()) {
+            int i = task.step;
+            if (!task.waiting) {
+                task.waiting = true;
+                if (!compute(arguments.get(i), modeOf(slotTypes[i]))) return;
+            }
+            switch (slotTypes[i]) {
+                case INTEGER -> frame.integers[i] = integerResult;
+                case DOUBLE -> frame.numbers[i] = numberResult;
+                case BIG, VALUE -> frame.values[i] = valueResult;
+            }
+            task.waiting = false;
+            task.step++;
+        }
+        if (function.memo) {
+            MemoCache memo = memos[call.function];
+            if (memo == null) memo = memos[call.function] = new MemoCache();
+            Object[] values = new Object[arguments.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = slot(frame.values, frame.numbers, frame.integers, i, slotTypes[i]);
+            }
+            Object key = MemoCache.key(values);
+            Object result = memo.get(key);
+            if (result != null || memo.containsKey(key)) {
+                switch (function.returnType) {
+                    case INTEGER -> integerResult = (long) result;
+                    case DOUBLE -> numberResult = (double) result;
+                    case BIG, VALUE -> valueResult = result;
+                }
+                depth--;
+                complete(task, modeOf(function.returnType));
+                return;
+            }
+            task.memo = memo;
+            task.key = key;
+        }
+        if (task.kind == TAIL_CALL) {
+            // The callee takes over the frame depth and the Task of the
+            // function that returns its result; the Resolver only marks
+            // calls whose result needs no conversion and no caching
+            Task returning = tasks[running];
+            frames[depth] = frames[depth - 1];
+            frames[depth - 1] = frame;
+            depth--;
+            returning.node = call;
+            top = running + 1;
+        } else {
+            task.callerValues = values;
+            task.callerNumbers = numbers;
+            task.callerIntegers = integers;
+            task.caller = running;
+            task.step = ENTERED;
+            running = top - 1;
+        }
+        values = frame.values;
+        numbers = frame.numbers;
+        integers = frame.integers;
+        push(BLOCK, function.body, 0);
+    }
+
+    // Leaves the running call; its result is in the result field of the
+    // function's return type
+    private void returnFromCall() {
+        top = running + 1;
+        finishCall(tasks[running]);
+    }
+
+    private void finishCall(Task task) {
+        Parser.Stmt.Function function = functions[((Parser.Expr.Call) task.node).function];
+        values = task.callerValues;
+        numbers = task.callerNumbers;
+        integers = task.callerIntegers;
+        running = task.caller;
+        depth--;
+        if (task.memo != null) {
+            task.memo.put(task.key, switch (function.returnType) {
+                case INTEGER -> integerResult;
+                case DOUBLE -> numberResult;
+                case BIG, VALUE -> valueResult;
+            });
+            task.memo = null;
+            task.key = null;
+        }
+        complete(task, modeOf(function.returnType));
+    }
+
+    // Pops a finished expression Task and converts its result, which is in
+    // the field of the given representation, to the one it was asked for
+    private void complete(Task task, int from) {
+        top--;
+        int to = task.mode;
+        if (from == to) return;
+        switch (to) {
+            case AS_DOUBLE -> numberResult = from == AS_LONG ? integerResult
+                    : checkNumberOperand(from == AS_VALUE ? valueResult : (Object) booleanResult);
+            case AS_VALUE -> valueResult = switch (from) {
+                case AS_LONG -> integerResult;
+                case AS_DOUBLE -> numberResult;
+                default -> booleanResult;
+            };
+            case AS_BOOLEAN -> booleanResult = from != AS_VALUE || isTruthy(valueResult);
+            // Only INTEGER expressions are asked for as longs, and only an
+            // OPERANDS Task gives one as a value
+            case AS_LONG -> integerResult = toLong(valueResult);
+        }
+    }
+
+    private static int modeOf(Parser.Type type) {
+        return switch (type) {
+            case INTEGER -> AS_LONG;
+            case DOUBLE -> AS_DOUBLE;
+            case BIG, VALUE -> AS_VALUE;
+        };
+    }
+
+    // The frame for a call at the given depth, cleared for slotCount slots
+    private Frame frame(int depth, int slotCount) {
+        if (depth == frames.length) frames = Arrays.copyOf(frames, depth * 2);
+        Frame frame = frames[depth];
+        if (frame == null) frame = frames[depth] = new Frame();
+        if (frame.values.length < slotCount) {
+            frame.values = new Object[slotCount];
+            frame.numbers = new double[slotCount];
+            frame.integers = new long[slotCount];
+        } else {
+            Arrays.fill(frame.values, 0, slotCount, null);
+            Arrays.fill(frame.numbers, 0, slotCount, 0);
+            Arrays.fill(frame.integers, 0, slotCount, 0);
+        }
+        return frame;
+    }
+
+    // A slot's value boxed, whatever frame array its type keeps it in
+    static Object slot(Object[] values, double[] numbers, long[] integers, int slot, Parser.Type type) {
+        return switch (type) {
+            case INTEGER -> integers[slot];
+            case DOUBLE -> numbers[slot];
+            case BIG, VALUE -> values[slot];
+        };
+    }
+
+    private Object evaluate(Parser.Expr expr) {
+        switch (expr.type()) {
+            case INTEGER -> {
+                return evaluateLong(expr);
+            }
+            case DOUBLE -> {
+                return evaluateDouble(expr);
+            }
+        }
+        if (expr instanceof Parser.Expr.Literal) {
+            return ((Parser.Expr.Literal) expr).value;
+        } else if (expr instanceof Parser.Expr.Binary) {
+            Parser.Expr.Binary binary = (Parser.Expr.Binary) expr;
+            switch (binary.operator.type) {
+                case ASSIGN -> {
+                    if (binary.left instanceof Parser.Expr.Variable) {
+                        Object value = evaluate(binary.right);
+                        values[((Parser.Expr.Variable) binary.left).slot] = value;
+                        return value;
+                    }
+                    throw new RuntimeException("Invalid assignment target.");
+                }
+                case PLUS, MINUS, MULTIPLY, DIVIDE, MOD -> {
+                    Object left = evaluate(binary.left);
+                    Object right = evaluate(binary.right);
+                    if (binary.type() == Parser.Type.BIG) return bigArithmetic(binary.operator.type, left, right);
+                    return arithmetic(binary.operator.type, left, right);
+                }
+            }
+            return evaluateBoolean(binary);
+        } else if (expr instanceof Parser.Expr.Variable) {
+            return values[((Parser.Expr.Variable) expr).slot];
+        } else if (expr instanceof Parser.Expr.Call) {
+            call((Parser.Expr.Call) expr, AS_VALUE);
+            return valueResult;
+        } else if (expr instanceof Parser.Expr.Index) {
+            Parser.Expr.Index index = (Parser.Expr.Index) expr;
+            return Builtin.load(evaluate(index.array), evaluate(index.index));
+        } else if (expr instanceof Parser.Expr.IndexAssign) {
+            Parser.Expr.IndexAssign assign = (Parser.Expr.IndexAssign) expr;
+            return Builtin.store(evaluate(assign.array), evaluate(assign.index), evaluate(assign.value));
+        } else if (expr instanceof Parser.Expr.BuiltinCall) {
+            return callBuiltin((Parser.Expr.BuiltinCall) expr);
+        }
+        throw new RuntimeException("Unknown expression type.");
+    }
+
+    private Object callBuiltin(Parser.Expr.BuiltinCall call) {
+        Object[] arguments = new Object[call.arguments.size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = evaluate(call.arguments.get(i));
+        }
+        return call.builtin.call(arguments);
+    }
+
+    private long evaluateIndex(Parser.Expr expr) {
+        return expr.isInteger() ? evaluateLong(expr) : Builtin.toIndex(evaluate(expr));
+    }
+
+    // Evaluates an INTEGER expression on longs; overflow throws
+    // ArithmeticException instead of wrapping around
+    private long evaluateLong(Parser.Expr expr) {
+        if (expr instanceof Parser.Expr.Literal) {
+            return (long) ((Parser.Expr.Literal) expr).value;
+        } else if (expr instanceof Parser.Expr.Variable) {
+            return integers[((Parser.Expr.Variable) expr).slot];
+        } else if (expr instanceof Parser.Expr.Call) {
+            call((Parser.Expr.Call) expr, AS_LONG);
+            return integerResult;
+        } else if (expr instanceof Parser.Expr.Index) {
+            Parser.Expr.Index index = (Parser.Expr.Index) expr;
+            long[] array = Builtin.longs(evaluate(index.array));
+            return array[Builtin.checkIndex(evaluateIndex(index.index), array.length)];
+        } else if (expr instanceof Parser.Expr.IndexAssign) {
+            Parser.Expr.IndexAssign assign = (Parser.Expr.IndexAssign) expr;
+            long[] array = Builtin.longs(evaluate(assign.array));
+            long index = evaluateIndex(assign.index);
+            long value = assign.value.isInteger() ? evaluateLong(assign.value) : Builtin.element(evaluate(assign.value));
+            array[Builtin.checkIndex(index, array.length)] = value;
+            return value;
+        } else if (expr instanceof Parser.Expr.BuiltinCall) {
+            return toLong(callBuiltin((Parser.Expr.BuiltinCall) expr));
+        }
+        Parser.Expr.Binary binary = (Parser.Expr.Binary) expr;
+        return switch (binary.operator.type) {
+            case PLUS -> Math.addExact(evaluateLong(binary.left), evaluateLong(binary.right));
+            case MINUS -> Math.subtractExact(evaluateLong(binary.left), evaluateLong(binary.right));
+            case MULTIPLY -> Math.multiplyExact(evaluateLong(binary.left), evaluateLong(binary.right));
+            case DIVIDE -> divide(evaluateLong(binary.left), evaluateLong(binary.right));
+            case MOD -> modulo(evaluateLong(binary.left), evaluateLong(binary.right));
+            case ASSIGN -> {
+                long value = evaluateLong(binary.right);
+                integers[((Parser.Expr.Variable) binary.left).slot] = value;
+                yield value;
+            }
+            default -> throw new RuntimeException("Unknown expression type.");
+        };
+    }
+
+    // Evaluates a numeric expression without boxing intermediate results;
+    // INTEGER operands are converted to double
+    private double evaluateDouble(Parser.Expr expr) {
+        if (expr.isInteger()) {
+            return evaluateLong(expr);
+        } else if (expr instanceof Parser.Expr.Literal) {
+            return checkNumberOperand(((Parser.Expr.Literal) expr).value);
+        } else if (expr instanceof Parser.Expr.Variable) {
+            Parser.Expr.Variable variable = (Parser.Expr.Variable) expr;
+            if (variable.type == Parser.Type.DOUBLE) return numbers[variable.slot];
+            return checkNumberOperand(values[variable.slot]);
+        } else if (expr instanceof Parser.Expr.Call && expr.type() == Parser.Type.DOUBLE) {
+            call((Parser.Expr.Call) expr, AS_DOUBLE);
+            return numberResult;
+        } else if (expr instanceof Parser.Expr.Index && expr.type() == Parser.Type.DOUBLE) {
+            Parser.Expr.Index index = (Parser.Expr.Index) expr;
+            double[] array = Builtin.doubles(evaluate(index.array));
+            return array[Builtin.checkIndex(evaluateIndex(index.index), array.length)];
+        } else if (expr instanceof Parser.Expr.IndexAssign && expr.type() == Parser.Type.DOUBLE) {
+            Parser.Expr.IndexAssign assign = (Parser.Expr.IndexAssign) expr;
+            double[] array = Builtin.doubles(evaluate(assign.array));
+            long index = evaluateIndex(assign.index);
+            double value = evaluateDouble(assign.value);
+            array[Builtin.checkIndex(index, array.length)] = value;
+            return value;
+        } else if (expr instanceof Parser.Expr.BuiltinCall && expr.type() == Parser.Type.DOUBLE) {
+            return checkNumberOperand(callBuiltin((Parser.Expr.BuiltinCall) expr));
+        } else if (expr instanceof Parser.Expr.Binary && expr.isNumeric()) {
+            Parser.Expr.Binary binary = (Parser.Expr.Binary) expr;
+            switch (binary.operator.type) {
+                case PLUS -> {
+                    return evaluateDouble(binary.left) + evaluateDouble(binary.right);
+                }
+                case MINUS -> {
+                    return evaluateDouble(binary.left) - evaluateDouble(binary.right);
+                }
+                case MULTIPLY -> {
+                    return evaluateDouble(binary.left) * evaluateDouble(binary.right);
+                }
+                case DIVIDE -> {
+                    return divide(evaluateDouble(binary.left), evaluateDouble(binary.right));
+                }
+                case MOD -> {
+                    return modulo(evaluateDouble(binary.left), evaluateDouble(binary.right));
+                }
+                case ASSIGN -> {
+                    double value = evaluateDouble(binary.right);
+                    numbers[((Parser.Expr.Variable) binary.left).slot] = value;
+                    return value;
+                }
+            }
+        }
+        return checkNumberOperand(evaluate(expr));
+    }
+
+    // Evaluates a condition; numeric comparisons never box their operands
+    private boolean evaluateBoolean(Parser.Expr expr) {
+        if (expr instanceof Parser.Expr.Binary) {
+            Parser.Expr.Binary binary = (Parser.Expr.Binary) expr;
+            Parser.Expr left = binary.left;
+            Parser.Expr right = binary.right;
+            switch (binary.operator.type) {
+                case LESS -> {
+                    if (left.isInteger() && right.isInteger()) return evaluateLong(left) < evaluateLong(right);
+                    if (left.isNumeric() && right.isNumeric()) return evaluateDouble(left) < evaluateDouble(right);
+                    return less(evaluate(left), evaluate(right));
+                }
+                case GREATER -> {
+                    if (left.isInteger() && right.isInteger()) return evaluateLong(left) > evaluateLong(right);
+                    if (left.isNumeric() && right.isNumeric()) return evaluateDouble(left) > evaluateDouble(right);
+                    Object a = evaluate(left);
+                    return less(evaluate(right), a);
+                }
+                case EQUALS -> {
+                    if (left.isInteger() && right.isInteger()) return evaluateLong(left) == evaluateLong(right);
+                    if (left.isNumeric() && right.isNumeric()) {
+                        // Same result as isEqual, which the boxed path uses
+                        return Double.doubleToLongBits(evaluateDouble(left))
+                                == Double.doubleToLongBits(evaluateDouble(right));
+                    }
+                    return isEqual(evaluate(left), evaluate(right));
+                }
+            }
+        }
+        return isTruthy(evaluate(expr));
+    }
+
+    // Arithmetic on operands whose types are only known at runtime: two
+    // integers give an integer, any other two numbers a double
+    static Object arithmetic(TokenType operator, Object left, Object right) {
+        if (left instanceof BigInteger || right instanceof BigInteger) {
+            return bigArithmetic(operator, left, right);
+        }
+        if (left instanceof Long && right instanceof Long) {
+            long a = (long) left;
+            long b = (long) right;
+            return switch (operator) {
+                case PLUS -> Math.addExact(a, b);
+                case MINUS -> Math.subtractExact(a, b);
+                case MULTIPLY -> Math.multiplyExact(a, b);
+                case DIVIDE -> divide(a, b);
+                case MOD -> modulo(a, b);
+                default -> throw new RuntimeException("Unknown operator.");
+            };
+        }
+        double a = checkNumberOperand(left);
+        double b = checkNumberOperand(right);
+        return switch (operator) {
+            case PLUS -> a + b;
+            case MINUS -> a - b;
+            case MULTIPLY -> a * b;
+            case DIVIDE -> divide(a, b);
+            case MOD -> modulo(a, b);
+            default -> throw new RuntimeException("Unknown operator.");
+        };
+    }
+
+    // Arithmetic on BIG operands: longs while the result fits, BigIntegers
+    // once it does not. Results that fit a long again go back to being Longs,
+    // so every integer has a single representation.
+    static Object bigArithmetic(TokenType operator, Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            try {
+                return arithmetic(operator, left, right);
+            } catch (ArithmeticException overflow) {
+                // Falls through to BigInteger arithmetic
+            }
+        } else if (!isInteger(left) || !isInteger(right)) {
+            return arithmetic(operator, checkNumberOperand(left), checkNumberOperand(right));
+        }
+        BigInteger a = toBigInteger(left);
+        BigInteger b = toBigInteger(right);
+        BigInteger result = switch (operator) {
+            case PLUS -> a.add(b);
+            case MINUS -> a.subtract(b);
+            case MULTIPLY -> a.multiply(b);
+            case DIVIDE -> {
+                if (b.signum() == 0) throw new RuntimeException("Division by zero.");
+                yield a.divide(b);
+            }
+            case MOD -> {
+                if (b.signum() == 0) throw new RuntimeException("Modulo by zero.");
+                yield a.remainder(b);
+            }
+            default -> throw new RuntimeException("Unknown operator.");
+        };
+        return result.bitLength() < Long.SIZE ? (Object) result.longValue() : result;
+    }
+
+    private static boolean isInteger(Object value) {
+        return value instanceof Long || value instanceof BigInteger;
+    }
+
+    private static BigInteger toBigInteger(Object value) {
+        return value instanceof BigInteger ? (BigInteger) value : BigInteger.valueOf((long) value);
+    }
+
+    // a < b for operands whose types are only known at runtime
+    static boolean less(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) return (long) left < (long) right;
+        if (isInteger(left) && isInteger(right)) return toBigInteger(left).compareTo(toBigInteger(right)) < 0;
+        return checkNumberOperand(left) < checkNumberOperand(right);
+    }
+
+    // Integer division truncates towards zero, as in Kotlin
+    static long divide(long left, long right) {
+        if (right == 0) throw new RuntimeException("Division by zero.");
+        if (left == Long.MIN_VALUE && right == -1) throw new ArithmeticException("long overflow");
+        return left / right;
+    }
+
+    static long modulo(long left, long right) {
+        if (right == 0) throw new RuntimeException("Modulo by zero.");
+        return left % right;
+    }
+
+    static double divide(double left, double right) {
+        if (right == 0) throw new RuntimeException("Division by zero.");
+        return left / right;
+    }
+
+    static double modulo(double left, double right) {
+        if (right == 0) throw new RuntimeException("Modulo by zero.");
+        return left % right;
+    }
+
+    // An INTEGER result computed boxed: a Long, or a BigInteger when it
+    // overflowed
+    static long toLong(Object value) {
+        if (value instanceof BigInteger) throw new ArithmeticException("long overflow");
+        return (long) value;
+    }
+
+    static double checkNumberOperand(Object operand) {
+        if (operand instanceof Double) return (double) operand;
+        if (operand instanceof Long) return (long) operand;
+        if (operand instanceof BigInteger) return ((BigInteger) operand).doubleValue();
+        throw new RuntimeException("Operands must be numbers.");
+    }
+
+    static boolean isEqual(Object a, Object b) {
+        if (a == null && b == null) return true;
+        if (a == null) return false;
+        // An integer equals a double holding the same number
+        if (isInteger(a) && b instanceof Double) return isEqual(checkNumberOperand(a), b);
+        if (a instanceof Double && isInteger(b)) return isEqual(a, checkNumberOperand(b));
+        return a.equals(b);
+    }
+
+    static boolean isTruthy(Object object) {
+        if (object == null) return false;
+        if (object instanceof Boolean) return (boolean) object;
+        return true;
+    }
+
+    static String stringify(Object object) {
+        if (object == null) return "null";
+        if (object instanceof long[]) return Arrays.toString((long[]) object);
+        if (object instanceof double[]) {
+            StringJoiner elements = new StringJoiner(", ", "[", "]");
+            for (double element : (double[]) object) {
+                elements.add(stringify(element));
+            }
+            return elements.toString();
+        }
+        if (object instanceof Double) {
+            String text = object.toString();
+            if (text.endsWith(".0")) {
+                text = text.substring(0, text.length() - 2);
+            }
+            return text;
+        }
+        return object.toString();
+    }
+}
@@ -0,0 +1,792 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+
+// Translates resolved statements into a JVM class with a single static
+// run(double[] numbers, long[] integers, OutputSink out, ExecutionBudget
+// budget) method and loads it as a hidden class. Int slots become JVM long
+// locals and Double slots double locals, initialised from the matching frame
+// (which holds any parameters), so HotSpot can compile the script's loops
+// like ordinary Java code.
+// Only programs whose variables are all numeric are supported; compile()
+// returns null for anything else, parallel loops included, and the caller
+// keeps interpreting.
+class JitCompiler {
+    private static final int CLASS_VERSION = 61;
+    private static final String CLASS_NAME = "KotlinScript";
+    private static final String RUNTIME = "JitCompiler";
+    private static final String SINK = "OutputSink";
+    private static final String BUDGET = "ExecutionBudget";
+    // Locals 0 to 3 are run()'s arguments; variables start after them
+    private static final int FIRST_VARIABLE_LOCAL = 4;
+    // Static field of the generated class holding its LoopReductions
+    private static final String REDUCTIONS = "reductions";
+    private static final String REDUCTIONS_TYPE = "[LLoopReduction;";
+
+    // JVM opcodes used by the generated code
+    private static final int ICONST_0 = 0x03;
+    private static final int ICONST_1 = 0x04;
+    private static final int LCONST_0 = 0x09;
+    private static final int LCONST_1 = 0x0a;
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC2_W = 0x14;
+    private static final int LLOAD = 0x16;
+    private static final int DLOAD = 0x18;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int ALOAD_3 = 0x2d;
+    private static final int LALOAD = 0x2f;
+    private static final int DALOAD = 0x31;
+    private static final int AALOAD = 0x32;
+    private static final int LSTORE = 0x37;
+    private static final int DSTORE = 0x39;
+    private static final int LASTORE = 0x50;
+    private static final int DASTORE = 0x52;
+    private static final int POP = 0x57;
+    private static final int POP2 = 0x58;
+    private static final int DUP2 = 0x5c;
+    private static final int DADD = 0x63;
+    private static final int DSUB = 0x67;
+    private static final int DMUL = 0x6b;
+    private static final int L2D = 0x8a;
+    private static final int LCMP = 0x94;
+    private static final int DCMPL = 0x97;
+    private static final int DCMPG = 0x98;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9a;
+    private static final int IFGE = 0x9c;
+    private static final int IFGT = 0x9d;
+    private static final int IFLE = 0x9e;
+    private static final int GOTO = 0xa7;
+    private static final int RETURN = 0xb1;
+    private static final int GETSTATIC = 0xb2;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int INVOKEINTERFACE = 0xb9;
+    private static final int WIDE = 0xc4;
+
+    // Thrown while generating code for a construct the JIT does not handle
+    private static class Unsupported extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Unsupported(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private final ConstantPool pool = new ConstantPool();
+    private byte[] code = new byte[256];
+    private int length = 0;
+    // Offsets that need a StackMapTable frame: jump targets and code after a goto
+    private final SortedSet<Integer> frames = new TreeSet<>();
+    private int depth = 0;
+    private int maxStack = 0;
+    private final List<LoopReduction> reductions = new ArrayList<>();
+    private final Parser.Type[] slotTypes;
+
+    private JitCompiler(Parser.Type[] slotTypes) {
+        this.slotTypes = slotTypes;
+    }
+
+    // Returns a handle to the generated static void run(double[], long[],
+    // OutputSink, ExecutionBudget), or null when the program uses something
+    // the JIT cannot translate.
+    static MethodHandle compile(List<Parser.Stmt> statements, Parser.Type[] slotTypes) {
+        JitCompiler compiler = new JitCompiler(slotTypes);
+        byte[] bytes;
+        try {
+            bytes = compiler.generate(statements);
+        } catch (Unsupported unsupported) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            if (!compiler.reductions.isEmpty()) {
+                lookup.findStaticVarHandle(lookup.lookupClass(), REDUCTIONS, LoopReduction[].class)
+                        .set(compiler.reductions.toArray(new LoopReduction[0]));
+            }
+            return lookup.findStatic(lookup.lookupClass(), "run", MethodType.methodType(void.class, double[].class,
+                    long[].class, OutputSink.class, ExecutionBudget.class));
+        } catch (ReflectiveOperationException | LinkageError error) {
+            return null;
+        }
+    }
+
+    private byte[] generate(List<Parser.Stmt> statements) {
+        int slotCount = slotTypes.length;
+        if (slotCount > Short.MAX_VALUE) {
+            throw new Unsupported("Too many variables.");
+        }
+        for (Parser.Type type : slotTypes) {
+            if (type != Parser.Type.INTEGER && type != Parser.Type.DOUBLE) {
+                throw new Unsupported("Boxed variable.");
+            }
+        }
+        // Calls need frames of their own, which one method's locals cannot give them
+        for (Parser.Stmt statement : statements) {
+            if (statement instanceof Parser.Stmt.Function) throw new Unsupported("Function declaration.");
+        }
+        // Every local holds its long or double from the first instruction
+        // on, which keeps all stack map frames identical
+        for (int slot = 0; slot < slotCount; slot++) {
+            loadFromFrame(slot);
+        }
+        for (Parser.Stmt statement : statements) {
+            compile(statement);
+        }
+        emit(RETURN, 0);
+        if (length > Short.MAX_VALUE) {
+            throw new Unsupported("Program too large.");
+        }
+        return writeClass(slotCount);
+    }
+
+    private void compile(Parser.Stmt stmt) {
+        if (stmt instanceof Parser.Stmt.Expression) {
+            Parser.Expr expression = ((Parser.Stmt.Expression) stmt).expression;
+            if (isAssignment(expression)) {
+                compileStore((Parser.Expr.Binary) expression, false);
+            } else if (expression.isInteger()) {
+                compileInteger(expression);
+                emit(POP2, -2);
+            } else if (expression.isNumeric()) {
+                compileNumber(expression);
+                emit(POP2, -2);
+            } else {
+                compileValue(expression);
+                emit(POP, -1);
+            }
+        } else if (stmt instanceof Parser.Stmt.Print) {
+            Parser.Expr expression = ((Parser.Stmt.Print) stmt).expression;
+            emit(ALOAD_2, 1);
+            if (expression.isInteger()) {
+                compileInteger(expression);
+                emitInvokeInterface(SINK, "printInteger", "(J)V", 3);
+            } else if (expression.isNumeric()) {
+                compileNumber(expression);
+                emitInvokeInterface(SINK, "printNumber", "(D)V", 3);
+            } else {
+                compileValue(expression);
+                emitInvokeInterface(SINK, "print", "(Ljava/lang/Object;)V", 2);
+            }
+        } else if (stmt instanceof Parser.Stmt.Var) {
+            Parser.Stmt.Var var = (Parser.Stmt.Var) stmt;
+            compileTyped(var.initializer, var.slot);
+            emitLocal(isInteger(var.slot) ? LSTORE : DSTORE, var.slot, -2);
+        } else if (stmt instanceof Parser.Stmt.Param) {
+            // Loaded from the frames by the prologue
+        } else if (stmt instanceof Parser.Stmt.Block) {
+            for (Parser.Stmt statement : ((Parser.Stmt.Block) stmt).statements) {
+                compile(statement);
+            }
+        } else if (stmt instanceof Parser.Stmt.If) {
+            Parser.Stmt.If ifStmt = (Parser.Stmt.If) stmt;
+            int elseJump = compileCondition(ifStmt.condition);
+            compile(ifStmt.thenBranch);
+            if (ifStmt.elseBranch != null) {
+                int endJump = emitJump(GOTO, 0);
+                patch(elseJump);
+                compile(ifStmt.elseBranch);
+                patch(endJump);
+            } else {
+                patch(elseJump);
+            }
+        } else if (stmt instanceof Parser.Stmt.While) {
+            Parser.Stmt.While whileStmt = (Parser.Stmt.While) stmt;
+            int loopStart = length;
+            frames.add(loopStart);
+            int exitJump = compileCondition(whileStmt.condition);
+            compile(whileStmt.body);
+            emit(ALOAD_3, 1);
+            emit(INVOKEVIRTUAL, -1);
+            writeShort(pool.methodRef(BUDGET, "backEdge", "()V"));
+            int backJump = emitJump(GOTO, 0);
+            patch(backJump, loopStart);
+            patch(exitJump);
+        } else if (stmt instanceof Parser.Stmt.For) {
+            compileFor((Parser.Stmt.For) stmt);
+        } else if (stmt instanceof Parser.Stmt.Reduction) {
+            compileReduction((Parser.Stmt.Reduction) stmt);
+        } else {
+            throw new Unsupported("Unknown statement type.");
+        }
+    }
+
+    // The counter and the bound are long locals, so HotSpot sees an ordinary
+    // counted loop. Parallel loops run on the Interpreter.
+    private void compileFor(Parser.Stmt.For forStmt) {
+        if (forStmt.parallel) throw new Unsupported("Parallel loop.");
+        compileInteger(forStmt.from);
+        emitLocal(LSTORE, forStmt.slot, -2);
+        compileInteger(forStmt.to);
+        emitLocal(LSTORE, forStmt.end, -2);
+        int loopStart = length;
+        frames.add(loopStart);
+        emitLocal(LLOAD, forStmt.slot, 2);
+        emitLocal(LLOAD, forStmt.end, 2);
+        emit(LCMP, -3);
+        int exitJump = emitJump(IFGT, -1);
+        compile(forStmt.body);
+        emit(ALOAD_3, 1);
+        emit(INVOKEVIRTUAL, -1);
+        writeShort(pool.methodRef(BUDGET, "backEdge", "()V"));
+        emitLocal(LLOAD, forStmt.slot, 2);
+        emit(LCONST_1, 2);
+        emitInvoke("java/lang/Math", "addExact", "(JJ)J", -2);
+        emitLocal(LSTORE, forStmt.slot, -2);
+        int backJump = emitJump(GOTO, 0);
+        patch(backJump, loopStart);
+        patch(exitJump);
+    }
+
+    // Writes the reduction's variables back to the frames, lets the
+    // LoopReduction update them there and reloads the results; the loop runs
+    // instead when it returns false
+    private void compileReduction(Parser.Stmt.Reduction reduction) {
+        int index = reductions.size();
+        reductions.add(reduction.reduction);
+        for (int slot : reduction.reduction.slots()) {
+            emit(isInteger(slot) ? ALOAD_1 : ALOAD_0, 1);
+            emit(SIPUSH, 1);
+            writeShort(slot);
+            emitLocal(isInteger(slot) ? LLOAD : DLOAD, slot, 2);
+            emit(isInteger(slot) ? LASTORE : DASTORE, -4);
+        }
+        emit(GETSTATIC, 1);
+        writeShort(pool.fieldRef(CLASS_NAME, REDUCTIONS, REDUCTIONS_TYPE));
+        emit(SIPUSH, 1);
+        writeShort(index);
+        emit(AALOAD, -1);
+        emit(ALOAD_0, 1);
+        emit(ALOAD_1, 1);
+        emit(ALOAD_3, 1);
+        emit(INVOKEVIRTUAL, -3);
+        writeShort(pool.methodRef("LoopReduction", "run", "([D[JL" + BUDGET + ";)Z"));
+        int loopJump = emitJump(IFEQ, -1);
+        for (int slot : reduction.reduction.writtenSlots()) {
+            loadFromFrame(slot);
+        }
+        int endJump = emitJump(GOTO, 0);
+        patch(loopJump);
+        compile(reduction.loop);
+        patch(endJump);
+    }
+
+    // Copies a slot from its frame into its local
+    private void loadFromFrame(int slot) {
+        emit(isInteger(slot) ? ALOAD_1 : ALOAD_0, 1);
+        emit(SIPUSH, 1);
+        writeShort(slot);
+        emit(isInteger(slot) ? LALOAD : DALOAD, 0);
+        emitLocal(isInteger(slot) ? LSTORE : DSTORE, slot, -2);
+    }
+
+    private boolean isInteger(int slot) {
+        return slotTypes[slot] == Parser.Type.INTEGER;
+    }
+
+    // Leaves a long or a double on the operand stack, whichever the slot holds
+    private void compileTyped(Parser.Expr expr, int slot) {
+        if (isInteger(slot)) {
+            compileInteger(expr);
+        } else {
+            compileNumber(expr);
+        }
+    }
+
+    // Leaves a long on the operand stack; expr must be an INTEGER expression
+    private void compileInteger(Parser.Expr expr) {
+        if (expr instanceof Parser.Expr.Literal) {
+            long value = (long) ((Parser.Expr.Literal) expr).value;
+            if (value == 0) {
+                emit(LCONST_0, 2);
+            } else if (value == 1) {
+                emit(LCONST_1, 2);
+            } else {
+                emit(LDC2_W, 2);
+                writeShort(pool.longConstant(value));
+            }
+        } else if (expr instanceof Parser.Expr.Variable) {
+            emitLocal(LLOAD, ((Parser.Expr.Variable) expr).slot, 2);
+        } else if (!(expr instanceof Parser.Expr.Binary)) {
+            throw new Unsupported("Array operation.");
+        } else {
+            Parser.Expr.Binary binary = (Parser.Expr.Binary) expr;
+            if (binary.operator.type == TokenType.ASSIGN) {
+                compileStore(binary, true);
+                return;
+            }
+            compileInteger(binary.left);
+            compileInteger(binary.right);
+            switch (binary.operator.type) {
+                case PLUS -> emitInvoke("java/lang/Math", "addExact", "(JJ)J", -2);
+                case MINUS -> emitInvoke("java/lang/Math", "subtractExact", "(JJ)J", -2);
+                case MULTIPLY -> emitInvoke("java/lang/Math", "multiplyExact", "(JJ)J", -2);
+                case DIVIDE -> emitInvoke("Interpreter", "divide", "(JJ)J", -2);
+                case MOD -> emitInvoke("Interpreter", "modulo", "(JJ)J", -2);
+                default -> throw new Unsupported("Comparison used as a number.");
+            }
+        }
+    }
+
+    // Leaves a double on the operand stack
+    private void compileNumber(Parser.Expr expr) {
+        if (expr.isInteger()) {
+            compileInteger(expr);
+            emit(L2D, 0);
+        } else if (expr instanceof Parser.Expr.Literal && expr.isNumeric()) {
+            double value = (double) ((Parser.Expr.Literal) expr).value;
+            if (Double.doubleToRawLongBits(value) == 0L) {
+                emit(DCONST_0, 2);
+            } else if (value == 1.0) {
+                emit(DCONST_1, 2);
+            } else {
+                emit(LDC2_W, 2);
+                writeShort(pool.doubleConstant(value));
+            }
+        } else if (expr instanceof Parser.Expr.Variable && expr.isNumeric()) {
+            emitLocal(DLOAD, ((Parser.Expr.Variable) expr).slot, 2);
+        } else if (expr instanceof Parser.Expr.Binary) {
+            Parser.Expr.Binary binary = (Parser.Expr.Binary) expr;
+            switch (binary.operator.type) {
+                case PLUS -> compileArithmetic(binary, DADD);
+                case MINUS -> compileArithmetic(binary, DSUB);
+                case MULTIPLY -> compileArithmetic(binary, DMUL);
+                case DIVIDE -> {
+                    compileNumber(binary.left);
+                    compileNumber(binary.right);
+                    emitInvoke(RUNTIME, "divide", "(DD)D", -2);
+                }
+                case MOD -> {
+                    compileNumber(binary.left);
+                    compileNumber(binary.right);
+                    emitInvoke(RUNTIME, "modulo", "(DD)D", -2);
+                }
+                case ASSIGN -> compileStore(binary, true);
+                default -> throw new Unsupported("Comparison used as a number.");
+            }
+        } else {
+            throw new Unsupported("Non-numeric operand.");
+        }
+    }
+
+    // Leaves an Object on the operand stack
+    private void compileValue(Parser.Expr expr) {
+        if (expr.isInteger()) {
+            compileInteger(expr);
+            emitInvoke("java/lang/Long", "valueOf", "(J)Ljava/lang/Long;", -1);
+            return;
+        }
+        if (expr.isNumeric()) {
+            compileNumber(expr);
+            emitInvoke("java/lang/Double", "valueOf", "(D)Ljava/lang/Double;", -1);
+            return;
+        }
+        if (expr instanceof Parser.Expr.Literal && ((Parser.Expr.Literal) expr).value instanceof Boolean) {
+            // A comparison the Optimizer folded
+            emit((Boolean) ((Parser.Expr.Literal) expr).value ? ICONST_1 : ICONST_0, 1);
+            emitInvoke("java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;", 0);
+            return;
+        }
+        if (expr instanceof Parser.Expr.Binary) {
+            Parser.Expr.Binary binary = (Parser.Expr.Binary) expr;
+            String helper = switch (binary.operator.type) {
+                case LESS -> "less";
+                case GREATER -> "greater";
+                case EQUALS -> "equal";
+                default -> null;
+            };
+            if (helper != null && binary.left.isInteger() && binary.right.isInteger()) {
+                compileInteger(binary.left);
+                compileInteger(binary.right);
+                emitInvoke(RUNTIME, helper, "(JJ)Ljava/lang/Object;", -3);
+                return;
+            }
+            if (helper != null) {
+                compileNumber(binary.left);
+                compileNumber(binary.right);
+                emitInvoke(RUNTIME, helper, "(DD)Ljava/lang/Object;", -3);
+                return;
+            }
+        }
+        throw new Unsupported("Non-numeric value.");
+    }
+
+    // Emits a jump taken when the condition is false; returns -1 when the
+    // condition is always true and there is nothing to patch
+    private int compileCondition(Parser.Expr condition) {
+        if (condition.isNumeric()) {
+            // Numbers are always truthy, but the expression may assign
+            compileNumber(condition);
+            emit(POP2, -2);
+            return -1;
+        }
+        if (condition instanceof Parser.Expr.Literal) {
+            // A folded comparison: either never jump or always jump
+            if (Interpreter.isTruthy(((Parser.Expr.Literal) condition).value)) return -1;
+            return emitJump(GOTO, 0);
+        }
+        if (condition instanceof Parser.Expr.Binary) {
+            Parser.Expr.Binary binary = (Parser.Expr.Binary) condition;
+            if (binary.left.isInteger() && binary.right.isInteger()) {
+                int jump = switch (binary.operator.type) {
+                    case LESS -> IFGE;
+                    case GREATER -> IFLE;
+                    case EQUALS -> IFNE;
+                    default -> -1;
+                };
+                if (jump != -1) {
+                    compileInteger(binary.left);
+                    compileInteger(binary.right);
+                    emit(LCMP, -3);
+                    return emitJump(jump, -1);
+                }
+            }
+            switch (binary.operator.type) {
+                case LESS -> {
+                    // dcmpg yields 1 for NaN, so NaN operands leave the loop
+                    compileNumber(binary.left);
+                    compileNumber(binary.right);
+                    emit(DCMPG, -3);
+                    return emitJump(IFGE, -1);
+                }
+                case GREATER -> {
+                    compileNumber(binary.left);
+                    compileNumber(binary.right);
+                    emit(DCMPL, -3);
+                    return emitJump(IFLE, -1);
+                }
+                case EQUALS -> {
+                    compileNumber(binary.left);
+                    emitInvoke("java/lang/Double", "doubleToLongBits", "(D)J", 0);
+                    compileNumber(binary.right);
+                    emitInvoke("java/lang/Double", "doubleToLongBits", "(D)J", 0);
+                    emit(LCMP, -3);
+                    return emitJump(IFNE, -1);
+                }
+            }
+        }
+        throw new Unsupported("Non-numeric condition.");
+    }
+
+    private void compileArithmetic(Parser.Expr.Binary binary, int op) {
+        compileNumber(binary.left);
+        compileNumber(binary.right);
+        emit(op, -2);
+    }
+
+    private void compileStore(Parser.Expr.Binary assignment, boolean keepValue) {
+        if (!(assignment.left instanceof Parser.Expr.Variable) || !assignment.left.isNumeric()) {
+            throw new Unsupported("Non-numeric assignment.");
+        }
+        int slot = ((Parser.Expr.Variable) assignment.left).slot;
+        compileTyped(assignment.right, slot);
+        if (keepValue) emit(DUP2, 2);
+        emitLocal(isInteger(slot) ? LSTORE : DSTORE, slot, -2);
+    }
+
+    private boolean isAssignment(Parser.Expr expr) {
+        return expr instanceof Parser.Expr.Binary
+                && ((Parser.Expr.Binary) expr).operator.type == TokenType.ASSIGN;
+    }
+
+    private void emit(int op, int stackEffect) {
+        writeByte(op);
+        depth += stackEffect;
+        maxStack = Math.max(maxStack, depth);
+    }
+
+    private void emitLocal(int op, int slot, int stackEffect) {
+        // Each long or double takes two locals
+        int local = FIRST_VARIABLE_LOCAL + slot * 2;
+        if (local > 255) {
+            writeByte(WIDE);
+            writeByte(op);
+            writeShort(local);
+        } else {
+            writeByte(op);
+            writeByte(local);
+        }
+        depth += stackEffect;
+        maxStack = Math.max(maxStack, depth);
+    }
+
+    private void emitInvoke(String owner, String name, String descriptor, int stackEffect) {
+        emit(INVOKESTATIC, stackEffect);
+        writeShort(pool.methodRef(owner, name, descriptor));
+    }
+
+    // argumentWords counts the receiver and the arguments, doubles as two
+    private void emitInvokeInterface(String owner, String name, String descriptor, int argumentWords) {
+        emit(INVOKEINTERFACE, -argumentWords);
+        writeShort(pool.interfaceMethodRef(owner, name, descriptor));
+        writeByte(argumentWords);
+        writeByte(0);
+    }
+
+    // Emits a jump with a placeholder offset and returns the jump's position
+    private int emitJump(int op, int stackEffect) {
+        int position = length;
+        emit(op, stackEffect);
+        writeShort(0);
+        if (op == GOTO) frames.add(length);
+        return position;
+    }
+
+    private void patch(int jump) {
+        if (jump < 0) return;
+        patch(jump, length);
+    }
+
+    private void patch(int jump, int target) {
+        frames.add(target);
+        int offset = target - jump;
+        code[jump + 1] = (byte) (offset >> 8);
+        code[jump + 2] = (byte) offset;
+    }
+
+    private void writeByte(int value) {
+        if (length == code.length) {
+            code = Arrays.copyOf(code, length * 2);
+        }
+        code[length++] = (byte) value;
+    }
+
+    private void writeShort(int value) {
+        writeByte(value >> 8);
+        writeByte(value);
+    }
+
+    private byte[] writeClass(int slotCount) {
+        int thisClass = pool.classRef(CLASS_NAME);
+        int superClass = pool.classRef("java/lang/Object");
+        int runName = pool.utf8("run");
+        int runDescriptor = pool.utf8("([D[JL" + SINK + ";L" + BUDGET + ";)V");
+        int[] argumentClasses = {pool.classRef("[D"), pool.classRef("[J"), pool.classRef(SINK), pool.classRef(BUDGET)};
+        int codeName = pool.utf8("Code");
+        int stackMapName = pool.utf8("StackMapTable");
+        int reductionsName = pool.utf8(REDUCTIONS);
+        int reductionsType = pool.utf8(REDUCTIONS_TYPE);
+        byte[] stackMap = stackMapTable(slotCount, argumentClasses);
+        byte[] body = Arrays.copyOf(code, length);
+
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_VERSION);
+            pool.write(out);
+            out.writeShort(0x0031); // ACC_PUBLIC | ACC_FINAL | ACC_SUPER
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            if (reductions.isEmpty()) {
+                out.writeShort(0); // fields
+            } else {
+                out.writeShort(1);
+                out.writeShort(0x000A); // ACC_PRIVATE | ACC_STATIC
+                out.writeShort(reductionsName);
+                out.writeShort(reductionsType);
+                out.writeShort(0);
+            }
+            out.writeShort(1); // methods
+            out.writeShort(0x0009); // ACC_PUBLIC | ACC_STATIC
+            out.writeShort(runName);
+            out.writeShort(runDescriptor);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            int stackMapLength = frames.isEmpty() ? 0 : 6 + stackMap.length;
+            out.writeInt(12 + body.length + stackMapLength);
+            out.writeShort(maxStack);
+            out.writeShort(FIRST_VARIABLE_LOCAL + slotCount * 2);
+            out.writeInt(body.length);
+            out.write(body);
+            out.writeShort(0); // exception table
+            if (frames.isEmpty()) {
+                out.writeShort(0);
+            } else {
+                out.writeShort(1);
+                out.writeShort(stackMapName);
+                out.writeInt(stackMap.length);
+                out.write(stackMap);
+            }
+            out.writeShort(0); // class attributes
+            return buffer.toByteArray();
+        } catch (IOException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    // The first frame spells out every local; all later frames are the
+    // same, because the operand stack is empty at every jump target
+    private byte[] stackMapTable(int slotCount, int[] argumentClasses) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        try {
+            out.writeShort(frames.size());
+            int previous = -1;
+            for (int offset : frames) {
+                int delta = offset - previous - 1;
+                if (previous < 0) {
+                    out.writeByte(255); // full_frame
+                    out.writeShort(delta);
+                    out.writeShort(argumentClasses.length + slotCount);
+                    for (int argumentClass : argumentClasses) {
+                        out.writeByte(7); // Object_variable_info
+                        out.writeShort(argumentClass);
+                    }
+                    for (int slot = 0; slot < slotCount; slot++) {
+                        // Long_variable_info or Double_variable_info
+                        out.writeByte(isInteger(slot) ? 4 : 3);
+                    }
+                    out.writeShort(0);
+                } else if (delta < 64) {
+                    out.writeByte(delta); // same_frame
+                } else {
+                    out.writeByte(251); // same_frame_extended
+                    out.writeShort(delta);
+                }
+                previous = offset;
+            }
+        } catch (IOException error) {
+            throw new IllegalStateException(error);
+        }
+        return buffer.toByteArray();
+    }
+
+    // Runtime helpers called from generated code; they keep the generated
+    // code free of branches inside expressions and share the Interpreter's
+    // error messages
+
+    static double divide(double left, double right) {
+        if (right == 0) throw new RuntimeException("Division by zero.");
+        return left / right;
+    }
+
+    static double modulo(double left, double right) {
+        if (right == 0) throw new RuntimeException("Modulo by zero.");
+        return left % right;
+    }
+
+    static Object less(double left, double right) {
+        return left < right;
+    }
+
+    static Object greater(double left, double right) {
+        return left > right;
+    }
+
+    static Object equal(double left, double right) {
+        return Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+    }
+
+    static Object less(long left, long right) {
+        return left < right;
+    }
+
+    static Object greater(long left, long right) {
+        return left > right;
+    }
+
+    static Object equal(long left, long right) {
+        return left == right;
+    }
+
+    // Constant pool of the generated class; entries are deduplicated by key
+    private static class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String value) {
+            return entry("U" + value, 1, () -> {
+                out.writeByte(1);
+                out.writeUTF(value);
+            });
+        }
+
+        int classRef(String name) {
+            int nameIndex = utf8(name);
+            return entry("C" + name, 1, () -> {
+                out.writeByte(7);
+                out.writeShort(nameIndex);
+            });
+        }
+
+        int fieldRef(String owner, String name, String descriptor) {
+            return memberRef(9, owner, name, descriptor);
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            return memberRef(10, owner, name, descriptor);
+        }
+
+        int interfaceMethodRef(String owner, String name, String descriptor) {
+            return memberRef(11, owner, name, descriptor);
+        }
+
+        private int memberRef(int tag, String owner, String name, String descriptor) {
+            int ownerIndex = classRef(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = entry("N" + name + descriptor, 1, () -> {
+                out.writeByte(12);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            return entry("M" + tag + owner + "." + name + descriptor, 1, () -> {
+                out.writeByte(tag);
+                out.writeShort(ownerIndex);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        int doubleConstant(double value) {
+            // Doubles take two constant pool entries
+            return entry("D" + Double.doubleToRawLongBits(value), 2, () -> {
+                out.writeByte(6);
+                out.writeDouble(value);
+            });
+        }
+
+        int longConstant(long value) {
+            // Longs take two constant pool entries too
+            return entry("J" + value, 2, () -> {
+                out.writeByte(5);
+                out.writeLong(value);
+            });
+        }
+
+        void write(DataOutputStream target) throws IOException {
+            target.writeShort(count);
+            target.write(bytes.toByteArray());
+        }
+
+        private interface EntryWriter {
+            void write() throws IOException;
+        }
+
+        private int entry(String key, int size, EntryWriter writer) {
+            Integer index = entries.get(key);
+            if (index != null) return index;
+            try {
+                writer.write();
+            } catch (IOException error) {
+                throw new IllegalStateException(error);
+            }
+            index = count;
+            count += size;
+            entries.put(key, index);
+            return index;
+        }
+    }
+}
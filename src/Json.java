@@ -0,0 +1,167 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Just enough JSON for batch mode: parse() reads one value into Maps,
+// Lists, Strings, Doubles, Booleans and nulls, and quote() writes a string
+// literal. Malformed input is reported with an IllegalArgumentException.
+final class Json {
+    private final String text;
+    private int current = 0;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    static Object parse(String text) {
+        Json json = new Json(text);
+        Object value = json.value();
+        json.skipWhitespace();
+        if (json.current < text.length()) throw json.error("Unexpected text after the value");
+        return value;
+    }
+
+    static String quote(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                default -> {
+                    if (c < 0x20) builder.append(String.format("\\u%04x", (int) c));
+                    else builder.append(c);
+                }
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private Object value() {
+        skipWhitespace();
+        if (current >= text.length()) throw error("Unexpected end of input");
+        char c = text.charAt(current);
+        return switch (c) {
+            case '{' -> object();
+            case '[' -> array();
+            case '"' -> string();
+            case 't' -> keyword("true", true);
+            case 'f' -> keyword("false", false);
+            case 'n' -> keyword("null", null);
+            default -> {
+                if (c == '-' || (c >= '0' && c <= '9')) yield number();
+                throw error("Unexpected character '" + c + "'");
+            }
+        };
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> members = new LinkedHashMap<>();
+        current++;
+        skipWhitespace();
+        if (match('}')) return members;
+        do {
+            skipWhitespace();
+            if (current >= text.length() || text.charAt(current) != '"') throw error("Expected a member name");
+            String name = string();
+            skipWhitespace();
+            expect(':');
+            members.put(name, value());
+            skipWhitespace();
+        } while (match(','));
+        expect('}');
+        return members;
+    }
+
+    private List<Object> array() {
+        List<Object> elements = new ArrayList<>();
+        current++;
+        skipWhitespace();
+        if (match(']')) return elements;
+        do {
+            elements.add(value());
+            skipWhitespace();
+        } while (match(','));
+        expect(']');
+        return elements;
+    }
+
+    private String string() {
+        StringBuilder builder = new StringBuilder();
+        current++;
+        while (true) {
+            if (current >= text.length()) throw error("Unterminated string");
+            char c = text.charAt(current++);
+            if (c == '"') return builder.toString();
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            if (current >= text.length()) throw error("Unterminated string");
+            char escape = text.charAt(current++);
+            switch (escape) {
+                case '"', '\\', '/' -> builder.append(escape);
+                case 'b' -> builder.append('\b');
+                case 'f' -> builder.append('\f');
+                case 'n' -> builder.append('\n');
+                case 'r' -> builder.append('\r');
+                case 't' -> builder.append('\t');
+                case 'u' -> {
+                    if (current + 4 > text.length()) throw error("Invalid unicode escape");
+                    try {
+                        builder.append((char) Integer.parseInt(text.substring(current, current + 4), 16));
+                    } catch (NumberFormatException error) {
+                        throw error("Invalid unicode escape");
+                    }
+                    current += 4;
+                }
+                default -> throw error("Invalid escape '\\" + escape + "'");
+            }
+        }
+    }
+
+    private Double number() {
+        int start = current;
+        if (text.charAt(current) == '-') current++;
+        while (current < text.length() && "0123456789.eE+-".indexOf(text.charAt(current)) >= 0) {
+            current++;
+        }
+        try {
+            return Double.parseDouble(text.substring(start, current));
+        } catch (NumberFormatException error) {
+            throw error("Invalid number");
+        }
+    }
+
+    private Object keyword(String word, Object value) {
+        if (!text.startsWith(word, current)) throw error("Unexpected character '" + text.charAt(current) + "'");
+        current += word.length();
+        return value;
+    }
+
+    private boolean match(char expected) {
+        if (current < text.length() && text.charAt(current) == expected) {
+            current++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char expected) {
+        if (!match(expected)) throw error("Expected '" + expected + "'");
+    }
+
+    private void skipWhitespace() {
+        while (current < text.length() && " \t\r\n".indexOf(text.charAt(current)) >= 0) {
+            current++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at column " + (current + 1) + ".");
+    }
+}
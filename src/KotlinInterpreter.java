@@ -1,610 +1,194 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
 import java.util.Scanner;
 
-// Token types for lexical analysis
-enum TokenType {
-    NUMBER, IDENTIFIER, PLUS, MINUS, MULTIPLY, DIVIDE, MOD,
-    ASSIGN, EQUALS, LESS, GREATER, LPAREN, RPAREN,
-    IF, ELSE, WHILE, VAR, PRINT, EOF,
-    LBRACE, RBRACE, SEMICOLON
-}
-
-class Token {
-    final TokenType type;
-    final String lexeme;
-    final Object literal;
-
-    Token(TokenType type, String lexeme, Object literal) {
-        this.type = type;
-        this.lexeme = lexeme;
-        this.literal = literal;
-    }
-}
-
-// Lexer implementation
-class Lexer {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
-    private int start = 0;
-    private int current = 0;
-    private final Map<String, TokenType> keywords;
-
-    Lexer(String source) {
-        this.source = source;
-        keywords = new HashMap<>();
-        keywords.put("if", TokenType.IF);
-        keywords.put("else", TokenType.ELSE);
-        keywords.put("while", TokenType.WHILE);
-        keywords.put("var", TokenType.VAR);
-        keywords.put("print", TokenType.PRINT);
-    }
-
-    List<Token> scanTokens() {
-        while (!isAtEnd()) {
-            start = current;
-            scanToken();
-        }
-        tokens.add(new Token(TokenType.EOF, "", null));
-        return tokens;
-    }
+public class KotlinInterpreter {
+    private static final Scanner scanner = new Scanner(System.in);
 
-    private void scanToken() {
-        char c = advance();
-        switch (c) {
-            case '(' -> addToken(TokenType.LPAREN);
-            case ')' -> addToken(TokenType.RPAREN);
-            case '{' -> addToken(TokenType.LBRACE);
-            case '}' -> addToken(TokenType.RBRACE);
-            case '+' -> addToken(TokenType.PLUS);
-            case '-' -> addToken(TokenType.MINUS);
-            case '*' -> addToken(TokenType.MULTIPLY);
-            case '/' -> addToken(TokenType.DIVIDE);
-            case '%' -> addToken(TokenType.MOD);
-            case '=' -> addToken(match('=') ? TokenType.EQUALS : TokenType.ASSIGN);
-            case '<' -> addToken(TokenType.LESS);
-            case '>' -> addToken(TokenType.GREATER);
-            case ';' -> addToken(TokenType.SEMICOLON);
-            case ' ', '\r', '\t', '\n' -> {}
-            default -> {
-                if (isDigit(c)) {
-                    number();
-                } else if (isAlpha(c)) {
-                    identifier();
-                } else {
-                    throw new RuntimeException("Unexpected character: " + c);
-                }
+    // The menu algorithms are prepared programs: each declares its inputs with
+    // "param", so it is compiled once and then run with the numbers entered.
+    // They are package-private so the benchmarks can run them too.
+    static final String SUM_OF_N = """
+            param n;
+            var sum = 0;
+            while (n > 0) {
+                sum = sum + n;
+                n = n - 1;
             }
-        }
-    }
-
-    private void identifier() {
-        while (isAlphaNumeric(peek())) advance();
-
-        String text = source.substring(start, current);
-        TokenType type = keywords.getOrDefault(text, TokenType.IDENTIFIER);
-        addToken(type);
-    }
-
-    private void number() {
-        while (isDigit(peek())) advance();
-        addToken(TokenType.NUMBER, Double.parseDouble(source.substring(start, current)));
-    }
-
-    private boolean isDigit(char c) {
-        return c >= '0' && c <= '9';
-    }
-
-    private boolean isAlpha(char c) {
-        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
-    }
-
-    private boolean isAlphaNumeric(char c) {
-        return isAlpha(c) || isDigit(c);
-    }
-
-    private char advance() {
-        return source.charAt(current++);
-    }
-
-    private boolean match(char expected) {
-        if (isAtEnd() || source.charAt(current) != expected) return false;
-        current++;
-        return true;
-    }
-
-    private char peek() {
-        if (isAtEnd()) return '\0';
-        return source.charAt(current);
-    }
-
-    private boolean isAtEnd() {
-        return current >= source.length();
-    }
-
-    private void addToken(TokenType type) {
-        addToken(type, null);
-    }
-
-    private void addToken(TokenType type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal));
-    }
-}
-
-// Parser implementation
-class Parser {
-    public static class Expr {
-        static class Binary extends Expr {
-            final Expr left;
-            final Token operator;
-            final Expr right;
-
-            Binary(Expr left, Token operator, Expr right) {
-                this.left = left;
-                this.operator = operator;
-                this.right = right;
+            print sum;
+            """;
+
+    static final String FACTORIAL = """
+            param n;
+            var result = 1;
+            var i = 1;
+            while (i < n + 1) {
+                result = result * i;
+                i = i + 1;
             }
-        }
-
-        static class Literal extends Expr {
-            final Object value;
-
-            Literal(Object value) {
-                this.value = value;
+            print result;
+            """;
+
+    static final String GCD = """
+            param a;
+            param b;
+            while (b > 0) {
+                var temp = b;
+                b = a % b;
+                a = temp;
             }
-        }
-
-        static class Variable extends Expr {
-            final Token name;
-
-            Variable(Token name) {
-                this.name = name;
+            print a;
+            """;
+
+    static final String REVERSE_NUMBER = """
+            param num;
+            var reversed = 0;
+            var temp = num;
+            while (temp > 0) {
+                var digit = temp % 10;
+                reversed = reversed * 10 + digit;
+                temp = temp / 10;
             }
-        }
-    }
-
-    static class Stmt {
-        static class Expression extends Stmt {
-            final Expr expression;
-
-            Expression(Expr expression) {
-                this.expression = expression;
+            print reversed;
+            """;
+
+    static final String IS_PRIME = """
+            param n;
+            var isPrime = 1;
+            if (n < 2) {
+                isPrime = 0;
             }
-        }
-
-        static class Var extends Stmt {
-            final Token name;
-            final Expr initializer;
-
-            Var(Token name, Expr initializer) {
-                this.name = name;
-                this.initializer = initializer;
+            var i = 2;
+            while (i * i < n + 1) {
+                if ((n % i) == 0) {
+                    isPrime = 0;
+                }
+                i = i + 1;
             }
-        }
-
-        static class Print extends Stmt {
-            final Expr expression;
-
-            Print(Expr expression) {
-                this.expression = expression;
+            print isPrime;
+            """;
+
+    static final String IS_PALINDROME = """
+            param num;
+            var original = num;
+            var reversed = 0;
+            var temp = num;
+            while (temp > 0) {
+                var digit = temp % 10;
+                reversed = reversed * 10 + digit;
+                temp = temp / 10;
             }
-        }
-
-        static class If extends Stmt {
-            final Expr condition;
-            final Stmt thenBranch;
-            final Stmt elseBranch;
-
-            If(Expr condition, Stmt thenBranch, Stmt elseBranch) {
-                this.condition = condition;
-                this.thenBranch = thenBranch;
-                this.elseBranch = elseBranch;
-            }
-        }
-
-        static class While extends Stmt {
-            final Expr condition;
-            final Stmt body;
-
-            While(Expr condition, Stmt body) {
-                this.condition = condition;
-                this.body = body;
+            if (original == reversed) {
+                print 1;
+            } else {
+                print 0;
             }
-        }
-
-        static class Block extends Stmt {
-            final List<Stmt> statements;
-
-            Block(List<Stmt> statements) {
-                this.statements = statements;
+            """;
+
+    static final String LARGEST_DIGIT = """
+            param num;
+            var largest = 0;
+            var temp = num;
+            while (temp > 0) {
+                var digit = temp % 10;
+                if (digit > largest) {
+                    largest = digit;
+                }
+                temp = temp / 10;
             }
-        }
-    }
-
-    private final List<Token> tokens;
-    private int current = 0;
-
-    Parser(List<Token> tokens) {
-        this.tokens = tokens;
-    }
-
-    List<Stmt> parse() {
-        List<Stmt> statements = new ArrayList<>();
-        while (!isAtEnd()) {
-            statements.add(declaration());
-        }
-        return statements;
-    }
-
-    private Stmt declaration() {
-        try {
-            if (match(TokenType.VAR)) return varDeclaration();
-            return statement();
-        } catch (RuntimeException error) {
-            synchronize();
-            return null;
-        }
-    }
-
-    private Stmt varDeclaration() {
-        Token name = consume(TokenType.IDENTIFIER, "Expect variable name.");
-        Expr initializer = null;
-        if (match(TokenType.ASSIGN)) {
-            initializer = expression();
-        }
-        consume(TokenType.SEMICOLON, "Expect ';' after variable declaration.");
-        return new Stmt.Var(name, initializer);
-    }
-
-    private Stmt statement() {
-        if (match(TokenType.IF)) return ifStatement();
-        if (match(TokenType.PRINT)) return printStatement();
-        if (match(TokenType.WHILE)) return whileStatement();
-        if (match(TokenType.LBRACE)) return new Stmt.Block(block());
-        return expressionStatement();
-    }
-
-    private Stmt ifStatement() {
-        consume(TokenType.LPAREN, "Expect '(' after 'if'.");
-        Expr condition = expression();
-        consume(TokenType.RPAREN, "Expect ')' after if condition.");
-
-        Stmt thenBranch = statement();
-        Stmt elseBranch = null;
-        if (match(TokenType.ELSE)) {
-            elseBranch = statement();
-        }
-
-        return new Stmt.If(condition, thenBranch, elseBranch);
-    }
-
-    private Stmt whileStatement() {
-        consume(TokenType.LPAREN, "Expect '(' after 'while'.");
-        Expr condition = expression();
-        consume(TokenType.RPAREN, "Expect ')' after condition.");
-        Stmt body = statement();
-
-        return new Stmt.While(condition, body);
-    }
-
-    private List<Stmt> block() {
-        List<Stmt> statements = new ArrayList<>();
-
-        while (!check(TokenType.RBRACE) && !isAtEnd()) {
-            statements.add(declaration());
-        }
-
-        consume(TokenType.RBRACE, "Expect '}' after block.");
-        return statements;
-    }
-
-    private Stmt printStatement() {
-        Expr value = expression();
-        consume(TokenType.SEMICOLON, "Expect ';' after value.");
-        return new Stmt.Print(value);
-    }
-
-    private Stmt expressionStatement() {
-        Expr expr = expression();
-        consume(TokenType.SEMICOLON, "Expect ';' after expression.");
-        return new Stmt.Expression(expr);
-    }
-
-    private Expr expression() {
-        return assignment();
-    }
-
-    private Expr assignment() {
-        Expr expr = equality();
-
-        if (match(TokenType.ASSIGN)) {
-            Token equals = previous();
-            Expr value = assignment();
-
-            if (expr instanceof Expr.Variable) {
-                Token name = ((Expr.Variable)expr).name;
-                return new Expr.Binary(new Expr.Variable(name), equals, value);
+            print largest;
+            """;
+
+    static final String SUM_OF_DIGITS = """
+            param num;
+            var sum = 0;
+            var temp = num;
+            while (temp > 0) {
+                var digit = temp % 10;
+                sum = sum + digit;
+                temp = temp / 10;
             }
-
-            throw new RuntimeException("Invalid assignment target.");
-        }
-
-        return expr;
-    }
-
-    private Expr equality() {
-        Expr expr = comparison();
-
-        while (match(TokenType.EQUALS)) {
-            Token operator = previous();
-            Expr right = comparison();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-
-        return expr;
-    }
-
-    private Expr comparison() {
-        Expr expr = term();
-
-        while (match(TokenType.LESS, TokenType.GREATER)) {
-            Token operator = previous();
-            Expr right = term();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-
-        return expr;
-    }
-
-    private Expr term() {
-        Expr expr = factor();
-
-        while (match(TokenType.PLUS, TokenType.MINUS)) {
-            Token operator = previous();
-            Expr right = factor();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-
-        return expr;
-    }
-
-    private Expr factor() {
-        Expr expr = primary();
-
-        while (match(TokenType.MULTIPLY, TokenType.DIVIDE, TokenType.MOD)) {
-            Token operator = previous();
-            Expr right = primary();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-
-        return expr;
-    }
-
-    private Expr primary() {
-        if (match(TokenType.NUMBER)) {
-            return new Expr.Literal(previous().literal);
-        }
-
-        if (match(TokenType.IDENTIFIER)) {
-            return new Expr.Variable(previous());
-        }
-
-        if (match(TokenType.LPAREN)) {
-            Expr expr = expression();
-            consume(TokenType.RPAREN, "Expect ')' after expression.");
-            return expr;
-        }
-
-        throw new RuntimeException("Expect expression.");
-    }
-
-    private boolean match(TokenType... types) {
-        for (TokenType type : types) {
-            if (check(type)) {
-                advance();
-                return true;
+            print sum;
+            """;
+
+    static final String MULTIPLICATION_TABLE = """
+            param n;
+            var i = 1;
+            while (i < 11) {
+                var result = n * i;
+                print result;
+                i = i + 1;
             }
-        }
-        return false;
-    }
-
-    private Token consume(TokenType type, String message) {
-        if (check(type)) return advance();
-        throw new RuntimeException(message);
-    }
-
-    private boolean check(TokenType type) {
-        if (isAtEnd()) return false;
-        return peek().type == type;
-    }
-
-    private Token advance() {
-        if (!isAtEnd()) current++;
-        return previous();
-    }
-
-    private boolean isAtEnd() {
-        return peek().type == TokenType.EOF;
-    }
-
-    private Token peek() {
-        return tokens.get(current);
-    }
-
-    private Token previous() {
-        return tokens.get(current - 1);
-    }
-
-    private void synchronize() {
-        advance();
-
-        while (!isAtEnd()) {
-            if (previous().type == TokenType.SEMICOLON) return;
-
-            switch (peek().type) {
-                case IF, WHILE, VAR, PRINT -> {
-                    return;
+            """;
+
+    static final String FIBONACCI = """
+            param n;
+            if (n < 2) {
+                print n;
+            } else {
+                var prev = 0;
+                var current = 1;
+                var i = 2;
+                while (i < n + 1) {
+                    var next = prev + current;
+                    prev = current;
+                    current = next;
+                    i = i + 1;
                 }
+                print current;
             }
+            """;
 
-            advance();
-        }
-    }
-}
-
-// Interpreter implementation
-class Interpreter {
-    private final Map<String, Object> environment = new HashMap<>();
-
-    void interpret(List<Parser.Stmt> statements) {
-        try {
-            for (Parser.Stmt statement : statements) {
-                execute(statement);
-            }
-        } catch (RuntimeException error) {
-            throw new RuntimeException("Runtime error: " + error.getMessage());
-        }
-    }
-
-    private void execute(Parser.Stmt stmt) {
-        if (stmt instanceof Parser.Stmt.Expression) {
-            evaluate(((Parser.Stmt.Expression) stmt).expression);
-        } else if (stmt instanceof Parser.Stmt.Print) {
-            Object value = evaluate(((Parser.Stmt.Print) stmt).expression);
-            System.out.println(stringify(value));
-        } else if (stmt instanceof Parser.Stmt.Var) {
-            Parser.Stmt.Var var = (Parser.Stmt.Var) stmt;
-            Object value = null;
-            if (var.initializer != null) {
-                value = evaluate(var.initializer);
-            }
-            environment.put(var.name.lexeme, value);
-        } else if (stmt instanceof Parser.Stmt.Block) {
-            executeBlock(((Parser.Stmt.Block) stmt).statements);
-        } else if (stmt instanceof Parser.Stmt.If) {
-            Parser.Stmt.If ifStmt = (Parser.Stmt.If) stmt;
-            if (isTruthy(evaluate(ifStmt.condition))) {
-                execute(ifStmt.thenBranch);
-            } else if (ifStmt.elseBranch != null) {
-                execute(ifStmt.elseBranch);
-            }
-        } else if (stmt instanceof Parser.Stmt.While) {
-            Parser.Stmt.While whileStmt = (Parser.Stmt.While) stmt;
-            while (isTruthy(evaluate(whileStmt.condition))) {
-                execute(whileStmt.body);
+    // Usage: KotlinInterpreter [--bytecode | --jit] [--max-iterations=N]
+    //            [--timeout=MILLISECONDS] [--max-output=BYTES] [script [argument ...]]
+    //        KotlinInterpreter --batch [--parallelism=N] [options] directory-or-jsonl [argument ...]
+    // Without a script file, the interactive algorithm menu is shown.
+    public static void main(String[] args) {
+        // null until --bytecode or --jit is given; batch mode then runs tiered
+        ExecutionMode mode = null;
+        ExecutionLimits limits = ExecutionLimits.NONE;
+        boolean batch = false;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        List<String> files = new ArrayList<>();
+        for (String arg : args) {
+            try {
+                if (arg.equals("--bytecode")) mode = ExecutionMode.BYTECODE;
+                else if (arg.equals("--jit")) mode = ExecutionMode.JIT;
+                else if (arg.equals("--batch")) batch = true;
+                else if (arg.startsWith("--parallelism=")) parallelism = Math.toIntExact(optionValue(arg));
+                else if (arg.startsWith("--max-iterations=")) limits = limits.withMaxIterations(optionValue(arg));
+                else if (arg.startsWith("--timeout=")) limits = limits.withTimeout(Duration.ofMillis(optionValue(arg)));
+                else if (arg.startsWith("--max-output=")) limits = limits.withMaxOutputBytes(optionValue(arg));
+                else files.add(arg);
+            } catch (IllegalArgumentException | ArithmeticException error) {
+                System.err.println("Error: Invalid option " + arg);
+                return;
             }
         }
-    }
-
-    private void executeBlock(List<Parser.Stmt> statements) {
-        for (Parser.Stmt statement : statements) {
-            execute(statement);
+        if (parallelism < 1) {
+            System.err.println("Error: Invalid option --parallelism=" + parallelism);
+            return;
         }
-    }
 
-    private Object evaluate(Parser.Expr expr) {
-        if (expr instanceof Parser.Expr.Literal) {
-            return ((Parser.Expr.Literal) expr).value;
-        } else if (expr instanceof Parser.Expr.Binary) {
-            Parser.Expr.Binary binary = (Parser.Expr.Binary) expr;
-            Object left = evaluate(binary.left);
-            Object right = evaluate(binary.right);
-
-            switch (binary.operator.type) {
-                case PLUS -> {
-                    checkNumberOperands(binary.operator, left, right);
-                    return (double) left + (double) right;
-                }
-                case MINUS -> {
-                    checkNumberOperands(binary.operator, left, right);
-                    return (double) left - (double) right;
-                }
-                case MULTIPLY -> {
-                    checkNumberOperands(binary.operator, left, right);
-                    return (double) left * (double) right;
-                }
-                case DIVIDE -> {
-                    checkNumberOperands(binary.operator, left, right);
-                    if ((double) right == 0) throw new RuntimeException("Division by zero.");
-                    return (double) left / (double) right;
-                }
-                case MOD -> {
-                    checkNumberOperands(binary.operator, left, right);
-                    if ((double) right == 0) throw new RuntimeException("Modulo by zero.");
-                    return (double) left % (double) right;
-                }
-                case EQUALS -> {
-                    return isEqual(left, right);
-                }
-                case LESS -> {
-                    checkNumberOperands(binary.operator, left, right);
-                    return (double) left < (double) right;
-                }
-                case GREATER -> {
-                    checkNumberOperands(binary.operator, left, right);
-                    return (double) left > (double) right;
-                }
-                case ASSIGN -> {
-                    if (binary.left instanceof Parser.Expr.Variable) {
-                        String name = ((Parser.Expr.Variable) binary.left).name.lexeme;
-                        environment.put(name, right);
-                        return right;
-                    }
-                    throw new RuntimeException("Invalid assignment target.");
-                }
+        if (batch) {
+            if (files.isEmpty()) {
+                System.err.println("Error: --batch needs a directory or a JSON-lines file.");
+                return;
             }
-        } else if (expr instanceof Parser.Expr.Variable) {
-            return lookupVariable(((Parser.Expr.Variable) expr).name);
+            runBatch(Path.of(files.get(0)), mode, limits, parallelism, arguments(files));
+            return;
         }
-        throw new RuntimeException("Unknown expression type.");
-    }
+        if (mode == null) mode = ExecutionMode.TREE_WALKING;
 
-    private Object lookupVariable(Token name) {
-        if (environment.containsKey(name.lexeme)) {
-            return environment.get(name.lexeme);
+        if (!files.isEmpty()) {
+            runFile(Path.of(files.get(0)), mode, limits, arguments(files));
+            return;
         }
-        throw new RuntimeException("Undefined variable '" + name.lexeme + "'.");
-    }
-
-    private void checkNumberOperands(Token operator, Object left, Object right) {
-        if (left instanceof Double && right instanceof Double) return;
-        throw new RuntimeException("Operands must be numbers.");
-    }
 
-    private boolean isEqual(Object a, Object b) {
-        if (a == null && b == null) return true;
-        if (a == null) return false;
-        return a.equals(b);
-    }
-
-    private boolean isTruthy(Object object) {
-        if (object == null) return false;
-        if (object instanceof Boolean) return (boolean) object;
-        return true;
-    }
-
-    private String stringify(Object object) {
-        if (object == null) return "null";
-        if (object instanceof Double) {
-            String text = object.toString();
-            if (text.endsWith(".0")) {
-                text = text.substring(0, text.length() - 2);
-            }
-            return text;
-        }
-        return object.toString();
-    }
-}
-
-// Main class to run the interpreter
-
-
-
-// All previous code remains the same until the main class
-public class KotlinInterpreter {
-    private static final Scanner scanner = new Scanner(System.in);
-
-    public static void main(String[] args) {
         while (true) {
             System.out.println("\nKotlin Interpreter - Algorithm Menu");
             System.out.println("1. Sum of First N Numbers");
@@ -628,142 +212,23 @@ public class KotlinInterpreter {
             System.out.print("Enter input number: ");
             int input = scanner.nextInt();
 
+            double[] arguments = {input};
             String program = switch (choice) {
-                case 1 -> String.format("""
-                    var n = %d;
-                    var sum = 0;
-                    while (n > 0) {
-                        sum = sum + n;
-                        n = n - 1;
-                    }
-                    print sum;
-                    """, input);
-
-                case 2 -> String.format("""
-                    var n = %d;
-                    var result = 1;
-                    var i = 1;
-                    while (i <= n) {
-                        result = result * i;
-                        i = i + 1;
-                    }
-                    print result;
-                    """, input);
-
+                case 1 -> SUM_OF_N;
+                case 2 -> FACTORIAL;
                 case 3 -> {
                     System.out.print("Enter second number: ");
                     int b = scanner.nextInt();
-                    yield String.format("""
-                        var a = %d;
-                        var b = %d;
-                        while (b > 0) {
-                            var temp = b;
-                            b = a %% b;
-                            a = temp;
-                        }
-                        print a;
-                        """, input, b);
+                    arguments = new double[]{input, b};
+                    yield GCD;
                 }
-
-                case 4 -> String.format("""
-                    var num = %d;
-                    var reversed = 0;
-                    var temp = num;
-                    while (temp > 0) {
-                        var digit = temp %% 10;
-                        reversed = reversed * 10 + digit;
-                        temp = (temp - digit) / 10;
-                    }
-                    print reversed;
-                    """, input);
-
-                case 5 -> String.format("""
-                    var n = %d;
-                    var isPrime = 1;
-                    if (n <= 1) {
-                        isPrime = 0;
-                    }
-                    var i = 2;
-                    while (i * i <= n) {
-                        if ((n %% i) == 0) {
-                            isPrime = 0;
-                        }
-                        i = i + 1;
-                    }
-                    print isPrime;
-                    """, input);
-
-                case 6 -> String.format("""
-                    var num = %d;
-                    var original = num;
-                    var reversed = 0;
-                    var temp = num;
-                    while (temp > 0) {
-                        var digit = temp %% 10;
-                        reversed = reversed * 10 + digit;
-                        temp = (temp - digit) / 10;
-                    }
-                    if (original == reversed) {
-                        print 1;
-                    } else {
-                        print 0;
-                    }
-                    """, input);
-
-                case 7 -> String.format("""
-                    var num = %d;
-                    var largest = 0;
-                    var temp = num;
-                    while (temp > 0) {
-                        var digit = temp %% 10;
-                        if (digit > largest) {
-                            largest = digit;
-                        }
-                        temp = (temp - digit) / 10;
-                    }
-                    print largest;
-                    """, input);
-
-                case 8 -> String.format("""
-                    var num = %d;
-                    var sum = 0;
-                    var temp = num;
-                    while (temp > 0) {
-                        var digit = temp %% 10;
-                        sum = sum + digit;
-                        temp = (temp - digit) / 10;
-                    }
-                    print sum;
-                    """, input);
-
-                case 9 -> String.format("""
-                    var n = %d;
-                    var i = 1;
-                    while (i <= 10) {
-                        var result = n * i;
-                        print result;
-                        i = i + 1;
-                    }
-                    """, input);
-
-                case 10 -> String.format("""
-                    var n = %d;
-                    if (n <= 1) {
-                        print n;
-                    } else {
-                        var prev = 0;
-                        var current = 1;
-                        var i = 2;
-                        while (i <= n) {
-                            var next = prev + current;
-                            prev = current;
-                            current = next;
-                            i = i + 1;
-                        }
-                        print current;
-                    }
-                    """, input);
-
+                case 4 -> REVERSE_NUMBER;
+                case 5 -> IS_PRIME;
+                case 6 -> IS_PALINDROME;
+                case 7 -> LARGEST_DIGIT;
+                case 8 -> SUM_OF_DIGITS;
+                case 9 -> MULTIPLICATION_TABLE;
+                case 10 -> FIBONACCI;
                 default -> {
                     System.out.println("Invalid choice!");
                     yield null;
@@ -772,7 +237,7 @@ public class KotlinInterpreter {
 
             if (program != null) {
                 System.out.println("\nOutput:");
-                runProgram(program);
+                runProgram(program, mode, limits, arguments);
             }
 
             System.out.println("\nPress Enter to continue...");
@@ -784,16 +249,126 @@ public class KotlinInterpreter {
         System.out.println("Goodbye!");
     }
 
+    // The numbers after the script or batch path
+    private static double[] arguments(List<String> files) {
+        double[] arguments = new double[files.size() - 1];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = Double.parseDouble(files.get(i + 1));
+        }
+        return arguments;
+    }
+
+    private static long optionValue(String option) {
+        return Long.parseLong(option.substring(option.indexOf('=') + 1));
+    }
+
+    // How runProgram executes the resolved program
+    public enum ExecutionMode {
+        TREE_WALKING,
+        BYTECODE,
+        // Compiles straight to JVM bytecode, interpreting what the JIT can't handle
+        JIT
+    }
+
     public static void runProgram(String source) {
+        runProgram(source, ExecutionMode.TREE_WALKING);
+    }
+
+    // Compiled programs shared by every runProgram call, keyed by source text
+    private static final ProgramCache cache = new ProgramCache(
+            Integer.getInteger("kotlin.cache.maxEntries", 256),
+            Long.getLong("kotlin.cache.maxBytes", 64L * 1024 * 1024),
+            KotlinInterpreter::compile);
+
+    // Runs a program that declares parameters with "param"; the arguments
+    // are bound to them in declaration order
+    public static void runProgram(String source, ExecutionMode mode, double... arguments) {
+        runProgram(source, mode, ExecutionLimits.NONE, arguments);
+    }
+
+    static void runProgram(String source, ExecutionMode mode, ExecutionLimits limits, double... arguments) {
         try {
-            Lexer lexer = new Lexer(source);
-            List<Token> tokens = lexer.scanTokens();
-            Parser parser = new Parser(tokens);
-            List<Parser.Stmt> statements = parser.parse();
-            Interpreter interpreter = new Interpreter();
-            interpreter.interpret(statements);
+            cache.get(source).run(mode, new BufferedOutput(System.out), limits, arguments);
         } catch (RuntimeException error) {
             System.err.println("Error: " + error.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    // Runs a script file; the file is memory-mapped and lexed straight from
+    // the mapping
+    public static void runFile(Path path, ExecutionMode mode, double... arguments) {
+        runFile(path, mode, ExecutionLimits.NONE, arguments);
+    }
+
+    static void runFile(Path path, ExecutionMode mode, ExecutionLimits limits, double... arguments) {
+        try (MappedScript script = new MappedScript(path)) {
+            compile(script).run(mode, new BufferedOutput(System.out), limits, arguments);
+        } catch (NoSuchFileException error) {
+            System.err.println("Error: File not found: " + path);
+        } catch (IOException error) {
+            System.err.println("Error: Could not read " + path + ": " + error);
+        } catch (UncheckedIOException error) {
+            // Raised while lexing, e.g. for bytes that are not valid UTF-8
+            System.err.println("Error: Could not read " + path + ": " + error.getCause());
+        } catch (RuntimeException error) {
+            System.err.println("Error: " + error.getMessage());
+        }
+    }
+
+    // Runs every script in a directory, or every record of a JSON-lines
+    // file, printing one JSON line per script to System.out; a null mode
+    // runs each program tiered
+    static void runBatch(Path path, ExecutionMode mode, ExecutionLimits limits, int parallelism,
+                         double... arguments) {
+        try {
+            BatchRunner.run(path, mode, limits, parallelism, arguments, System.out);
+        } catch (NoSuchFileException error) {
+            System.err.println("Error: File not found: " + path);
+        } catch (IOException | UncheckedIOException error) {
+            System.err.println("Error: Could not read " + path + ": " + error);
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Lexes, parses, resolves and optimizes a program once for callers that run it many
+    // times; run() interprets it until it has run CompiledProgram.DEFAULT_THRESHOLD
+    // times and then compiles it to JVM bytecode.
+    static CompiledProgram compile(String source) {
+        Lexer lexer = new Lexer(source);
+        TokenStream tokens = lexer.scanTokenStream();
+        Parser parser = new Parser(tokens);
+        List<Parser.Stmt> statements = parser.parse();
+        Resolver resolver = new Resolver();
+        List<Parser.Stmt> resolved = resolver.resolve(statements);
+        if (Optimizer.ENABLED) resolved = new Optimizer().optimize(resolved);
+        return new CompiledProgram(resolved, resolver.slotTypes(),
+                resolver.parameterNames(), resolver.parameterSlots());
+    }
+
+    // Compiles a program read from a Reader or CharBuffer without holding
+    // the whole source text or token list in memory
+    static CompiledProgram compile(Readable source) {
+        StreamingLexer lexer = new StreamingLexer(source);
+        Parser parser = new Parser(lexer);
+        List<Parser.Stmt> statements;
+        try {
+            statements = parser.parse();
+        } catch (RuntimeException syntaxError) {
+            // A character the lexer rejected ends the input early, so it
+            // is what went wrong rather than the syntax error that follows
+            lexer.rethrowError();
+            throw syntaxError;
+        }
+        lexer.rethrowError();
+        Resolver resolver = new Resolver();
+        List<Parser.Stmt> resolved = resolver.resolve(statements);
+        if (Optimizer.ENABLED) resolved = new Optimizer().optimize(resolved);
+        return new CompiledProgram(resolved, resolver.slotTypes(),
+                resolver.parameterNames(), resolver.parameterSlots());
+    }
+
+    static ProgramCache programCache() {
+        return cache;
+    }
+}
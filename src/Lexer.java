@@ -0,0 +1,202 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+class Lexer {
+    private final String source;
+    private final List<Token> tokens = new ArrayList<>();
+    // Set while scanTokenStream() runs; tokens then go here instead of into tokens
+    private TokenStream stream;
+    // Literals up to this many digits always fit in a long
+    static final int MAX_PLAIN_DIGITS = 18;
+    private int start = 0;
+    private int current = 0;
+    static final Map<String, TokenType> KEYWORDS = Map.ofEntries(
+            Map.entry("if", TokenType.IF),
+            Map.entry("else", TokenType.ELSE),
+            Map.entry("while", TokenType.WHILE),
+            Map.entry("var", TokenType.VAR),
+            Map.entry("param", TokenType.PARAM),
+            Map.entry("print", TokenType.PRINT),
+            Map.entry("fun", TokenType.FUN),
+            Map.entry("return", TokenType.RETURN),
+            Map.entry("for", TokenType.FOR),
+            Map.entry("in", TokenType.IN),
+            Map.entry("parallel", TokenType.PARALLEL));
+
+    Lexer(String source) {
+        this.source = source;
+    }
+
+    List<Token> scanTokens() {
+        while (!isAtEnd()) {
+            start = current;
+            scanToken();
+        }
+        tokens.add(new Token(TokenType.EOF, "", null));
+        return tokens;
+    }
+
+    // Same tokens as scanTokens(), stored without a Token object or lexeme
+    // string per token
+    TokenStream scanTokenStream() {
+        stream = new TokenStream(source);
+        while (!isAtEnd()) {
+            start = current;
+            scanToken();
+        }
+        stream.add(TokenType.EOF, current, current);
+        return stream;
+    }
+
+    private void scanToken() {
+        char c = advance();
+        switch (c) {
+            case '(' -> addToken(TokenType.LPAREN);
+            case ')' -> addToken(TokenType.RPAREN);
+            case '{' -> addToken(TokenType.LBRACE);
+            case '}' -> addToken(TokenType.RBRACE);
+            case '[' -> addToken(TokenType.LBRACKET);
+            case ']' -> addToken(TokenType.RBRACKET);
+            case '+' -> addToken(TokenType.PLUS);
+            case '-' -> addToken(TokenType.MINUS);
+            case '*' -> addToken(TokenType.MULTIPLY);
+            case '/' -> addToken(TokenType.DIVIDE);
+            case '%' -> addToken(TokenType.MOD);
+            case '=' -> addToken(match('=') ? TokenType.EQUALS : TokenType.ASSIGN);
+            case '<' -> addToken(TokenType.LESS);
+            case '>' -> addToken(TokenType.GREATER);
+            case ';' -> addToken(TokenType.SEMICOLON);
+            case ':' -> addToken(TokenType.COLON);
+            case ',' -> addToken(TokenType.COMMA);
+            case '@' -> addToken(TokenType.AT);
+            case '.' -> {
+                if (!match('.')) throw new RuntimeException("Unexpected character: .");
+                addToken(TokenType.DOT_DOT);
+            }
+            case ' ', '\r', '\t', '\n' -> {}
+            default -> {
+                if (isDigit(c)) {
+                    number();
+                } else if (isAlpha(c)) {
+                    identifier();
+                } else {
+                    throw new RuntimeException("Unexpected character: " + c);
+                }
+            }
+        }
+    }
+
+    private void identifier() {
+        while (isAlphaNumeric(peek())) advance();
+
+        if (stream != null) {
+            stream.add(keywordAt(start, current), start, current);
+            return;
+        }
+        String text = source.substring(start, current);
+        TokenType type = KEYWORDS.getOrDefault(text, TokenType.IDENTIFIER);
+        addToken(type);
+    }
+
+    private void number() {
+        while (isDigit(peek())) advance();
+        if (stream != null) {
+            if (current - start <= MAX_PLAIN_DIGITS) {
+                stream.addNumber(start, current, parseNumber(start, current));
+            } else {
+                stream.add(TokenType.NUMBER, start, current);
+            }
+            return;
+        }
+        addToken(TokenType.NUMBER, numberLiteral(source.substring(start, current)));
+    }
+
+    // Integer literals are Longs; ones too large for a long become Doubles
+    static Object numberLiteral(String digits) {
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException tooLarge) {
+            return Double.parseDouble(digits);
+        }
+    }
+
+    // Keyword lookup without building the lexeme string: the length and the
+    // first one or two characters leave at most one keyword in KEYWORDS,
+    // which is then compared with the source
+    private TokenType keywordAt(int from, int to) {
+        char first = source.charAt(from);
+        TokenType candidate = switch (to - from) {
+            case 2 -> first != 'i' ? null : source.charAt(from + 1) == 'f' ? TokenType.IF : TokenType.IN;
+            case 3 -> switch (first) {
+                case 'v' -> TokenType.VAR;
+                case 'f' -> source.charAt(from + 1) == 'u' ? TokenType.FUN : TokenType.FOR;
+                default -> null;
+            };
+            case 4 -> first == 'e' ? TokenType.ELSE : null;
+            case 5 -> switch (first) {
+                case 'w' -> TokenType.WHILE;
+                case 'p' -> source.charAt(from + 1) == 'a' ? TokenType.PARAM : TokenType.PRINT;
+                default -> null;
+            };
+            case 6 -> first == 'r' ? TokenType.RETURN : null;
+            case 8 -> first == 'p' ? TokenType.PARALLEL : null;
+            default -> null;
+        };
+        if (candidate == null) return TokenType.IDENTIFIER;
+        String keyword = TokenStream.fixedToken(candidate).lexeme;
+        return source.regionMatches(from, keyword, 0, keyword.length()) ? candidate : TokenType.IDENTIFIER;
+    }
+
+    private long parseNumber(int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + (source.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private boolean isAlpha(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private boolean isAlphaNumeric(char c) {
+        return isAlpha(c) || isDigit(c);
+    }
+
+    private char advance() {
+        return source.charAt(current++);
+    }
+
+    private boolean match(char expected) {
+        if (isAtEnd() || source.charAt(current) != expected) return false;
+        current++;
+        return true;
+    }
+
+    private char peek() {
+        if (isAtEnd()) return '\0';
+        return source.charAt(current);
+    }
+
+    private boolean isAtEnd() {
+        return current >= source.length();
+    }
+
+    private void addToken(TokenType type) {
+        if (stream != null) {
+            stream.add(type, start, current);
+            return;
+        }
+        addToken(type, null);
+    }
+
+    private void addToken(TokenType type, Object literal) {
+        String text = source.substring(start, current);
+        tokens.add(new Token(type, text, literal));
+    }
+}
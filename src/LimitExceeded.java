@@ -0,0 +1,19 @@
+// Thrown when a run goes over one of its ExecutionLimits. Unlike other
+// runtime errors it is not wrapped as "Runtime error: ...", so callers can
+// tell a script that was stopped from one that failed.
+class LimitExceeded extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    enum Limit {
+        ITERATIONS,
+        TIME,
+        OUTPUT
+    }
+
+    final Limit limit;
+
+    LimitExceeded(Limit limit, String message) {
+        super("Execution limit exceeded: " + message);
+        this.limit = limit;
+    }
+}
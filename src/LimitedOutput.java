@@ -0,0 +1,60 @@
+// OutputSink that stops a run with LimitExceeded at the first print that
+// would take the sink past ExecutionLimits.maxOutputBytes. That line is not
+// printed, so a run never prints more than the limit, however long its
+// lines are and whether or not it loops. Only used for runs with an output
+// limit (see ExecutionLimits.limit).
+final class LimitedOutput implements OutputSink {
+    private final OutputSink out;
+    private final long maxBytes;
+
+    LimitedOutput(OutputSink out, long maxBytes) {
+        this.out = out;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public void printNumber(double value) {
+        reserve(Interpreter.stringify(value).length());
+        out.printNumber(value);
+    }
+
+    @Override
+    public void printInteger(long value) {
+        reserve(length(value));
+        out.printInteger(value);
+    }
+
+    @Override
+    public void print(Object value) {
+        String text = Interpreter.stringify(value);
+        reserve(text.length());
+        out.print(text);
+    }
+
+    @Override
+    public long bytesWritten() {
+        return out.bytesWritten();
+    }
+
+    @Override
+    public void flush() {
+        out.flush();
+    }
+
+    // Makes room for a line of the given length and its newline
+    private void reserve(int length) {
+        if (out.bytesWritten() + length + 1 > maxBytes) {
+            throw new LimitExceeded(LimitExceeded.Limit.OUTPUT, "printed more than " + maxBytes + " bytes.");
+        }
+    }
+
+    // Characters in the decimal form of value
+    private static int length(long value) {
+        if (value == Long.MIN_VALUE) return 20;
+        int length = value < 0 ? 2 : 1;
+        for (long rest = Math.abs(value); rest >= 10; rest /= 10) {
+            length++;
+        }
+        return length;
+    }
+}
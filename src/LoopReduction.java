@@ -0,0 +1,356 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// A while loop that steps one variable (the induction variable) by a fixed
+// amount until a comparison fails, and otherwise only adds terms that are
+// linear in that variable to accumulators:
+//
+//     while (n > 0) { sum = sum + n; n = n - 1; }
+//     while (i < 10) { i = i + 1; count = count + 1; total = total - 3 * i; }
+//
+// run() computes the number of iterations and each accumulator's final value
+// directly. It does so only when the answer is provably the one the loop
+// would produce: every input is an integer and every value the loop would
+// compute stays within +/-2^53, where double arithmetic is exact and long
+// arithmetic cannot overflow. Int variables are read from and written to
+// the integer frame, the others to the double frame. It also
+// needs the iterations to fit in the run's ExecutionBudget. Otherwise run()
+// returns false and the caller runs the loop itself.
+final class LoopReduction {
+    // Integers up to this magnitude are exact doubles, and so are sums of them
+    private static final long EXACT_LIMIT = 1L << 53;
+
+    // A literal number or a variable the loop never assigns
+    private static final class Operand {
+        final double constant;
+        final int slot;
+        // The variable lives in the integer frame
+        final boolean integer;
+
+        Operand(double constant) {
+            this(constant, -1, false);
+        }
+
+        Operand(double constant, int slot, boolean integer) {
+            this.constant = constant;
+            this.slot = slot;
+            this.integer = integer;
+        }
+
+        long value(double[] numbers, long[] integers) {
+            if (slot < 0) return exact(constant);
+            return read(slot, integer, numbers, integers);
+        }
+    }
+
+    // acc = acc + (scale * i + offset), or acc - (...) when subtracting;
+    // scale and offset are null when missing
+    private static final class Accumulator {
+        final int slot;
+        final boolean integer;
+        final boolean subtract;
+        final Operand scale;
+        final Operand offset;
+        final boolean negateOffset;
+        // The term reads i after this iteration's step
+        final boolean afterStep;
+
+        Accumulator(int slot, boolean integer, boolean subtract, Operand scale, Operand offset,
+                    boolean negateOffset, boolean afterStep) {
+            this.slot = slot;
+            this.integer = integer;
+            this.subtract = subtract;
+            this.scale = scale;
+            this.offset = offset;
+            this.negateOffset = negateOffset;
+            this.afterStep = afterStep;
+        }
+    }
+
+    private final int induction;
+    private final boolean integerInduction;
+    private final double step;
+    // The loop runs while i < limit (or i > limit when not ascending)
+    private final boolean ascending;
+    private final Operand limit;
+    private final List<Accumulator> accumulators;
+
+    private LoopReduction(int induction, boolean integerInduction, double step, boolean ascending, Operand limit,
+                          List<Accumulator> accumulators) {
+        this.induction = induction;
+        this.integerInduction = integerInduction;
+        this.step = step;
+        this.ascending = ascending;
+        this.limit = limit;
+        this.accumulators = accumulators;
+    }
+
+    // Returns null unless the loop has exactly the shape described above
+    static LoopReduction recognize(Parser.Stmt.While loop) {
+        List<Parser.Stmt> body = loop.body instanceof Parser.Stmt.Block
+                ? ((Parser.Stmt.Block) loop.body).statements
+                : List.of(loop.body);
+        if (!(loop.condition instanceof Parser.Expr.Binary)) return null;
+        Parser.Expr.Binary condition = (Parser.Expr.Binary) loop.condition;
+        boolean less = condition.operator.type == TokenType.LESS;
+        if (!less && condition.operator.type != TokenType.GREATER) return null;
+
+        // Every statement must be a plain assignment to a distinct numeric variable
+        List<Parser.Expr.Binary> assignments = new ArrayList<>();
+        List<Integer> assigned = new ArrayList<>();
+        for (Parser.Stmt statement : body) {
+            if (!(statement instanceof Parser.Stmt.Expression)) return null;
+            Parser.Expr expression = ((Parser.Stmt.Expression) statement).expression;
+            if (!(expression instanceof Parser.Expr.Binary)) return null;
+            Parser.Expr.Binary assignment = (Parser.Expr.Binary) expression;
+            if (assignment.operator.type != TokenType.ASSIGN || !assignment.left.isNumeric()) return null;
+            int slot = ((Parser.Expr.Variable) assignment.left).slot;
+            if (assigned.contains(slot)) return null;
+            assignments.add(assignment);
+            assigned.add(slot);
+        }
+
+        // The condition compares the induction variable with something invariant
+        int induction;
+        Operand limit;
+        boolean ascending;
+        if (isVariable(condition.left) && assigned.contains(slot(condition.left))) {
+            induction = slot(condition.left);
+            limit = operand(condition.right, assigned);
+            ascending = less;
+        } else if (isVariable(condition.right) && assigned.contains(slot(condition.right))) {
+            induction = slot(condition.right);
+            limit = operand(condition.left, assigned);
+            ascending = !less;
+        } else {
+            return null;
+        }
+        if (limit == null) return null;
+
+        int stepIndex = assigned.indexOf(induction);
+        boolean integerInduction = assignments.get(stepIndex).left.isInteger();
+        double step = step(assignments.get(stepIndex), induction);
+        if (step == 0) return null;
+
+        List<Accumulator> accumulators = new ArrayList<>();
+        for (int i = 0; i < assignments.size(); i++) {
+            if (i == stepIndex) continue;
+            Accumulator accumulator = accumulator(assignments.get(i), induction, assigned, i > stepIndex);
+            if (accumulator == null) return null;
+            accumulators.add(accumulator);
+        }
+        return new LoopReduction(induction, integerInduction, step, ascending, limit, accumulators);
+    }
+
+    // The amount i = i + s, i = s + i or i = i - s adds to i, or 0 for anything else
+    private static double step(Parser.Expr.Binary assignment, int induction) {
+        if (!(assignment.right instanceof Parser.Expr.Binary)) return 0;
+        Parser.Expr.Binary update = (Parser.Expr.Binary) assignment.right;
+        Double amount = null;
+        if (reads(update.left, induction)) amount = literal(update.right);
+        else if (update.operator.type == TokenType.PLUS && reads(update.right, induction)) amount = literal(update.left);
+        if (amount == null || amount != Math.rint(amount)) return 0;
+        return switch (update.operator.type) {
+            case PLUS -> amount;
+            case MINUS -> -amount;
+            default -> 0;
+        };
+    }
+
+    private static Accumulator accumulator(Parser.Expr.Binary assignment, int induction, List<Integer> assigned,
+                                           boolean afterStep) {
+        int slot = slot(assignment.left);
+        boolean integer = assignment.left.isInteger();
+        if (!(assignment.right instanceof Parser.Expr.Binary)) return null;
+        Parser.Expr.Binary update = (Parser.Expr.Binary) assignment.right;
+        Parser.Expr term;
+        if (update.operator.type == TokenType.PLUS && reads(update.left, slot)) term = update.right;
+        else if (update.operator.type == TokenType.PLUS && reads(update.right, slot)) term = update.left;
+        else if (update.operator.type == TokenType.MINUS && reads(update.left, slot)) term = update.right;
+        else return null;
+        boolean subtract = update.operator.type == TokenType.MINUS;
+
+        if (reads(term, induction)) {
+            return new Accumulator(slot, integer, subtract, new Operand(1), null, false, afterStep);
+        }
+        Operand constant = operand(term, assigned);
+        if (constant != null) {
+            return new Accumulator(slot, integer, subtract, null, constant, false, afterStep);
+        }
+        if (!(term instanceof Parser.Expr.Binary)) return null;
+        Parser.Expr.Binary linear = (Parser.Expr.Binary) term;
+        Parser.Expr other;
+        if (reads(linear.left, induction)) other = linear.right;
+        else if (linear.operator.type != TokenType.MINUS && reads(linear.right, induction)) other = linear.left;
+        else return null;
+        Operand operand = operand(other, assigned);
+        if (operand == null) return null;
+        return switch (linear.operator.type) {
+            case MULTIPLY -> new Accumulator(slot, integer, subtract, operand, null, false, afterStep);
+            case PLUS -> new Accumulator(slot, integer, subtract, new Operand(1), operand, false, afterStep);
+            case MINUS -> new Accumulator(slot, integer, subtract, new Operand(1), operand, true, afterStep);
+            default -> null;
+        };
+    }
+
+    // A numeric literal or a numeric variable the loop does not assign
+    private static Operand operand(Parser.Expr expr, List<Integer> assigned) {
+        Double value = literal(expr);
+        if (value != null) return new Operand(value);
+        if (isVariable(expr) && expr.isNumeric() && !assigned.contains(slot(expr))) {
+            return new Operand(0, slot(expr), expr.isInteger());
+        }
+        return null;
+    }
+
+    // The literal as a double, or null when it is not a number that a
+    // double holds exactly
+    private static Double literal(Parser.Expr expr) {
+        if (!(expr instanceof Parser.Expr.Literal)) return null;
+        Object value = ((Parser.Expr.Literal) expr).value;
+        if (value instanceof Double) return (Double) value;
+        if (value instanceof Long) {
+            long integer = (long) value;
+            return integer <= EXACT_LIMIT && integer >= -EXACT_LIMIT ? (double) integer : null;
+        }
+        return null;
+    }
+
+    private static boolean isVariable(Parser.Expr expr) {
+        return expr instanceof Parser.Expr.Variable;
+    }
+
+    // True for a read of the numeric variable in the given slot
+    private static boolean reads(Parser.Expr expr, int slot) {
+        return isVariable(expr) && expr.isNumeric() && slot(expr) == slot;
+    }
+
+    private static int slot(Parser.Expr expr) {
+        return ((Parser.Expr.Variable) expr).slot;
+    }
+
+    // Every slot run() reads or writes
+    int[] slots() {
+        List<Integer> slots = new ArrayList<>(writtenSlotList());
+        addOperand(slots, limit);
+        for (Accumulator accumulator : accumulators) {
+            addOperand(slots, accumulator.scale);
+            addOperand(slots, accumulator.offset);
+        }
+        return slots.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // The slots run() assigns when it returns true
+    int[] writtenSlots() {
+        return writtenSlotList().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private List<Integer> writtenSlotList() {
+        List<Integer> slots = new ArrayList<>();
+        slots.add(induction);
+        for (Accumulator accumulator : accumulators) {
+            slots.add(accumulator.slot);
+        }
+        return slots;
+    }
+
+    private static void addOperand(List<Integer> slots, Operand operand) {
+        if (operand != null && operand.slot >= 0 && !slots.contains(operand.slot)) {
+            slots.add(operand.slot);
+        }
+    }
+
+    // Applies the whole loop to the frame and returns true, or leaves the
+    // frame untouched and returns false when the loop has to run instead
+    boolean run(double[] numbers, long[] integers, ExecutionBudget budget) {
+        try {
+            return evaluate(numbers, integers, budget);
+        } catch (ArithmeticException overflow) {
+            return false;
+        }
+    }
+
+    private boolean evaluate(double[] numbers, long[] integers, ExecutionBudget budget) {
+        long start = read(induction, integerInduction, numbers, integers);
+        long bound = limit.value(numbers, integers);
+        long stride = exact(step);
+        // A loop that would never end, or that steps away from its bound,
+        // is left to run as written
+        if (ascending != stride > 0) return false;
+        long distance = ascending ? bound - start : start - bound;
+        long iterations = distance > 0 ? Math.floorDiv(distance - 1, Math.abs(stride)) + 1 : 0;
+        long end = checked(Math.addExact(start, Math.multiplyExact(iterations, stride)));
+
+        long[] results = new long[accumulators.size()];
+        for (int i = 0; i < results.length; i++) {
+            Accumulator accumulator = accumulators.get(i);
+            long scale = accumulator.scale != null ? accumulator.scale.value(numbers, integers) : 0;
+            long offset = accumulator.offset != null ? accumulator.offset.value(numbers, integers) : 0;
+            if (accumulator.negateOffset) offset = -offset;
+            long initial = read(accumulator.slot, accumulator.integer, numbers, integers);
+            if (iterations == 0) {
+                results[i] = initial;
+                continue;
+            }
+            // The term uses i = first, first + stride, ..., last
+            long first = accumulator.afterStep ? Math.addExact(start, stride) : start;
+            long last = Math.addExact(first, Math.multiplyExact(iterations - 1, stride));
+            long firstTerm = Math.addExact(Math.multiplyExact(scale, first), offset);
+            long lastTerm = Math.addExact(Math.multiplyExact(scale, last), offset);
+            // Terms are linear in i, so the largest products and terms are
+            // the ones at the ends
+            checked(Math.multiplyExact(scale, Math.max(Math.abs(first), Math.abs(last))));
+            checked(Math.abs(firstTerm));
+            checked(Math.abs(lastTerm));
+            // Sum of an arithmetic series: iterations * (firstTerm + lastTerm) / 2
+            long pairs = Math.addExact(firstTerm, lastTerm);
+            long sum = iterations % 2 == 0
+                    ? Math.multiplyExact(iterations / 2, pairs)
+                    : Math.multiplyExact(iterations, pairs / 2);
+            // No running total can be further from 0 than the initial value
+            // plus every term's magnitude; when the terms never change sign
+            // those magnitudes add up to the sum itself
+            long magnitudes = Long.signum(firstTerm) * Long.signum(lastTerm) >= 0
+                    ? Math.abs(sum)
+                    : Math.multiplyExact(iterations, Math.max(Math.abs(firstTerm), Math.abs(lastTerm)));
+            checked(Math.addExact(Math.abs(initial), magnitudes));
+            results[i] = accumulator.subtract ? initial - sum : initial + sum;
+        }
+
+        if (!budget.tryAdvance(iterations)) return false;
+        write(induction, integerInduction, end, numbers, integers);
+        for (int i = 0; i < results.length; i++) {
+            Accumulator accumulator = accumulators.get(i);
+            write(accumulator.slot, accumulator.integer, results[i], numbers, integers);
+        }
+        return true;
+    }
+
+    private static long read(int slot, boolean integer, double[] numbers, long[] integers) {
+        return integer ? checked(integers[slot]) : exact(numbers[slot]);
+    }
+
+    private static void write(int slot, boolean integer, long value, double[] numbers, long[] integers) {
+        if (integer) {
+            integers[slot] = value;
+        } else {
+            numbers[slot] = value;
+        }
+    }
+
+    // The value as a long, for integers that are exact as doubles and are
+    // not -0.0 (which integer arithmetic would lose)
+    private static long exact(double value) {
+        if (value != Math.rint(value) || Math.abs(value) > EXACT_LIMIT
+                || Double.doubleToRawLongBits(value) == Long.MIN_VALUE) {
+            throw new ArithmeticException();
+        }
+        return (long) value;
+    }
+
+    private static long checked(long value) {
+        // Not Math.abs, which leaves Long.MIN_VALUE negative
+        if (value > EXACT_LIMIT || value < -EXACT_LIMIT) throw new ArithmeticException();
+        return value;
+    }
+}
@@ -0,0 +1,77 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// A script file read through memory-mapped regions of the file. Characters
+// are decoded from the mapping straight into the reader's buffer, so the
+// file is never copied into a String. Mapping one region at a time keeps
+// files of any size within the address space a single mapping allows.
+class MappedScript implements Readable, Closeable {
+    private static final long REGION_SIZE = 64L * 1024 * 1024;
+    // The longest UTF-8 sequence, so a region always holds a whole character
+    private static final int MIN_REGION_SIZE = 4;
+
+    private final FileChannel channel;
+    private final long regionSize;
+    private final long size;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private long regionStart;
+    private MappedByteBuffer region;
+    private boolean finished = false;
+
+    MappedScript(Path path) throws IOException {
+        this(path, REGION_SIZE);
+    }
+
+    // Smaller regions let the tests cross region boundaries with small files
+    MappedScript(Path path, long regionSize) throws IOException {
+        if (regionSize < MIN_REGION_SIZE) {
+            throw new IllegalArgumentException("Regions must hold at least " + MIN_REGION_SIZE + " bytes.");
+        }
+        this.regionSize = regionSize;
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        size = channel.size();
+        map(0);
+    }
+
+    @Override
+    public int read(CharBuffer target) throws IOException {
+        if (finished) return -1;
+        int before = target.position();
+        while (target.hasRemaining()) {
+            boolean lastRegion = regionStart + region.limit() == size;
+            CoderResult result = decoder.decode(region, target, lastRegion);
+            if (result.isError()) result.throwException();
+            if (result.isOverflow()) break;
+            if (lastRegion) {
+                decoder.flush(target);
+                finished = true;
+                break;
+            }
+            // A character split across regions is decoded from the next mapping
+            map(regionStart + region.position());
+        }
+        int read = target.position() - before;
+        return read == 0 && finished ? -1 : read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void map(long start) throws IOException {
+        regionStart = start;
+        region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionSize, size - start));
+    }
+}
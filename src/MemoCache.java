@@ -0,0 +1,39 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// The results of one "@memo fun" during one run, keyed by its arguments:
+// the argument itself for a function of one parameter, a List of them
+// otherwise. Holds at most CAPACITY results and evicts the least recently
+// used one beyond that, so a function called with ever new arguments cannot
+// use up memory. Each run has caches of its own, so runs of a
+// CompiledProgram on different threads share nothing.
+final class MemoCache extends LinkedHashMap<Object, Object> {
+    private static final long serialVersionUID = 1L;
+
+    static final int CAPACITY = Integer.getInteger("kotlin.memo.capacity", 10_000);
+
+    MemoCache() {
+        super(16, 0.75f, true);
+    }
+
+    // Arrays can change after a call, so they can be neither part of a key
+    // nor a cached result
+    static Object key(Object[] arguments) {
+        for (Object argument : arguments) {
+            if (Builtin.isArray(argument)) throw new RuntimeException("A memoized function cannot take an array.");
+        }
+        return arguments.length == 1 ? arguments[0] : Arrays.asList(arguments);
+    }
+
+    @Override
+    public Object put(Object key, Object result) {
+        if (Builtin.isArray(result)) throw new RuntimeException("A memoized function cannot return an array.");
+        return super.put(key, result);
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+        return size() > CAPACITY;
+    }
+}
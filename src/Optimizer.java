@@ -0,0 +1,242 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// Simplifies resolved statements before they are run: arithmetic and
+// comparisons on literals are computed once, arithmetic identities that hold
+// for every double are removed, if statements whose condition is a constant
+// are replaced by the branch that would run, and loops that only sum up an
+// arithmetic series are marked so they can be computed in closed form (see
+// LoopReduction).
+//
+// Anything that could change a result is left alone. Division or modulo by a
+// literal zero and integer overflow still fail at runtime, x + 0 is kept
+// for doubles because it turns -0.0 into 0.0, and x * 0 is kept for
+// doubles because NaN, the infinities and negative numbers do not give 0.
+// For an Int variable x, x * 0 becomes 0. An identity is
+// only applied when it keeps the expression's type, so Int x * 1.0 stays a
+// Double.
+//
+// Enabled by default; run with -Dkotlin.optimize=false to execute programs
+// exactly as they were parsed.
+class Optimizer {
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("kotlin.optimize", "true"));
+
+    List<Parser.Stmt> optimize(List<Parser.Stmt> statements) {
+        List<Parser.Stmt> optimized = new ArrayList<>();
+        for (Parser.Stmt statement : statements) {
+            Parser.Stmt result = optimize(statement);
+            if (result != null) optimized.add(result);
+        }
+        return optimized;
+    }
+
+    // Returns null for a statement that does nothing
+    private Parser.Stmt optimize(Parser.Stmt stmt) {
+        if (stmt instanceof Parser.Stmt.Expression) {
+            return new Parser.Stmt.Expression(optimize(((Parser.Stmt.Expression) stmt).expression));
+        } else if (stmt instanceof Parser.Stmt.Print) {
+            return new Parser.Stmt.Print(optimize(((Parser.Stmt.Print) stmt).expression));
+        } else if (stmt instanceof Parser.Stmt.Var) {
+            Parser.Stmt.Var var = (Parser.Stmt.Var) stmt;
+            if (var.initializer == null) return var;
+            return new Parser.Stmt.Var(var.name, optimize(var.initializer), var.slot, var.type);
+        } else if (stmt instanceof Parser.Stmt.Param) {
+            return stmt;
+        } else if (stmt instanceof Parser.Stmt.Block) {
+            return new Parser.Stmt.Block(optimize(((Parser.Stmt.Block) stmt).statements));
+        } else if (stmt instanceof Parser.Stmt.If) {
+            Parser.Stmt.If ifStmt = (Parser.Stmt.If) stmt;
+            Parser.Expr condition = optimize(ifStmt.condition);
+            if (condition instanceof Parser.Expr.Literal) {
+                // Only one branch can ever run
+                boolean taken = Interpreter.isTruthy(((Parser.Expr.Literal) condition).value);
+                Parser.Stmt branch = taken ? ifStmt.thenBranch : ifStmt.elseBranch;
+                return branch != null ? optimize(branch) : null;
+            }
+            Parser.Stmt elseBranch = ifStmt.elseBranch != null ? optimize(ifStmt.elseBranch) : null;
+            return new Parser.Stmt.If(condition, orEmpty(optimize(ifStmt.thenBranch)), elseBranch);
+        } else if (stmt instanceof Parser.Stmt.While) {
+            Parser.Stmt.While whileStmt = (Parser.Stmt.While) stmt;
+            Parser.Stmt.While loop = new Parser.Stmt.While(optimize(whileStmt.condition),
+                    orEmpty(optimize(whileStmt.body)));
+            LoopReduction reduction = LoopReduction.recognize(loop);
+            return reduction != null ? new Parser.Stmt.Reduction(reduction, loop) : loop;
+        } else if (stmt instanceof Parser.Stmt.For) {
+            Parser.Stmt.For forStmt = (Parser.Stmt.For) stmt;
+            return new Parser.Stmt.For(forStmt.name, optimize(forStmt.from), optimize(forStmt.to),
+                    orEmpty(optimize(forStmt.body)), forStmt.parallel, forStmt.reductions, forStmt.slot, forStmt.type,
+                    forStmt.end);
+        } else if (stmt instanceof Parser.Stmt.Return) {
+            Parser.Stmt.Return returnStmt = (Parser.Stmt.Return) stmt;
+            if (returnStmt.value == null) return returnStmt;
+            return new Parser.Stmt.Return(returnStmt.keyword, optimize(returnStmt.value), returnStmt.type,
+                    returnStmt.tailCall);
+        } else if (stmt instanceof Parser.Stmt.Function) {
+            Parser.Stmt.Function function = (Parser.Stmt.Function) stmt;
+            return new Parser.Stmt.Function(function.name, function.parameters, function.returnType,
+                    optimize(function.body), function.memo, function.index, function.slotTypes);
+        }
+        throw new RuntimeException("Unknown statement type.");
+    }
+
+    private Parser.Stmt orEmpty(Parser.Stmt stmt) {
+        return stmt != null ? stmt : new Parser.Stmt.Block(List.of());
+    }
+
+    private Parser.Expr optimize(Parser.Expr expr) {
+        if (expr instanceof Parser.Expr.Call) {
+            Parser.Expr.Call call = (Parser.Expr.Call) expr;
+            List<Parser.Expr> arguments = new ArrayList<>();
+            for (Parser.Expr argument : call.arguments) {
+                arguments.add(optimize(argument));
+            }
+            return new Parser.Expr.Call(call.name, arguments, call.function, call.type());
+        }
+        if (expr instanceof Parser.Expr.BuiltinCall) {
+            Parser.Expr.BuiltinCall call = (Parser.Expr.BuiltinCall) expr;
+            List<Parser.Expr> arguments = new ArrayList<>();
+            for (Parser.Expr argument : call.arguments) {
+                arguments.add(optimize(argument));
+            }
+            return new Parser.Expr.BuiltinCall(call.name, call.builtin, arguments, call.type());
+        }
+        if (expr instanceof Parser.Expr.Index) {
+            Parser.Expr.Index index = (Parser.Expr.Index) expr;
+            return new Parser.Expr.Index(optimize(index.array), index.bracket, optimize(index.index), index.type());
+        }
+        if (expr instanceof Parser.Expr.IndexAssign) {
+            Parser.Expr.IndexAssign assign = (Parser.Expr.IndexAssign) expr;
+            return new Parser.Expr.IndexAssign(optimize(assign.array), assign.bracket, optimize(assign.index),
+                    optimize(assign.value), assign.type());
+        }
+        if (!(expr instanceof Parser.Expr.Binary)) {
+            return expr;
+        }
+        Parser.Expr.Binary binary = (Parser.Expr.Binary) expr;
+        Parser.Expr right = optimize(binary.right);
+        if (binary.operator.type == TokenType.ASSIGN) {
+            return new Parser.Expr.Binary(binary.left, binary.operator, right);
+        }
+        Parser.Expr left = optimize(binary.left);
+
+        if (left.isInteger() && right.isInteger() && isNumber(left) && isNumber(right)) {
+            Object value = fold(binary.operator.type, integer(left), integer(right));
+            if (value != null) return new Parser.Expr.Literal(value);
+        } else if (isNumber(left) && isNumber(right)) {
+            Object value = fold(binary.operator.type, number(left), number(right));
+            if (value != null) return new Parser.Expr.Literal(value);
+        } else if (binary.type() == Parser.Type.BIG && left instanceof Parser.Expr.Literal
+                && right instanceof Parser.Expr.Literal) {
+            Object value = foldBig(binary.operator.type, ((Parser.Expr.Literal) left).value,
+                    ((Parser.Expr.Literal) right).value);
+            if (value != null) return new Parser.Expr.Literal(value, Parser.Type.BIG);
+        } else if (left instanceof Parser.Expr.Literal && right instanceof Parser.Expr.Literal
+                && binary.operator.type == TokenType.EQUALS) {
+            return new Parser.Expr.Literal(Interpreter.isEqual(
+                    ((Parser.Expr.Literal) left).value, ((Parser.Expr.Literal) right).value));
+        }
+
+        Parser.Type type = Parser.Type.join(left.type(), right.type());
+        if (type != Parser.Type.INTEGER && type != Parser.Type.DOUBLE) {
+            // Boxed, and for VALUE might not be a number at all
+            return rebuild(binary, left, right);
+        }
+        switch (binary.operator.type) {
+            case MULTIPLY -> {
+                if (left.type() == type && isNumber(right, 1.0)) return left;
+                if (right.type() == type && isNumber(left, 1.0)) return right;
+                // An Int times 0 is always 0, but only a variable can be
+                // dropped: anything else might fail or call a function
+                if (type == Parser.Type.INTEGER && isNumber(right, 0.0) && left instanceof Parser.Expr.Variable) {
+                    return right;
+                }
+                if (type == Parser.Type.INTEGER && isNumber(left, 0.0) && right instanceof Parser.Expr.Variable) {
+                    return left;
+                }
+            }
+            case DIVIDE -> {
+                if (left.type() == type && isNumber(right, 1.0)) return left;
+            }
+            case PLUS -> {
+                // Integers have no -0.0 for x + 0 to change
+                if (type == Parser.Type.INTEGER && isNumber(right, 0.0)) return left;
+                if (type == Parser.Type.INTEGER && isNumber(left, 0.0)) return right;
+            }
+            case MINUS -> {
+                // x - 0.0 is x even for -0.0; x - -0.0 is not
+                if (left.type() == type && isNumber(right, 0.0)) return left;
+            }
+        }
+        return rebuild(binary, left, right);
+    }
+
+    private Parser.Expr rebuild(Parser.Expr.Binary binary, Parser.Expr left, Parser.Expr right) {
+        if (left == binary.left && right == binary.right) {
+            return binary;
+        }
+        return new Parser.Expr.Binary(left, binary.operator, right);
+    }
+
+    // The result of applying the operator to two numbers, or null when it
+    // has to be left to the runtime to report an error
+    private Object fold(TokenType operator, double left, double right) {
+        return switch (operator) {
+            case PLUS -> left + right;
+            case MINUS -> left - right;
+            case MULTIPLY -> left * right;
+            case DIVIDE -> right == 0 ? null : left / right;
+            case MOD -> right == 0 ? null : left % right;
+            case LESS -> left < right;
+            case GREATER -> left > right;
+            case EQUALS -> Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+            default -> null;
+        };
+    }
+
+    // Integer arithmetic is folded only when it cannot overflow, so that the
+    // error still happens at runtime
+    private Object fold(TokenType operator, long left, long right) {
+        try {
+            return switch (operator) {
+                case PLUS -> Math.addExact(left, right);
+                case MINUS -> Math.subtractExact(left, right);
+                case MULTIPLY -> Math.multiplyExact(left, right);
+                case DIVIDE -> right == 0 || (left == Long.MIN_VALUE && right == -1) ? null : left / right;
+                case MOD -> right == 0 ? null : left % right;
+                case LESS -> left < right;
+                case GREATER -> left > right;
+                case EQUALS -> left == right;
+                default -> null;
+            };
+        } catch (ArithmeticException overflow) {
+            return null;
+        }
+    }
+
+    // BIG arithmetic cannot overflow, so only division by zero is left alone
+    private Object foldBig(TokenType operator, Object left, Object right) {
+        try {
+            return Interpreter.bigArithmetic(operator, left, right);
+        } catch (RuntimeException error) {
+            return null;
+        }
+    }
+
+    private boolean isNumber(Parser.Expr expr) {
+        return expr instanceof Parser.Expr.Literal && expr.isNumeric();
+    }
+
+    // Compares bit patterns so that 0.0 does not match -0.0; the integer 0
+    // matches 0.0
+    private boolean isNumber(Parser.Expr expr, double value) {
+        return isNumber(expr) && Double.doubleToRawLongBits(number(expr)) == Double.doubleToRawLongBits(value);
+    }
+
+    private double number(Parser.Expr expr) {
+        return Interpreter.checkNumberOperand(((Parser.Expr.Literal) expr).value);
+    }
+
+    private long integer(Parser.Expr expr) {
+        return (long) ((Parser.Expr.Literal) expr).value;
+    }
+}
@@ -0,0 +1,15 @@
+// Where print statements send their output. Numbers have their own method
+// so engines can print them without boxing.
+interface OutputSink {
+    void printNumber(double value);
+
+    void printInteger(long value);
+
+    void print(Object value);
+
+    // Bytes printed so far, including any not flushed yet
+    long bytesWritten();
+
+    // Called once the program has finished, whether it succeeded or not
+    void flush();
+}
@@ -0,0 +1,165 @@
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+// Runs the iterations of a "parallel for" on the common ForkJoinPool, or on
+// the pool of the thread running the program when that is a ForkJoinPool's.
+// The range is split in halves until the parts are about SPLITS per thread
+// of the pool, so threads that finish early can steal what is left of
+// others.
+//
+// Each part runs on a copy of the frame: variables the body declares are
+// private to it, and the Resolver only lets the body assign those and its
+// reduction variables, the latter only as "s = s + value" and the like. A
+// sum or count starts each part at zero and a min or max at the variable's
+// value before the loop; the parts' results are then combined in range
+// order and into the variable. Except in the last digits of a sum of
+// Doubles, the result is the same however the range was split. Arrays are
+// not copied, so iterations that write the same element race.
+//
+// ExecutionBudget is not thread-safe, so a run with an iteration or time
+// limit keeps the loop on its own thread, as one part on its own budget.
+final class ParallelLoop {
+    private static final int SPLITS = 4;
+
+    // Runs the iterations from to to, both included, on the given frame
+    interface Body {
+        void run(long from, long to, Object[] values, double[] numbers, long[] integers, ExecutionBudget budget);
+    }
+
+    private ParallelLoop() {
+    }
+
+    static void run(List<Parser.Stmt.ReductionVariable> reductions, long from, long to, Object[] values,
+                    double[] numbers, long[] integers, ExecutionBudget budget, Body body) {
+        if (from > to) return;
+        ForkJoinPool pool = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+        int parallelism = pool.getParallelism();
+        Object[] result;
+        if (!budget.isUnlimited() || parallelism < 2 || from == to) {
+            result = part(reductions, from, to, values, numbers, integers, budget, body);
+        } else {
+            // to - from is the number of iterations less one, unsigned, so
+            // even a range over every long cannot overflow it
+            long grain = Math.max(1, Long.divideUnsigned(to - from, (long) parallelism * SPLITS));
+            try {
+                result = pool.invoke(
+                        new Range(reductions, from, to, grain, values, numbers, integers, budget, body));
+            } catch (RuntimeException error) {
+                // Each join rethrows an exception from another thread as a
+                // copy that has it as its cause
+                RuntimeException thrown = error;
+                while (thrown.getCause() != null && thrown.getCause().getClass() == thrown.getClass()) {
+                    thrown = (RuntimeException) thrown.getCause();
+                }
+                throw thrown;
+            }
+        }
+        for (int i = 0; i < result.length; i++) {
+            Parser.Stmt.ReductionVariable reduction = reductions.get(i);
+            Object value = Interpreter.slot(values, numbers, integers, reduction.slot, reduction.type);
+            store(reduction, values, numbers, integers, combine(reduction, value, result[i]));
+        }
+    }
+
+    // Never serialized: it only lives for one invoke on the pool
+    @SuppressWarnings("serial")
+    private static final class Range extends RecursiveTask<Object[]> {
+        private final List<Parser.Stmt.ReductionVariable> reductions;
+        private final long from;
+        private final long to;
+        private final long grain;
+        private final Object[] values;
+        private final double[] numbers;
+        private final long[] integers;
+        private final ExecutionBudget budget;
+        private final Body body;
+
+        Range(List<Parser.Stmt.ReductionVariable> reductions, long from, long to, long grain, Object[] values,
+              double[] numbers, long[] integers, ExecutionBudget budget, Body body) {
+            this.reductions = reductions;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.values = values;
+            this.numbers = numbers;
+            this.integers = integers;
+            this.budget = budget;
+            this.body = body;
+        }
+
+        @Override
+        protected Object[] compute() {
+            if (Long.compareUnsigned(to - from, grain) < 0) {
+                return part(reductions, from, to, values, numbers, integers, budget.fork(), body);
+            }
+            long middle = from + ((to - from) >>> 1);
+            Range right = new Range(reductions, middle + 1, to, grain, values, numbers, integers, budget, body);
+            right.fork();
+            Object[] left = new Range(reductions, from, middle, grain, values, numbers, integers, budget, body)
+                    .compute();
+            Object[] partial = right.join();
+            for (int i = 0; i < left.length; i++) {
+                left[i] = combine(reductions.get(i), left[i], partial[i]);
+            }
+            return left;
+        }
+    }
+
+    // Runs part of the range on a copy of the frame; returns the values its
+    // reduction variables end with
+    private static Object[] part(List<Parser.Stmt.ReductionVariable> reductions, long from, long to,
+                                 Object[] values, double[] numbers, long[] integers, ExecutionBudget budget,
+                                 Body body) {
+        Object[] partValues = values.clone();
+        double[] partNumbers = numbers.clone();
+        long[] partIntegers = integers.clone();
+        for (Parser.Stmt.ReductionVariable reduction : reductions) {
+            switch (reduction.operator) {
+                case SUM, COUNT -> store(reduction, partValues, partNumbers, partIntegers,
+                        reduction.type == Parser.Type.DOUBLE ? (Object) 0.0 : 0L);
+                case MIN, MAX -> {
+                }
+            }
+        }
+        body.run(from, to, partValues, partNumbers, partIntegers, budget);
+        Object[] result = new Object[reductions.size()];
+        for (int i = 0; i < result.length; i++) {
+            Parser.Stmt.ReductionVariable reduction = reductions.get(i);
+            result[i] = Interpreter.slot(partValues, partNumbers, partIntegers, reduction.slot, reduction.type);
+        }
+        return result;
+    }
+
+    // a combined with b, the result of the iterations after a's
+    private static Object combine(Parser.Stmt.ReductionVariable reduction, Object a, Object b) {
+        return switch (reduction.type) {
+            case INTEGER -> switch (reduction.operator) {
+                case SUM, COUNT -> Math.addExact((long) a, (long) b);
+                case MIN -> Math.min((long) a, (long) b);
+                case MAX -> Math.max((long) a, (long) b);
+            };
+            case DOUBLE -> switch (reduction.operator) {
+                case SUM, COUNT -> (double) a + (double) b;
+                // As "if (x < min) min = x;" would: NaN never replaces a value
+                case MIN -> (double) b < (double) a ? b : a;
+                case MAX -> (double) b > (double) a ? b : a;
+            };
+            default -> switch (reduction.operator) {
+                case SUM, COUNT -> Interpreter.bigArithmetic(TokenType.PLUS, a, b);
+                case MIN -> Interpreter.less(b, a) ? b : a;
+                case MAX -> Interpreter.less(a, b) ? b : a;
+            };
+        };
+    }
+
+    private static void store(Parser.Stmt.ReductionVariable reduction, Object[] values, double[] numbers,
+                              long[] integers, Object value) {
+        switch (reduction.type) {
+            case INTEGER -> integers[reduction.slot] = (long) value;
+            case DOUBLE -> numbers[reduction.slot] = (double) value;
+            case BIG, VALUE -> values[reduction.slot] = value;
+        }
+    }
+}
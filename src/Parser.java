@@ -0,0 +1,900 @@
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+class Parser {
+    // What an expression or variable is statically known to hold: an
+    // unboxed long, an integer of any size (a boxed Long that becomes a
+    // BigInteger once it outgrows a long; see Resolver.BIG_INTEGERS), an
+    // unboxed double, or any value at all. Ordered so that join() gives the
+    // type that can hold both.
+    enum Type {
+        INTEGER,
+        BIG,
+        DOUBLE,
+        VALUE;
+
+        // The type of arithmetic on the two, or of a variable assigned both
+        static Type join(Type a, Type b) {
+            return a.compareTo(b) >= 0 ? a : b;
+        }
+
+        // The type of a literal value
+        static Type of(Object value) {
+            if (value instanceof Long) return INTEGER;
+            if (value instanceof BigInteger) return BIG;
+            if (value instanceof Double) return DOUBLE;
+            return VALUE;
+        }
+    }
+
+    public static class Expr {
+        Type type() {
+            return Type.VALUE;
+        }
+
+        // True when the expression is statically known to produce an
+        // unboxed number
+        boolean isNumeric() {
+            return type() == Type.INTEGER || type() == Type.DOUBLE;
+        }
+
+        // True when the expression is statically known to produce a long
+        boolean isInteger() {
+            return type() == Type.INTEGER;
+        }
+
+        // True when evaluating the expression may call a function
+        boolean hasCall() {
+            return false;
+        }
+
+        static class Binary extends Expr {
+            final Expr left;
+            final Token operator;
+            final Expr right;
+            private final Type type;
+            private final boolean hasCall;
+
+            Binary(Expr left, Token operator, Expr right) {
+                this.left = left;
+                this.operator = operator;
+                this.right = right;
+                this.hasCall = left.hasCall() || right.hasCall();
+                this.type = switch (operator.type) {
+                    case PLUS, MINUS, MULTIPLY, DIVIDE, MOD -> Type.join(left.type(), right.type());
+                    case ASSIGN -> left.type();
+                    default -> Type.VALUE;
+                };
+            }
+
+            @Override
+            Type type() {
+                return type;
+            }
+
+            @Override
+            boolean hasCall() {
+                return hasCall;
+            }
+        }
+
+        static class Literal extends Expr {
+            final Object value;
+            private final Type type;
+
+            Literal(Object value) {
+                this(value, Type.of(value));
+            }
+
+            // An integer literal is BIG when integers may outgrow a long
+            Literal(Object value, Type type) {
+                this.value = value;
+                this.type = type;
+            }
+
+            @Override
+            Type type() {
+                return type;
+            }
+        }
+
+        static class Variable extends Expr {
+            final Token name;
+            final int slot;
+            final Type type;
+
+            Variable(Token name) {
+                this(name, -1, Type.VALUE);
+            }
+
+            Variable(Token name, int slot, Type type) {
+                this.name = name;
+                this.slot = slot;
+                this.type = type;
+            }
+
+            @Override
+            Type type() {
+                return type;
+            }
+        }
+
+        // A call of a top-level function; function is its index in
+        // declaration order and type its return type
+        static class Call extends Expr {
+            final Token name;
+            final List<Expr> arguments;
+            final int function;
+            private final Type type;
+
+            Call(Token name, List<Expr> arguments) {
+                this(name, arguments, -1, Type.VALUE);
+            }
+
+            Call(Token name, List<Expr> arguments, int function, Type type) {
+                this.name = name;
+                this.arguments = Collections.unmodifiableList(arguments);
+                this.function = function;
+                this.type = type;
+            }
+
+            @Override
+            Type type() {
+                return type;
+            }
+
+            @Override
+            boolean hasCall() {
+                return true;
+            }
+        }
+
+        // array[index]; type is the element type when the Resolver knows
+        // which kind of array it is, VALUE otherwise
+        static class Index extends Expr {
+            final Expr array;
+            final Token bracket;
+            final Expr index;
+            private final Type type;
+
+            Index(Expr array, Token bracket, Expr index) {
+                this(array, bracket, index, Type.VALUE);
+            }
+
+            Index(Expr array, Token bracket, Expr index, Type type) {
+                this.array = array;
+                this.bracket = bracket;
+                this.index = index;
+                this.type = type;
+            }
+
+            @Override
+            Type type() {
+                return type;
+            }
+
+            @Override
+            boolean hasCall() {
+                return array.hasCall() || index.hasCall();
+            }
+        }
+
+        // array[index] = value, typed like Index
+        static class IndexAssign extends Expr {
+            final Expr array;
+            final Token bracket;
+            final Expr index;
+            final Expr value;
+            private final Type type;
+
+            IndexAssign(Expr array, Token bracket, Expr index, Expr value) {
+                this(array, bracket, index, value, Type.VALUE);
+            }
+
+            IndexAssign(Expr array, Token bracket, Expr index, Expr value, Type type) {
+                this.array = array;
+                this.bracket = bracket;
+                this.index = index;
+                this.value = value;
+                this.type = type;
+            }
+
+            @Override
+            Type type() {
+                return type;
+            }
+
+            @Override
+            boolean hasCall() {
+                return array.hasCall() || index.hasCall() || value.hasCall();
+            }
+        }
+
+        // A call of a Builtin, which the Resolver makes of a Call by its name
+        static class BuiltinCall extends Expr {
+            final Token name;
+            final Builtin builtin;
+            final List<Expr> arguments;
+            private final Type type;
+
+            BuiltinCall(Token name, Builtin builtin, List<Expr> arguments, Type type) {
+                this.name = name;
+                this.builtin = builtin;
+                this.arguments = Collections.unmodifiableList(arguments);
+                this.type = type;
+            }
+
+            @Override
+            Type type() {
+                return type;
+            }
+
+            @Override
+            boolean hasCall() {
+                for (Expr argument : arguments) {
+                    if (argument.hasCall()) return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    static class Stmt {
+        // True when running the statement may call a function
+        boolean hasCall() {
+            return false;
+        }
+
+        static class Expression extends Stmt {
+            final Expr expression;
+
+            Expression(Expr expression) {
+                this.expression = expression;
+            }
+
+            @Override
+            boolean hasCall() {
+                return expression.hasCall();
+            }
+        }
+
+        static class Var extends Stmt {
+            final Token name;
+            final Expr initializer;
+            final int slot;
+            final Type type;
+
+            Var(Token name, Expr initializer) {
+                this(name, initializer, -1, Type.VALUE);
+            }
+
+            Var(Token name, Expr initializer, int slot, Type type) {
+                this.name = name;
+                this.initializer = initializer;
+                this.slot = slot;
+                this.type = type;
+            }
+
+            @Override
+            boolean hasCall() {
+                return initializer != null && initializer.hasCall();
+            }
+        }
+
+        // A numeric variable whose value is supplied when the program is
+        // run; an Int unless declared "param x: Double;". Also a function
+        // parameter, whose type is null unless declared.
+        static class Param extends Stmt {
+            final Token name;
+            final Type type;
+            final int slot;
+
+            Param(Token name, Type type) {
+                this(name, type, -1);
+            }
+
+            Param(Token name, Type type, int slot) {
+                this.name = name;
+                this.type = type;
+                this.slot = slot;
+            }
+        }
+
+        static class Print extends Stmt {
+            final Expr expression;
+
+            Print(Expr expression) {
+                this.expression = expression;
+            }
+
+            @Override
+            boolean hasCall() {
+                return expression.hasCall();
+            }
+        }
+
+        static class If extends Stmt {
+            final Expr condition;
+            final Stmt thenBranch;
+            final Stmt elseBranch;
+            private final boolean hasCall;
+
+            If(Expr condition, Stmt thenBranch, Stmt elseBranch) {
+                this.condition = condition;
+                this.thenBranch = thenBranch;
+                this.elseBranch = elseBranch;
+                this.hasCall = condition.hasCall() || thenBranch.hasCall()
+                        || (elseBranch != null && elseBranch.hasCall());
+            }
+
+            @Override
+            boolean hasCall() {
+                return hasCall;
+            }
+        }
+
+        static class While extends Stmt {
+            final Expr condition;
+            final Stmt body;
+
+            private final boolean hasCall;
+
+            While(Expr condition, Stmt body) {
+                this.condition = condition;
+                this.body = body;
+                this.hasCall = condition.hasCall() || body.hasCall();
+            }
+
+            @Override
+            boolean hasCall() {
+                return hasCall;
+            }
+        }
+
+        // "for (i in from..to) body": i takes every integer from from to to,
+        // both included, and the bounds are computed once before the first
+        // iteration. The body cannot assign to i. end is a slot the Resolver
+        // adds to keep the upper bound in. A parallel loop splits the range
+        // across threads (see ParallelLoop); its reductions are the only
+        // variables from outside its body it may assign.
+        static class For extends Stmt {
+            final Token name;
+            final Expr from;
+            final Expr to;
+            final Stmt body;
+            final boolean parallel;
+            final List<ReductionVariable> reductions;
+            final int slot;
+            final Type type;
+            final int end;
+            private final boolean hasCall;
+
+            For(Token name, Expr from, Expr to, Stmt body, boolean parallel, List<ReductionVariable> reductions) {
+                this(name, from, to, body, parallel, reductions, -1, Type.VALUE, -1);
+            }
+
+            For(Token name, Expr from, Expr to, Stmt body, boolean parallel, List<ReductionVariable> reductions,
+                int slot, Type type, int end) {
+                this.name = name;
+                this.from = from;
+                this.to = to;
+                this.body = body;
+                this.parallel = parallel;
+                this.reductions = Collections.unmodifiableList(reductions);
+                this.slot = slot;
+                this.type = type;
+                this.end = end;
+                this.hasCall = from.hasCall() || to.hasCall() || body.hasCall();
+            }
+
+            @Override
+            boolean hasCall() {
+                return hasCall;
+            }
+        }
+
+        // "sum total" in "parallel(sum total) for ...": every thread of the
+        // loop updates a copy of the variable of its own, and the copies are
+        // combined by the operator when the loop ends
+        static class ReductionVariable {
+            enum Operator { SUM, MIN, MAX, COUNT }
+
+            final Operator operator;
+            final Token name;
+            final int slot;
+            final Type type;
+
+            ReductionVariable(Operator operator, Token name) {
+                this(operator, name, -1, Type.VALUE);
+            }
+
+            ReductionVariable(Operator operator, Token name, int slot, Type type) {
+                this.operator = operator;
+                this.name = name;
+                this.slot = slot;
+                this.type = type;
+            }
+        }
+
+        static class Block extends Stmt {
+            final List<Stmt> statements;
+            private final boolean hasCall;
+
+            Block(List<Stmt> statements) {
+                this.statements = Collections.unmodifiableList(statements);
+                this.hasCall = hasCall(statements);
+            }
+
+            @Override
+            boolean hasCall() {
+                return hasCall;
+            }
+
+            static boolean hasCall(List<Stmt> statements) {
+                for (Stmt statement : statements) {
+                    if (statement != null && statement.hasCall()) return true;
+                }
+                return false;
+            }
+        }
+
+        // "fun name(a, b: Double): Int { ... }" at the top level. A function
+        // has a frame of its own, so its body only sees its parameters and
+        // its own variables; parameter i is slot i. Undeclared parameter and
+        // return types are inferred from the calls and return statements.
+        // A "@memo fun" caches its results (see MemoCache).
+        static class Function extends Stmt {
+            final Token name;
+            final List<Param> parameters;
+            // null when not declared, until resolved
+            final Type returnType;
+            final List<Stmt> body;
+            final boolean memo;
+            final int index;
+            final Type[] slotTypes;
+
+            Function(Token name, List<Param> parameters, Type returnType, List<Stmt> body, boolean memo) {
+                this(name, parameters, returnType, body, memo, -1, new Type[0]);
+            }
+
+            Function(Token name, List<Param> parameters, Type returnType, List<Stmt> body, boolean memo,
+                     int index, Type[] slotTypes) {
+                this.name = name;
+                this.parameters = Collections.unmodifiableList(parameters);
+                this.returnType = returnType;
+                this.body = Collections.unmodifiableList(body);
+                this.memo = memo;
+                this.index = index;
+                this.slotTypes = slotTypes;
+            }
+        }
+
+        // type is the enclosing function's return type; value is null for
+        // "return;". A tail call, "return f(...);", is made in the returning
+        // function's frame when neither function is memoized and both
+        // return the same type.
+        static class Return extends Stmt {
+            final Token keyword;
+            final Expr value;
+            final Type type;
+            final boolean tailCall;
+
+            Return(Token keyword, Expr value) {
+                this(keyword, value, Type.VALUE, false);
+            }
+
+            Return(Token keyword, Expr value, Type type, boolean tailCall) {
+                this.keyword = keyword;
+                this.value = value;
+                this.type = type;
+                this.tailCall = tailCall;
+            }
+
+            @Override
+            boolean hasCall() {
+                return value != null && value.hasCall();
+            }
+        }
+
+        // A loop the Optimizer recognised as a LoopReduction; loop runs
+        // whenever the reduction cannot be computed exactly
+        static class Reduction extends Stmt {
+            final LoopReduction reduction;
+            final While loop;
+
+            Reduction(LoopReduction reduction, While loop) {
+                this.reduction = reduction;
+                this.loop = loop;
+            }
+        }
+    }
+
+    private final TokenReader tokens;
+    // The first syntax error. declaration() synchronizes past it and parsing
+    // goes on to the end, where parse() throws it, so a program with an
+    // error is never run with the statements around it left out
+    private RuntimeException error;
+
+    Parser(List<Token> tokens) {
+        this(new ListReader(tokens));
+    }
+
+    Parser(TokenStream tokens) {
+        this(tokens.reader());
+    }
+
+    Parser(TokenReader tokens) {
+        this.tokens = tokens;
+    }
+
+    private static class ListReader implements TokenReader {
+        private final List<Token> tokens;
+        private int current = 0;
+
+        ListReader(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        @Override
+        public TokenType peekType() {
+            return tokens.get(current).type;
+        }
+
+        @Override
+        public Token previous() {
+            return tokens.get(current - 1);
+        }
+
+        @Override
+        public void advance() {
+            current++;
+        }
+    }
+
+    List<Stmt> parse() {
+        List<Stmt> statements = new ArrayList<>();
+        while (!isAtEnd()) {
+            statements.add(declaration());
+        }
+        if (error != null) throw error;
+        return statements;
+    }
+
+    private Stmt declaration() {
+        try {
+            if (match(TokenType.VAR)) return varDeclaration();
+            if (match(TokenType.PARAM)) return paramDeclaration();
+            if (match(TokenType.FUN)) return function(false);
+            if (match(TokenType.AT)) return annotatedFunction();
+            return statement();
+        } catch (RuntimeException syntaxError) {
+            if (error == null) error = syntaxError;
+            synchronize();
+            return null;
+        }
+    }
+
+    private Stmt varDeclaration() {
+        Token name = consume(TokenType.IDENTIFIER, "Expect variable name.");
+        Expr initializer = null;
+        if (match(TokenType.ASSIGN)) {
+            initializer = expression();
+        }
+        consume(TokenType.SEMICOLON, "Expect ';' after variable declaration.");
+        return new Stmt.Var(name, initializer);
+    }
+
+    private Stmt paramDeclaration() {
+        Token name = consume(TokenType.IDENTIFIER, "Expect parameter name.");
+        Type type = match(TokenType.COLON) ? typeName("Expect parameter type.") : Type.INTEGER;
+        consume(TokenType.SEMICOLON, "Expect ';' after parameter declaration.");
+        return new Stmt.Param(name, type);
+    }
+
+    private Type typeName(String message) {
+        Token typeName = consume(TokenType.IDENTIFIER, message);
+        return switch (typeName.lexeme) {
+            case "Int", "Long" -> Type.INTEGER;
+            case "Double" -> Type.DOUBLE;
+            default -> throw new RuntimeException("Unknown type '" + typeName.lexeme + "'.");
+        };
+    }
+
+    private Stmt annotatedFunction() {
+        Token annotation = consume(TokenType.IDENTIFIER, "Expect annotation name.");
+        if (!annotation.lexeme.equals("memo")) {
+            throw new RuntimeException("Unknown annotation '@" + annotation.lexeme + "'.");
+        }
+        consume(TokenType.FUN, "Expect 'fun' after annotation.");
+        return function(true);
+    }
+
+    private Stmt function(boolean memo) {
+        Token name = consume(TokenType.IDENTIFIER, "Expect function name.");
+        consume(TokenType.LPAREN, "Expect '(' after function name.");
+        List<Stmt.Param> parameters = new ArrayList<>();
+        if (!check(TokenType.RPAREN)) {
+            do {
+                Token parameter = consume(TokenType.IDENTIFIER, "Expect parameter name.");
+                Type type = match(TokenType.COLON) ? typeName("Expect parameter type.") : null;
+                parameters.add(new Stmt.Param(parameter, type));
+            } while (match(TokenType.COMMA));
+        }
+        consume(TokenType.RPAREN, "Expect ')' after parameters.");
+        Type returnType = match(TokenType.COLON) ? typeName("Expect return type.") : null;
+        consume(TokenType.LBRACE, "Expect '{' before function body.");
+        return new Stmt.Function(name, parameters, returnType, block(), memo);
+    }
+
+    private Stmt statement() {
+        if (match(TokenType.IF)) return ifStatement();
+        if (match(TokenType.PRINT)) return printStatement();
+        if (match(TokenType.WHILE)) return whileStatement();
+        if (match(TokenType.FOR)) return forStatement(false, List.of());
+        if (match(TokenType.PARALLEL)) return parallelStatement();
+        if (match(TokenType.RETURN)) return returnStatement();
+        if (match(TokenType.LBRACE)) return new Stmt.Block(block());
+        return expressionStatement();
+    }
+
+    private Stmt ifStatement() {
+        consume(TokenType.LPAREN, "Expect '(' after 'if'.");
+        Expr condition = expression();
+        consume(TokenType.RPAREN, "Expect ')' after if condition.");
+
+        Stmt thenBranch = statement();
+        Stmt elseBranch = null;
+        if (match(TokenType.ELSE)) {
+            elseBranch = statement();
+        }
+
+        return new Stmt.If(condition, thenBranch, elseBranch);
+    }
+
+    private Stmt whileStatement() {
+        consume(TokenType.LPAREN, "Expect '(' after 'while'.");
+        Expr condition = expression();
+        consume(TokenType.RPAREN, "Expect ')' after condition.");
+        Stmt body = statement();
+
+        return new Stmt.While(condition, body);
+    }
+
+    private Stmt forStatement(boolean parallel, List<Stmt.ReductionVariable> reductions) {
+        consume(TokenType.LPAREN, "Expect '(' after 'for'.");
+        Token name = consume(TokenType.IDENTIFIER, "Expect loop variable name.");
+        consume(TokenType.IN, "Expect 'in' after loop variable.");
+        Expr from = expression();
+        consume(TokenType.DOT_DOT, "Expect '..' in range.");
+        Expr to = expression();
+        consume(TokenType.RPAREN, "Expect ')' after range.");
+        Stmt body = statement();
+
+        return new Stmt.For(name, from, to, body, parallel, reductions);
+    }
+
+    // "parallel for (...)", or "parallel(sum total, max best) for (...)"
+    // with reductions
+    private Stmt parallelStatement() {
+        List<Stmt.ReductionVariable> reductions = new ArrayList<>();
+        if (match(TokenType.LPAREN)) {
+            do {
+                Token operator = consume(TokenType.IDENTIFIER, "Expect reduction operator.");
+                Token name = consume(TokenType.IDENTIFIER, "Expect reduction variable name.");
+                reductions.add(new Stmt.ReductionVariable(reductionOperator(operator), name));
+            } while (match(TokenType.COMMA));
+            consume(TokenType.RPAREN, "Expect ')' after reductions.");
+        }
+        consume(TokenType.FOR, "Expect 'for' after 'parallel'.");
+        return forStatement(true, reductions);
+    }
+
+    private Stmt.ReductionVariable.Operator reductionOperator(Token operator) {
+        return switch (operator.lexeme) {
+            case "sum" -> Stmt.ReductionVariable.Operator.SUM;
+            case "min" -> Stmt.ReductionVariable.Operator.MIN;
+            case "max" -> Stmt.ReductionVariable.Operator.MAX;
+            case "count" -> Stmt.ReductionVariable.Operator.COUNT;
+            default -> throw new RuntimeException("Unknown reduction '" + operator.lexeme + "'.");
+        };
+    }
+
+    private List<Stmt> block() {
+        List<Stmt> statements = new ArrayList<>();
+
+        while (!check(TokenType.RBRACE) && !isAtEnd()) {
+            statements.add(declaration());
+        }
+
+        consume(TokenType.RBRACE, "Expect '}' after block.");
+        return statements;
+    }
+
+    private Stmt returnStatement() {
+        Token keyword = previous();
+        Expr value = check(TokenType.SEMICOLON) ? null : expression();
+        consume(TokenType.SEMICOLON, "Expect ';' after return value.");
+        return new Stmt.Return(keyword, value);
+    }
+
+    private Stmt printStatement() {
+        Expr value = expression();
+        consume(TokenType.SEMICOLON, "Expect ';' after value.");
+        return new Stmt.Print(value);
+    }
+
+    private Stmt expressionStatement() {
+        Expr expr = expression();
+        consume(TokenType.SEMICOLON, "Expect ';' after expression.");
+        return new Stmt.Expression(expr);
+    }
+
+    private Expr expression() {
+        return assignment();
+    }
+
+    private Expr assignment() {
+        Expr expr = equality();
+
+        if (match(TokenType.ASSIGN)) {
+            Token equals = previous();
+            Expr value = assignment();
+
+            if (expr instanceof Expr.Variable) {
+                Token name = ((Expr.Variable)expr).name;
+                return new Expr.Binary(new Expr.Variable(name), equals, value);
+            }
+            if (expr instanceof Expr.Index) {
+                Expr.Index target = (Expr.Index) expr;
+                return new Expr.IndexAssign(target.array, target.bracket, target.index, value);
+            }
+
+            throw new RuntimeException("Invalid assignment target.");
+        }
+
+        return expr;
+    }
+
+    private Expr equality() {
+        Expr expr = comparison();
+
+        while (match(TokenType.EQUALS)) {
+            Token operator = previous();
+            Expr right = comparison();
+            expr = new Expr.Binary(expr, operator, right);
+        }
+
+        return expr;
+    }
+
+    private Expr comparison() {
+        Expr expr = term();
+
+        while (match(TokenType.LESS, TokenType.GREATER)) {
+            Token operator = previous();
+            Expr right = term();
+            expr = new Expr.Binary(expr, operator, right);
+        }
+
+        return expr;
+    }
+
+    private Expr term() {
+        Expr expr = factor();
+
+        while (match(TokenType.PLUS, TokenType.MINUS)) {
+            Token operator = previous();
+            Expr right = factor();
+            expr = new Expr.Binary(expr, operator, right);
+        }
+
+        return expr;
+    }
+
+    private Expr factor() {
+        Expr expr = subscript();
+
+        while (match(TokenType.MULTIPLY, TokenType.DIVIDE, TokenType.MOD)) {
+            Token operator = previous();
+            Expr right = subscript();
+            expr = new Expr.Binary(expr, operator, right);
+        }
+
+        return expr;
+    }
+
+    private Expr subscript() {
+        Expr expr = primary();
+
+        while (match(TokenType.LBRACKET)) {
+            Token bracket = previous();
+            Expr index = expression();
+            consume(TokenType.RBRACKET, "Expect ']' after index.");
+            expr = new Expr.Index(expr, bracket, index);
+        }
+
+        return expr;
+    }
+
+    private Expr primary() {
+        if (match(TokenType.NUMBER)) {
+            return new Expr.Literal(previous().literal);
+        }
+
+        if (match(TokenType.IDENTIFIER)) {
+            Token name = previous();
+            if (match(TokenType.LPAREN)) return call(name);
+            return new Expr.Variable(name);
+        }
+
+        if (match(TokenType.LPAREN)) {
+            Expr expr = expression();
+            consume(TokenType.RPAREN, "Expect ')' after expression.");
+            return expr;
+        }
+
+        throw new RuntimeException("Expect expression.");
+    }
+
+    private Expr call(Token name) {
+        List<Expr> arguments = new ArrayList<>();
+        if (!check(TokenType.RPAREN)) {
+            do {
+                arguments.add(expression());
+            } while (match(TokenType.COMMA));
+        }
+        consume(TokenType.RPAREN, "Expect ')' after arguments.");
+        return new Expr.Call(name, arguments);
+    }
+
+    private boolean match(TokenType... types) {
+        for (TokenType type : types) {
+            if (check(type)) {
+                advance();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Token consume(TokenType type, String message) {
+        if (check(type)) return advance();
+        throw new RuntimeException(message);
+    }
+
+    private boolean check(TokenType type) {
+        if (isAtEnd()) return false;
+        return tokens.peekType() == type;
+    }
+
+    private Token advance() {
+        if (!isAtEnd()) tokens.advance();
+        return previous();
+    }
+
+    private boolean isAtEnd() {
+        return tokens.peekType() == TokenType.EOF;
+    }
+
+    private Token previous() {
+        return tokens.previous();
+    }
+
+    private void synchronize() {
+        advance();
+
+        while (!isAtEnd()) {
+            if (previous().type == TokenType.SEMICOLON) return;
+
+            switch (tokens.peekType()) {
+                case IF, WHILE, FOR, PARALLEL, VAR, PARAM, PRINT, FUN, RETURN, AT -> {
+                    return;
+                }
+            }
+
+            advance();
+        }
+    }
+}
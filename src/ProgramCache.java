@@ -0,0 +1,103 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+// Bounded least-recently-used cache from program source to its
+// CompiledProgram, so resubmitting the same text skips the Lexer, Parser
+// and Resolver. Bounded both by entry count and by an estimate of the
+// memory each entry retains. All methods are thread-safe.
+class ProgramCache {
+    // Rough bytes retained per source character: the text itself plus the
+    // tokens and syntax tree built from it
+    static final int BYTES_PER_CHAR = 24;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Function<String, CompiledProgram> compiler;
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, CompiledProgram> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    ProgramCache(int maxEntries, long maxBytes, Function<String, CompiledProgram> compiler) {
+        if (maxEntries < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("Cache limits must not be negative.");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.compiler = compiler;
+    }
+
+    CompiledProgram get(String source) {
+        synchronized (this) {
+            CompiledProgram program = entries.get(source);
+            if (program != null) {
+                hits++;
+                return program;
+            }
+            misses++;
+        }
+
+        // Compile outside the lock so one large program doesn't block every
+        // other lookup; if two threads race, the first one to finish wins
+        CompiledProgram program = compiler.apply(source);
+        synchronized (this) {
+            CompiledProgram existing = entries.get(source);
+            if (existing != null) return existing;
+            long weight = weigh(source);
+            if (maxEntries > 0 && weight <= maxBytes) {
+                entries.put(source, program);
+                bytes += weight;
+                evict();
+            }
+        }
+        return program;
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long weightedSize() {
+        return bytes;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ProgramCache[entries=" + entries.size() + ", bytes=" + bytes + ", hits=" + hits
+                + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, CompiledProgram>> iterator = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+            bytes -= weigh(iterator.next().getKey());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    private static long weigh(String source) {
+        return (long) source.length() * BYTES_PER_CHAR;
+    }
+}
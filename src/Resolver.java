@@ -0,0 +1,953 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Assigns every declared variable a frame slot so the Interpreter can use
+// indexed loads and stores instead of looking names up at runtime. Slots
+// that only ever hold integers are typed INTEGER and ones that only hold
+// Doubles DOUBLE; both live unboxed. A slot assigned both is a VALUE, so
+// every value in it keeps its own type: an Int is not turned into a Double
+// because of an assignment somewhere else in the program.
+//
+// The top level and each function get a frame of their own. A function's
+// parameters are typed by the arguments of its calls and its return type by
+// its return statements, in the same inference as the variables, so a
+// function called with integers works on unboxed longs. Declared types are
+// checked instead: an Int parameter passed a Double is an error.
+//
+// Arrays are VALUEs, but the Resolver also infers which kind of array each
+// slot, parameter and return value holds, so indexing an array known to be
+// an IntArray works on longs and a DoubleArray on doubles.
+//
+// With -Dkotlin.bigIntegers=true integers are typed BIG instead: they are
+// still computed on longs, but a result that overflows becomes a BigInteger
+// rather than an error. BIG values are boxed, so this mode is opt-in.
+class Resolver {
+    static final boolean BIG_INTEGERS = Boolean.getBoolean("kotlin.bigIntegers");
+
+    private final boolean bigIntegers;
+    private final Scope global = new Scope();
+    // The scope whose statements are being declared or resolved
+    private Scope scope = global;
+    // Parameters are bound before the program starts, so their declared
+    // types are where inference starts for their slots
+    private final List<Parser.Stmt.Param> parameters = new ArrayList<>();
+    // Top-level functions in declaration order, and the scope of each
+    private final Map<String, Integer> functionIndexes = new HashMap<>();
+    private final List<Parser.Stmt.Function> functions = new ArrayList<>();
+    private final List<Scope> functionScopes = new ArrayList<>();
+    // The variables of the for loops being declared, innermost last, and
+    // the slot each loop keeps its upper bound in
+    private final List<String> loopVariables = new ArrayList<>();
+    private final Map<Parser.Stmt.For, Integer> bounds = new IdentityHashMap<>();
+    // The bodies of the parallel loops being declared, innermost last, and
+    // every parallel loop of the program
+    private final List<ParallelBody> parallelBodies = new ArrayList<>();
+    private final List<ParallelBody> parallelLoops = new ArrayList<>();
+
+    // The slots of one frame and every value stored into them
+    private static final class Scope {
+        final Map<String, Integer> slots = new LinkedHashMap<>();
+        // null stands for "var x;" without an initializer
+        final List<List<Definition>> definitions = new ArrayList<>();
+        // Every value a function returns; null stands for "return;" and for
+        // running off the end of the body
+        final List<Definition> returns = new ArrayList<>();
+        // Functions called from this scope, for finding the ones that print
+        final Set<Integer> callees = new HashSet<>();
+        boolean prints;
+        Parser.Type[] types = new Parser.Type[0];
+        Parser.Type returnType;
+        // The element type of the arrays each slot holds, inferred like the
+        // types: INTEGER or DOUBLE for one kind of array, VALUE otherwise
+        Parser.Type[] kinds = new Parser.Type[0];
+        Parser.Type returnKind;
+        // Slots no variable names, which hold the upper bounds of for loops
+        final Set<Integer> bounds = new HashSet<>();
+        // Parameters whose type is declared, and whether the return type is
+        final Set<Integer> declared = new HashSet<>();
+        boolean returnDeclared;
+
+        int declare(String name) {
+            Integer slot = slots.get(name);
+            if (slot == null) {
+                slot = slots.size();
+                slots.put(name, slot);
+                definitions.add(new ArrayList<>());
+            }
+            return slot;
+        }
+
+        // A name no identifier can have keeps the slot apart from variables
+        int declareBound() {
+            int slot = declare("#" + slots.size());
+            bounds.add(slot);
+            return slot;
+        }
+    }
+
+    // What the body of a parallel loop assigns, declares, calls and prints,
+    // nested loops included
+    private static final class ParallelBody {
+        final Parser.Stmt.For loop;
+        final Set<String> assigned = new HashSet<>();
+        final Set<String> declared = new HashSet<>();
+        final Set<Integer> callees = new HashSet<>();
+        boolean prints;
+
+        ParallelBody(Parser.Stmt.For loop) {
+            this.loop = loop;
+        }
+    }
+
+    // A value and the scope its variables are looked up in: an argument is
+    // computed in the caller's scope but stored in the callee's frame
+    private static final class Definition {
+        final Parser.Expr value;
+        final Scope scope;
+
+        Definition(Parser.Expr value, Scope scope) {
+            this.value = value;
+            this.scope = scope;
+        }
+    }
+
+    Resolver() {
+        this(BIG_INTEGERS);
+    }
+
+    Resolver(boolean bigIntegers) {
+        this.bigIntegers = bigIntegers;
+    }
+
+    List<Parser.Stmt> resolve(List<Parser.Stmt> statements) {
+        // Functions are registered first, so they can be called above their declaration
+        for (Parser.Stmt statement : statements) {
+            if (statement instanceof Parser.Stmt.Function) register((Parser.Stmt.Function) statement);
+        }
+        for (Parser.Stmt statement : statements) {
+            if (statement instanceof Parser.Stmt.Function) {
+                declareFunction((Parser.Stmt.Function) statement);
+            } else if (statement != null) {
+                declare(statement);
+            }
+        }
+        checkMemoizedFunctions();
+        checkParallelLoops();
+        inferTypes();
+        for (Parser.Stmt.Param parameter : parameters) {
+            checkParameter(parameter, global.types[global.slots.get(parameter.name.lexeme)]);
+        }
+        for (int i = 0; i < functions.size(); i++) {
+            Parser.Stmt.Function function = functions.get(i);
+            Scope body = functionScopes.get(i);
+            for (int slot = 0; slot < function.parameters.size(); slot++) {
+                Parser.Stmt.Param parameter = function.parameters.get(slot);
+                if (parameter.type != null) checkParameter(parameter, body.types[slot]);
+            }
+            checkReturnType(function, body.returnType);
+        }
+        return resolveAll(statements);
+    }
+
+    int slotCount() {
+        return global.slots.size();
+    }
+
+    // The type of every slot, indexed by slot
+    Parser.Type[] slotTypes() {
+        return global.types.clone();
+    }
+
+    // Parameter names and their slots, in declaration order
+    List<String> parameterNames() {
+        List<String> names = new ArrayList<>();
+        for (Parser.Stmt.Param parameter : parameters) {
+            names.add(parameter.name.lexeme);
+        }
+        return names;
+    }
+
+    int[] parameterSlots() {
+        int[] result = new int[parameters.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = global.slots.get(parameters.get(i).name.lexeme);
+        }
+        return result;
+    }
+
+    private void register(Parser.Stmt.Function function) {
+        String name = function.name.lexeme;
+        if (functionIndexes.containsKey(name)) {
+            throw new RuntimeException("Duplicate function '" + name + "'.");
+        }
+        if (Builtin.named(name) != null) {
+            throw new RuntimeException("Function '" + name + "' is built in.");
+        }
+        Scope body = new Scope();
+        for (Parser.Stmt.Param parameter : function.parameters) {
+            if (body.slots.containsKey(parameter.name.lexeme)) {
+                throw new RuntimeException("Duplicate parameter '" + parameter.name.lexeme + "'.");
+            }
+            body.declare(parameter.name.lexeme);
+        }
+        functionIndexes.put(name, functions.size());
+        functions.add(function);
+        functionScopes.add(body);
+    }
+
+    private void declareFunction(Parser.Stmt.Function function) {
+        scope = functionScopes.get(functionIndexes.get(function.name.lexeme));
+        for (Parser.Stmt statement : function.body) {
+            if (statement != null) declare(statement);
+        }
+        if (!alwaysReturns(function.body)) scope.returns.add(new Definition(null, scope));
+        scope = global;
+    }
+
+    private void declare(Parser.Stmt stmt) {
+        if (stmt instanceof Parser.Stmt.Expression) {
+            declare(((Parser.Stmt.Expression) stmt).expression);
+        } else if (stmt instanceof Parser.Stmt.Print) {
+            declare(((Parser.Stmt.Print) stmt).expression);
+            scope.prints = true;
+            for (ParallelBody body : parallelBodies) {
+                body.prints = true;
+            }
+        } else if (stmt instanceof Parser.Stmt.Var) {
+            Parser.Stmt.Var var = (Parser.Stmt.Var) stmt;
+            // The initializer is resolved first, so "var x = x;" is still an error
+            if (var.initializer != null) declare(var.initializer);
+            checkNotLoopVariable(var.name);
+            for (ParallelBody body : parallelBodies) {
+                body.declared.add(var.name.lexeme);
+            }
+            int slot = scope.declare(var.name.lexeme);
+            scope.definitions.get(slot).add(new Definition(var.initializer, scope));
+        } else if (stmt instanceof Parser.Stmt.Param) {
+            Parser.Stmt.Param param = (Parser.Stmt.Param) stmt;
+            Token name = param.name;
+            if (scope != global) {
+                throw new RuntimeException("Parameter '" + name.lexeme + "' must be declared outside of functions.");
+            }
+            for (Parser.Stmt.Param parameter : parameters) {
+                if (parameter.name.lexeme.equals(name.lexeme)) {
+                    throw new RuntimeException("Duplicate parameter '" + name.lexeme + "'.");
+                }
+            }
+            parameters.add(param);
+            global.declare(name.lexeme);
+        } else if (stmt instanceof Parser.Stmt.Block) {
+            for (Parser.Stmt statement : ((Parser.Stmt.Block) stmt).statements) {
+                if (statement != null) declare(statement);
+            }
+        } else if (stmt instanceof Parser.Stmt.If) {
+            Parser.Stmt.If ifStmt = (Parser.Stmt.If) stmt;
+            declare(ifStmt.condition);
+            declare(ifStmt.thenBranch);
+            if (ifStmt.elseBranch != null) declare(ifStmt.elseBranch);
+        } else if (stmt instanceof Parser.Stmt.While) {
+            Parser.Stmt.While whileStmt = (Parser.Stmt.While) stmt;
+            declare(whileStmt.condition);
+            declare(whileStmt.body);
+        } else if (stmt instanceof Parser.Stmt.For) {
+            declareFor((Parser.Stmt.For) stmt);
+        } else if (stmt instanceof Parser.Stmt.Return) {
+            Parser.Stmt.Return returnStmt = (Parser.Stmt.Return) stmt;
+            if (scope == global) throw new RuntimeException("Return outside of a function.");
+            if (!parallelBodies.isEmpty()) throw new RuntimeException("Return inside a parallel loop.");
+            if (returnStmt.value != null) declare(returnStmt.value);
+            scope.returns.add(new Definition(returnStmt.value, scope));
+        } else if (stmt instanceof Parser.Stmt.Function) {
+            throw new RuntimeException("Function '" + ((Parser.Stmt.Function) stmt).name.lexeme
+                    + "' must be declared at the top level.");
+        } else {
+            throw new RuntimeException("Unknown statement type.");
+        }
+    }
+
+    private void declare(Parser.Expr expr) {
+        if (expr instanceof Parser.Expr.Binary) {
+            Parser.Expr.Binary binary = (Parser.Expr.Binary) expr;
+            declare(binary.left);
+            declare(binary.right);
+            if (binary.operator.type == TokenType.ASSIGN) {
+                Token name = ((Parser.Expr.Variable) binary.left).name;
+                int slot = slotOf(name);
+                checkNotLoopVariable(name);
+                for (ParallelBody body : parallelBodies) {
+                    body.assigned.add(name.lexeme);
+                }
+                scope.definitions.get(slot).add(new Definition(binary.right, scope));
+            }
+        } else if (expr instanceof Parser.Expr.Variable) {
+            slotOf(((Parser.Expr.Variable) expr).name);
+        } else if (expr instanceof Parser.Expr.Index) {
+            Parser.Expr.Index index = (Parser.Expr.Index) expr;
+            declare(index.array);
+            declare(index.index);
+        } else if (expr instanceof Parser.Expr.IndexAssign) {
+            Parser.Expr.IndexAssign assign = (Parser.Expr.IndexAssign) expr;
+            declare(assign.array);
+            declare(assign.index);
+            declare(assign.value);
+        } else if (expr instanceof Parser.Expr.Call && Builtin.named(((Parser.Expr.Call) expr).name.lexeme) != null) {
+            Parser.Expr.Call call = (Parser.Expr.Call) expr;
+            int expected = Builtin.named(call.name.lexeme).arity;
+            if (call.arguments.size() != expected) {
+                throw new RuntimeException("Function '" + call.name.lexeme + "' expects " + expected
+                        + " arguments but got " + call.arguments.size() + ".");
+            }
+            for (Parser.Expr argument : call.arguments) {
+                declare(argument);
+            }
+        } else if (expr instanceof Parser.Expr.Call) {
+            Parser.Expr.Call call = (Parser.Expr.Call) expr;
+            int index = functionOf(call.name);
+            int expected = functions.get(index).parameters.size();
+            if (call.arguments.size() != expected) {
+                throw new RuntimeException("Function '" + call.name.lexeme + "' expects " + expected
+                        + " arguments but got " + call.arguments.size() + ".");
+            }
+            Scope callee = functionScopes.get(index);
+            for (int i = 0; i < expected; i++) {
+                declare(call.arguments.get(i));
+                callee.definitions.get(i).add(new Definition(call.arguments.get(i), scope));
+            }
+            scope.callees.add(index);
+            for (ParallelBody body : parallelBodies) {
+                body.callees.add(index);
+            }
+        } else if (!(expr instanceof Parser.Expr.Literal)) {
+            throw new RuntimeException("Unknown expression type.");
+        }
+    }
+
+    // The loop variable is declared like a var that starts as an integer.
+    // Its slot is shared with any other loop or variable of the same name,
+    // as slots are function-wide.
+    private void declareFor(Parser.Stmt.For forStmt) {
+        declare(forStmt.from);
+        declare(forStmt.to);
+        Token name = forStmt.name;
+        checkNotLoopVariable(name);
+        for (ParallelBody body : parallelBodies) {
+            body.declared.add(name.lexeme);
+        }
+        int slot = scope.declare(name.lexeme);
+        scope.definitions.get(slot).add(new Definition(new Parser.Expr.Literal(0L), scope));
+        bounds.put(forStmt, scope.declareBound());
+        ParallelBody parallelBody = null;
+        if (forStmt.parallel) {
+            parallelBody = new ParallelBody(forStmt);
+            parallelBodies.add(parallelBody);
+            parallelLoops.add(parallelBody);
+        }
+        loopVariables.add(name.lexeme);
+        declare(forStmt.body);
+        loopVariables.remove(loopVariables.size() - 1);
+        if (parallelBody == null) return;
+        parallelBodies.remove(parallelBodies.size() - 1);
+
+        Map<String, Parser.Stmt.ReductionVariable.Operator> reductions = new HashMap<>();
+        for (Parser.Stmt.ReductionVariable reduction : forStmt.reductions) {
+            String variable = reduction.name.lexeme;
+            slotOf(reduction.name);
+            if (variable.equals(name.lexeme)) {
+                throw new RuntimeException("Loop variable '" + variable + "' cannot be a reduction variable.");
+            }
+            if (reductions.put(variable, reduction.operator) != null) {
+                throw new RuntimeException("Duplicate reduction variable '" + variable + "'.");
+            }
+        }
+        // Each thread runs the body on a copy of the frame, so anything
+        // else it assigned from outside would be lost
+        for (String variable : parallelBody.assigned) {
+            if (!parallelBody.declared.contains(variable) && !reductions.containsKey(variable)) {
+                throw new RuntimeException("Parallel loop assigns to '" + variable
+                        + "', which is not one of its reductions.");
+            }
+        }
+        checkReductionUpdates(forStmt.body, reductions);
+    }
+
+    // The threads' copies of a reduction variable are combined by its
+    // operator, which only gives the result of the loop run in order when
+    // every update is of the operator's own form. Any other read or write
+    // of the variable in the body would depend on how the range is split.
+    private static void checkReductionUpdates(Parser.Stmt stmt,
+                                              Map<String, Parser.Stmt.ReductionVariable.Operator> reductions) {
+        if (stmt instanceof Parser.Stmt.Expression) {
+            Parser.Expr expression = ((Parser.Stmt.Expression) stmt).expression;
+            Parser.Expr added = addedValue(expression, reductions);
+            checkReductionUpdates(added != null ? added : expression, reductions);
+        } else if (stmt instanceof Parser.Stmt.Print) {
+            checkReductionUpdates(((Parser.Stmt.Print) stmt).expression, reductions);
+        } else if (stmt instanceof Parser.Stmt.Var) {
+            Parser.Stmt.Var var = (Parser.Stmt.Var) stmt;
+            checkNotReduction(var.name, reductions);
+            if (var.initializer != null) checkReductionUpdates(var.initializer, reductions);
+        } else if (stmt instanceof Parser.Stmt.Block) {
+            for (Parser.Stmt statement : ((Parser.Stmt.Block) stmt).statements) {
+                if (statement != null) checkReductionUpdates(statement, reductions);
+            }
+        } else if (stmt instanceof Parser.Stmt.If) {
+            Parser.Stmt.If ifStmt = (Parser.Stmt.If) stmt;
+            Parser.Expr compared = comparedValue(ifStmt, reductions);
+            if (compared != null) {
+                checkReductionUpdates(compared, reductions);
+            } else {
+                checkReductionUpdates(ifStmt.condition, reductions);
+                checkReductionUpdates(ifStmt.thenBranch, reductions);
+            }
+            if (ifStmt.elseBranch != null) checkReductionUpdates(ifStmt.elseBranch, reductions);
+        } else if (stmt instanceof Parser.Stmt.While) {
+            Parser.Stmt.While whileStmt = (Parser.Stmt.While) stmt;
+            checkReductionUpdates(whileStmt.condition, reductions);
+            checkReductionUpdates(whileStmt.body, reductions);
+        } else if (stmt instanceof Parser.Stmt.For) {
+            Parser.Stmt.For forStmt = (Parser.Stmt.For) stmt;
+            checkNotReduction(forStmt.name, reductions);
+            checkReductionUpdates(forStmt.from, reductions);
+            checkReductionUpdates(forStmt.to, reductions);
+            checkReductionUpdates(forStmt.body, reductions);
+        }
+    }
+
+    private static void checkReductionUpdates(Parser.Expr expr,
+                                              Map<String, Parser.Stmt.ReductionVariable.Operator> reductions) {
+        if (expr instanceof Parser.Expr.Variable) {
+            checkNotReduction(((Parser.Expr.Variable) expr).name, reductions);
+        } else if (expr instanceof Parser.Expr.Binary) {
+            checkReductionUpdates(((Parser.Expr.Binary) expr).left, reductions);
+            checkReductionUpdates(((Parser.Expr.Binary) expr).right, reductions);
+        } else if (expr instanceof Parser.Expr.Index) {
+            checkReductionUpdates(((Parser.Expr.Index) expr).array, reductions);
+            checkReductionUpdates(((Parser.Expr.Index) expr).index, reductions);
+        } else if (expr instanceof Parser.Expr.IndexAssign) {
+            Parser.Expr.IndexAssign assign = (Parser.Expr.IndexAssign) expr;
+            checkReductionUpdates(assign.array, reductions);
+            checkReductionUpdates(assign.index, reductions);
+            checkReductionUpdates(assign.value, reductions);
+        } else if (expr instanceof Parser.Expr.Call) {
+            for (Parser.Expr argument : ((Parser.Expr.Call) expr).arguments) {
+                checkReductionUpdates(argument, reductions);
+            }
+        }
+    }
+
+    private static void checkNotReduction(Token name, Map<String, Parser.Stmt.ReductionVariable.Operator> reductions) {
+        Parser.Stmt.ReductionVariable.Operator operator = reductions.get(name.lexeme);
+        if (operator == null) return;
+        String variable = name.lexeme;
+        String update = switch (operator) {
+            case SUM -> variable + " = " + variable + " + value;";
+            case COUNT -> variable + " = " + variable + " + 1;";
+            case MIN -> "if (value < " + variable + ") " + variable + " = value;";
+            case MAX -> "if (value > " + variable + ") " + variable + " = value;";
+        };
+        throw new RuntimeException("Reduction variable '" + variable + "' can only be updated by '" + update + "'.");
+    }
+
+    // The value of "s = s + value;" or "s = value + s;" for a sum s, or the
+    // 1 of "c = c + 1;" for a count c; null for any other expression
+    private static Parser.Expr addedValue(Parser.Expr expr,
+                                          Map<String, Parser.Stmt.ReductionVariable.Operator> reductions) {
+        if (!(expr instanceof Parser.Expr.Binary) || ((Parser.Expr.Binary) expr).operator.type != TokenType.ASSIGN) {
+            return null;
+        }
+        Parser.Expr.Binary assign = (Parser.Expr.Binary) expr;
+        String variable = ((Parser.Expr.Variable) assign.left).name.lexeme;
+        Parser.Stmt.ReductionVariable.Operator operator = reductions.get(variable);
+        if (operator == null || !(assign.right instanceof Parser.Expr.Binary)) return null;
+        Parser.Expr.Binary sum = (Parser.Expr.Binary) assign.right;
+        if (sum.operator.type != TokenType.PLUS) return null;
+        if (operator == Parser.Stmt.ReductionVariable.Operator.SUM) {
+            if (isVariable(sum.left, variable)) return sum.right;
+            if (isVariable(sum.right, variable)) return sum.left;
+        } else if (operator == Parser.Stmt.ReductionVariable.Operator.COUNT && isVariable(sum.left, variable)
+                && sum.right instanceof Parser.Expr.Literal
+                && Long.valueOf(1).equals(((Parser.Expr.Literal) sum.right).value)) {
+            return sum.right;
+        }
+        return null;
+    }
+
+    // The value of "if (value < m) m = value;" or "if (m > value) m =
+    // value;" for a min m, and of the same with the comparison reversed for
+    // a max; null for any other if statement
+    private static Parser.Expr comparedValue(Parser.Stmt.If ifStmt,
+                                             Map<String, Parser.Stmt.ReductionVariable.Operator> reductions) {
+        Parser.Stmt then = ifStmt.thenBranch;
+        if (then instanceof Parser.Stmt.Block && ((Parser.Stmt.Block) then).statements.size() == 1) {
+            then = ((Parser.Stmt.Block) then).statements.get(0);
+        }
+        if (!(then instanceof Parser.Stmt.Expression) || !(ifStmt.condition instanceof Parser.Expr.Binary)) {
+            return null;
+        }
+        Parser.Expr expression = ((Parser.Stmt.Expression) then).expression;
+        if (!(expression instanceof Parser.Expr.Binary)
+                || ((Parser.Expr.Binary) expression).operator.type != TokenType.ASSIGN) {
+            return null;
+        }
+        Parser.Expr.Binary assign = (Parser.Expr.Binary) expression;
+        String variable = ((Parser.Expr.Variable) assign.left).name.lexeme;
+        Parser.Stmt.ReductionVariable.Operator operator = reductions.get(variable);
+        if (operator != Parser.Stmt.ReductionVariable.Operator.MIN
+                && operator != Parser.Stmt.ReductionVariable.Operator.MAX) {
+            return null;
+        }
+        Parser.Expr.Binary condition = (Parser.Expr.Binary) ifStmt.condition;
+        boolean min = operator == Parser.Stmt.ReductionVariable.Operator.MIN;
+        TokenType valueFirst = min ? TokenType.LESS : TokenType.GREATER;
+        TokenType variableFirst = min ? TokenType.GREATER : TokenType.LESS;
+        Parser.Expr value;
+        if (condition.operator.type == valueFirst && isVariable(condition.right, variable)) {
+            value = condition.left;
+        } else if (condition.operator.type == variableFirst && isVariable(condition.left, variable)) {
+            value = condition.right;
+        } else {
+            return null;
+        }
+        return isSame(value, assign.right) ? value : null;
+    }
+
+    private static boolean isVariable(Parser.Expr expr, String name) {
+        return expr instanceof Parser.Expr.Variable && ((Parser.Expr.Variable) expr).name.lexeme.equals(name);
+    }
+
+    // True when the two expressions are written the same and assign nothing,
+    // so they compute the same value
+    private static boolean isSame(Parser.Expr a, Parser.Expr b) {
+        if (a instanceof Parser.Expr.Literal && b instanceof Parser.Expr.Literal) {
+            return ((Parser.Expr.Literal) a).value.equals(((Parser.Expr.Literal) b).value);
+        } else if (a instanceof Parser.Expr.Variable && b instanceof Parser.Expr.Variable) {
+            return isVariable(b, ((Parser.Expr.Variable) a).name.lexeme);
+        } else if (a instanceof Parser.Expr.Binary && b instanceof Parser.Expr.Binary) {
+            Parser.Expr.Binary left = (Parser.Expr.Binary) a;
+            Parser.Expr.Binary right = (Parser.Expr.Binary) b;
+            return left.operator.type != TokenType.ASSIGN && left.operator.type == right.operator.type
+                    && isSame(left.left, right.left) && isSame(left.right, right.right);
+        } else if (a instanceof Parser.Expr.Index && b instanceof Parser.Expr.Index) {
+            Parser.Expr.Index left = (Parser.Expr.Index) a;
+            Parser.Expr.Index right = (Parser.Expr.Index) b;
+            return isSame(left.array, right.array) && isSame(left.index, right.index);
+        }
+        return false;
+    }
+
+    private void checkNotLoopVariable(Token name) {
+        if (loopVariables.contains(name.lexeme)) {
+            throw new RuntimeException("Cannot assign to loop variable '" + name.lexeme + "'.");
+        }
+    }
+
+    private int slotOf(Token name) {
+        return slotOf(name, scope);
+    }
+
+    private static int slotOf(Token name, Scope scope) {
+        Integer slot = scope.slots.get(name.lexeme);
+        if (slot == null) {
+            throw new RuntimeException("Undefined variable '" + name.lexeme + "'.");
+        }
+        return slot;
+    }
+
+    private int functionOf(Token name) {
+        Integer index = functionIndexes.get(name.lexeme);
+        if (index == null) {
+            throw new RuntimeException("Undefined function '" + name.lexeme + "'.");
+        }
+        return index;
+    }
+
+    // True when control never runs past the end of the statements
+    private static boolean alwaysReturns(List<Parser.Stmt> statements) {
+        for (Parser.Stmt statement : statements) {
+            if (alwaysReturns(statement)) return true;
+        }
+        return false;
+    }
+
+    private static boolean alwaysReturns(Parser.Stmt stmt) {
+        if (stmt instanceof Parser.Stmt.Return) return true;
+        if (stmt instanceof Parser.Stmt.Block) return alwaysReturns(((Parser.Stmt.Block) stmt).statements);
+        if (stmt instanceof Parser.Stmt.If) {
+            Parser.Stmt.If ifStmt = (Parser.Stmt.If) stmt;
+            return ifStmt.elseBranch != null && alwaysReturns(ifStmt.thenBranch) && alwaysReturns(ifStmt.elseBranch);
+        }
+        return false;
+    }
+
+    // A memoized call that is answered from the cache does not run, so a
+    // memoized function must not print, directly or through what it calls.
+    // Functions only see their own frame, so that is the only side effect.
+    private void checkMemoizedFunctions() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Scope function : functionScopes) {
+                if (function.prints) continue;
+                for (int callee : function.callees) {
+                    if (functionScopes.get(callee).prints) {
+                        function.prints = true;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < functions.size(); i++) {
+            if (functions.get(i).memo && functionScopes.get(i).prints) {
+                throw new RuntimeException("Memoized function '" + functions.get(i).name.lexeme + "' must not print.");
+            }
+        }
+    }
+
+    // The threads of a parallel loop would print in no particular order, so
+    // neither its body nor what it calls may print. Runs once
+    // checkMemoizedFunctions has marked every function that prints.
+    private void checkParallelLoops() {
+        for (ParallelBody body : parallelLoops) {
+            boolean prints = body.prints;
+            for (int callee : body.callees) {
+                prints |= functionScopes.get(callee).prints;
+            }
+            if (prints) throw new RuntimeException("A parallel loop must not print.");
+        }
+    }
+
+    // Starts every slot and return type with no type (null) and widens it
+    // to fit each value stored into it until nothing changes, so a variable
+    // only ever assigned integers stays an unboxed long
+    private void inferTypes() {
+        global.types = new Parser.Type[global.slots.size()];
+        for (Parser.Stmt.Param parameter : parameters) {
+            int slot = global.slots.get(parameter.name.lexeme);
+            global.types[slot] = integerType(parameter.type);
+            global.declared.add(slot);
+        }
+        for (int i = 0; i < functions.size(); i++) {
+            Parser.Stmt.Function function = functions.get(i);
+            Scope body = functionScopes.get(i);
+            body.types = new Parser.Type[body.slots.size()];
+            for (int slot = 0; slot < function.parameters.size(); slot++) {
+                Parser.Type declared = function.parameters.get(slot).type;
+                if (declared != null) {
+                    body.types[slot] = integerType(declared);
+                    body.declared.add(slot);
+                }
+            }
+            if (function.returnType != null) {
+                body.returnType = integerType(function.returnType);
+                body.returnDeclared = true;
+            }
+            body.kinds = new Parser.Type[body.slots.size()];
+        }
+        global.kinds = new Parser.Type[global.slots.size()];
+        boolean changed = true;
+        while (changed) {
+            changed = inferTypes(global);
+            for (Scope body : functionScopes) {
+                changed |= inferTypes(body);
+                Parser.Type type = body.returnType;
+                Parser.Type kind = body.returnKind;
+                for (Definition value : body.returns) {
+                    type = join(type, typeOf(value), body.returnDeclared);
+                    kind = joinKinds(kind, kindOf(value));
+                }
+                if (type != body.returnType || kind != body.returnKind) {
+                    body.returnType = type;
+                    body.returnKind = kind;
+                    changed = true;
+                }
+            }
+        }
+        for (Scope body : functionScopes) {
+            if (body.returnType == null) body.returnType = Parser.Type.VALUE;
+            if (body.returnKind == null) body.returnKind = Parser.Type.VALUE;
+            fillUnknownTypes(body);
+        }
+        fillUnknownTypes(global);
+    }
+
+    // One pass over the slots of a scope; true when a type widened
+    private boolean inferTypes(Scope scope) {
+        boolean changed = false;
+        for (int slot = 0; slot < scope.types.length; slot++) {
+            Parser.Type type = scope.types[slot];
+            Parser.Type kind = scope.kinds[slot];
+            for (Definition value : scope.definitions.get(slot)) {
+                type = join(type, typeOf(value), scope.declared.contains(slot));
+                kind = joinKinds(kind, kindOf(value));
+            }
+            if (type != scope.types[slot] || kind != scope.kinds[slot]) {
+                scope.types[slot] = type;
+                scope.kinds[slot] = kind;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // The bounds of for loops are always kept as longs
+    private static void fillUnknownTypes(Scope scope) {
+        for (int bound : scope.bounds) {
+            scope.types[bound] = Parser.Type.INTEGER;
+        }
+        for (int slot = 0; slot < scope.types.length; slot++) {
+            if (scope.types[slot] == null) scope.types[slot] = Parser.Type.VALUE;
+            if (scope.kinds[slot] == null) scope.kinds[slot] = Parser.Type.VALUE;
+        }
+    }
+
+    private Parser.Type typeOf(Definition definition) {
+        return definition.value == null ? Parser.Type.VALUE : typeOf(definition.value, definition.scope);
+    }
+
+    // null while an operand's type is still unknown
+    private Parser.Type typeOf(Parser.Expr expr, Scope scope) {
+        if (expr instanceof Parser.Expr.Literal) {
+            return integerType(Parser.Type.of(((Parser.Expr.Literal) expr).value));
+        } else if (expr instanceof Parser.Expr.Variable) {
+            return scope.types[slotOf(((Parser.Expr.Variable) expr).name, scope)];
+        } else if (expr instanceof Parser.Expr.Index) {
+            return elementType(kindOf(((Parser.Expr.Index) expr).array, scope));
+        } else if (expr instanceof Parser.Expr.IndexAssign) {
+            return elementType(kindOf(((Parser.Expr.IndexAssign) expr).array, scope));
+        } else if (expr instanceof Parser.Expr.Call) {
+            Parser.Expr.Call call = (Parser.Expr.Call) expr;
+            Builtin builtin = Builtin.named(call.name.lexeme);
+            if (builtin != null) return builtinType(builtin, kindOf(call.arguments.get(0), scope));
+            return functionScopes.get(functionOf(call.name)).returnType;
+        }
+        Parser.Expr.Binary binary = (Parser.Expr.Binary) expr;
+        return switch (binary.operator.type) {
+            case ASSIGN -> scope.types[slotOf(((Parser.Expr.Variable) binary.left).name, scope)];
+            case EQUALS, LESS, GREATER -> Parser.Type.VALUE;
+            default -> join(typeOf(binary.left, scope), typeOf(binary.right, scope));
+        };
+    }
+
+    private Parser.Type kindOf(Definition definition) {
+        return definition.value == null ? Parser.Type.VALUE : kindOf(definition.value, definition.scope);
+    }
+
+    // The element type of the arrays an expression gives; null while it is
+    // still unknown, VALUE when it is not known to be one kind of array
+    private Parser.Type kindOf(Parser.Expr expr, Scope scope) {
+        if (expr instanceof Parser.Expr.Variable) {
+            return scope.kinds[slotOf(((Parser.Expr.Variable) expr).name, scope)];
+        } else if (expr instanceof Parser.Expr.Binary
+                && ((Parser.Expr.Binary) expr).operator.type == TokenType.ASSIGN) {
+            return scope.kinds[slotOf(((Parser.Expr.Variable) ((Parser.Expr.Binary) expr).left).name, scope)];
+        } else if (expr instanceof Parser.Expr.Call) {
+            Parser.Expr.Call call = (Parser.Expr.Call) expr;
+            Builtin builtin = Builtin.named(call.name.lexeme);
+            if (builtin == null) return functionScopes.get(functionOf(call.name)).returnKind;
+            return switch (builtin) {
+                case INT_ARRAY -> Parser.Type.INTEGER;
+                case DOUBLE_ARRAY -> Parser.Type.DOUBLE;
+                case COPY, PLUS, TIMES -> kindOf(call.arguments.get(0), scope);
+                default -> Parser.Type.VALUE;
+            };
+        }
+        return Parser.Type.VALUE;
+    }
+
+    private static Parser.Type joinKinds(Parser.Type a, Parser.Type b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return a == b ? a : Parser.Type.VALUE;
+    }
+
+    private Parser.Type elementType(Parser.Type kind) {
+        if (kind == Parser.Type.INTEGER) return integerType(Parser.Type.INTEGER);
+        return kind == Parser.Type.DOUBLE ? Parser.Type.DOUBLE : Parser.Type.VALUE;
+    }
+
+    private Parser.Type builtinType(Builtin builtin, Parser.Type kind) {
+        return switch (builtin) {
+            case SIZE -> integerType(Parser.Type.INTEGER);
+            case SUM, DOT -> elementType(kind);
+            default -> Parser.Type.VALUE;
+        };
+    }
+
+    private void checkParameter(Parser.Stmt.Param parameter, Parser.Type type) {
+        String name = parameter.name.lexeme;
+        if (type == Parser.Type.VALUE) {
+            throw new RuntimeException("Parameter '" + name + "' must only hold numbers.");
+        }
+        if (type != integerType(parameter.type)) {
+            throw new RuntimeException("Parameter '" + name + "' is an Int but is assigned a Double.");
+        }
+    }
+
+    private void checkReturnType(Parser.Stmt.Function function, Parser.Type type) {
+        if (function.returnType == null) return;
+        String name = function.name.lexeme;
+        if (type == Parser.Type.VALUE) {
+            throw new RuntimeException("Function '" + name + "' must return a number on every path.");
+        }
+        if (type != integerType(function.returnType)) {
+            throw new RuntimeException("Function '" + name + "' is declared to return an Int but returns a Double.");
+        }
+    }
+
+    // BIG in place of INTEGER when integers may outgrow a long
+    private Parser.Type integerType(Parser.Type type) {
+        return bigIntegers && type == Parser.Type.INTEGER ? Parser.Type.BIG : type;
+    }
+
+    private static Parser.Type join(Parser.Type a, Parser.Type b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return Parser.Type.join(a, b);
+    }
+
+    // The type of a slot or return value given a and b. Integers and
+    // Doubles together make it a VALUE, unless its type is declared: then it
+    // widens to DOUBLE and checkParameter or checkReturnType reports it.
+    private static Parser.Type join(Parser.Type a, Parser.Type b, boolean declared) {
+        Parser.Type type = join(a, b);
+        if (declared || a == null || b == null || type != Parser.Type.DOUBLE) return type;
+        return a == b ? type : Parser.Type.VALUE;
+    }
+
+    private List<Parser.Stmt> resolveAll(List<Parser.Stmt> statements) {
+        List<Parser.Stmt> resolved = new ArrayList<>();
+        for (Parser.Stmt statement : statements) {
+            // Statements that failed to parse are left as nulls by the Parser
+            if (statement != null) {
+                resolved.add(resolve(statement));
+            }
+        }
+        return resolved;
+    }
+
+    private Parser.Stmt resolve(Parser.Stmt stmt) {
+        if (stmt instanceof Parser.Stmt.Expression) {
+            return new Parser.Stmt.Expression(resolve(((Parser.Stmt.Expression) stmt).expression));
+        } else if (stmt instanceof Parser.Stmt.Print) {
+            return new Parser.Stmt.Print(resolve(((Parser.Stmt.Print) stmt).expression));
+        } else if (stmt instanceof Parser.Stmt.Var) {
+            Parser.Stmt.Var var = (Parser.Stmt.Var) stmt;
+            Parser.Expr initializer = var.initializer != null ? resolve(var.initializer) : null;
+            int slot = slotOf(var.name);
+            return new Parser.Stmt.Var(var.name, initializer, slot, scope.types[slot]);
+        } else if (stmt instanceof Parser.Stmt.Param) {
+            Parser.Stmt.Param param = (Parser.Stmt.Param) stmt;
+            return new Parser.Stmt.Param(param.name, param.type, slotOf(param.name));
+        } else if (stmt instanceof Parser.Stmt.Block) {
+            return new Parser.Stmt.Block(resolveAll(((Parser.Stmt.Block) stmt).statements));
+        } else if (stmt instanceof Parser.Stmt.If) {
+            Parser.Stmt.If ifStmt = (Parser.Stmt.If) stmt;
+            Parser.Expr condition = resolve(ifStmt.condition);
+            Parser.Stmt thenBranch = resolve(ifStmt.thenBranch);
+            Parser.Stmt elseBranch = ifStmt.elseBranch != null ? resolve(ifStmt.elseBranch) : null;
+            return new Parser.Stmt.If(condition, thenBranch, elseBranch);
+        } else if (stmt instanceof Parser.Stmt.While) {
+            Parser.Stmt.While whileStmt = (Parser.Stmt.While) stmt;
+            return new Parser.Stmt.While(resolve(whileStmt.condition), resolve(whileStmt.body));
+        } else if (stmt instanceof Parser.Stmt.For) {
+            return resolveFor((Parser.Stmt.For) stmt);
+        } else if (stmt instanceof Parser.Stmt.Return) {
+            Parser.Stmt.Return returnStmt = (Parser.Stmt.Return) stmt;
+            Parser.Expr value = returnStmt.value != null ? resolve(returnStmt.value) : null;
+            return new Parser.Stmt.Return(returnStmt.keyword, value, scope.returnType, isTailCall(value));
+        } else if (stmt instanceof Parser.Stmt.Function) {
+            Parser.Stmt.Function function = (Parser.Stmt.Function) stmt;
+            int index = functionOf(function.name);
+            scope = functionScopes.get(index);
+            List<Parser.Stmt> body = resolveAll(function.body);
+            Parser.Stmt.Function resolved = new Parser.Stmt.Function(function.name, function.parameters,
+                    scope.returnType, body, function.memo, index, scope.types.clone());
+            scope = global;
+            return resolved;
+        }
+        throw new RuntimeException("Unknown statement type.");
+    }
+
+    private Parser.Stmt resolveFor(Parser.Stmt.For forStmt) {
+        Parser.Expr from = resolve(forStmt.from);
+        Parser.Expr to = resolve(forStmt.to);
+        if (!isInteger(from.type()) || !isInteger(to.type())) {
+            throw new RuntimeException("Range bounds must be integers.");
+        }
+        int slot = slotOf(forStmt.name);
+        if (!isInteger(scope.types[slot])) {
+            throw new RuntimeException("Loop variable '" + forStmt.name.lexeme + "' must only hold integers.");
+        }
+        List<Parser.Stmt.ReductionVariable> reductions = new ArrayList<>();
+        for (Parser.Stmt.ReductionVariable reduction : forStmt.reductions) {
+            String name = reduction.name.lexeme;
+            int variable = slotOf(reduction.name);
+            Parser.Type type = scope.types[variable];
+            if (type == Parser.Type.VALUE) {
+                throw new RuntimeException("Reduction variable '" + name + "' must only hold numbers.");
+            }
+            if (reduction.operator == Parser.Stmt.ReductionVariable.Operator.COUNT && !isInteger(type)) {
+                throw new RuntimeException("Count variable '" + name + "' must only hold integers.");
+            }
+            reductions.add(new Parser.Stmt.ReductionVariable(reduction.operator, reduction.name, variable, type));
+        }
+        return new Parser.Stmt.For(forStmt.name, from, to, resolve(forStmt.body), forStmt.parallel, reductions,
+                slot, scope.types[slot], bounds.get(forStmt));
+    }
+
+    private static boolean isInteger(Parser.Type type) {
+        return type == Parser.Type.INTEGER || type == Parser.Type.BIG;
+    }
+
+    // A returned call can reuse the returning function's frame unless a
+    // cache has to see its result, or the result needs converting
+    private boolean isTailCall(Parser.Expr value) {
+        if (!(value instanceof Parser.Expr.Call)) return false;
+        int callee = ((Parser.Expr.Call) value).function;
+        return !functions.get(callee).memo && !functions.get(functionScopes.indexOf(scope)).memo
+                && functionScopes.get(callee).returnType == scope.returnType;
+    }
+
+    private Parser.Expr resolve(Parser.Expr expr) {
+        if (expr instanceof Parser.Expr.Literal) {
+            Parser.Expr.Literal literal = (Parser.Expr.Literal) expr;
+            Parser.Type type = integerType(literal.type());
+            return type == literal.type() ? literal : new Parser.Expr.Literal(literal.value, type);
+        } else if (expr instanceof Parser.Expr.Binary) {
+            Parser.Expr.Binary binary = (Parser.Expr.Binary) expr;
+            return new Parser.Expr.Binary(resolve(binary.left), binary.operator, resolve(binary.right));
+        } else if (expr instanceof Parser.Expr.Variable) {
+            Token name = ((Parser.Expr.Variable) expr).name;
+            int slot = slotOf(name);
+            return new Parser.Expr.Variable(name, slot, scope.types[slot]);
+        } else if (expr instanceof Parser.Expr.Index) {
+            Parser.Expr.Index index = (Parser.Expr.Index) expr;
+            return new Parser.Expr.Index(resolve(index.array), index.bracket, resolve(index.index),
+                    typeOf(index, scope));
+        } else if (expr instanceof Parser.Expr.IndexAssign) {
+            Parser.Expr.IndexAssign assign = (Parser.Expr.IndexAssign) expr;
+            return new Parser.Expr.IndexAssign(resolve(assign.array), assign.bracket, resolve(assign.index),
+                    resolve(assign.value), typeOf(assign, scope));
+        } else if (expr instanceof Parser.Expr.Call) {
+            Parser.Expr.Call call = (Parser.Expr.Call) expr;
+            List<Parser.Expr> arguments = new ArrayList<>();
+            for (Parser.Expr argument : call.arguments) {
+                arguments.add(resolve(argument));
+            }
+            Builtin builtin = Builtin.named(call.name.lexeme);
+            if (builtin != null) {
+                return new Parser.Expr.BuiltinCall(call.name, builtin, arguments, typeOf(call, scope));
+            }
+            int index = functionOf(call.name);
+            return new Parser.Expr.Call(call.name, arguments, index, functionScopes.get(index).returnType);
+        }
+        throw new RuntimeException("Unknown expression type.");
+    }
+}
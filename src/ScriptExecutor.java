@@ -0,0 +1,125 @@
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Runs many independent programs concurrently, each on its own virtual
+// thread. Unlike runProgram, nothing is printed: each submission's output
+// and error are captured into the ScriptResult its CompletableFuture
+// completes with.
+//
+// At most maxConcurrent programs are admitted at a time. Once that many are
+// running, submit() blocks until one of them finishes, so a caller that
+// submits faster than programs complete cannot pile up unbounded work.
+//
+// Sources are compiled through KotlinInterpreter's ProgramCache, so a
+// program submitted many times is compiled once and every run shares the
+// same CompiledProgram.
+class ScriptExecutor implements AutoCloseable {
+    // Output is collected in memory, so runs start with a small buffer
+    // instead of BufferedOutput's default 64 KB
+    private static final int OUTPUT_BUFFER_SIZE = 4096;
+
+    private final ExecutorService threads = newThreadPerTaskExecutor();
+    private final Semaphore admission;
+    // null for tiered runs: interpreted first, then JIT-compiled
+    private final KotlinInterpreter.ExecutionMode mode;
+    private final ExecutionLimits limits;
+
+    ScriptExecutor(int maxConcurrent) {
+        this(maxConcurrent, ExecutionLimits.NONE);
+    }
+
+    // Runs are tiered like CompiledProgram.run without a mode
+    ScriptExecutor(int maxConcurrent, ExecutionLimits limits) {
+        this(maxConcurrent, null, limits);
+    }
+
+    ScriptExecutor(int maxConcurrent, KotlinInterpreter.ExecutionMode mode, ExecutionLimits limits) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("maxConcurrent must be at least 1.");
+        }
+        this.admission = new Semaphore(maxConcurrent);
+        this.mode = mode;
+        this.limits = limits;
+    }
+
+    // Blocks while maxConcurrent programs are already running. The future
+    // completes with the program's result, including when it fails; it only
+    // completes exceptionally for JVM errors such as running out of memory.
+    CompletableFuture<ScriptResult> submit(String source, double... arguments) throws InterruptedException {
+        admission.acquire();
+        double[] copy = arguments.clone();
+        CompletableFuture<ScriptResult> result = new CompletableFuture<>();
+        try {
+            threads.execute(() -> {
+                // The slot is freed before completing, so a callback that
+                // submits another program never waits on its own slot
+                try {
+                    ScriptResult outcome = run(source, copy);
+                    admission.release();
+                    result.complete(outcome);
+                } catch (Throwable error) {
+                    admission.release();
+                    result.completeExceptionally(error);
+                }
+            });
+        } catch (RejectedExecutionException error) {
+            admission.release();
+            throw error;
+        }
+        return result;
+    }
+
+    // Stops accepting programs and waits for the submitted ones to finish
+    @Override
+    public void close() {
+        threads.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (threads.awaitTermination(1, TimeUnit.DAYS)) break;
+            } catch (InterruptedException error) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private ScriptResult run(String source, double[] arguments) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BufferedOutput out = new BufferedOutput(bytes, OUTPUT_BUFFER_SIZE);
+        long start = System.nanoTime();
+        String error = null;
+        try {
+            CompiledProgram program = KotlinInterpreter.programCache().get(source);
+            if (mode == null) {
+                program.run(out, limits, arguments);
+            } else {
+                program.run(mode, out, limits, arguments);
+            }
+        } catch (RuntimeException failure) {
+            error = failure.getMessage();
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        return new ScriptResult(bytes.toString(StandardCharsets.UTF_8), error, elapsed);
+    }
+
+    // Virtual threads need Java 21 while the build targets 17, so the factory
+    // is looked up at runtime; older JVMs get a platform thread per program
+    private static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException error) {
+            return Executors.newCachedThreadPool();
+        } catch (IllegalAccessException | InvocationTargetException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+}
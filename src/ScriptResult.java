@@ -0,0 +1,27 @@
+import java.time.Duration;
+
+// The outcome of one program run by a ScriptExecutor: everything it printed,
+// the error it stopped with, and how long it took.
+final class ScriptResult {
+    final String output;
+    // The message runProgram would print after "Error: ", or null when the
+    // program finished normally. Output printed before the error is kept.
+    final String error;
+    // From the start of compiling (or the cache lookup) to the end of the run
+    final Duration elapsed;
+
+    ScriptResult(String output, String error, Duration elapsed) {
+        this.output = output;
+        this.error = error;
+        this.elapsed = elapsed;
+    }
+
+    boolean succeeded() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return "ScriptResult[output=" + output + ", error=" + error + ", elapsed=" + elapsed + "]";
+    }
+}
@@ -0,0 +1,181 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+// Pull-based lexer for the Parser: reads characters from a Reader or
+// CharBuffer through a fixed-size window and scans one token ahead, so
+// memory use does not grow with the size of the input.
+//
+// A character the language doesn't know ends the token stream early; the
+// error is kept and thrown by rethrowError() once parsing has finished, in
+// place of the syntax error the early end causes.
+class StreamingLexer implements TokenReader {
+    static final int WINDOW_SIZE = 8192;
+
+    private final Readable input;
+    // Characters read but not yet scanned, between position and limit
+    private final CharBuffer window = CharBuffer.allocate(WINDOW_SIZE);
+    private boolean exhausted = false;
+    private final StringBuilder text = new StringBuilder();
+    // One Token per distinct identifier, shared by all of its occurrences
+    private final Map<String, Token> identifiers = new HashMap<>();
+
+    private TokenType nextType;
+    private Token next;
+    private Token previous;
+    private RuntimeException error;
+
+    StreamingLexer(Readable input) {
+        this.input = input;
+        window.flip();
+        scan();
+    }
+
+    @Override
+    public TokenType peekType() {
+        return nextType;
+    }
+
+    @Override
+    public Token previous() {
+        return previous;
+    }
+
+    @Override
+    public void advance() {
+        previous = next;
+        scan();
+    }
+
+    void rethrowError() {
+        if (error != null) throw error;
+    }
+
+    private void scan() {
+        try {
+            scanToken();
+        } catch (RuntimeException lexError) {
+            error = lexError;
+            emit(TokenType.EOF);
+        }
+    }
+
+    private void scanToken() {
+        while (true) {
+            int c = read();
+            switch (c) {
+                case -1 -> emit(TokenType.EOF);
+                case '(' -> emit(TokenType.LPAREN);
+                case ')' -> emit(TokenType.RPAREN);
+                case '{' -> emit(TokenType.LBRACE);
+                case '}' -> emit(TokenType.RBRACE);
+                case '[' -> emit(TokenType.LBRACKET);
+                case ']' -> emit(TokenType.RBRACKET);
+                case '+' -> emit(TokenType.PLUS);
+                case '-' -> emit(TokenType.MINUS);
+                case '*' -> emit(TokenType.MULTIPLY);
+                case '/' -> emit(TokenType.DIVIDE);
+                case '%' -> emit(TokenType.MOD);
+                case '=' -> emit(match('=') ? TokenType.EQUALS : TokenType.ASSIGN);
+                case '<' -> emit(TokenType.LESS);
+                case '>' -> emit(TokenType.GREATER);
+                case ';' -> emit(TokenType.SEMICOLON);
+                case ':' -> emit(TokenType.COLON);
+                case ',' -> emit(TokenType.COMMA);
+                case '@' -> emit(TokenType.AT);
+                case '.' -> {
+                    if (!match('.')) throw new RuntimeException("Unexpected character: .");
+                    emit(TokenType.DOT_DOT);
+                }
+                case ' ', '\r', '\t', '\n' -> {
+                    continue;
+                }
+                default -> {
+                    if (isDigit(c)) {
+                        number((char) c);
+                    } else if (isAlpha(c)) {
+                        identifier((char) c);
+                    } else {
+                        throw new RuntimeException("Unexpected character: " + (char) c);
+                    }
+                }
+            }
+            return;
+        }
+    }
+
+    private void identifier(char first) {
+        text.setLength(0);
+        text.append(first);
+        while (isAlphaNumeric(peek())) text.append((char) read());
+
+        String lexeme = text.toString();
+        TokenType type = Lexer.KEYWORDS.getOrDefault(lexeme, TokenType.IDENTIFIER);
+        if (type != TokenType.IDENTIFIER) {
+            emit(type);
+            return;
+        }
+        nextType = type;
+        next = identifiers.computeIfAbsent(lexeme, name -> new Token(TokenType.IDENTIFIER, name, null));
+    }
+
+    private void number(char first) {
+        text.setLength(0);
+        text.append(first);
+        while (isDigit(peek())) text.append((char) read());
+
+        String lexeme = text.toString();
+        nextType = TokenType.NUMBER;
+        next = new Token(TokenType.NUMBER, lexeme, Lexer.numberLiteral(lexeme));
+    }
+
+    private void emit(TokenType type) {
+        nextType = type;
+        next = TokenStream.fixedToken(type);
+    }
+
+    private boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private boolean isAlpha(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private boolean isAlphaNumeric(int c) {
+        return isAlpha(c) || isDigit(c);
+    }
+
+    private boolean match(char expected) {
+        if (peek() != expected) return false;
+        read();
+        return true;
+    }
+
+    private int read() {
+        if (!fill()) return -1;
+        return window.get();
+    }
+
+    private int peek() {
+        if (!fill()) return -1;
+        return window.get(window.position());
+    }
+
+    // Makes sure at least one unread character is in the window
+    private boolean fill() {
+        while (!window.hasRemaining()) {
+            if (exhausted) return false;
+            window.clear();
+            try {
+                exhausted = input.read(window) < 0;
+            } catch (IOException ioError) {
+                throw new UncheckedIOException(ioError);
+            }
+            window.flip();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,11 @@
+class Token {
+    final TokenType type;
+    final String lexeme;
+    final Object literal;
+
+    Token(TokenType type, String lexeme, Object literal) {
+        this.type = type;
+        this.lexeme = lexeme;
+        this.literal = literal;
+    }
+}
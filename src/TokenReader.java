@@ -0,0 +1,9 @@
+// What the Parser reads tokens through: the type of the next token, the
+// token consumed last, and a way to move forward
+interface TokenReader {
+    TokenType peekType();
+
+    Token previous();
+
+    void advance();
+}
@@ -0,0 +1,161 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Compact token list built by Lexer.scanTokenStream(): one byte for the
+// type and two ints for the source range of each token, plus a pool holding
+// the values of NUMBER tokens in source order (literals longer than
+// Lexer.MAX_PLAIN_DIGITS are parsed again from the source instead).
+// Scanning creates no object per token; Token objects are only made when
+// the Parser asks for one.
+final class TokenStream {
+    private static final TokenType[] TYPES = TokenType.values();
+    // Shared tokens for every type whose lexeme never changes
+    private static final Token[] FIXED = new Token[TYPES.length];
+
+    static {
+        for (TokenType type : TYPES) {
+            String lexeme = fixedLexeme(type);
+            if (lexeme != null) FIXED[type.ordinal()] = new Token(type, lexeme, null);
+        }
+    }
+
+    // The shared Token for a type with a fixed lexeme, or null for NUMBER and IDENTIFIER
+    static Token fixedToken(TokenType type) {
+        return FIXED[type.ordinal()];
+    }
+
+    private static String fixedLexeme(TokenType type) {
+        return switch (type) {
+            case NUMBER, IDENTIFIER -> null;
+            case PLUS -> "+";
+            case MINUS -> "-";
+            case MULTIPLY -> "*";
+            case DIVIDE -> "/";
+            case MOD -> "%";
+            case ASSIGN -> "=";
+            case EQUALS -> "==";
+            case LESS -> "<";
+            case GREATER -> ">";
+            case LPAREN -> "(";
+            case RPAREN -> ")";
+            case LBRACE -> "{";
+            case RBRACE -> "}";
+            case LBRACKET -> "[";
+            case RBRACKET -> "]";
+            case SEMICOLON -> ";";
+            case COLON -> ":";
+            case COMMA -> ",";
+            case AT -> "@";
+            case DOT_DOT -> "..";
+            case IF -> "if";
+            case ELSE -> "else";
+            case WHILE -> "while";
+            case VAR -> "var";
+            case PARAM -> "param";
+            case PRINT -> "print";
+            case FUN -> "fun";
+            case RETURN -> "return";
+            case FOR -> "for";
+            case IN -> "in";
+            case PARALLEL -> "parallel";
+            case EOF -> "";
+        };
+    }
+
+    final CharSequence source;
+    private byte[] types;
+    private int[] starts;
+    private int[] ends;
+    private long[] literals;
+    private int count = 0;
+    private int literalCount = 0;
+
+    TokenStream(CharSequence source) {
+        this.source = source;
+        int capacity = Math.max(16, source.length() / 4);
+        types = new byte[capacity];
+        starts = new int[capacity];
+        ends = new int[capacity];
+        literals = new long[Math.max(16, capacity / 4)];
+    }
+
+    void add(TokenType type, int start, int end) {
+        if (count == types.length) {
+            int capacity = count * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        types[count] = (byte) type.ordinal();
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    void addNumber(int start, int end, long value) {
+        if (literalCount == literals.length) {
+            literals = Arrays.copyOf(literals, literalCount * 2);
+        }
+        literals[literalCount++] = value;
+        add(TokenType.NUMBER, start, end);
+    }
+
+    int size() {
+        return count;
+    }
+
+    TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    int start(int index) {
+        return starts[index];
+    }
+
+    int end(int index) {
+        return ends[index];
+    }
+
+    TokenReader reader() {
+        return new Reader();
+    }
+
+    // Forward-only cursor; NUMBER values are taken from the pool in order
+    private class Reader implements TokenReader {
+        // One Token per distinct identifier, shared by all of its occurrences
+        private final Map<String, Token> identifiers = new HashMap<>();
+        private int current = 0;
+        private int literal = 0;
+        private Token previous;
+
+        @Override
+        public TokenType peekType() {
+            return type(current);
+        }
+
+        @Override
+        public Token previous() {
+            return previous;
+        }
+
+        @Override
+        public void advance() {
+            previous = materialize(current++);
+        }
+
+        private Token materialize(int index) {
+            TokenType type = type(index);
+            Token fixed = FIXED[type.ordinal()];
+            if (fixed != null) return fixed;
+            String lexeme = source.subSequence(starts[index], ends[index]).toString();
+            if (type == TokenType.NUMBER) {
+                Object value = lexeme.length() <= Lexer.MAX_PLAIN_DIGITS
+                        ? (Object) literals[literal++]
+                        : Lexer.numberLiteral(lexeme);
+                return new Token(type, lexeme, value);
+            }
+            return identifiers.computeIfAbsent(lexeme, text -> new Token(type, text, null));
+        }
+    }
+}
@@ -0,0 +1,8 @@
+// Token types for lexical analysis
+enum TokenType {
+    NUMBER, IDENTIFIER, PLUS, MINUS, MULTIPLY, DIVIDE, MOD,
+    ASSIGN, EQUALS, LESS, GREATER, LPAREN, RPAREN,
+    IF, ELSE, WHILE, VAR, PARAM, PRINT, EOF,
+    LBRACE, RBRACE, LBRACKET, RBRACKET, SEMICOLON, COLON,
+    FUN, RETURN, COMMA, AT, FOR, IN, PARALLEL, DOT_DOT
+}
@@ -0,0 +1,476 @@
+import java.util.Arrays;
+
+// Executes a Chunk produced by the BytecodeCompiler. The stack is three
+// parallel arrays sharing one stack pointer: integers for unboxed longs,
+// numbers for unboxed doubles and values for everything else; each
+// instruction knows which one it uses.
+//
+// Function calls do not recurse in Java: CALL saves the caller's frame and
+// return address in a CallFrame and jumps to the function, and RETURN
+// restores them. TAIL_CALL reuses the CallFrame of the function making it,
+// so tail recursion does not get any deeper. The stack grows as calls need
+// more of it.
+class VirtualMachine {
+    // The operator of each of ADD to MOD and BADD to BMOD, in opcode order
+    private static final TokenType[] OPERATORS = {
+            TokenType.PLUS, TokenType.MINUS, TokenType.MULTIPLY, TokenType.DIVIDE, TokenType.MOD
+    };
+    private static final Builtin[] BUILTINS = Builtin.values();
+
+    private final OutputSink out;
+    private final ExecutionLimits limits;
+
+    // One active call: the frame of the function, and what RETURN restores.
+    // CallFrames are kept by depth and reused by later calls.
+    private static final class CallFrame {
+        Object[] values = new Object[0];
+        double[] numbers = new double[0];
+        long[] integers = new long[0];
+        Object[] callerValues;
+        double[] callerNumbers;
+        long[] callerIntegers;
+        int returnPc;
+        // Where the arguments started; the result is left there
+        int base;
+        Chunk.Function function;
+        MemoCache memo;
+        Object key;
+    }
+
+    VirtualMachine() {
+        this(new BufferedOutput(System.out));
+    }
+
+    VirtualMachine(OutputSink out) {
+        this(out, ExecutionLimits.NONE);
+    }
+
+    VirtualMachine(OutputSink out, ExecutionLimits limits) {
+        this.out = out;
+        this.limits = limits;
+    }
+
+    void run(Chunk chunk) {
+        run(chunk, new double[chunk.slotCount], new long[chunk.slotCount]);
+    }
+
+    void run(Chunk chunk, double[] numbers, long[] integers) {
+        run(chunk, new Object[chunk.slotCount], numbers, integers);
+    }
+
+    // Starts from the given frames, which already hold any parameters
+    void run(Chunk chunk, Object[] values, double[] numbers, long[] integers) {
+        try {
+            execute(chunk, values, numbers, integers, limits.limit(out), limits.start(), 0, chunk.maxStack);
+        } catch (LimitExceeded error) {
+            throw error;
+        } catch (ArithmeticException overflow) {
+            throw new RuntimeException("Runtime error: Integer overflow.");
+        } catch (IndexOutOfBoundsException error) {
+            throw new RuntimeException("Runtime error: " + error.getMessage() + ".");
+        } catch (RuntimeException error) {
+            throw new RuntimeException("Runtime error: " + error.getMessage());
+        } finally {
+            out.flush();
+        }
+    }
+
+    // Runs from pc until a HALT. Keeps no state outside of its locals, so
+    // the threads of a parallel loop can each run part of it at once.
+    private void execute(Chunk chunk, Object[] values, double[] numbers, long[] integers, OutputSink out,
+                         ExecutionBudget budget, int pc, int stackSize) {
+        final int[] code = chunk.code;
+        final Object[] constants = chunk.constants;
+        final double[] numberConstants = chunk.numberConstants;
+        final long[] integerConstants = chunk.integerConstants;
+        Object[] valueStack = new Object[stackSize];
+        double[] numberStack = new double[stackSize];
+        long[] integerStack = new long[stackSize];
+        int sp = 0;
+        CallFrame[] calls = new CallFrame[chunk.functions.length > 0 ? 16 : 0];
+        int depth = 0;
+        MemoCache[] memos = new MemoCache[chunk.functions.length];
+
+        while (true) {
+            switch (code[pc++]) {
+                case Chunk.CONST -> valueStack[sp++] = constants[code[pc++]];
+                case Chunk.DCONST -> numberStack[sp++] = numberConstants[code[pc++]];
+                case Chunk.LOAD -> valueStack[sp++] = values[code[pc++]];
+                case Chunk.STORE -> values[code[pc++]] = valueStack[--sp];
+                case Chunk.DLOAD -> numberStack[sp++] = numbers[code[pc++]];
+                case Chunk.DSTORE -> numbers[code[pc++]] = numberStack[--sp];
+                case Chunk.DADD -> {
+                    sp--;
+                    numberStack[sp - 1] += numberStack[sp];
+                }
+                case Chunk.DSUB -> {
+                    sp--;
+                    numberStack[sp - 1] -= numberStack[sp];
+                }
+                case Chunk.DMUL -> {
+                    sp--;
+                    numberStack[sp - 1] *= numberStack[sp];
+                }
+                case Chunk.DDIV -> {
+                    sp--;
+                    if (numberStack[sp] == 0) throw new RuntimeException("Division by zero.");
+                    numberStack[sp - 1] /= numberStack[sp];
+                }
+                case Chunk.DMOD -> {
+                    sp--;
+                    if (numberStack[sp] == 0) throw new RuntimeException("Modulo by zero.");
+                    numberStack[sp - 1] %= numberStack[sp];
+                }
+                case Chunk.DLT -> {
+                    sp--;
+                    valueStack[sp - 1] = numberStack[sp - 1] < numberStack[sp];
+                }
+                case Chunk.DGT -> {
+                    sp--;
+                    valueStack[sp - 1] = numberStack[sp - 1] > numberStack[sp];
+                }
+                case Chunk.DEQ -> {
+                    sp--;
+                    valueStack[sp - 1] = Double.doubleToLongBits(numberStack[sp - 1])
+                            == Double.doubleToLongBits(numberStack[sp]);
+                }
+                case Chunk.EQ -> {
+                    sp--;
+                    valueStack[sp - 1] = Interpreter.isEqual(valueStack[sp - 1], valueStack[sp]);
+                    valueStack[sp] = null;
+                }
+                case Chunk.BOX -> valueStack[sp - 1] = numberStack[sp - 1];
+                case Chunk.UNBOX -> {
+                    numberStack[sp - 1] = Interpreter.checkNumberOperand(valueStack[sp - 1]);
+                    valueStack[sp - 1] = null;
+                }
+                case Chunk.JUMP -> pc = code[pc];
+                case Chunk.JUMP_IF_FALSE -> {
+                    Object condition = valueStack[--sp];
+                    valueStack[sp] = null;
+                    pc = Interpreter.isTruthy(condition) ? pc + 1 : code[pc];
+                }
+                case Chunk.JUMP_IF_NOT_DLT -> {
+                    sp -= 2;
+                    pc = numberStack[sp] < numberStack[sp + 1] ? pc + 1 : code[pc];
+                }
+                case Chunk.JUMP_IF_NOT_DGT -> {
+                    sp -= 2;
+                    pc = numberStack[sp] > numberStack[sp + 1] ? pc + 1 : code[pc];
+                }
+                case Chunk.JUMP_IF_NOT_DEQ -> {
+                    sp -= 2;
+                    pc = Double.doubleToLongBits(numberStack[sp]) == Double.doubleToLongBits(numberStack[sp + 1])
+                            ? pc + 1 : code[pc];
+                }
+                case Chunk.DUP -> {
+                    valueStack[sp] = valueStack[sp - 1];
+                    numberStack[sp] = numberStack[sp - 1];
+                    integerStack[sp] = integerStack[sp - 1];
+                    sp++;
+                }
+                case Chunk.POP -> valueStack[--sp] = null;
+                case Chunk.PRINT -> {
+                    Object value = valueStack[--sp];
+                    valueStack[sp] = null;
+                    out.print(value);
+                }
+                case Chunk.DPRINT -> out.printNumber(numberStack[--sp]);
+                case Chunk.REDUCE -> pc = ((LoopReduction) constants[code[pc]]).run(numbers, integers, budget)
+                        ? code[pc + 1] : pc + 2;
+                case Chunk.LOOP -> {
+                    budget.backEdge();
+                    pc = code[pc];
+                }
+                case Chunk.HALT -> {
+                    return;
+                }
+                case Chunk.LCONST -> integerStack[sp++] = integerConstants[code[pc++]];
+                case Chunk.LLOAD -> integerStack[sp++] = integers[code[pc++]];
+                case Chunk.LSTORE -> integers[code[pc++]] = integerStack[--sp];
+                case Chunk.LADD -> {
+                    sp--;
+                    integerStack[sp - 1] = Math.addExact(integerStack[sp - 1], integerStack[sp]);
+                }
+                case Chunk.LSUB -> {
+                    sp--;
+                    integerStack[sp - 1] = Math.subtractExact(integerStack[sp - 1], integerStack[sp]);
+                }
+                case Chunk.LMUL -> {
+                    sp--;
+                    integerStack[sp - 1] = Math.multiplyExact(integerStack[sp - 1], integerStack[sp]);
+                }
+                case Chunk.LDIV -> {
+                    sp--;
+                    integerStack[sp - 1] = Interpreter.divide(integerStack[sp - 1], integerStack[sp]);
+                }
+                case Chunk.LMOD -> {
+                    sp--;
+                    integerStack[sp - 1] = Interpreter.modulo(integerStack[sp - 1], integerStack[sp]);
+                }
+                case Chunk.LLT -> {
+                    sp--;
+                    valueStack[sp - 1] = integerStack[sp - 1] < integerStack[sp];
+                }
+                case Chunk.LGT -> {
+                    sp--;
+                    valueStack[sp - 1] = integerStack[sp - 1] > integerStack[sp];
+                }
+                case Chunk.LEQ -> {
+                    sp--;
+                    valueStack[sp - 1] = integerStack[sp - 1] == integerStack[sp];
+                }
+                case Chunk.L2D -> numberStack[sp - 1] = integerStack[sp - 1];
+                case Chunk.LBOX -> valueStack[sp - 1] = integerStack[sp - 1];
+                case Chunk.JUMP_IF_NOT_LLT -> {
+                    sp -= 2;
+                    pc = integerStack[sp] < integerStack[sp + 1] ? pc + 1 : code[pc];
+                }
+                case Chunk.JUMP_IF_NOT_LGT -> {
+                    sp -= 2;
+                    pc = integerStack[sp] > integerStack[sp + 1] ? pc + 1 : code[pc];
+                }
+                case Chunk.JUMP_IF_NOT_LEQ -> {
+                    sp -= 2;
+                    pc = integerStack[sp] == integerStack[sp + 1] ? pc + 1 : code[pc];
+                }
+                case Chunk.LPRINT -> out.printInteger(integerStack[--sp]);
+                case Chunk.ADD, Chunk.SUB, Chunk.MUL, Chunk.DIV, Chunk.MOD -> {
+                    sp--;
+                    valueStack[sp - 1] = Interpreter.arithmetic(OPERATORS[code[pc - 1] - Chunk.ADD],
+                            valueStack[sp - 1], valueStack[sp]);
+                    valueStack[sp] = null;
+                }
+                case Chunk.BADD, Chunk.BSUB, Chunk.BMUL, Chunk.BDIV, Chunk.BMOD -> {
+                    sp--;
+                    valueStack[sp - 1] = Interpreter.bigArithmetic(OPERATORS[code[pc - 1] - Chunk.BADD],
+                            valueStack[sp - 1], valueStack[sp]);
+                    valueStack[sp] = null;
+                }
+                case Chunk.LT -> {
+                    sp--;
+                    valueStack[sp - 1] = Interpreter.less(valueStack[sp - 1], valueStack[sp]);
+                    valueStack[sp] = null;
+                }
+                case Chunk.GT -> {
+                    sp--;
+                    valueStack[sp - 1] = Interpreter.less(valueStack[sp], valueStack[sp - 1]);
+                    valueStack[sp] = null;
+                }
+                case Chunk.CALL -> {
+                    int index = code[pc++];
+                    Chunk.Function function = chunk.functions[index];
+                    Parser.Type[] slotTypes = function.slotTypes;
+                    int base = sp - function.parameterCount;
+                    budget.backEdge();
+                    if (depth == Interpreter.MAX_CALL_DEPTH) throw new RuntimeException("Stack overflow.");
+                    MemoCache memo = null;
+                    Object key = null;
+                    if (function.memo) {
+                        memo = memos[index];
+                        if (memo == null) memo = memos[index] = new MemoCache();
+                        Object[] arguments = new Object[function.parameterCount];
+                        for (int i = 0; i < arguments.length; i++) {
+                            arguments[i] = Interpreter.slot(valueStack, numberStack, integerStack, base + i,
+                                    slotTypes[i]);
+                        }
+                        key = MemoCache.key(arguments);
+                        Object result = memo.get(key);
+                        if (result != null || memo.containsKey(key)) {
+                            Arrays.fill(valueStack, base, sp, null);
+                            switch (function.returnType) {
+                                case INTEGER -> integerStack[base] = (long) result;
+                                case DOUBLE -> numberStack[base] = (double) result;
+                                case BIG, VALUE -> valueStack[base] = result;
+                            }
+                            sp = base + 1;
+                            continue;
+                        }
+                    }
+                    depth++;
+                    if (depth == calls.length) calls = Arrays.copyOf(calls, depth * 2);
+                    CallFrame frame = calls[depth];
+                    if (frame == null) frame = calls[depth] = new CallFrame();
+                    bind(frame, function, valueStack, numberStack, integerStack, base);
+                    frame.callerValues = values;
+                    frame.callerNumbers = numbers;
+                    frame.callerIntegers = integers;
+                    frame.returnPc = pc;
+                    frame.base = base;
+                    frame.function = function;
+                    frame.memo = memo;
+                    frame.key = key;
+                    sp = base;
+                    if (base + function.maxStack > valueStack.length) {
+                        int size = Math.max(valueStack.length * 2, base + function.maxStack);
+                        valueStack = Arrays.copyOf(valueStack, size);
+                        numberStack = Arrays.copyOf(numberStack, size);
+                        integerStack = Arrays.copyOf(integerStack, size);
+                    }
+                    values = frame.values;
+                    numbers = frame.numbers;
+                    integers = frame.integers;
+                    pc = function.entry;
+                }
+                case Chunk.TAIL_CALL -> {
+                    // The callee returns straight to the current call's
+                    // caller. The Resolver only marks calls of functions
+                    // that are not memoized and return the same type.
+                    Chunk.Function function = chunk.functions[code[pc++]];
+                    budget.backEdge();
+                    CallFrame frame = calls[depth];
+                    bind(frame, function, valueStack, numberStack, integerStack, sp - function.parameterCount);
+                    frame.function = function;
+                    sp = frame.base;
+                    if (sp + function.maxStack > valueStack.length) {
+                        int size = Math.max(valueStack.length * 2, sp + function.maxStack);
+                        valueStack = Arrays.copyOf(valueStack, size);
+                        numberStack = Arrays.copyOf(numberStack, size);
+                        integerStack = Arrays.copyOf(integerStack, size);
+                    }
+                    values = frame.values;
+                    numbers = frame.numbers;
+                    integers = frame.integers;
+                    pc = function.entry;
+                }
+                case Chunk.LALOAD -> {
+                    sp--;
+                    long[] array = Builtin.longs(valueStack[sp - 1]);
+                    valueStack[sp - 1] = null;
+                    integerStack[sp - 1] = array[Builtin.checkIndex(integerStack[sp], array.length)];
+                }
+                case Chunk.DALOAD -> {
+                    sp--;
+                    double[] array = Builtin.doubles(valueStack[sp - 1]);
+                    valueStack[sp - 1] = null;
+                    numberStack[sp - 1] = array[Builtin.checkIndex(integerStack[sp], array.length)];
+                }
+                case Chunk.ALOAD -> {
+                    sp--;
+                    valueStack[sp - 1] = Builtin.load(valueStack[sp - 1], valueStack[sp]);
+                    valueStack[sp] = null;
+                }
+                case Chunk.LASTORE -> {
+                    sp -= 2;
+                    long[] array = Builtin.longs(valueStack[sp - 1]);
+                    long value = integerStack[sp + 1];
+                    array[Builtin.checkIndex(integerStack[sp], array.length)] = value;
+                    valueStack[sp - 1] = null;
+                    integerStack[sp - 1] = value;
+                }
+                case Chunk.DASTORE -> {
+                    sp -= 2;
+                    double[] array = Builtin.doubles(valueStack[sp - 1]);
+                    double value = numberStack[sp + 1];
+                    array[Builtin.checkIndex(integerStack[sp], array.length)] = value;
+                    valueStack[sp - 1] = null;
+                    numberStack[sp - 1] = value;
+                }
+                case Chunk.ASTORE -> {
+                    sp -= 2;
+                    valueStack[sp - 1] = Builtin.store(valueStack[sp - 1], valueStack[sp], valueStack[sp + 1]);
+                    valueStack[sp] = null;
+                    valueStack[sp + 1] = null;
+                }
+                case Chunk.BUILTIN -> {
+                    Builtin builtin = BUILTINS[code[pc++]];
+                    int base = sp - builtin.arity;
+                    Object[] arguments = Arrays.copyOfRange(valueStack, base, sp);
+                    Arrays.fill(valueStack, base, sp, null);
+                    sp = base;
+                    valueStack[sp++] = builtin.call(arguments);
+                }
+                case Chunk.LUNBOX -> {
+                    integerStack[sp - 1] = Interpreter.toLong(valueStack[sp - 1]);
+                    valueStack[sp - 1] = null;
+                }
+                case Chunk.JUMP_IF_LGT -> {
+                    sp -= 2;
+                    pc = integerStack[sp] > integerStack[sp + 1] ? code[pc] : pc + 1;
+                }
+                case Chunk.FOR_LOOP -> {
+                    budget.backEdge();
+                    int slot = code[pc];
+                    long counter = Math.addExact(integers[slot], 1);
+                    integers[slot] = counter;
+                    pc = counter <= integers[code[pc + 1]] ? code[pc + 2] : pc + 3;
+                }
+                case Chunk.PARALLEL -> {
+                    runParallel(chunk, (Parser.Stmt.For) constants[code[pc]], pc + 2, values, numbers, integers,
+                            budget);
+                    pc = code[pc + 1];
+                }
+                case Chunk.RETURN -> {
+                    // Statements leave the stack empty, so the result is
+                    // already where the arguments started
+                    CallFrame frame = calls[depth--];
+                    if (frame.memo != null) {
+                        frame.memo.put(frame.key, Interpreter.slot(valueStack, numberStack, integerStack,
+                                frame.base, frame.function.returnType));
+                        frame.memo = null;
+                        frame.key = null;
+                    }
+                    values = frame.callerValues;
+                    numbers = frame.callerNumbers;
+                    integers = frame.callerIntegers;
+                    frame.callerValues = null;
+                    pc = frame.returnPc;
+                }
+                default -> throw new RuntimeException("Unknown opcode " + code[pc - 1] + ".");
+            }
+        }
+    }
+
+    // The counter and the end slot hold the bounds; each part of the range
+    // runs the loop from its condition at loopStart to the HALT after it
+    private void runParallel(Chunk chunk, Parser.Stmt.For loop, int loopStart, Object[] values, double[] numbers,
+                             long[] integers, ExecutionBudget budget) {
+        long from = Interpreter.counter(loop, values, integers);
+        long to = integers[loop.end];
+        // The loop may be in any function, and starts with an empty stack
+        int stackSize = chunk.maxStack;
+        for (Chunk.Function function : chunk.functions) {
+            stackSize = Math.max(stackSize, function.maxStack);
+        }
+        int partStack = stackSize;
+        ParallelLoop.run(loop.reductions, from, to, values, numbers, integers, budget,
+                (start, end, partValues, partNumbers, partIntegers, partBudget) -> {
+                    Interpreter.setCounter(loop, partValues, partIntegers, start);
+                    partIntegers[loop.end] = end;
+                    execute(chunk, partValues, partNumbers, partIntegers, out, partBudget, loopStart, partStack);
+                });
+        // Where a loop run in order would have left the variable
+        Interpreter.setCounter(loop, values, integers, from > to ? from : Math.addExact(to, 1));
+    }
+
+    // Moves the arguments from the stack, where they start at base, into a
+    // cleared frame for the function
+    private static void bind(CallFrame frame, Chunk.Function function, Object[] valueStack, double[] numberStack,
+                             long[] integerStack, int base) {
+        Parser.Type[] slotTypes = function.slotTypes;
+        clear(frame, slotTypes.length);
+        for (int i = 0; i < function.parameterCount; i++) {
+            switch (slotTypes[i]) {
+                case INTEGER -> frame.integers[i] = integerStack[base + i];
+                case DOUBLE -> frame.numbers[i] = numberStack[base + i];
+                case BIG, VALUE -> {
+                    frame.values[i] = valueStack[base + i];
+                    valueStack[base + i] = null;
+                }
+            }
+        }
+    }
+
+    // Makes the frame hold slotCount zeroed slots
+    private static void clear(CallFrame frame, int slotCount) {
+        if (frame.values.length < slotCount) {
+            frame.values = new Object[slotCount];
+            frame.numbers = new double[slotCount];
+            frame.integers = new long[slotCount];
+        } else {
+            Arrays.fill(frame.values, 0, slotCount, null);
+            Arrays.fill(frame.numbers, 0, slotCount, 0);
+            Arrays.fill(frame.integers, 0, slotCount, 0);
+        }
+    }
+}
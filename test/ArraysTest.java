@@ -0,0 +1,106 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ArraysTest {
+    @Test
+    void elementsAreReadAndAssigned() {
+        String source = """
+                var a = IntArray(3);
+                a[0] = 5;
+                a[2] = a[0] * 2;
+                print a;
+                print size(a);
+                var d = DoubleArray(2);
+                d[1] = 3;
+                d[0] = d[1] / 2;
+                print d;
+                """;
+        assertEquals("[5, 0, 10]\n3\n[1.5, 3]\n", Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void sieveOfEratosthenes() {
+        String source = """
+                param n;
+                var primes = IntArray(n + 1);
+                fill(primes, 1);
+                primes[0] = 0;
+                primes[1] = 0;
+                var i = 2;
+                while (i * i < n + 1) {
+                    if (primes[i] == 1) {
+                        var j = i * i;
+                        while (j < n + 1) { primes[j] = 0; j = j + i; }
+                    }
+                    i = i + 1;
+                }
+                print sum(primes);
+                """;
+        assertEquals("1229\n", Scripts.runInAllModes(source, 10000).output);
+    }
+
+    @Test
+    void bulkBuiltins() {
+        String source = """
+                var a = IntArray(4);
+                var i = 0;
+                while (i < 4) { a[i] = i + 1; i = i + 1; }
+                var b = copy(a);
+                b[0] = 10;
+                print a;
+                print b;
+                print sum(a);
+                print dot(a, b);
+                print plus(a, b);
+                print times(a, 3);
+                print plus(a, 1);
+                var prices = DoubleArray(3);
+                fill(prices, 5);
+                print times(prices, prices);
+                print sum(prices);
+                print dot(prices, prices);
+                """;
+        ScriptResult result = Scripts.runInAllModes(source);
+        assertNull(result.error);
+        assertEquals("[1, 2, 3, 4]\n[10, 2, 3, 4]\n10\n39\n[11, 4, 6, 8]\n[3, 6, 9, 12]\n[2, 3, 4, 5]\n"
+                + "[25, 25, 25]\n15\n75\n", result.output);
+    }
+
+    @Test
+    void arraysArePassedByReference() {
+        String source = """
+                fun fillSquares(a) {
+                    var i = 0;
+                    while (i < size(a)) { a[i] = i * i; i = i + 1; }
+                }
+                fun total(a) { return sum(a); }
+                var squares = IntArray(5);
+                fillSquares(squares);
+                print squares;
+                print total(squares);
+                """;
+        assertEquals("[0, 1, 4, 9, 16]\n30\n", Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void indexOutOfBoundsStopsTheProgram() {
+        ScriptResult result = Scripts.runInAllModes("var a = IntArray(5); print 1; print a[5];");
+        assertEquals("1\n", result.output);
+        assertEquals("Runtime error: Index 5 out of bounds for length 5.", result.error);
+    }
+
+    @Test
+    void integerSumsAreExact() {
+        ScriptResult result = Scripts.runInAllModes("var a = IntArray(2); fill(a, 9223372036854775807); print sum(a);");
+        assertEquals("Runtime error: Integer overflow.", result.error);
+    }
+
+    @Test
+    void mismatchedSizesAreAnError() {
+        ScriptResult result = Scripts.runInAllModes("print dot(IntArray(2), IntArray(3));");
+        assertEquals("", result.output);
+        assertEquals("Runtime error: Arrays must have the same size.", result.error);
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchRunnerTest {
+    @TempDir
+    Path directory;
+
+    private static List<String> run(Path path, ExecutionLimits limits, double... arguments) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BatchRunner.run(path, null, limits, 4, arguments, bytes);
+        return bytes.toString(StandardCharsets.UTF_8).lines().sorted().toList();
+    }
+
+    private static Map<?, ?> record(String line) {
+        return (Map<?, ?>) Json.parse(line);
+    }
+
+    @Test
+    void runsEveryScriptInADirectory() throws Exception {
+        Files.writeString(directory.resolve("a.kt"), "param n; print n + 1;");
+        Files.writeString(directory.resolve("b.kts"), "param n; print n * 2;");
+        Files.writeString(directory.resolve("notes.txt"), "print 3;");
+        List<String> lines = run(directory, ExecutionLimits.NONE, 20);
+        assertEquals(2, lines.size());
+        assertEquals("a.kt", record(lines.get(0)).get("id"));
+        assertEquals("21\n", record(lines.get(0)).get("output"));
+        assertNull(record(lines.get(0)).get("error"));
+        assertEquals("b.kts", record(lines.get(1)).get("id"));
+        assertEquals("40\n", record(lines.get(1)).get("output"));
+    }
+
+    @Test
+    void runsEveryRecordOfAJsonLinesFile() throws Exception {
+        Path jobs = directory.resolve("jobs.jsonl");
+        Files.writeString(jobs, """
+                {"id": 1, "source": "param n; print n * 2;", "inputs": [21]}
+
+                {"id": "two", "source": "var zero = 0; print 5; print 1 / zero;"}
+                {"id": 3, "source": 4}
+                not json
+                """);
+        List<String> lines = run(jobs, ExecutionLimits.NONE);
+        assertEquals(4, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"id\":\"two\",\"output\":\"5\\n\","
+                + "\"error\":\"Runtime error: Division by zero.\""));
+        assertTrue(lines.get(1).startsWith("{\"id\":1,\"output\":\"42\\n\",\"error\":null,\"elapsedMs\":"));
+        assertEquals("{\"id\":3,\"output\":null,\"error\":\"Line 4: Expected \\\"source\\\" to be a string.\","
+                + "\"elapsedMs\":0.0}", lines.get(2));
+        assertTrue(lines.get(3).startsWith("{\"id\":null,\"output\":null,\"error\":\"Line 5: "));
+    }
+
+    @Test
+    void syntaxErrorsAreReportedAndNothingRuns() throws Exception {
+        Files.writeString(directory.resolve("a.kt"), "print 1;\nwhile (1 <= 2) { print 2; }\nprint 3;");
+        Files.writeString(directory.resolve("b.kt"), "print 1;\nif (1 < 2) { print 2 }\nprint 3;");
+        Files.writeString(directory.resolve("c.kt"), "print 1;");
+        List<String> lines = run(directory, ExecutionLimits.NONE);
+        assertEquals(3, lines.size());
+        assertEquals("", record(lines.get(0)).get("output"));
+        assertEquals("Expect expression.", record(lines.get(0)).get("error"));
+        assertEquals("", record(lines.get(1)).get("output"));
+        assertEquals("Expect ';' after value.", record(lines.get(1)).get("error"));
+        assertEquals("1\n", record(lines.get(2)).get("output"));
+        assertNull(record(lines.get(2)).get("error"));
+
+        Path jobs = directory.resolve("jobs.jsonl");
+        Files.writeString(jobs, """
+                {"id": 1, "source": "var x = ; print 1;"}
+                """);
+        lines = run(jobs, ExecutionLimits.NONE);
+        assertEquals("{\"id\":1,\"output\":\"\",\"error\":\"Expect expression.\",\"elapsedMs\":",
+                lines.get(0).substring(0, lines.get(0).lastIndexOf(':') + 1));
+    }
+
+    @Test
+    void eachLineIsWrittenAsSoonAsItsScriptFinishes() throws Exception {
+        Path jobs = directory.resolve("jobs.jsonl");
+        Files.writeString(jobs, """
+                {"id": "slow", "source": "while (1 < 2) { }"}
+                {"id": "fast", "source": "print 1;"}
+                """);
+        ExecutionLimits limits = ExecutionLimits.NONE.withTimeout(Duration.ofSeconds(2));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ExecutorService thread = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> batch = thread.submit(() -> {
+                BatchRunner.run(jobs, null, limits, 2, new double[0], bytes);
+                return null;
+            });
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (bytes.toString(StandardCharsets.UTF_8).indexOf('\n') < 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            // The fast script's line is out while the slow one is still running
+            assertFalse(batch.isDone());
+            List<String> lines = bytes.toString(StandardCharsets.UTF_8).lines().toList();
+            assertEquals(1, lines.size());
+            assertEquals("fast", record(lines.get(0)).get("id"));
+
+            batch.get(10, TimeUnit.SECONDS);
+            lines = bytes.toString(StandardCharsets.UTF_8).lines().toList();
+            assertEquals(2, lines.size());
+            assertEquals("slow", record(lines.get(1)).get("id"));
+            assertEquals("Execution limit exceeded: ran for more than 2000 ms.", record(lines.get(1)).get("error"));
+        } finally {
+            thread.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Runs in the big-integers execution of the build, which starts its JVM
+// with -Dkotlin.bigIntegers=true
+@EnabledIfSystemProperty(named = "kotlin.bigIntegers", matches = "true")
+class BigIntegersTest {
+    private static final String FACTORIAL = """
+            param n;
+            var result = 1;
+            var i = 1;
+            while (i < n + 1) { result = result * i; i = i + 1; }
+            print result;
+            """;
+
+    @Test
+    void resultsOutgrowALong() {
+        ScriptResult result = Scripts.runInAllModes(FACTORIAL, 30);
+        assertNull(result.error);
+        assertEquals("265252859812191058636308480000000\n", result.output);
+    }
+
+    @Test
+    void resultsThatFitAgainGoBackToLongs() {
+        String source = """
+                var x = 9223372036854775807;
+                var big = x * x;
+                print big;
+                print big / x;
+                print big - big + 1;
+                print big % 10;
+                print big > x;
+                print big == x * x;
+                print 0 - 9223372036854775807 - 2;
+                """;
+        ScriptResult result = Scripts.runInAllModes(source);
+        assertNull(result.error);
+        assertEquals("85070591730234615847396907784232501249\n9223372036854775807\n1\n9\ntrue\ntrue\n"
+                + "-9223372036854775809\n", result.output);
+    }
+
+    @Test
+    void memoizedFibonacciBeyondALong() {
+        String source = """
+                @memo fun fib(n) {
+                    if (n < 2) return n;
+                    return fib(n - 1) + fib(n - 2);
+                }
+                print fib(100);
+                """;
+        assertEquals("354224848179261915075\n", Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void doublesStayDoubles() {
+        String source = """
+                var half = 100000000000000000000 / 200000000000000000000;
+                var big = 9223372036854775807 * 4;
+                print big * half;
+                print 7 / 2;
+                """;
+        assertEquals("1.8446744073709552E19\n3\n", Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void divisionByZeroStillStopsTheProgram() {
+        ScriptResult result = Scripts.runInAllModes("var big = 9223372036854775807 * 2; var zero = 0; print big / zero;");
+        assertEquals("Runtime error: Division by zero.", result.error);
+    }
+
+    @Test
+    void closedFormLoopsGiveTheResultOfTheLoop() {
+        for (double n : new double[]{0, 17, 100_000}) {
+            assertNull(Scripts.runOptimizedAndNot(KotlinInterpreter.SUM_OF_N, ExecutionLimits.NONE, n).error);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompiledProgramTest {
+    private static final String PROGRAM = """
+            param n;
+            @memo fun fib(k) {
+                if (k < 2) return k;
+                return fib(k - 1) + fib(k - 2);
+            }
+            var total = 0;
+            var i = 0;
+            while (i < n) { i = i + 1; total = total + i * i; }
+            print total;
+            print fib(n);
+            """;
+
+    @Test
+    void tieredRunsCompileAfterTheThreshold() {
+        CompiledProgram program = new CompiledProgram(List.of(), new Parser.Type[0], List.of(), new int[0], 3);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        program.run(new BufferedOutput(bytes));
+        program.run(new BufferedOutput(bytes));
+        assertFalse(program.isCompiled());
+        program.run(new BufferedOutput(bytes));
+        assertTrue(program.isCompiled());
+    }
+
+    @Test
+    void parametersAreBoundInOrder() {
+        CompiledProgram program = KotlinInterpreter.compile("param a; param b: Double; print a - b;");
+        assertEquals(List.of("a", "b"), program.parameterNames());
+        assertEquals("6.5\n", Scripts.runInAllModes(program, ExecutionLimits.NONE, 10, 3.5).output);
+        assertEquals("Parameter 'a' must be a whole number but got 1.5.",
+                Scripts.run(program, KotlinInterpreter.ExecutionMode.BYTECODE, ExecutionLimits.NONE, 1.5, 2).error);
+        assertThrows(RuntimeException.class, () -> program.run(new BufferedOutput(new ByteArrayOutputStream()), 1));
+    }
+
+    @Test
+    void oneProgramRunsOnManyThreadsAtOnce() throws Exception {
+        CompiledProgram program = KotlinInterpreter.compile(PROGRAM);
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> outputs = new ArrayList<>();
+            List<String> expected = new ArrayList<>();
+            for (int run = 0; run < 400; run++) {
+                int n = 1 + run % 50;
+                KotlinInterpreter.ExecutionMode mode = run % 4 == 3 ? null
+                        : KotlinInterpreter.ExecutionMode.values()[run % 4];
+                expected.add((long) n * (n + 1) * (2 * n + 1) / 6 + "\n" + fibonacci(n) + "\n");
+                outputs.add(threads.submit(() -> {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    BufferedOutput out = new BufferedOutput(bytes);
+                    if (mode == null) {
+                        program.run(out, n);
+                    } else {
+                        program.run(mode, out, n);
+                    }
+                    return bytes.toString(StandardCharsets.UTF_8);
+                }));
+            }
+            for (int run = 0; run < outputs.size(); run++) {
+                assertEquals(expected.get(run), outputs.get(run).get(), "run " + run);
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    private static long fibonacci(int n) {
+        long previous = 0;
+        long current = n == 0 ? 0 : 1;
+        for (int i = 2; i <= n; i++) {
+            long next = previous + current;
+            previous = current;
+            current = next;
+        }
+        return current;
+    }
+}
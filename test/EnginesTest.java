@@ -0,0 +1,116 @@
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// The Interpreter, the VirtualMachine and the JIT must agree on everything a
+// program prints and on the error it stops with
+class EnginesTest {
+    static Stream<Arguments> menuAlgorithms() {
+        return Stream.of(
+                Arguments.of("sum of n", KotlinInterpreter.SUM_OF_N, new double[]{17}),
+                Arguments.of("factorial", KotlinInterpreter.FACTORIAL, new double[]{17}),
+                Arguments.of("gcd", KotlinInterpreter.GCD, new double[]{84, 36}),
+                Arguments.of("reverse number", KotlinInterpreter.REVERSE_NUMBER, new double[]{1234}),
+                Arguments.of("is prime", KotlinInterpreter.IS_PRIME, new double[]{97}),
+                Arguments.of("is palindrome", KotlinInterpreter.IS_PALINDROME, new double[]{12321}),
+                Arguments.of("largest digit", KotlinInterpreter.LARGEST_DIGIT, new double[]{3817}),
+                Arguments.of("sum of digits", KotlinInterpreter.SUM_OF_DIGITS, new double[]{3817}),
+                Arguments.of("multiplication table", KotlinInterpreter.MULTIPLICATION_TABLE, new double[]{7}),
+                Arguments.of("fibonacci", KotlinInterpreter.FIBONACCI, new double[]{40}));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("menuAlgorithms")
+    void menuAlgorithmsPrintTheSameInEveryMode(String name, String source, double[] arguments) {
+        assertNull(Scripts.runInAllModes(source, arguments).error);
+    }
+
+    @Test
+    void menuAlgorithmsPrintTheirResults() {
+        assertEquals("153\n", Scripts.runInAllModes(KotlinInterpreter.SUM_OF_N, 17).output);
+        assertEquals("355687428096000\n", Scripts.runInAllModes(KotlinInterpreter.FACTORIAL, 17).output);
+        assertEquals("12\n", Scripts.runInAllModes(KotlinInterpreter.GCD, 84, 36).output);
+        assertEquals("4321\n", Scripts.runInAllModes(KotlinInterpreter.REVERSE_NUMBER, 1234).output);
+        assertEquals("1\n", Scripts.runInAllModes(KotlinInterpreter.IS_PRIME, 97).output);
+        assertEquals("1\n", Scripts.runInAllModes(KotlinInterpreter.IS_PALINDROME, 12321).output);
+        assertEquals("8\n", Scripts.runInAllModes(KotlinInterpreter.LARGEST_DIGIT, 3817).output);
+        assertEquals("19\n", Scripts.runInAllModes(KotlinInterpreter.SUM_OF_DIGITS, 3817).output);
+        assertEquals("7\n14\n21\n28\n35\n42\n49\n56\n63\n70\n",
+                Scripts.runInAllModes(KotlinInterpreter.MULTIPLICATION_TABLE, 7).output);
+        assertEquals("102334155\n", Scripts.runInAllModes(KotlinInterpreter.FIBONACCI, 40).output);
+    }
+
+    @Test
+    void statementsAndExpressions() {
+        String source = """
+                var x = 3;
+                var y = x * 2 + 1;
+                print y;
+                print x < y;
+                print x == 3;
+                var z;
+                z = x = 7;
+                print x + z;
+                print 7 / 2;
+                print 0 - 7 % 2;
+                while (x > 0) { x = x - 1; }
+                if (x == 0) print 100; else print 200;
+                print 100000000000000000000 / 8;
+                """;
+        ScriptResult result = Scripts.runInAllModes(source);
+        assertNull(result.error);
+        assertEquals("7\ntrue\ntrue\n14\n3\n-1\n100\n1.25E19\n", result.output);
+    }
+
+    @Test
+    void divisionByZeroStopsTheProgram() {
+        String source = """
+                var zero = 0;
+                print 1;
+                print 7 / zero;
+                print 2;
+                """;
+        ScriptResult result = Scripts.runInAllModes(source);
+        assertEquals("Runtime error: Division by zero.", result.error);
+        assertEquals("1\n", result.output);
+    }
+
+    @Test
+    void moduloByZeroStopsTheProgram() {
+        ScriptResult result = Scripts.runInAllModes("var zero = 0; print 7 % zero;");
+        assertEquals("Runtime error: Modulo by zero.", result.error);
+    }
+
+    @Test
+    void doubleDivisionByZeroStopsTheProgram() {
+        String source = """
+                var one = 100000000000000000000 / 100000000000000000000;
+                print one;
+                print one / 0;
+                """;
+        ScriptResult result = Scripts.runInAllModes(source);
+        assertEquals("Runtime error: Division by zero.", result.error);
+        assertEquals("1\n", result.output);
+    }
+
+    @Test
+    void integerOverflowStopsTheProgram() {
+        String[] sources = {
+                "var x = 9223372036854775807; print x; print x + 1;",
+                "var x = 0 - 9223372036854775807; print x; print x - 2;",
+                "var x = 4294967296; print x; print x * x;",
+                "var x = 0 - 9223372036854775807 - 1; print x; print x / (0 - 1);",
+        };
+        for (String source : sources) {
+            ScriptResult result = Scripts.runInAllModes(source);
+            assertEquals("Runtime error: Integer overflow.", result.error, source);
+            assertEquals(1, result.output.split("\n").length, source);
+        }
+    }
+}
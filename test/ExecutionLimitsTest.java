@@ -0,0 +1,86 @@
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExecutionLimitsTest {
+    private static ScriptResult runInAllModes(String source, ExecutionLimits limits) {
+        return Scripts.runInAllModes(KotlinInterpreter.compile(source), limits);
+    }
+
+    @Test
+    void iterationLimitStopsAnEndlessLoop() {
+        String source = "var i = 0; while (1 < 2) { i = i + 1; if (i == 5) print i; }";
+        ScriptResult result = runInAllModes(source, ExecutionLimits.NONE.withMaxIterations(1000));
+        assertEquals("Execution limit exceeded: more than 1000 loop iterations.", result.error);
+        assertEquals("5\n", result.output);
+    }
+
+    @Test
+    void iterationLimitCountsCalls() {
+        String source = """
+                fun down(n) {
+                    if (n == 0) return 0;
+                    return 1 + down(n - 1);
+                }
+                print down(50);
+                print down(5000);
+                """;
+        ScriptResult result = runInAllModes(source, ExecutionLimits.NONE.withMaxIterations(1000));
+        assertEquals("Execution limit exceeded: more than 1000 loop iterations.", result.error);
+        assertEquals("50\n", result.output);
+    }
+
+    @Test
+    void programWithinTheLimitsRunsNormally() {
+        ExecutionLimits limits = ExecutionLimits.NONE.withMaxIterations(17).withMaxOutputBytes(4)
+                .withTimeout(Duration.ofSeconds(10));
+        ScriptResult result = runInAllModes(KotlinInterpreter.SUM_OF_N.replace("param n;", "var n = 17;"), limits);
+        assertNull(result.error);
+        assertEquals("153\n", result.output);
+    }
+
+    @Test
+    void timeoutStopsAnEndlessLoop() {
+        ScriptResult result = runInAllModes("var i = 0; while (1 < 2) { i = i + 1; }",
+                ExecutionLimits.NONE.withTimeout(Duration.ofMillis(50)));
+        assertEquals("Execution limit exceeded: ran for more than 50 ms.", result.error);
+    }
+
+    @Test
+    void outputLimitStopsAtTheFirstPrintPastIt() {
+        String source = "var i = 0; while (i < 100000) { print i; i = i + 1; }";
+        ScriptResult result = runInAllModes(source, ExecutionLimits.NONE.withMaxOutputBytes(100));
+        assertEquals("Execution limit exceeded: printed more than 100 bytes.", result.error);
+        // 0 to 9 take two bytes each, 10 to 39 three each
+        assertEquals(20 + 78, result.output.length());
+        assertTrue(result.output.endsWith("\n35\n"));
+    }
+
+    @Test
+    void outputLimitAppliesOutsideLoops() {
+        String source = "print 123456789012; print 100000000000000000000 / 3; print 5;";
+        ScriptResult result = runInAllModes(source, ExecutionLimits.NONE.withMaxOutputBytes(15));
+        assertEquals("Execution limit exceeded: printed more than 15 bytes.", result.error);
+        assertEquals("123456789012\n", result.output);
+    }
+
+    @Test
+    void outputLimitAppliesToLongLines() {
+        String source = "var a = IntArray(1000); print size(a); print a;";
+        ScriptResult result = runInAllModes(source, ExecutionLimits.NONE.withMaxOutputBytes(100));
+        assertEquals("Execution limit exceeded: printed more than 100 bytes.", result.error);
+        assertEquals("1000\n", result.output);
+    }
+
+    @Test
+    void negativeLimitsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> ExecutionLimits.NONE.withMaxIterations(-1));
+        assertThrows(IllegalArgumentException.class, () -> ExecutionLimits.NONE.withMaxOutputBytes(-1));
+        assertThrows(IllegalArgumentException.class, () -> ExecutionLimits.NONE.withTimeout(Duration.ofMillis(-1)));
+    }
+}
@@ -0,0 +1,93 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ForLoopsTest {
+    @Test
+    void rangesIncludeBothBounds() {
+        String source = """
+                for (i in 1..3) { for (j in i..3) print i * 10 + j; }
+                for (i in 4..4) print i;
+                """;
+        assertEquals("11\n12\n13\n22\n23\n33\n4\n", Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void loopVariableHoldsTheFirstValuePastTheRange() {
+        String source = """
+                var i = 10;
+                for (i in 1..3) print i;
+                print i;
+                for (j in 5..1) print j;
+                print j;
+                """;
+        assertEquals("1\n2\n3\n4\n5\n", Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void boundsAreComputedOnce() {
+        String source = """
+                fun bound() { print 9; return 2; }
+                var n = 3;
+                for (i in 1..n) { n = n + 1; print i; }
+                print n;
+                for (i in 1..bound()) print i;
+                """;
+        assertEquals("1\n2\n3\n6\n9\n1\n2\n", Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void steppingPastTheLargestIntegerOverflows() {
+        String source = "for (i in 9223372036854775806..9223372036854775807) print i; print i;";
+        ScriptResult result = Scripts.runInAllModes(source);
+        assertEquals("9223372036854775806\n9223372036854775807\n", result.output);
+        assertEquals("Runtime error: Integer overflow.", result.error);
+    }
+
+    @Test
+    void iterationsCountTowardsTheLimit() {
+        String source = """
+                param n;
+                var total = 0;
+                for (i in 1..n) { total = total + i; if (i == 5) print total; }
+                print total;
+                """;
+        CompiledProgram program = KotlinInterpreter.compile(source);
+        assertEquals("15\n500500\n", Scripts.runInAllModes(program, ExecutionLimits.NONE.withMaxIterations(1000), 1000)
+                .output);
+        ScriptResult result = Scripts.runInAllModes(program, ExecutionLimits.NONE.withMaxIterations(1000), 1001);
+        assertEquals("15\n", result.output);
+        assertEquals("Execution limit exceeded: more than 1000 loop iterations.", result.error);
+    }
+
+    @Test
+    void jitCompilesForLoops() {
+        String source = """
+                param n;
+                var total = 0;
+                for (i in 1..n) { for (j in 1..i) total = total + j % 7; }
+                print total;
+                """;
+        CompiledProgram program = KotlinInterpreter.compile(source);
+        ScriptResult result = Scripts.runInAllModes(program, ExecutionLimits.NONE, 300);
+        assertNull(result.error);
+        assertEquals("135149\n", result.output);
+        assertTrue(program.isCompiled());
+    }
+
+    @Test
+    void loopVariablesAreIntegersTheBodyCannotAssign() {
+        assertCompileError("Cannot assign to loop variable 'i'.", "for (i in 1..3) i = 2;");
+        assertCompileError("Range bounds must be integers.", "var d = DoubleArray(1); for (i in 0..d[0]) print i;");
+        assertCompileError("Loop variable 'i' must only hold integers.",
+                "var i = DoubleArray(1); for (i in 0..2) print i;");
+    }
+
+    private static void assertCompileError(String message, String source) {
+        RuntimeException error = assertThrows(RuntimeException.class, () -> KotlinInterpreter.compile(source));
+        assertEquals(message, error.getMessage());
+    }
+}
@@ -0,0 +1,131 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FunctionsTest {
+    @Test
+    void functionsCanBeCalledBeforeTheirDeclaration() {
+        String source = """
+                print twice(21);
+                fun twice(n) { return n * 2; }
+                """;
+        assertEquals("42\n", Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void recursiveCallsHaveFramesOfTheirOwn() {
+        String source = """
+                fun fib(n) {
+                    var a = n - 1;
+                    var b = n - 2;
+                    if (n < 2) return n;
+                    return fib(a) + fib(b);
+                }
+                print fib(20);
+                """;
+        assertEquals("6765\n", Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void parameterAndReturnTypes() {
+        String source = """
+                fun average(a: Double, b: Double): Double { return (a + b) / 2; }
+                fun half(n) { return n / 2; }
+                fun halve(n) { return n / 2; }
+                print average(3, 4);
+                print half(7);
+                print halve(7);
+                print halve(100000000000000000000 / 100000000000000000000);
+                fun pick(n) { if (n > 0) return 7; return 100000000000000000000; }
+                print pick(1) / 2;
+                print pick(0);
+                """;
+        // An argument or result keeps its own type even where other calls
+        // pass or return Doubles
+        assertEquals("3.5\n3\n3\n0.5\n3\n1.0E20\n", Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void declaredIntsRejectDoubles() {
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> KotlinInterpreter.compile("fun half(a: Int) { return a / 2; } print half(100000000000000000000);"));
+        assertEquals("Parameter 'a' is an Int but is assigned a Double.", error.getMessage());
+        error = assertThrows(RuntimeException.class,
+                () -> KotlinInterpreter.compile("fun big(): Int { return 100000000000000000000; } print big();"));
+        assertEquals("Function 'big' is declared to return an Int but returns a Double.", error.getMessage());
+    }
+
+    @Test
+    void runningOffTheEndReturnsNull() {
+        String source = """
+                fun nothing(n) { if (n > 0) return; }
+                fun show(n) { print n; }
+                print nothing(1);
+                print nothing(0);
+                print show(5);
+                """;
+        assertEquals("null\nnull\n5\nnull\n", Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void functionsOnlySeeTheirOwnVariables() {
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> KotlinInterpreter.compile("var x = 0; fun f() { x = 1; } f(); print x;"));
+        assertEquals("Undefined variable 'x'.", error.getMessage());
+        String source = "var x = 0; fun f() { var x = 1; return x; } print f(); print x;";
+        assertEquals("1\n0\n", Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void errorsInsideCallsStopTheProgram() {
+        String source = """
+                fun divide(a, b) { return a / b; }
+                print divide(6, 3);
+                print divide(1, 0);
+                """;
+        ScriptResult result = Scripts.runInAllModes(source);
+        assertEquals("2\n", result.output);
+        assertEquals("Runtime error: Division by zero.", result.error);
+    }
+
+    @Test
+    void memoizedFunctionsRunOncePerArgument() {
+        String source = """
+                @memo fun fib(n) {
+                    if (n < 2) return n;
+                    return fib(n - 1) + fib(n - 2);
+                }
+                @memo fun add(a, b) { return a + b; }
+                print fib(90);
+                print add(2, 3);
+                print add(3, 2);
+                """;
+        // Without the cache fib(90) would not finish
+        ScriptResult result = Scripts.runInAllModes(source);
+        assertNull(result.error);
+        assertEquals("2880067194370816120\n5\n5\n", result.output);
+    }
+
+    @Test
+    void memoizedFunctionsCannotTakeArrays() {
+        String source = """
+                @memo fun first(a) { return a[0]; }
+                print first(IntArray(3));
+                """;
+        assertEquals("Runtime error: A memoized function cannot take an array.",
+                Scripts.runInAllModes(source).error);
+    }
+
+    @Test
+    void cachesEvictTheLeastRecentlyUsedResults() {
+        MemoCache cache = new MemoCache();
+        for (long key = 0; key <= MemoCache.CAPACITY; key++) {
+            cache.put(key, key * 2);
+        }
+        assertEquals(MemoCache.CAPACITY, cache.size());
+        assertNull(cache.get(0L));
+        assertEquals(2L, cache.get(1L));
+    }
+}
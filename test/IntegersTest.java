@@ -0,0 +1,83 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntegersTest {
+    private static final String FACTORIAL = """
+            param n;
+            var result = 1;
+            var i = 1;
+            while (i < n + 1) { result = result * i; i = i + 1; }
+            print result;
+            """;
+
+    @Test
+    void integerArithmeticTruncates() {
+        String source = """
+                print 7 / 2;
+                print (0 - 7) / 2;
+                print (0 - 7) % 2;
+                print 7 % (0 - 2);
+                print 9223372036854775807;
+                """;
+        assertEquals("3\n-3\n-1\n1\n9223372036854775807\n", Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void aDoubleOnEitherSideGivesADouble() {
+        String source = """
+                param half: Double;
+                var one = half + half;
+                print 7 / (one + one);
+                print 7 * half;
+                print 3 < half + 3;
+                print 3 == one + 2;
+                print 100000000000000000000;
+                """;
+        assertEquals("3.5\n3.5\ntrue\ntrue\n1.0E20\n", Scripts.runInAllModes(source, 0.5).output);
+    }
+
+    @Test
+    void aVariableAssignedBothKeepsEachValuesType() {
+        // The later Double assignments neither make the division before them
+        // a Double one nor round the long
+        String source = """
+                var x = 7;
+                print x / 2;
+                x = 100000000000000000000;
+                print x;
+                var y = 9007199254740993;
+                print y;
+                y = 100000000000000000000;
+                print y / 4;
+                """;
+        assertEquals("3\n1.0E20\n9007199254740993\n2.5E19\n", Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void factorialRunsOnLongsUntilItOverflows() {
+        CompiledProgram program = KotlinInterpreter.compile(FACTORIAL);
+        assertEquals("2432902008176640000\n", Scripts.runInAllModes(program, ExecutionLimits.NONE, 20).output);
+        assertTrue(program.isCompiled());
+        ScriptResult result = Scripts.runInAllModes(program, ExecutionLimits.NONE, 21);
+        assertEquals("Runtime error: Integer overflow.", result.error);
+        assertEquals("", result.output);
+    }
+
+    @Test
+    void integerParametersOnlyTakeWholeNumbers() {
+        CompiledProgram program = KotlinInterpreter.compile("param n: Int; param m: Long; print n + m;");
+        assertEquals("5\n", Scripts.runInAllModes(program, ExecutionLimits.NONE, 2, 3).output);
+        ScriptResult result = Scripts.runInAllModes(program, ExecutionLimits.NONE, 2.5, 3);
+        assertEquals("Parameter 'n' must be a whole number but got 2.5.", result.error);
+    }
+
+    @Test
+    void digitAlgorithmsStayExactForLargeInputs() {
+        ScriptResult result = Scripts.runInAllModes(KotlinInterpreter.REVERSE_NUMBER, 1234567890123456L);
+        assertNull(result.error);
+        assertEquals("6543210987654321\n", result.output);
+    }
+}
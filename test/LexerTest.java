@@ -0,0 +1,31 @@
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LexerTest {
+    private static TokenType typeOf(String word) {
+        TokenStream stream = new Lexer(word).scanTokenStream();
+        assertEquals(2, stream.size(), word);
+        return stream.type(0);
+    }
+
+    @Test
+    void everyKeywordIsFoundInTheTokenStream() {
+        for (Map.Entry<String, TokenType> keyword : Lexer.KEYWORDS.entrySet()) {
+            assertEquals(keyword.getValue(), typeOf(keyword.getKey()), keyword.getKey());
+        }
+    }
+
+    @Test
+    void wordsThatOnlyStartLikeAKeywordAreIdentifiers() {
+        List<String> words = List.of("i", "it", "iff", "fn", "fox", "funs", "vat", "elsa", "whilE",
+                "pxint", "paramS", "parse", "retain", "returns", "parallax", "Parallel", "a", "_if", "in2");
+        for (String word : words) {
+            assertEquals(TokenType.IDENTIFIER, typeOf(word), word);
+            assertEquals(TokenType.IDENTIFIER, Lexer.KEYWORDS.getOrDefault(word, TokenType.IDENTIFIER), word);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// A loop computed in closed form must print exactly what running it would
+class LoopReductionTest {
+    private static final String SERIES = """
+            param start;
+            param end;
+            var i = start;
+            var count = 0;
+            var total = 7;
+            while (i < end) { i = i + 1; count = count + 1; total = total - 3 * i; }
+            print i;
+            print count;
+            print total;
+            """;
+
+    @Test
+    void sumLoopIsReduced() {
+        assertInstanceOf(Parser.Stmt.Reduction.class, Scripts.optimize(KotlinInterpreter.SUM_OF_N).get(2));
+    }
+
+    @Test
+    void sumLoopGivesTheResultOfTheLoop() {
+        for (double n : new double[]{-5, 0, 1, 17, 1_000_000}) {
+            ScriptResult result = Scripts.runOptimizedAndNot(KotlinInterpreter.SUM_OF_N, ExecutionLimits.NONE, n);
+            assertNull(result.error);
+        }
+        assertEquals("500000500000\n",
+                Scripts.runOptimizedAndNot(KotlinInterpreter.SUM_OF_N, ExecutionLimits.NONE, 1_000_000).output);
+    }
+
+    @Test
+    void seriesWithSeveralAccumulators() {
+        double[][] ranges = {{0, 10}, {10, 0}, {-20, 5}, {3, 4}, {0, 100_000}};
+        for (double[] range : ranges) {
+            assertNull(Scripts.runOptimizedAndNot(SERIES, ExecutionLimits.NONE, range).error);
+        }
+        assertEquals("10\n10\n-158\n", Scripts.runOptimizedAndNot(SERIES, ExecutionLimits.NONE, 0, 10).output);
+    }
+
+    @Test
+    void steppingByMoreThanOne() {
+        String source = """
+                param n;
+                param k;
+                var i = 0;
+                var total = 0;
+                while (i < n) { i = i + 3; total = total + 2 * i + k; }
+                print i;
+                print total;
+                """;
+        for (double n : new double[]{0, 1, 2, 3, 100, 1001}) {
+            assertNull(Scripts.runOptimizedAndNot(source, ExecutionLimits.NONE, n, -4).error);
+        }
+    }
+
+    @Test
+    void doubleInputsRunTheLoop() {
+        String source = """
+                param n: Double;
+                var sum = 0;
+                while (n > 0) { sum = sum + n; n = n - 1; }
+                print sum;
+                """;
+        for (double n : new double[]{10, 10.5, 0.25}) {
+            assertNull(Scripts.runOptimizedAndNot(source, ExecutionLimits.NONE, n).error);
+        }
+    }
+
+    @Test
+    void overflowIsStillReported() {
+        String source = """
+                param n;
+                var sum = 0;
+                while (n > 0) { sum = sum + 1000000000000 * n; n = n - 1; }
+                print sum;
+                """;
+        assertNull(Scripts.runOptimizedAndNot(source, ExecutionLimits.NONE, 1000).error);
+        ScriptResult result = Scripts.runOptimizedAndNot(source, ExecutionLimits.NONE, 200_000);
+        assertEquals("Runtime error: Integer overflow.", result.error);
+    }
+
+    @Test
+    void iterationLimitStillApplies() {
+        ExecutionLimits limits = ExecutionLimits.NONE.withMaxIterations(100);
+        assertEquals("1275\n", Scripts.runOptimizedAndNot(KotlinInterpreter.SUM_OF_N, limits, 50).output);
+        ScriptResult result = Scripts.runOptimizedAndNot(KotlinInterpreter.SUM_OF_N, limits, 1000);
+        assertEquals("Execution limit exceeded: more than 100 loop iterations.", result.error);
+        assertEquals("", result.output);
+    }
+}
@@ -0,0 +1,115 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.CharBuffer;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedScriptTest {
+    @TempDir
+    Path directory;
+
+    private Path write(String name, byte[] content) throws IOException {
+        return Files.write(directory.resolve(name), content);
+    }
+
+    // Reads the whole file through buffers of the given size
+    private static String readAll(Path path, long regionSize, int bufferSize) throws IOException {
+        StringBuilder text = new StringBuilder();
+        CharBuffer buffer = CharBuffer.allocate(bufferSize);
+        try (MappedScript script = new MappedScript(path, regionSize)) {
+            while (script.read(buffer) >= 0) {
+                buffer.flip();
+                text.append(buffer);
+                buffer.clear();
+            }
+        }
+        return text.toString();
+    }
+
+    @Test
+    void anEmptyFileHasNoCharacters() throws IOException {
+        Path empty = write("empty.kt", new byte[0]);
+        try (MappedScript script = new MappedScript(empty)) {
+            assertEquals(-1, script.read(CharBuffer.allocate(16)));
+        }
+        ScriptResult result = Scripts.run(KotlinInterpreter.compile(new MappedScript(empty)),
+                KotlinInterpreter.ExecutionMode.TREE_WALKING, ExecutionLimits.NONE);
+        assertEquals("", result.output);
+        assertNull(result.error);
+    }
+
+    @Test
+    void charactersSplitAcrossRegionsAreDecodedWhole() throws IOException {
+        // Two, three and four byte sequences, starting at every offset of a
+        // region, so that each is split at every byte
+        for (String character : new String[]{"é", "€", "𝄞"}) {
+            for (int offset = 0; offset < 8; offset++) {
+                String text = "x".repeat(offset) + character + "y" + character + character;
+                Path path = write("split.kt", text.getBytes(StandardCharsets.UTF_8));
+                for (long regionSize = 4; regionSize <= 9; regionSize++) {
+                    for (int bufferSize : new int[]{2, 3, 64}) {
+                        assertEquals(text, readAll(path, regionSize, bufferSize),
+                                character + " at " + offset + " in regions of " + regionSize);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void aProgramSpanningManyRegionsRunsLikeItsText() throws IOException {
+        String source = KotlinInterpreter.FIBONACCI;
+        Path path = write("fibonacci.kt", source.getBytes(StandardCharsets.UTF_8));
+        assertEquals(source, readAll(path, 4, 16));
+        CompiledProgram program = KotlinInterpreter.compile(new MappedScript(path, 5));
+        ScriptResult result = Scripts.run(program, KotlinInterpreter.ExecutionMode.TREE_WALKING,
+                ExecutionLimits.NONE, 30);
+        assertEquals("832040\n", result.output);
+    }
+
+    @Test
+    void regionsTooSmallForACharacterAreRejected() throws IOException {
+        Path path = write("small.kt", "print 1;".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> new MappedScript(path, 3));
+    }
+
+    @Test
+    void malformedUtf8IsReportedAndNothingRuns() throws IOException {
+        byte[] prefix = "print 1;\nprint ".getBytes(StandardCharsets.UTF_8);
+        byte[] content = new byte[prefix.length + 3];
+        System.arraycopy(prefix, 0, content, 0, prefix.length);
+        content[prefix.length] = (byte) 0xC3;
+        content[prefix.length + 1] = '2';
+        content[prefix.length + 2] = ';';
+        Path path = write("malformed.kt", content);
+        assertThrows(MalformedInputException.class, () -> readAll(path, 4, 64));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+        try {
+            KotlinInterpreter.runFile(path, KotlinInterpreter.ExecutionMode.TREE_WALKING);
+        } finally {
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+        }
+        assertEquals("", out.toString(StandardCharsets.UTF_8));
+        String message = err.toString(StandardCharsets.UTF_8);
+        assertTrue(message.startsWith("Error: Could not read " + path + ": java.nio.charset.MalformedInputException"),
+                message);
+    }
+}
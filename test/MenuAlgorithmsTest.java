@@ -0,0 +1,114 @@
+import java.util.StringJoiner;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Each menu algorithm, run in every mode over a range of inputs, against the
+// same algorithm written in Java
+class MenuAlgorithmsTest {
+    private static String run(String source, double... arguments) {
+        ScriptResult result = Scripts.runInAllModes(source, arguments);
+        assertNull(result.error);
+        return result.output;
+    }
+
+    @Test
+    void sumOfN() {
+        for (long n = 0; n <= 20; n++) {
+            assertEquals(n * (n + 1) / 2 + "\n", run(KotlinInterpreter.SUM_OF_N, n), "n = " + n);
+        }
+    }
+
+    @Test
+    void factorial() {
+        long expected = 1;
+        for (long n = 0; n <= 20; n++) {
+            if (n > 0) expected *= n;
+            assertEquals(expected + "\n", run(KotlinInterpreter.FACTORIAL, n), "n = " + n);
+        }
+    }
+
+    @Test
+    void gcd() {
+        for (long a = 1; a <= 30; a++) {
+            for (long b = 1; b <= 30; b++) {
+                long x = a;
+                long y = b;
+                while (y > 0) {
+                    long temp = y;
+                    y = x % y;
+                    x = temp;
+                }
+                assertEquals(x + "\n", run(KotlinInterpreter.GCD, a, b), a + ", " + b);
+            }
+        }
+    }
+
+    @Test
+    void reverseNumber() {
+        for (long num : new long[]{0, 7, 10, 1234, 120, 123454321}) {
+            String reversed = num == 0 ? "0" : String.valueOf(
+                    Long.parseLong(new StringBuilder(String.valueOf(num)).reverse().toString()));
+            assertEquals(reversed + "\n", run(KotlinInterpreter.REVERSE_NUMBER, num), "num = " + num);
+        }
+    }
+
+    @Test
+    void isPrime() {
+        for (long n = 0; n <= 100; n++) {
+            boolean prime = n > 1;
+            for (long i = 2; i * i <= n; i++) {
+                if (n % i == 0) prime = false;
+            }
+            assertEquals((prime ? 1 : 0) + "\n", run(KotlinInterpreter.IS_PRIME, n), "n = " + n);
+        }
+    }
+
+    @Test
+    void isPalindrome() {
+        assertEquals("1\n", run(KotlinInterpreter.IS_PALINDROME, 12321));
+        assertEquals("1\n", run(KotlinInterpreter.IS_PALINDROME, 7));
+        assertEquals("0\n", run(KotlinInterpreter.IS_PALINDROME, 1231));
+        assertEquals("0\n", run(KotlinInterpreter.IS_PALINDROME, 10));
+    }
+
+    @Test
+    void largestDigit() {
+        assertEquals("8\n", run(KotlinInterpreter.LARGEST_DIGIT, 3817));
+        assertEquals("9\n", run(KotlinInterpreter.LARGEST_DIGIT, 918273645));
+        assertEquals("0\n", run(KotlinInterpreter.LARGEST_DIGIT, 0));
+    }
+
+    @Test
+    void sumOfDigits() {
+        assertEquals("19\n", run(KotlinInterpreter.SUM_OF_DIGITS, 3817));
+        assertEquals("45\n", run(KotlinInterpreter.SUM_OF_DIGITS, 918273645));
+        assertEquals("0\n", run(KotlinInterpreter.SUM_OF_DIGITS, 0));
+    }
+
+    @Test
+    void multiplicationTable() {
+        for (long n = 0; n <= 12; n++) {
+            StringJoiner expected = new StringJoiner("\n", "", "\n");
+            for (long i = 1; i <= 10; i++) {
+                expected.add(String.valueOf(n * i));
+            }
+            assertEquals(expected.toString(), run(KotlinInterpreter.MULTIPLICATION_TABLE, n), "n = " + n);
+        }
+    }
+
+    @Test
+    void fibonacci() {
+        long previous = 0;
+        long current = 1;
+        assertEquals("0\n", run(KotlinInterpreter.FIBONACCI, 0));
+        for (long n = 1; n <= 50; n++) {
+            assertEquals(current + "\n", run(KotlinInterpreter.FIBONACCI, n), "n = " + n);
+            long next = previous + current;
+            previous = current;
+            current = next;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class OptimizerTest {
+    @Test
+    void literalArithmeticIsFolded() {
+        List<Parser.Stmt> statements = Scripts.optimize("var x = 1; print 2 * 3 + x;");
+        Parser.Expr.Binary sum = assertInstanceOf(Parser.Expr.Binary.class, printed(statements.get(1)));
+        assertEquals(6L, assertInstanceOf(Parser.Expr.Literal.class, sum.left).value);
+        assertEquals("7\n", Scripts.runOptimizedAndNot("var x = 1; print 2 * 3 + x;", ExecutionLimits.NONE).output);
+    }
+
+    @Test
+    void identitiesAreRemoved() {
+        List<Parser.Stmt> statements = Scripts.optimize("var x = 5; print x * 1; print 0 + x; print x - 0;");
+        for (Parser.Stmt statement : statements.subList(1, 4)) {
+            assertInstanceOf(Parser.Expr.Variable.class, printed(statement));
+        }
+    }
+
+    @Test
+    void integerVariableTimesZeroIsZero() {
+        List<Parser.Stmt> statements = Scripts.optimize("var x = 5; print x * 0; print 0 * x;");
+        for (Parser.Stmt statement : statements.subList(1, 3)) {
+            assertEquals(0L, assertInstanceOf(Parser.Expr.Literal.class, printed(statement)).value);
+        }
+        // Anything but a variable is still evaluated, for its errors
+        String source = "var x = 5; var zero = 0; print (x / zero) * 0;";
+        assertInstanceOf(Parser.Expr.Binary.class, printed(Scripts.optimize(source).get(2)));
+        assertEquals("Runtime error: Division by zero.",
+                Scripts.runOptimizedAndNot(source, ExecutionLimits.NONE).error);
+    }
+
+    @Test
+    void ifWithConstantConditionKeepsOnlyTheBranchThatRuns() {
+        List<Parser.Stmt> statements = Scripts.optimize("if (1 < 2) print 1; else print 2; if (1 > 2) print 3;");
+        assertEquals(1, statements.size());
+        assertEquals(1L, assertInstanceOf(Parser.Expr.Literal.class, printed(statements.get(0))).value);
+    }
+
+    @Test
+    void divisionByLiteralZeroStillFailsAtRuntime() {
+        ScriptResult result = Scripts.runOptimizedAndNot("print 1; print 7 / 0;", ExecutionLimits.NONE);
+        assertEquals("1\n", result.output);
+        assertEquals("Runtime error: Division by zero.", result.error);
+        result = Scripts.runOptimizedAndNot("print 7 % 0;", ExecutionLimits.NONE);
+        assertEquals("Runtime error: Modulo by zero.", result.error);
+    }
+
+    @Test
+    void literalOverflowStillFailsAtRuntime() {
+        ScriptResult result = Scripts.runOptimizedAndNot("print 1; print 9223372036854775807 + 1;",
+                ExecutionLimits.NONE);
+        assertEquals("1\n", result.output);
+        assertEquals("Runtime error: Integer overflow.", result.error);
+    }
+
+    @Test
+    void doubleIdentitiesThatChangeResultsAreKept() {
+        // -0.0 + 0 is 0.0, and x * 0 is not 0 when x is infinite
+        String source = """
+                var one = 100000000000000000000 / 100000000000000000000;
+                var negativeZero = (0 - one) * 0;
+                print negativeZero;
+                print negativeZero + 0;
+                var huge = 100000000000000000000 * 100000000000000000000;
+                huge = huge * huge * huge * huge * huge * huge * huge * huge * huge * huge * huge * huge * huge;
+                huge = huge * huge * huge * huge;
+                print huge;
+                print huge * 0;
+                print huge * 1;
+                """;
+        ScriptResult result = Scripts.runOptimizedAndNot(source, ExecutionLimits.NONE);
+        assertNull(result.error);
+        assertEquals("-0\n0\nInfinity\nNaN\nInfinity\n", result.output);
+    }
+
+    private static Parser.Expr printed(Parser.Stmt statement) {
+        return assertInstanceOf(Parser.Stmt.Print.class, statement).expression;
+    }
+}
@@ -0,0 +1,188 @@
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ParallelLoopsTest {
+    private static final String REDUCTIONS = """
+            param n;
+            var total = 0;
+            var hits = 0;
+            var best = 0;
+            var worst = 1000;
+            var squares = IntArray(n + 1);
+            %s for (i in 1..n) {
+                var score = i * 7919 %% 1000;
+                total = total + score;
+                if (score > best) best = score;
+                if (score < worst) worst = score;
+                if (score %% 3 == 0) hits = hits + 1;
+                squares[i] = i * i;
+            }
+            print total;
+            print hits;
+            print best;
+            print worst;
+            print sum(squares);
+            """;
+
+    private static String parallel(String reductions) {
+        return REDUCTIONS.formatted("parallel(" + reductions + ")");
+    }
+
+    @Test
+    void reductionsMatchTheSequentialLoop() {
+        String sequential = Scripts.runInAllModes(REDUCTIONS.formatted(""), 100000).output;
+        ScriptResult result = Scripts.runInAllModes(parallel("sum total, count hits, max best, min worst"), 100000);
+        assertNull(result.error);
+        assertEquals(sequential, result.output);
+    }
+
+    @Test
+    void reductionsCombineWithTheValueBeforeTheLoop() {
+        String source = """
+                var total = 100;
+                var best = 5000;
+                var worst = 0 - 5;
+                parallel(sum total, max best, min worst) for (i in 1..1000) {
+                    total = total + i;
+                    if (i > best) best = i;
+                    if (i < worst) worst = i;
+                }
+                print total;
+                print best;
+                print worst;
+                """;
+        assertEquals("500600\n5000\n-5\n", Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void resultsDoNotDependOnThePoolSize() throws Exception {
+        String source = parallel("sum total, count hits, max best, min worst");
+        String sequential = Scripts.runInAllModes(REDUCTIONS.formatted(""), 100000).output;
+        for (int threads : new int[]{1, 2, 3, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                ScriptResult result = pool.submit(() -> Scripts.runInAllModes(source, 100000)).get();
+                assertNull(result.error);
+                assertEquals(sequential, result.output, threads + " threads");
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void limitsRunTheLoopOnOneThread() {
+        String source = parallel("sum total, count hits, max best, min worst");
+        String expected = Scripts.runInAllModes(REDUCTIONS.formatted(""), 1000).output;
+        CompiledProgram program = KotlinInterpreter.compile(source);
+        ScriptResult result = Scripts.runInAllModes(program, ExecutionLimits.NONE.withMaxIterations(5000), 1000);
+        assertEquals(expected, result.output);
+
+        result = Scripts.runInAllModes(program, ExecutionLimits.NONE.withMaxIterations(500), 1000);
+        assertEquals("", result.output);
+        assertEquals("Execution limit exceeded: more than 500 loop iterations.", result.error);
+    }
+
+    @Test
+    void emptyRangesLeaveTheReductionsAlone() {
+        String source = """
+                var total = 7;
+                var best = 3;
+                parallel(sum total, max best) for (i in 5..1) {
+                    total = total + i;
+                    if (i > best) best = i;
+                }
+                print total;
+                print best;
+                """;
+        assertEquals("7\n3\n", Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void errorsInTheBodyStopTheProgram() {
+        String source = """
+                var total = 0;
+                print 1;
+                parallel(sum total) for (i in 1..100000) {
+                    total = total + 1 / (i - 77777);
+                }
+                print total;
+                """;
+        ScriptResult result = Scripts.runInAllModes(source);
+        assertEquals("1\n", result.output);
+        assertEquals("Runtime error: Division by zero.", result.error);
+    }
+
+    @Test
+    void onlyReductionsCanBeAssigned() {
+        assertCompileError("Parallel loop assigns to 'total', which is not one of its reductions.",
+                "var total = 0; parallel for (i in 1..10) { total = total + i; }");
+        assertCompileError("Loop variable 'i' cannot be a reduction variable.",
+                "parallel(sum i) for (i in 1..10) { }");
+        assertCompileError("Duplicate reduction variable 'total'.",
+                "var total = 0; parallel(sum total, max total) for (i in 1..10) { total = total + i; }");
+    }
+
+    @Test
+    void reductionsAreOnlyUpdatedByTheirOperator() {
+        assertCompileError("Reduction variable 'x' can only be updated by 'x = x + value;'.",
+                "var x = 0; parallel(sum x) for (i in 1..100) { x = i; }");
+        assertCompileError("Reduction variable 'y' can only be updated by 'y = y + value;'.",
+                "var y = 1; parallel(sum y) for (i in 1..100) { y = y * 2; }");
+        assertCompileError("Reduction variable 'y' can only be updated by 'y = y + value;'.",
+                "var y = 1; parallel(sum y) for (i in 1..100) { y = y + y; }");
+        assertCompileError("Reduction variable 'm' can only be updated by 'if (value > m) m = value;'.",
+                "var m = 0; parallel(max m) for (i in 1..100) { m = 0 - i; }");
+        assertCompileError("Reduction variable 'm' can only be updated by 'if (value < m) m = value;'.",
+                "var m = 0; parallel(min m) for (i in 1..100) { if (i > m) m = i; }");
+        assertCompileError("Reduction variable 'm' can only be updated by 'if (value > m) m = value;'.",
+                "var m = 0; parallel(max m) for (i in 1..100) { if (i > m) m = i + 1; }");
+        assertCompileError("Reduction variable 'c' can only be updated by 'c = c + 1;'.",
+                "var c = 0; parallel(count c) for (i in 1..100) { c = c + 2; }");
+        // Reading one anywhere else would see only the thread's own part
+        assertCompileError("Reduction variable 'c' can only be updated by 'c = c + 1;'.",
+                "var c = 0; var a = IntArray(101); parallel(count c) for (i in 1..100) { c = c + 1; a[i] = c; }");
+        assertCompileError("Reduction variable 's' can only be updated by 's = s + value;'.",
+                "var s = 0; parallel(sum s) for (i in 1..100) { if (s > 10) s = s + i; }");
+        assertCompileError("Reduction variable 's' can only be updated by 's = s + value;'.",
+                "var s = 0; parallel(sum s) for (i in 1..100) { var s = i; }");
+    }
+
+    @Test
+    void reductionsCanBeUpdatedInEitherOrder() {
+        String source = """
+                var total = 0;
+                var best = 0;
+                var worst = 1000;
+                parallel(sum total, max best, min worst) for (i in 1..1000) {
+                    var score = i * 7919 % 1000;
+                    total = score * 2 + total;
+                    if (best < score) { best = score; }
+                    if (worst > score) worst = score;
+                }
+                print total;
+                print best;
+                print worst;
+                """;
+        assertEquals(Scripts.runInAllModes(source.replace("parallel(sum total, max best, min worst) ", "")).output,
+                Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void bodiesCannotPrintOrReturn() {
+        assertCompileError("A parallel loop must not print.",
+                "parallel for (i in 1..10) { print i; }");
+        assertCompileError("Return inside a parallel loop.",
+                "fun f() { parallel for (i in 1..10) { return; } } f();");
+    }
+
+    private static void assertCompileError(String message, String source) {
+        RuntimeException error = assertThrows(RuntimeException.class, () -> KotlinInterpreter.compile(source));
+        assertEquals(message, error.getMessage());
+    }
+}
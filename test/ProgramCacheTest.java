@@ -0,0 +1,125 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProgramCacheTest {
+    // Sources of the same length, so they weigh the same
+    private static final String A = "print 1;";
+    private static final String B = "print 2;";
+    private static final String C = "print 3;";
+    private static final long WEIGHT = (long) A.length() * ProgramCache.BYTES_PER_CHAR;
+
+    // The sources compiled so far, in order
+    private final List<String> compiled = new ArrayList<>();
+
+    private ProgramCache cache(int maxEntries, long maxBytes) {
+        return new ProgramCache(maxEntries, maxBytes, source -> {
+            compiled.add(source);
+            return KotlinInterpreter.compile(source);
+        });
+    }
+
+    @Test
+    void aHitReturnsTheCompiledProgram() {
+        ProgramCache cache = cache(10, Long.MAX_VALUE);
+        CompiledProgram program = cache.get(A);
+        assertSame(program, cache.get(A));
+        assertEquals(List.of(A), compiled);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(0, cache.evictions());
+        assertEquals(1, cache.size());
+        assertEquals(WEIGHT, cache.weightedSize());
+    }
+
+    @Test
+    void theLeastRecentlyUsedEntryIsEvictedFirst() {
+        ProgramCache cache = cache(2, Long.MAX_VALUE);
+        cache.get(A);
+        cache.get(B);
+        // Using A makes B the least recently used
+        cache.get(A);
+        cache.get(C);
+        assertEquals(1, cache.evictions());
+        assertEquals(2, cache.size());
+
+        cache.get(A);
+        cache.get(C);
+        assertEquals(List.of(A, B, C), compiled);
+        cache.get(B);
+        assertEquals(List.of(A, B, C, B), compiled);
+        assertEquals(3, cache.hits());
+        assertEquals(4, cache.misses());
+        assertEquals(2, cache.evictions());
+    }
+
+    @Test
+    void entriesAreEvictedOnceTheyWeighMoreThanMaxBytes() {
+        ProgramCache cache = cache(10, 2 * WEIGHT);
+        cache.get(A);
+        cache.get(B);
+        assertEquals(0, cache.evictions());
+        assertEquals(2 * WEIGHT, cache.weightedSize());
+
+        cache.get(C);
+        assertEquals(1, cache.evictions());
+        assertEquals(2, cache.size());
+        assertEquals(2 * WEIGHT, cache.weightedSize());
+        cache.get(A);
+        assertEquals(List.of(A, B, C, A), compiled);
+    }
+
+    @Test
+    void aProgramHeavierThanMaxBytesIsNeverCached() {
+        ProgramCache cache = cache(10, WEIGHT);
+        cache.get(A);
+        String heavy = "print 10;";
+        CompiledProgram first = cache.get(heavy);
+        assertNotSame(first, cache.get(heavy));
+        assertEquals(List.of(A, heavy, heavy), compiled);
+        // A was not evicted to make room for it
+        assertSame(cache.get(A), cache.get(A));
+        assertEquals(0, cache.evictions());
+        assertEquals(1, cache.size());
+        assertEquals(WEIGHT, cache.weightedSize());
+    }
+
+    @Test
+    void zeroMaxEntriesCachesNothing() {
+        ProgramCache cache = cache(0, Long.MAX_VALUE);
+        cache.get(A);
+        cache.get(A);
+        assertEquals(List.of(A, A), compiled);
+        assertEquals(0, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals(0, cache.evictions());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    void clearEmptiesTheCacheButKeepsTheCounters() {
+        ProgramCache cache = cache(10, Long.MAX_VALUE);
+        cache.get(A);
+        cache.get(A);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weightedSize());
+        cache.get(A);
+        assertEquals(List.of(A, A), compiled);
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    void negativeLimitsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> cache(-1, 0));
+        assertThrows(IllegalArgumentException.class, () -> cache(0, -1));
+    }
+}
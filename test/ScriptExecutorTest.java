@@ -0,0 +1,91 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScriptExecutorTest {
+    @Test
+    void eachSubmissionGetsItsOwnOutput() throws Exception {
+        List<CompletableFuture<ScriptResult>> results = new ArrayList<>();
+        try (ScriptExecutor executor = new ScriptExecutor(4)) {
+            for (int n = 0; n < 100; n++) {
+                results.add(executor.submit(KotlinInterpreter.SUM_OF_N, n));
+            }
+        }
+        for (int n = 0; n < results.size(); n++) {
+            ScriptResult result = results.get(n).get();
+            assertNull(result.error);
+            assertEquals(n * (n + 1) / 2 + "\n", result.output);
+        }
+    }
+
+    @Test
+    void errorsAreCapturedWithTheOutputBeforeThem() throws Exception {
+        ScriptResult result;
+        try (ScriptExecutor executor = new ScriptExecutor(2, KotlinInterpreter.ExecutionMode.BYTECODE,
+                ExecutionLimits.NONE)) {
+            result = executor.submit("var zero = 0; print 1; print 1 / zero;").get();
+        }
+        assertEquals("1\n", result.output);
+        assertEquals("Runtime error: Division by zero.", result.error);
+        assertTrue(!result.succeeded());
+    }
+
+    @Test
+    void limitsApplyToEverySubmission() throws Exception {
+        ExecutionLimits limits = ExecutionLimits.NONE.withTimeout(Duration.ofMillis(50));
+        try (ScriptExecutor executor = new ScriptExecutor(2, limits)) {
+            ScriptResult result = executor.submit("while (1 < 2) { }").get();
+            assertEquals("Execution limit exceeded: ran for more than 50 ms.", result.error);
+        }
+    }
+
+    @Test
+    void submitBlocksWhileAllSlotsAreTaken() throws Exception {
+        ExecutionLimits limits = ExecutionLimits.NONE.withTimeout(Duration.ofMillis(300));
+        try (ScriptExecutor executor = new ScriptExecutor(1, limits)) {
+            long start = System.nanoTime();
+            CompletableFuture<ScriptResult> slow = executor.submit("while (1 < 2) { }");
+            CompletableFuture<ScriptResult> fast = executor.submit("print 1;");
+            // The second submit only returned once the first program had run
+            // into its time limit and freed its slot
+            assertTrue(System.nanoTime() - start >= limits.timeout.toNanos());
+            assertEquals("Execution limit exceeded: ran for more than 300 ms.",
+                    slow.get(10, TimeUnit.SECONDS).error);
+            assertEquals("1\n", fast.get(10, TimeUnit.SECONDS).output);
+        }
+    }
+
+    @Test
+    void theSameSourceIsCompiledOnce() throws Exception {
+        String source = "param n; print n * 3; var unique = " + System.nanoTime() + ";";
+        long misses = KotlinInterpreter.programCache().misses();
+        List<CompletableFuture<ScriptResult>> results = new ArrayList<>();
+        try (ScriptExecutor executor = new ScriptExecutor(8)) {
+            // Runs that start at the same time may each compile the source
+            // before one of them caches it, so the first one runs alone
+            results.add(executor.submit(source, 0));
+            results.get(0).get();
+            for (int i = 1; i < 50; i++) {
+                results.add(executor.submit(source, i));
+            }
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i * 3 + "\n", results.get(i).get().output);
+        }
+        assertEquals(misses + 1, KotlinInterpreter.programCache().misses());
+    }
+
+    @Test
+    void needsAtLeastOneSlot() {
+        assertThrows(IllegalArgumentException.class, () -> new ScriptExecutor(0));
+    }
+}
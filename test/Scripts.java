@@ -0,0 +1,74 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Runs programs for the tests and captures what they print and the error
+// they stop with, the way ScriptExecutor does
+final class Scripts {
+    private Scripts() {
+    }
+
+    // Compiles like KotlinInterpreter.compile, but only runs the Optimizer
+    // when asked to, whatever -Dkotlin.optimize says
+    static CompiledProgram compile(String source, boolean optimize) {
+        Parser parser = new Parser(new Lexer(source).scanTokenStream());
+        Resolver resolver = new Resolver();
+        List<Parser.Stmt> statements = resolver.resolve(parser.parse());
+        if (optimize) statements = new Optimizer().optimize(statements);
+        return new CompiledProgram(statements, resolver.slotTypes(), resolver.parameterNames(),
+                resolver.parameterSlots());
+    }
+
+    // The statements the Optimizer turns the source into
+    static List<Parser.Stmt> optimize(String source) {
+        Parser parser = new Parser(new Lexer(source).scanTokenStream());
+        return new Optimizer().optimize(new Resolver().resolve(parser.parse()));
+    }
+
+    static ScriptResult run(String source, KotlinInterpreter.ExecutionMode mode, double... arguments) {
+        return run(KotlinInterpreter.compile(source), mode, ExecutionLimits.NONE, arguments);
+    }
+
+    static ScriptResult run(CompiledProgram program, KotlinInterpreter.ExecutionMode mode, ExecutionLimits limits,
+                            double... arguments) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long start = System.nanoTime();
+        String error = null;
+        try {
+            program.run(mode, new BufferedOutput(bytes), limits, arguments);
+        } catch (RuntimeException failure) {
+            error = failure.getMessage();
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        return new ScriptResult(bytes.toString(StandardCharsets.UTF_8), error, elapsed);
+    }
+
+    // Runs the source in every ExecutionMode, checks that they print the same
+    // and stop with the same error, and returns what they did
+    static ScriptResult runInAllModes(String source, double... arguments) {
+        return runInAllModes(KotlinInterpreter.compile(source), ExecutionLimits.NONE, arguments);
+    }
+
+    static ScriptResult runInAllModes(CompiledProgram program, ExecutionLimits limits, double... arguments) {
+        ScriptResult expected = run(program, KotlinInterpreter.ExecutionMode.TREE_WALKING, limits, arguments);
+        for (KotlinInterpreter.ExecutionMode mode : KotlinInterpreter.ExecutionMode.values()) {
+            ScriptResult actual = run(program, mode, limits, arguments);
+            assertEquals(expected.output, actual.output, mode + " output");
+            assertEquals(expected.error, actual.error, mode + " error");
+        }
+        return expected;
+    }
+
+    // Runs the source with and without the Optimizer, in every mode, and
+    // checks that the optimized program does exactly what the original does
+    static ScriptResult runOptimizedAndNot(String source, ExecutionLimits limits, double... arguments) {
+        ScriptResult original = runInAllModes(compile(source, false), limits, arguments);
+        ScriptResult optimized = runInAllModes(compile(source, true), limits, arguments);
+        assertEquals(original.output, optimized.output, "optimized output");
+        assertEquals(original.error, optimized.error, "optimized error");
+        return optimized;
+    }
+}
@@ -0,0 +1,124 @@
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// The StreamingLexer must produce exactly the tokens Lexer.scanTokenStream
+// does, however its input is split into reads
+class StreamingLexerTest {
+    // Every kind of token, keywords and identifiers that only start like
+    // one, and numbers on both sides of Lexer.MAX_PLAIN_DIGITS
+    private static final String EVERY_TOKEN = """
+            var x = 1; param n;
+            if (x == 2) { print x; } else { x = x + 3 - 4 * 5 / 6 % 7; }
+            while (x < 8) x = x + 1;
+            while (x > 9) { }
+            @memo fun f(a, b) { return a; }
+            for (i in 0..10) { print i; }
+            parallel for (i in 1 .. n) { var y : sum = i; }
+            var arr = IntArray(3); arr[0] = 1;
+            var iff = 0; var fortune = 0; var printer = 0; var returns = 0; var _in = 0;
+            print 123456789012345678;
+            print 1234567890123456789;
+            print 9223372036854775807;
+            print 100000000000000000000000;
+            """;
+
+    private static String describe(Token token) {
+        return token.type + " " + token.lexeme + " " + token.literal;
+    }
+
+    private static List<String> tokens(TokenReader reader) {
+        List<String> tokens = new ArrayList<>();
+        while (true) {
+            TokenType type = reader.peekType();
+            reader.advance();
+            tokens.add(describe(reader.previous()));
+            if (type == TokenType.EOF) return tokens;
+        }
+    }
+
+    private static List<String> expected(String source) {
+        return tokens(new Lexer(source).scanTokenStream().reader());
+    }
+
+    // Hands the characters to the StreamingLexer a few at a time, as a slow
+    // Reader would
+    private static Readable inPiecesOf(String source, int size) {
+        int[] position = {0};
+        return buffer -> {
+            if (position[0] == source.length()) return -1;
+            int end = Math.min(source.length(), position[0] + Math.min(size, buffer.remaining()));
+            buffer.append(source, position[0], end);
+            int read = end - position[0];
+            position[0] = end;
+            return read;
+        };
+    }
+
+    private static void assertSameTokens(String source) {
+        List<String> expected = expected(source);
+        StreamingLexer fromReader = new StreamingLexer(new StringReader(source));
+        assertEquals(expected, tokens(fromReader));
+        fromReader.rethrowError();
+        assertEquals(expected, tokens(new StreamingLexer(CharBuffer.wrap(source))));
+        for (int size : new int[]{1, 2, 3, 7}) {
+            assertEquals(expected, tokens(new StreamingLexer(inPiecesOf(source, size))), "reads of " + size);
+        }
+    }
+
+    @Test
+    void everyKindOfTokenMatchesTheLexer() {
+        assertSameTokens(EVERY_TOKEN);
+        assertSameTokens("");
+        assertSameTokens("  \n\t\r ");
+        assertSameTokens("x==y=z..w");
+    }
+
+    @Test
+    void tokensAcrossAWindowRefillMatchTheLexer() {
+        // Pad the input so that each token of the program in turn straddles
+        // the end of the first window
+        for (int padding = 0; padding < 40; padding++) {
+            String source = " ".repeat(StreamingLexer.WINDOW_SIZE - 20 + padding)
+                    + "var parallelism = 12345678901234567890123; print parallelism..x == 1;";
+            assertSameTokens(source);
+        }
+        assertSameTokens(EVERY_TOKEN.repeat(3 * StreamingLexer.WINDOW_SIZE / EVERY_TOKEN.length() + 1));
+    }
+
+    @Test
+    void compilingFromAReaderRunsLikeCompilingTheString() {
+        String source = KotlinInterpreter.FIBONACCI
+                + "var pad = 0;\n".repeat(StreamingLexer.WINDOW_SIZE / 10);
+        ScriptResult fromString = Scripts.run(KotlinInterpreter.compile(source),
+                KotlinInterpreter.ExecutionMode.TREE_WALKING, ExecutionLimits.NONE, 30);
+        ScriptResult fromReader = Scripts.run(KotlinInterpreter.compile(new StringReader(source)),
+                KotlinInterpreter.ExecutionMode.TREE_WALKING, ExecutionLimits.NONE, 30);
+        assertNull(fromReader.error);
+        assertEquals("832040\n", fromReader.output);
+        assertEquals(fromString.output, fromReader.output);
+    }
+
+    @Test
+    void anUnknownCharacterFailsTheCompile() {
+        for (String source : new String[]{"print 1;\nprint 2 # 3;\nprint 4;", "print 1 . 2;"}) {
+            RuntimeException fromString = assertThrows(RuntimeException.class,
+                    () -> KotlinInterpreter.compile(source));
+            RuntimeException fromReader = assertThrows(RuntimeException.class,
+                    () -> KotlinInterpreter.compile(new StringReader(source)));
+            assertEquals(fromString.getMessage(), fromReader.getMessage());
+        }
+        // Past the first window, where the program before it has already been parsed
+        String late = "print 1;\n".repeat(StreamingLexer.WINDOW_SIZE / 4) + "print $;";
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> KotlinInterpreter.compile(new StringReader(late)));
+        assertEquals("Unexpected character: $", error.getMessage());
+    }
+}
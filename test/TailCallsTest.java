@@ -0,0 +1,82 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Calls run on an explicit stack, so recursion is only bounded by
+// Interpreter.MAX_CALL_DEPTH, and tail calls do not count against it
+class TailCallsTest {
+    @Test
+    void tailRecursionRunsPastTheCallDepth() {
+        String source = """
+                fun count(n, total) {
+                    if (n == 0) return total;
+                    return count(n - 1, total + 1);
+                }
+                print count(1000000, 0);
+                """;
+        assertEquals("1000000\n", Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void mutualTailRecursion() {
+        String source = """
+                fun isEven(n) {
+                    if (n == 0) return 1;
+                    return isOdd(n - 1);
+                }
+                fun isOdd(n) {
+                    if (n == 0) return 0;
+                    return isEven(n - 1);
+                }
+                print isEven(1000001);
+                """;
+        assertEquals("0\n", Scripts.runInAllModes(source).output);
+    }
+
+    @Test
+    void deepRecursionDoesNotUseTheJavaStack() {
+        String source = """
+                fun depth(n) {
+                    if (n == 0) return 0;
+                    return 1 + depth(n - 1);
+                }
+                print depth(90000);
+                """;
+        ScriptResult result = Scripts.runInAllModes(source);
+        assertNull(result.error);
+        assertEquals("90000\n", result.output);
+    }
+
+    @Test
+    void recursionDeeperThanTheLimitStopsTheProgram() {
+        String source = """
+                fun depth(n) {
+                    if (n == 0) return 0;
+                    return 1 + depth(n - 1);
+                }
+                print depth(10);
+                print depth(%d);
+                """.formatted(Interpreter.MAX_CALL_DEPTH + 1);
+        ScriptResult result = Scripts.runInAllModes(source);
+        assertEquals("10\n", result.output);
+        assertEquals("Runtime error: Stack overflow.", result.error);
+    }
+
+    @Test
+    void callsInsideExpressionsResumeWhereTheyLeftOff() {
+        String source = """
+                fun square(n) { return n * n; }
+                fun sumOfSquares(n) {
+                    var total = 0;
+                    var i = 1;
+                    while (i < n + 1) { total = total + square(i); i = i + 1; }
+                    return total;
+                }
+                var x = square(3) + square(4) * sumOfSquares(3);
+                print x;
+                if (square(2) == 4) print square(square(2)); else print 0;
+                """;
+        assertEquals("233\n16\n", Scripts.runInAllModes(source).output);
+    }
+}
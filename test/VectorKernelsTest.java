@@ -0,0 +1,99 @@
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// The SIMD kernels must give what the scalar loops of Builtin give. Skipped
+// when Builtin did not load them, as when Java runs without the module.
+class VectorKernelsTest {
+    private static final int[] SIZES = {0, 1, 3, 8, 17, 1000, 4099};
+
+    private final Random random = new Random(42);
+    private ArrayKernels kernels;
+
+    @BeforeEach
+    void loadKernels() {
+        assumeTrue(Builtin.VECTORS, "VectorKernels not loaded");
+        kernels = Builtin.VECTOR_KERNELS;
+    }
+
+    @Test
+    void doubleOperations() {
+        for (int size : SIZES) {
+            double[] a = random.doubles(size, -1000, 1000).toArray();
+            double[] b = random.doubles(size, -1000, 1000).toArray();
+            assertEquals(Builtin.scalarSum(a), kernels.sum(a), 1e-6, "sum of " + size);
+            assertEquals(Builtin.scalarDot(a, b), kernels.dot(a, b), 1e-3, "dot of " + size);
+
+            double[] expected = new double[size];
+            double[] actual = new double[size];
+            Builtin.scalarCombine(true, a, b, expected);
+            kernels.plus(a, b, actual);
+            assertArrayEquals(expected, actual);
+            Builtin.scalarCombine(false, a, b, expected);
+            kernels.times(a, b, actual);
+            assertArrayEquals(expected, actual);
+            for (int i = 0; i < size; i++) {
+                expected[i] = a[i] + 2.5;
+            }
+            kernels.plus(a, 2.5, actual);
+            assertArrayEquals(expected, actual);
+            for (int i = 0; i < size; i++) {
+                expected[i] = a[i] * 2.5;
+            }
+            kernels.times(a, 2.5, actual);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void integerOperations() {
+        for (int size : SIZES) {
+            long[] a = random.longs(size, -1_000_000_000_000L, 1_000_000_000_000L).toArray();
+            long[] b = random.longs(size, -1_000_000_000_000L, 1_000_000_000_000L).toArray();
+            assertEquals(Builtin.scalarSum(a), kernels.sum(a), "sum of " + size);
+
+            long[] expected = new long[size];
+            long[] actual = new long[size];
+            Builtin.scalarPlus(a, b, expected);
+            kernels.plus(a, b, actual);
+            assertArrayEquals(expected, actual);
+            for (int i = 0; i < size; i++) {
+                expected[i] = a[i] + 7;
+            }
+            kernels.plus(a, 7, actual);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void integerOverflowIsReported() {
+        long[] a = new long[100];
+        long[] b = new long[100];
+        a[40] = Long.MAX_VALUE;
+        b[40] = 1;
+        assertThrows(ArithmeticException.class, () -> kernels.plus(a, b, new long[100]));
+        assertThrows(ArithmeticException.class, () -> kernels.plus(a, 1, new long[100]));
+        a[41] = Long.MAX_VALUE;
+        assertThrows(ArithmeticException.class, () -> kernels.sum(a));
+    }
+
+    @Test
+    void sumsThatOverflowALaneButFitAreExact() {
+        // Lanes are a power of two wide, so the lane of Long.MAX_VALUE only
+        // gets the 1s at even indexes, although the -1s make the total fit
+        long[] a = new long[65];
+        a[0] = Long.MAX_VALUE;
+        for (int i = 1; i < a.length; i++) {
+            a[i] = i % 2 == 0 ? 1 : -1;
+        }
+        assertThrows(ArithmeticException.class, () -> kernels.sum(a));
+        assertEquals(Long.MAX_VALUE, Builtin.SUM.call(new Object[]{a}));
+        assertEquals(Builtin.scalarSum(a), Builtin.SUM.call(new Object[]{a}));
+    }
+}
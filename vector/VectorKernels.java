@@ -0,0 +1,167 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// SIMD versions of the bulk array operations in Builtin, on the incubating
+// Vector API. Each kernel works through the arrays a full vector at a time
+// and finishes the last few elements with a scalar loop.
+//
+// The jdk.incubator.vector module is only there when Java is started with
+// --add-modules jdk.incubator.vector, so Builtin only loads this class, by
+// name, when the module was found (see Builtin.VECTOR_KERNELS). It is kept
+// out of src, in a source directory of its own that only the Maven build
+// compiles with the module, so src builds with a plain javac.
+//
+// Integer kernels keep the exactness of the scalar ones: a lane that
+// overflows makes the kernel throw ArithmeticException. Double sums and dot
+// products add the elements in a different order than a scalar loop, so the
+// last digits of the result can differ from it.
+final class VectorKernels implements ArrayKernels {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+    // Called through reflection by Builtin
+    VectorKernels() {
+    }
+
+    @Override
+    public double sum(double[] array) {
+        DoubleVector total = DoubleVector.zero(DOUBLES);
+        int bound = DOUBLES.loopBound(array.length);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            total = total.add(DoubleVector.fromArray(DOUBLES, array, i));
+        }
+        double sum = total.reduceLanes(VectorOperators.ADD);
+        for (; i < array.length; i++) {
+            sum += array[i];
+        }
+        return sum;
+    }
+
+    // Throws ArithmeticException when one of the lanes overflows, even if
+    // the whole sum would fit
+    @Override
+    public long sum(long[] array) {
+        LongVector total = LongVector.zero(LONGS);
+        // Sign bit set in a lane once one of its additions has overflowed
+        LongVector overflow = LongVector.zero(LONGS);
+        int bound = LONGS.loopBound(array.length);
+        int i = 0;
+        for (; i < bound; i += LONGS.length()) {
+            LongVector element = LongVector.fromArray(LONGS, array, i);
+            LongVector sum = total.add(element);
+            overflow = overflow.or(total.lanewise(VectorOperators.XOR, sum)
+                    .and(element.lanewise(VectorOperators.XOR, sum)));
+            total = sum;
+        }
+        if (overflow.compare(VectorOperators.LT, 0).anyTrue()) throw new ArithmeticException("long overflow");
+        long sum = 0;
+        for (int lane = 0; lane < LONGS.length(); lane++) {
+            sum = Math.addExact(sum, total.lane(lane));
+        }
+        for (; i < array.length; i++) {
+            sum = Math.addExact(sum, array[i]);
+        }
+        return sum;
+    }
+
+    @Override
+    public double dot(double[] a, double[] b) {
+        DoubleVector total = DoubleVector.zero(DOUBLES);
+        int bound = DOUBLES.loopBound(a.length);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            total = total.add(DoubleVector.fromArray(DOUBLES, a, i).mul(DoubleVector.fromArray(DOUBLES, b, i)));
+        }
+        double sum = total.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void plus(double[] a, double[] b, double[] result) {
+        int bound = DOUBLES.loopBound(a.length);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, a, i).add(DoubleVector.fromArray(DOUBLES, b, i)).intoArray(result, i);
+        }
+        for (; i < a.length; i++) {
+            result[i] = a[i] + b[i];
+        }
+    }
+
+    @Override
+    public void plus(double[] a, double b, double[] result) {
+        int bound = DOUBLES.loopBound(a.length);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, a, i).add(b).intoArray(result, i);
+        }
+        for (; i < a.length; i++) {
+            result[i] = a[i] + b;
+        }
+    }
+
+    @Override
+    public void times(double[] a, double[] b, double[] result) {
+        int bound = DOUBLES.loopBound(a.length);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, a, i).mul(DoubleVector.fromArray(DOUBLES, b, i)).intoArray(result, i);
+        }
+        for (; i < a.length; i++) {
+            result[i] = a[i] * b[i];
+        }
+    }
+
+    @Override
+    public void times(double[] a, double b, double[] result) {
+        int bound = DOUBLES.loopBound(a.length);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, a, i).mul(b).intoArray(result, i);
+        }
+        for (; i < a.length; i++) {
+            result[i] = a[i] * b;
+        }
+    }
+
+    @Override
+    public void plus(long[] a, long[] b, long[] result) {
+        LongVector overflow = LongVector.zero(LONGS);
+        int bound = LONGS.loopBound(a.length);
+        int i = 0;
+        for (; i < bound; i += LONGS.length()) {
+            LongVector left = LongVector.fromArray(LONGS, a, i);
+            LongVector right = LongVector.fromArray(LONGS, b, i);
+            LongVector sum = left.add(right);
+            overflow = overflow.or(left.lanewise(VectorOperators.XOR, sum).and(right.lanewise(VectorOperators.XOR, sum)));
+            sum.intoArray(result, i);
+        }
+        if (overflow.compare(VectorOperators.LT, 0).anyTrue()) throw new ArithmeticException("long overflow");
+        for (; i < a.length; i++) {
+            result[i] = Math.addExact(a[i], b[i]);
+        }
+    }
+
+    @Override
+    public void plus(long[] a, long b, long[] result) {
+        LongVector overflow = LongVector.zero(LONGS);
+        int bound = LONGS.loopBound(a.length);
+        int i = 0;
+        for (; i < bound; i += LONGS.length()) {
+            LongVector left = LongVector.fromArray(LONGS, a, i);
+            LongVector sum = left.add(b);
+            overflow = overflow.or(left.lanewise(VectorOperators.XOR, sum).and(sum.lanewise(VectorOperators.XOR, b)));
+            sum.intoArray(result, i);
+        }
+        if (overflow.compare(VectorOperators.LT, 0).anyTrue()) throw new ArithmeticException("long overflow");
+        for (; i < a.length; i++) {
+            result[i] = Math.addExact(a[i], b);
+        }
+    }
+}